@@ -17,44 +17,173 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.amazonaws.mobile.samples.mynotes;
 
 import android.content.Context;
+import android.util.Log;
 
+import com.amazonaws.mobile.samples.mynotes.repository.DraftJournal;
+import com.amazonaws.mobile.samples.mynotes.repository.NoteListSnapshot;
 import com.amazonaws.mobile.samples.mynotes.repository.NotesRepository;
 import com.amazonaws.mobile.samples.mynotes.services.AnalyticsService;
+import com.amazonaws.mobile.samples.mynotes.services.AsyncDataService;
+import com.amazonaws.mobile.samples.mynotes.services.BlobStore;
 import com.amazonaws.mobile.samples.mynotes.services.DataService;
+import com.amazonaws.mobile.samples.mynotes.services.FileBlobStore;
 import com.amazonaws.mobile.samples.mynotes.services.mock.MockAnalyticsService;
 import com.amazonaws.mobile.samples.mynotes.services.mock.MockDataService;
+import com.amazonaws.mobile.samples.mynotes.services.network.NetworkDataService;
+import com.amazonaws.mobile.samples.mynotes.services.network.StandInServer;
+import com.amazonaws.mobile.samples.mynotes.ui.ThumbnailCache;
+
+import java.io.File;
+import java.io.IOException;
 
 /**
  * This is a "fake" dependency injection system.
+ *
+ * Each dependency is created on first use and published through a volatile field, so
+ * after the first access a getter is a single volatile read with no monitor.  The
+ * initialize() call only records the context and warms the dependencies up on a
+ * background thread, keeping Application.onCreate() cheap.
  */
 public class Injection {
-    private static DataService dataService = null;
-    private static AnalyticsService analyticsService = null;
-    private static NotesRepository notesRepository = null;
+    private static final String TAG = "Injection";
+
+    /**
+     * Set to true to reach the mock data through the network data service and a stand-in
+     * HTTP server running in the app, instead of calling it directly
+     */
+    private static final boolean USE_STAND_IN_SERVER = false;
 
-    public static synchronized DataService getDataService() {
-        return dataService;
+    private static volatile Context applicationContext = null;
+    private static volatile DataService dataService = null;
+    private static volatile AnalyticsService analyticsService = null;
+    private static volatile NotesRepository notesRepository = null;
+    private static volatile MemoryBudget memoryBudget = null;
+    private static volatile ThumbnailCache thumbnailCache = null;
+
+    public static DataService getDataService() {
+        DataService result = dataService;
+        if (result == null) {
+            synchronized (Injection.class) {
+                result = dataService;
+                if (result == null) {
+                    // The mock answers synchronously, so run it behind the async layer
+                    result = new AsyncDataService(createBackend(), getAnalyticsService());
+                    dataService = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static DataService createBackend() {
+        if (USE_STAND_IN_SERVER) {
+            try {
+                NetworkDataService network = new NetworkDataService(new StandInServer(new MockDataService()).start());
+                getMemoryBudget().register(network);
+                return network;
+            } catch (IOException error) {
+                Log.e(TAG, "Could not start the stand-in server; using the mock directly", error);
+            }
+        }
+        return new MockDataService();
     }
 
-    public static synchronized AnalyticsService getAnalyticsService() {
-        return analyticsService;
+    public static AnalyticsService getAnalyticsService() {
+        AnalyticsService result = analyticsService;
+        if (result == null) {
+            synchronized (Injection.class) {
+                result = analyticsService;
+                if (result == null) {
+                    result = new MockAnalyticsService();
+                    analyticsService = result;
+                }
+            }
+        }
+        return result;
     }
 
-    public static synchronized NotesRepository getNotesRepository() {
-        return notesRepository;
+    public static MemoryBudget getMemoryBudget() {
+        MemoryBudget result = memoryBudget;
+        if (result == null) {
+            synchronized (Injection.class) {
+                result = memoryBudget;
+                if (result == null) {
+                    result = new MemoryBudget(getAnalyticsService());
+                    memoryBudget = result;
+                }
+            }
+        }
+        return result;
     }
 
-    public static synchronized void initialize(Context context) {
-        if (analyticsService == null) {
-            analyticsService = new MockAnalyticsService();
+    /**
+     * The repository.  Its snapshot, draft journal and blob store live in the app's files
+     * directory, so this is only available once initialize() has been called.
+     */
+    public static NotesRepository getNotesRepository() {
+        NotesRepository result = notesRepository;
+        if (result == null) {
+            Context context = requireContext();
+            DataService service = getDataService();
+            synchronized (Injection.class) {
+                result = notesRepository;
+                if (result == null) {
+                    NoteListSnapshot snapshot = new NoteListSnapshot(new File(context.getFilesDir(), "note_list.snapshot"));
+                    DraftJournal journal = new DraftJournal(new File(context.getFilesDir(), "drafts.journal"));
+                    BlobStore blobStore = new FileBlobStore(new File(context.getFilesDir(), "blobs"));
+                    result = new NotesRepository(service, snapshot, journal, blobStore);
+                    getMemoryBudget().register(result);
+                    notesRepository = result;
+                }
+            }
         }
+        return result;
+    }
 
-        if (dataService == null) {
-            dataService = new MockDataService();
+    /**
+     * The thumbnails of image attachments.  This needs the context, so it is only
+     * available once initialize() has been called.
+     */
+    public static ThumbnailCache getThumbnailCache() {
+        ThumbnailCache result = thumbnailCache;
+        if (result == null) {
+            Context context = requireContext();
+            NotesRepository repository = getNotesRepository();
+            synchronized (Injection.class) {
+                result = thumbnailCache;
+                if (result == null) {
+                    int sizePx = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_size);
+                    result = new ThumbnailCache(repository.getBlobStore(), new File(context.getCacheDir(), "thumbnails"), sizePx);
+                    getMemoryBudget().register(result);
+                    thumbnailCache = result;
+                }
+            }
         }
+        return result;
+    }
 
-        if (notesRepository == null) {
-            notesRepository = new NotesRepository(dataService);
+    /**
+     * The application context.  Anything built without it would be published for the
+     * life of the process with no files to keep, so it is an error to ask first.
+     */
+    private static Context requireContext() {
+        Context context = applicationContext;
+        if (context == null) {
+            throw new IllegalStateException("Injection.initialize() must be called before this dependency is used");
         }
+        return context;
+    }
+
+    public static void initialize(Context context) {
+        applicationContext = context;
+
+        // Build the dependencies off the main thread.  Whichever thread gets there first
+        // creates each one; the other just picks up the published instance.  Edits that
+        // were not saved before the last run ended are saved from here too.
+        Thread warmUp = new Thread(() -> {
+            getAnalyticsService();
+            getNotesRepository().recoverDrafts();
+        }, "Injection-warmup");
+        warmUp.start();
     }
 }
@@ -0,0 +1,133 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+import com.amazonaws.mobile.samples.mynotes.services.AnalyticsKey;
+import com.amazonaws.mobile.samples.mynotes.services.AnalyticsService;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Passes memory pressure on to the caches and lists that can shrink.  NotesApp forwards
+ * onTrimMemory() and onLowMemory() here, and each registered {@link Trimmable} is asked to
+ * shrink according to the level.  The bytes reclaimed and the footprint left are logged
+ * and recorded through the analytics service.
+ *
+ * Registrations are held weakly, so a component that goes away (with its activity, for
+ * example) does not need to unregister.
+ */
+public class MemoryBudget {
+    private static final String TAG = "MemoryBudget";
+    private static final AnalyticsKey EVENT_NAME = AnalyticsKey.of("MemoryTrim");
+    private static final AnalyticsKey ATTR_LEVEL = AnalyticsKey.of("level");
+    private static final AnalyticsKey METRIC_RECLAIMED_KB = AnalyticsKey.of("reclaimedKb");
+    private static final AnalyticsKey METRIC_FOOTPRINT_KB = AnalyticsKey.of("footprintKb");
+
+    private final AnalyticsService analyticsService;
+    private final List<WeakReference<Trimmable>> trimmables = new ArrayList<>();
+
+    public MemoryBudget(AnalyticsService analyticsService) {
+        this.analyticsService = analyticsService;
+    }
+
+    /**
+     * How much of a cache to keep at a trim level.  The tiers are: three quarters kept
+     * while running with moderate pressure, half when running low or when the UI is
+     * hidden, a quarter when critical or newly in the background, an eighth in the middle
+     * of the background list, and nothing when the process is next in line to be killed.
+     */
+    public static float retainFraction(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) return 0f;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) return 0.125f;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) return 0.25f;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) return 0.5f;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) return 0.25f;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) return 0.5f;
+        return 0.75f;
+    }
+
+    public void register(Trimmable trimmable) {
+        synchronized (trimmables) {
+            trimmables.add(new WeakReference<>(trimmable));
+        }
+    }
+
+    public void unregister(Trimmable trimmable) {
+        synchronized (trimmables) {
+            Iterator<WeakReference<Trimmable>> iterator = trimmables.iterator();
+            while (iterator.hasNext()) {
+                Trimmable registered = iterator.next().get();
+                if (registered == null || registered == trimmable) iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * The estimated memory held by everything registered, in bytes
+     */
+    public long getFootprint() {
+        long bytes = 0;
+        for (Trimmable trimmable : live()) {
+            bytes += trimmable.getSizeBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Ask everything registered to shrink.  Call this on the main thread.
+     *
+     * @param level one of the ComponentCallbacks2.TRIM_MEMORY_* levels
+     * @return an estimate of the bytes reclaimed
+     */
+    public long trimMemory(int level) {
+        long reclaimed = 0;
+        for (Trimmable trimmable : live()) {
+            reclaimed += trimmable.trimMemory(level);
+        }
+        long footprint = getFootprint();
+        Log.i(TAG, String.format(Locale.US, "trimMemory(%d): reclaimed %d KB, %d KB left", level, reclaimed / 1024, footprint / 1024));
+        analyticsService.recordHistogram(EVENT_NAME, ATTR_LEVEL, Integer.toString(level), METRIC_RECLAIMED_KB, reclaimed / 1024.0);
+        analyticsService.recordGauge(EVENT_NAME, METRIC_FOOTPRINT_KB, footprint / 1024.0);
+        return reclaimed;
+    }
+
+    /**
+     * The registered components that are still around, pruning the ones that are not
+     */
+    private List<Trimmable> live() {
+        List<Trimmable> result = new ArrayList<>();
+        synchronized (trimmables) {
+            Iterator<WeakReference<Trimmable>> iterator = trimmables.iterator();
+            while (iterator.hasNext()) {
+                Trimmable trimmable = iterator.next().get();
+                if (trimmable == null) {
+                    iterator.remove();
+                } else {
+                    result.add(trimmable);
+                }
+            }
+        }
+        return result;
+    }
+}
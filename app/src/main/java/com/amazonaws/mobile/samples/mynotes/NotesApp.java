@@ -16,7 +16,9 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 package com.amazonaws.mobile.samples.mynotes;
 
+import android.app.Activity;
 import android.app.Application;
+import android.os.Bundle;
 
 /**
  * Application class responsible for initializing singletons and other
@@ -31,8 +33,55 @@ public class NotesApp extends Application {
 
     @Override
     public void onCreate() {
+        StartupTrace.beginApplicationCreate();
         super.onCreate();
         Injection.initialize(getApplicationContext());
+        registerActivityLifecycleCallbacks(new SessionTracker());
+        StartupTrace.endApplicationCreate();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        Injection.getMemoryBudget().trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        Injection.getMemoryBudget().trimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    /**
+     * Starts an analytics session when the first activity becomes visible and stops it
+     * when the last one goes away, so that session-level metrics are flushed when the
+     * user leaves the app.  Configuration changes (rotation) do not end the session.
+     */
+    private static class SessionTracker implements ActivityLifecycleCallbacks {
+        private int startedActivities = 0;
+        private boolean changingConfiguration = false;
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+            if (startedActivities++ == 0 && !changingConfiguration) {
+                Injection.getAnalyticsService().startSession();
+            }
+            changingConfiguration = false;
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+            changingConfiguration = activity.isChangingConfigurations();
+            if (--startedActivities == 0 && !changingConfiguration) {
+                Injection.getAnalyticsService().stopSession();
+            }
+        }
+
+        @Override public void onActivityCreated(Activity activity, Bundle savedInstanceState) { }
+        @Override public void onActivityResumed(Activity activity) { }
+        @Override public void onActivityPaused(Activity activity) { }
+        @Override public void onActivitySaveInstanceState(Activity activity, Bundle outState) { }
+        @Override public void onActivityDestroyed(Activity activity) { }
     }
 }
 
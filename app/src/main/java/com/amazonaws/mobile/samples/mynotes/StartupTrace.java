@@ -0,0 +1,85 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import com.amazonaws.mobile.samples.mynotes.services.AnalyticsKey;
+
+/**
+ * Startup tracing.  Marks the start of the application in the systrace output and
+ * measures the time from Application.onCreate() to the first frame that shows the note
+ * list with content in it.  The result is reported through the analytics service and
+ * to the framework via Activity.reportFullyDrawn().
+ */
+public final class StartupTrace {
+    private static final AnalyticsKey EVENT_NAME = AnalyticsKey.of("Startup");
+    private static final AnalyticsKey METRIC_APP_CREATE_MS = AnalyticsKey.of("appCreateMs");
+    private static final AnalyticsKey METRIC_FIRST_LIST_FRAME_MS = AnalyticsKey.of("timeToFirstListFrameMs");
+
+    private static long applicationStart = 0;
+    private static boolean firstFrameReported = false;
+
+    private StartupTrace() {
+    }
+
+    /**
+     * Called at the very start of Application.onCreate()
+     */
+    static void beginApplicationCreate() {
+        applicationStart = SystemClock.elapsedRealtime();
+        Trace.beginSection("NotesApp.onCreate");
+    }
+
+    /**
+     * Called at the end of Application.onCreate()
+     */
+    static void endApplicationCreate() {
+        Trace.endSection();
+        Injection.getAnalyticsService().recordHistogram(EVENT_NAME, METRIC_APP_CREATE_MS,
+                SystemClock.elapsedRealtime() - applicationStart);
+    }
+
+    /**
+     * Report the time to the first list frame the next time the given view draws.  Only
+     * the first call per process has any effect; call it from the main thread once the
+     * list has content.
+     *
+     * @param activity the activity that hosts the list
+     * @param list the list view
+     */
+    public static void reportFirstListFrame(final Activity activity, final View list) {
+        if (firstFrameReported) return;
+        firstFrameReported = true;
+
+        final ViewTreeObserver observer = list.getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (observer.isAlive()) observer.removeOnPreDrawListener(this);
+                long elapsed = SystemClock.elapsedRealtime() - applicationStart;
+                Injection.getAnalyticsService().recordHistogram(EVENT_NAME, METRIC_FIRST_LIST_FRAME_MS, elapsed);
+                activity.reportFullyDrawn();
+                return true;
+            }
+        });
+    }
+}
@@ -0,0 +1,36 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes;
+
+/**
+ * Something that holds memory it can give back under pressure, such as a cache or the
+ * loaded pages of a list.  Register it with the {@link MemoryBudget}.
+ */
+public interface Trimmable {
+    /**
+     * An estimate of the memory held, in bytes
+     */
+    long getSizeBytes();
+
+    /**
+     * Release memory for the given trim level.  This is called on the main thread.
+     *
+     * @param level one of the ComponentCallbacks2.TRIM_MEMORY_* levels
+     * @return an estimate of the bytes released
+     */
+    long trimMemory(int level);
+}
@@ -0,0 +1,79 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.models;
+
+/**
+ * A file attached to a note.  The note only holds this description; the bytes are kept
+ * in the blob store under the blob ID, so loading a note never loads its attachments.
+ */
+public final class Attachment {
+    private final String blobId;
+    private final String fileName;
+    private final String mimeType;
+    private final long size;
+
+    /**
+     * @param blobId the ID of the bytes in the blob store
+     * @param fileName the name to show for the attachment
+     * @param mimeType the type of the bytes, such as "image/jpeg"
+     * @param size the number of bytes
+     */
+    public Attachment(String blobId, String fileName, String mimeType, long size) {
+        if (blobId == null || blobId.isEmpty()) throw new IllegalArgumentException("An attachment needs a blob ID");
+        this.blobId = blobId;
+        this.fileName = (fileName == null) ? "" : fileName;
+        this.mimeType = (mimeType == null) ? "application/octet-stream" : mimeType;
+        this.size = size;
+    }
+
+    public String getBlobId() {
+        return blobId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * True if the attachment is a picture, which is shown as a thumbnail
+     */
+    public boolean isImage() {
+        return mimeType.startsWith("image/");
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof Attachment)) return false;
+        Attachment that = (Attachment) other;
+        return size == that.size && blobId.equals(that.blobId) &&
+                fileName.equals(that.fileName) && mimeType.equals(that.mimeType);
+    }
+
+    @Override
+    public int hashCode() {
+        return blobId.hashCode();
+    }
+}
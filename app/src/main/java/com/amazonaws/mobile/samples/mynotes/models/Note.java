@@ -16,40 +16,84 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 package com.amazonaws.mobile.samples.mynotes.models;
 
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Model for a single note
  */
 public class Note {
-    private String noteId;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private NoteId id;
     private String title;
-    private String content;
+    private NoteContent content;
+    private Set<String> tags = Collections.emptySet();
+    private List<Attachment> attachments = Collections.emptyList();
+
+    /**
+     * Cached 64-bit fingerprint of the title; 0 means "not computed yet".  It is computed
+     * once per instance on first use and reset by setTitle(), so that list diffing compares
+     * two longs instead of the full text.  The content caches its own fingerprint.
+     */
+    private volatile long titleFingerprint;
+
+    /**
+     * Cached text form of the ID, only created when the ID is passed across an API boundary
+     */
+    private volatile String noteIdText;
 
     public Note() {
-        noteId = UUID.randomUUID().toString();
+        id = NoteId.generate();
         title = "";
-        content = "";
+        content = new NoteContent();
     }
 
     public Note(String noteId) {
-        this.noteId = noteId;
-        title = "";
-        content = "";
+        this(NoteId.parse(noteId), "", new NoteContent());
     }
 
     public Note(String noteId, String title, String content) {
-        this.noteId = noteId;
+        this(NoteId.parse(noteId), title, new NoteContent(content));
+    }
+
+    public Note(String noteId, String title, NoteContent content) {
+        this(NoteId.parse(noteId), title, content);
+    }
+
+    public Note(NoteId id, String title, NoteContent content) {
+        this.id = id;
         this.title = title;
         this.content = content;
     }
 
+    /**
+     * The ID of the note.  Prefer this to {@link #getNoteId()} for comparisons and lookups.
+     */
+    public NoteId getId() {
+        return id;
+    }
+
+    /**
+     * The ID of the note in text form, as used by the data service API
+     */
     public String getNoteId() {
-        return noteId;
+        String result = noteIdText;
+        if (result == null) {
+            result = id.toString();
+            noteIdText = result;
+        }
+        return result;
     }
 
     public void setNoteId(String noteId) {
-        this.noteId = noteId;
+        this.id = NoteId.parse(noteId);
+        this.noteIdText = null;
     }
 
     public String getTitle() {
@@ -58,13 +102,109 @@ public class Note {
 
     public void setTitle(String title) {
         this.title = title;
+        this.titleFingerprint = 0;
     }
 
+    /**
+     * The whole content as a single String.  This copies the content, so prefer
+     * {@link #getContentBody()} for large notes.
+     */
     public String getContent() {
-        return content;
+        return content.toString();
     }
 
     public void setContent(String content) {
-        this.content = content;
+        this.content = new NoteContent(content);
+    }
+
+    /**
+     * The content, supporting range reads and edits without copying the whole note
+     */
+    public NoteContent getContentBody() {
+        return content;
+    }
+
+    /**
+     * The labels of the note, in alphabetical order.  The set can't be modified; use
+     * {@link #setTags(Collection)} to change it.
+     */
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    /**
+     * Replace the labels of the note.  Empty tags are ignored.
+     */
+    public void setTags(Collection<String> tags) {
+        TreeSet<String> result = new TreeSet<>();
+        for (String tag : tags) {
+            if (tag != null && !tag.isEmpty()) result.add(tag);
+        }
+        this.tags = result.isEmpty() ? Collections.<String>emptySet() : Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * The files attached to the note, in the order they were attached.  The list can't be
+     * modified; use {@link #setAttachments(Collection)} to change it.
+     */
+    public List<Attachment> getAttachments() {
+        return attachments;
+    }
+
+    /**
+     * Replace the attachments of the note.  Null entries are ignored.
+     */
+    public void setAttachments(Collection<Attachment> attachments) {
+        ArrayList<Attachment> result = new ArrayList<>(attachments.size());
+        for (Attachment attachment : attachments) {
+            if (attachment != null) result.add(attachment);
+        }
+        this.attachments = result.isEmpty() ? Collections.<Attachment>emptyList() : Collections.unmodifiableList(result);
+    }
+
+    /**
+     * The first attachment that is a picture, or null if there is none.  This is the one
+     * shown in the list.
+     */
+    public Attachment getFirstImage() {
+        for (Attachment attachment : attachments) {
+            if (attachment.isImage()) return attachment;
+        }
+        return null;
+    }
+
+    /**
+     * A fingerprint of the title.  Two notes with the same title always have the same
+     * fingerprint; two different titles collide with negligible (2^-64) probability.
+     */
+    public long getTitleFingerprint() {
+        long result = titleFingerprint;
+        if (result == 0) {
+            result = fnv1a(FNV_OFFSET_BASIS, title);
+            if (result == 0) result = 1;
+            titleFingerprint = result;
+        }
+        return result;
+    }
+
+    /**
+     * A fingerprint of the content, with the same guarantees as
+     * {@link #getTitleFingerprint()}.  It is a different hash, one that the content can
+     * keep up to date a chunk at a time.
+     */
+    public long getContentFingerprint() {
+        return content.getFingerprint();
+    }
+
+    /**
+     * Continue a 64-bit FNV-1a hash over the UTF-16 code units of some text
+     */
+    private static long fnv1a(long hash, CharSequence value) {
+        if (value == null) return hash;
+        for (int i = 0 ; i < value.length() ; i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
     }
 }
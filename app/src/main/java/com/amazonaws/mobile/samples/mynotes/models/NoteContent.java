@@ -0,0 +1,373 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.models;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * The content of a note, stored as a list of chunks of at most a few thousand characters
+ * each.  Reading or editing a range only touches the chunks that overlap it, so typing
+ * into a multi-megabyte note does not copy the whole document on every keystroke.
+ *
+ * Content created from {@link PackedContent} starts out as compressed blocks.  Reads
+ * inflate the blocks they need without keeping the result; an edit unpacks just the
+ * block it lands in.  pack() only compresses the parts that are not already compressed.
+ *
+ * The fingerprint is built from a hash of each chunk, so after an edit only the chunks
+ * that changed are hashed again, and compressed blocks (hashed when they were packed) are
+ * never inflated for it.  The chunk hashes are polynomial, modulo 2^64, and combine as
+ * hash(a + b) = hash(a) * M^length(b) + hash(b), so the fingerprint does not depend on
+ * where the chunk boundaries fall.
+ *
+ * All methods are synchronized, so the content can be edited on one thread and read on
+ * another.
+ */
+public class NoteContent implements CharSequence {
+    /**
+     * Chunks are split when they grow past twice this size
+     */
+    static final int CHUNK_SIZE = 4096;
+
+    /**
+     * The multiplier of the chunk hashes.  Any odd number works; this one spreads the
+     * bits of small numbers such as characters well.
+     */
+    private static final long HASH_MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Each chunk is either a StringBuilder (plain, editable text) or a PackedContent.Block
+     */
+    private final ArrayList<Object> chunks = new ArrayList<>();
+    private int length = 0;
+    private int version = 0;
+    private int fingerprintVersion = -1;
+    private long fingerprint;
+    private PackedContent source = null;
+
+    /**
+     * The hashes of plain chunks, dropped when a chunk is edited.  Compressed blocks carry
+     * their own.
+     */
+    private final IdentityHashMap<StringBuilder, Long> chunkHashes = new IdentityHashMap<>();
+
+    public NoteContent() {
+        chunks.add(new StringBuilder());
+    }
+
+    public NoteContent(CharSequence text) {
+        this();
+        if (text instanceof NoteContent) {
+            copy((NoteContent) text);
+        } else if (text != null) {
+            insert(0, text);
+        }
+    }
+
+    /**
+     * Create content whose fingerprint is already known, such as content that was sent
+     * together with its fingerprint.  The fingerprint is taken as it is, so that it does
+     * not have to be computed over the whole text again.
+     */
+    public NoteContent(CharSequence text, long fingerprint) {
+        this(text);
+        this.fingerprint = fingerprint;
+        this.fingerprintVersion = version;
+    }
+
+    /**
+     * Create content that is backed by compressed blocks.  Nothing is decompressed until
+     * the content is read or edited.
+     */
+    public static NoteContent fromPacked(PackedContent packed) {
+        NoteContent content = new NoteContent();
+        if (packed.length() > 0) {
+            content.chunks.clear();
+            for (PackedContent.Block block : packed.getBlocks()) content.chunks.add(block);
+        }
+        content.length = packed.length();
+        content.fingerprint = packed.getFingerprint();
+        content.fingerprintVersion = content.version;
+        content.source = packed;
+        return content;
+    }
+
+    /**
+     * Copy other content a chunk at a time.  Compressed blocks never change, so they are
+     * shared rather than decompressed; plain chunks are copied whole.
+     */
+    private void copy(NoteContent other) {
+        synchronized (other) {
+            chunks.clear();
+            for (Object chunk : other.chunks) {
+                if (chunk instanceof StringBuilder) {
+                    StringBuilder text = new StringBuilder((StringBuilder) chunk);
+                    Long hash = other.chunkHashes.get(chunk);
+                    if (hash != null) chunkHashes.put(text, hash);
+                    chunks.add(text);
+                } else {
+                    chunks.add(chunk);
+                }
+            }
+            length = other.length;
+            if (other.fingerprintVersion == other.version) {
+                fingerprint = other.fingerprint;
+                fingerprintVersion = version;
+            }
+            if (other.version == 0) source = other.source;
+        }
+    }
+
+    /**
+     * Compress the content.  Blocks that are still compressed are reused as they are, so
+     * packing content that has only had a few edits only compresses the edited parts.
+     */
+    public synchronized PackedContent pack() {
+        if (source != null && version == 0) return source;
+
+        List<PackedContent.Block> blocks = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        for (Object chunk : chunks) {
+            if (chunk instanceof PackedContent.Block) {
+                PackedContent.packInto(run, blocks);
+                run.setLength(0);
+                blocks.add((PackedContent.Block) chunk);
+            } else {
+                run.append((StringBuilder) chunk);
+            }
+        }
+        PackedContent.packInto(run, blocks);
+        return new PackedContent(length, getFingerprint(), blocks);
+    }
+
+    @Override
+    public synchronized int length() {
+        return length;
+    }
+
+    @Override
+    public synchronized char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException();
+        return read(index, 1).charAt(0);
+    }
+
+    @Override
+    public synchronized CharSequence subSequence(int start, int end) {
+        return read(start, end - start);
+    }
+
+    /**
+     * Read a range of the content
+     *
+     * @param start the first character to read
+     * @param count the maximum number of characters to read
+     * @return the text; shorter than count if the range runs past the end
+     */
+    public synchronized String read(int start, int count) {
+        if (start < 0 || count < 0 || start > length) throw new IndexOutOfBoundsException();
+        int end = Math.min(length, start + count);
+        StringBuilder result = new StringBuilder(end - start);
+        int chunkStart = 0;
+        for (Object chunk : chunks) {
+            int chunkEnd = chunkStart + lengthOf(chunk);
+            if (chunkEnd > start && chunkStart < end) {
+                CharSequence text = (chunk instanceof PackedContent.Block) ? ((PackedContent.Block) chunk).unpack() : (StringBuilder) chunk;
+                result.append(text, Math.max(start, chunkStart) - chunkStart, Math.min(end, chunkEnd) - chunkStart);
+            }
+            if (chunkEnd >= end) break;
+            chunkStart = chunkEnd;
+        }
+        return result.toString();
+    }
+
+    /**
+     * Replace a range of the content with new text
+     *
+     * @param start the first character to replace
+     * @param end the character after the last one to replace
+     * @param text the replacement text
+     */
+    public synchronized void replace(int start, int end, CharSequence text) {
+        if (start < 0 || end < start || end > length) throw new IndexOutOfBoundsException();
+        if (end > start) delete(start, end);
+        if (text != null && text.length() > 0) insert(start, text);
+        version++;
+    }
+
+    /**
+     * Add text to the end of the content
+     */
+    public synchronized void append(CharSequence text) {
+        replace(length, length, text);
+    }
+
+    /**
+     * A number that changes every time the content is edited
+     */
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    /**
+     * A 64-bit fingerprint of the content, cached until the next edit.  See
+     * {@link Note#getContentFingerprint()}.  After an edit this only hashes the edited
+     * chunks, plus a few multiplications per chunk.
+     */
+    public synchronized long getFingerprint() {
+        if (fingerprintVersion != version) {
+            long hash = 0;
+            for (Object chunk : chunks) {
+                hash = hash * power(lengthOf(chunk)) + hashOf(chunk);
+            }
+            fingerprint = finish(hash, length);
+            fingerprintVersion = version;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * The polynomial hash of some text, to combine with those of the text around it
+     */
+    static long hash(CharSequence text) {
+        long hash = 0;
+        for (int i = 0 ; i < text.length() ; i++) {
+            hash = hash * HASH_MULTIPLIER + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private long hashOf(Object chunk) {
+        if (chunk instanceof PackedContent.Block) return ((PackedContent.Block) chunk).hash;
+        StringBuilder text = (StringBuilder) chunk;
+        Long hash = chunkHashes.get(text);
+        if (hash == null) {
+            hash = hash(text);
+            chunkHashes.put(text, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * HASH_MULTIPLIER to the power of a character count
+     */
+    private static long power(int exponent) {
+        long result = 1;
+        long base = HASH_MULTIPLIER;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) result *= base;
+            base *= base;
+            exponent >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Mix the length into the combined hash and scramble the bits (the MurmurHash3
+     * finalizer), so that every bit of the fingerprint depends on every character.  0 is
+     * kept for "no fingerprint".
+     */
+    private static long finish(long hash, int length) {
+        hash ^= length * HASH_MULTIPLIER;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (hash == 0) ? 1 : hash;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return read(0, length);
+    }
+
+    private static int lengthOf(Object chunk) {
+        return (chunk instanceof PackedContent.Block) ? ((PackedContent.Block) chunk).length : ((StringBuilder) chunk).length();
+    }
+
+    /**
+     * Replace the compressed block at index i with editable chunks of its text
+     */
+    private void unpackAt(int i) {
+        String text = ((PackedContent.Block) chunks.remove(i)).unpack();
+        for (int from = 0 ; from < text.length() ; from += CHUNK_SIZE) {
+            int to = Math.min(text.length(), from + CHUNK_SIZE);
+            chunks.add(i++, new StringBuilder(to - from).append(text, from, to));
+        }
+    }
+
+    private void delete(int start, int end) {
+        int chunkStart = 0;
+        int i = 0;
+        while (start < end && i < chunks.size()) {
+            int chunkEnd = chunkStart + lengthOf(chunks.get(i));
+            if (chunkEnd <= start) {
+                chunkStart = chunkEnd;
+                i++;
+                continue;
+            }
+            if (chunks.get(i) instanceof PackedContent.Block) {
+                unpackAt(i);
+                continue;
+            }
+            StringBuilder chunk = (StringBuilder) chunks.get(i);
+            int from = start - chunkStart;
+            int to = Math.min(end, chunkEnd) - chunkStart;
+            chunk.delete(from, to);
+            chunkHashes.remove(chunk);
+            length -= (to - from);
+            end -= (to - from);
+            if (chunk.length() == 0 && chunks.size() > 1) {
+                chunks.remove(i);
+            } else {
+                chunkStart += chunk.length();
+                i++;
+            }
+        }
+    }
+
+    private void insert(int position, CharSequence text) {
+        int chunkStart = 0;
+        int i = 0;
+        // Find the chunk that holds the position; the end of the content belongs to the last chunk
+        while (i < chunks.size() - 1 && position > chunkStart + lengthOf(chunks.get(i))) {
+            chunkStart += lengthOf(chunks.get(i));
+            i++;
+        }
+        if (chunks.get(i) instanceof PackedContent.Block) {
+            unpackAt(i);
+            // The block became several chunks - find the one that holds the position
+            while (i < chunks.size() - 1 && position > chunkStart + lengthOf(chunks.get(i))) {
+                chunkStart += lengthOf(chunks.get(i));
+                i++;
+            }
+        }
+        StringBuilder chunk = (StringBuilder) chunks.get(i);
+        chunk.insert(position - chunkStart, text);
+        chunkHashes.remove(chunk);
+        length += text.length();
+
+        if (chunk.length() > 2 * CHUNK_SIZE) {
+            chunks.remove(i);
+            for (int from = 0 ; from < chunk.length() ; from += CHUNK_SIZE) {
+                int to = Math.min(chunk.length(), from + CHUNK_SIZE);
+                chunks.add(i++, new StringBuilder(CHUNK_SIZE).append(chunk, from, to));
+            }
+        }
+    }
+}
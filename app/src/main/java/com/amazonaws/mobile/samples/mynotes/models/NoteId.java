@@ -0,0 +1,164 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.models;
+
+import java.security.SecureRandom;
+
+/**
+ * A 128-bit note ID, held as two longs.  IDs use the UUID text format at the API
+ * boundary (intents, the data service API, the UI), but are compared and hashed as two
+ * longs everywhere else.
+ *
+ * New IDs are time-ordered (UUID version 7 layout): the top 48 bits are the creation
+ * time in milliseconds, followed by a counter and random bits, so IDs generated later
+ * sort later and inserts into ordered indexes land at the end.
+ */
+public final class NoteId implements Comparable<NoteId> {
+    private static final SecureRandom random = new SecureRandom();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static long lastMillis = 0;
+    private static int sequence = 0;
+
+    private final long high;
+    private final long low;
+
+    public NoteId(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Generate a new, time-ordered ID.  IDs generated within the same millisecond are
+     * ordered by a 12-bit sequence number.
+     */
+    public static NoteId generate() {
+        long millis = System.currentTimeMillis();
+        int seq;
+        synchronized (NoteId.class) {
+            if (millis <= lastMillis) {
+                // Same millisecond (or the clock went backwards) - keep counting from the last time
+                millis = lastMillis;
+                if (++sequence > 0xfff) {
+                    millis++;
+                    sequence = 0;
+                }
+            } else {
+                sequence = random.nextInt(0x800);
+            }
+            lastMillis = millis;
+            seq = sequence;
+        }
+        long high = (millis << 16) | 0x7000L | seq;
+        long low = (random.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+        return new NoteId(high, low);
+    }
+
+    /**
+     * Parse an ID in the UUID text format (8-4-4-4-12 hex digits)
+     *
+     * @throws IllegalArgumentException if the text is not a valid ID
+     */
+    public static NoteId parse(String text) {
+        NoteId id = tryParse(text);
+        if (id == null) throw new IllegalArgumentException("Invalid note ID: " + text);
+        return id;
+    }
+
+    /**
+     * Parse an ID in the UUID text format
+     *
+     * @return the ID, or null if the text is not a valid ID
+     */
+    public static NoteId tryParse(String text) {
+        if (text == null || text.length() != 36) return null;
+        long high = 0;
+        long low = 0;
+        int digits = 0;
+        for (int i = 0 ; i < 36 ; i++) {
+            char c = text.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return null;
+                continue;
+            }
+            int value = Character.digit(c, 16);
+            if (value < 0) return null;
+            if (digits < 16) {
+                high = (high << 4) | value;
+            } else {
+                low = (low << 4) | value;
+            }
+            digits++;
+        }
+        return new NoteId(high, low);
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof NoteId)) return false;
+        NoteId id = (NoteId) other;
+        return high == id.high && low == id.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash(high, low);
+    }
+
+    /**
+     * The hash code for an ID given as two longs.  The bits are mixed, because the high
+     * bits of time-ordered IDs are nearly the same for IDs created close together.
+     */
+    public static int hash(long high, long low) {
+        long h = high * 0x9e3779b97f4a7c15L + low;
+        h ^= (h >>> 32);
+        h *= 0xd6e8feb86659fd93L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public int compareTo(NoteId other) {
+        // Unsigned comparison, so the order matches the order of the text form
+        int result = Long.compare(high + Long.MIN_VALUE, other.high + Long.MIN_VALUE);
+        return result != 0 ? result : Long.compare(low + Long.MIN_VALUE, other.low + Long.MIN_VALUE);
+    }
+
+    /**
+     * The UUID text format of the ID, e.g. 0166f5e1-3c2a-7b4e-9f1d-2a6c8e0b4d7f
+     */
+    @Override
+    public String toString() {
+        char[] text = new char[36];
+        int pos = 0;
+        for (int i = 0 ; i < 32 ; i++) {
+            if (i == 8 || i == 12 || i == 16 || i == 20) text[pos++] = '-';
+            long bits = (i < 16) ? high : low;
+            int shift = (15 - (i % 16)) * 4;
+            text[pos++] = HEX[(int) ((bits >>> shift) & 0xf)];
+        }
+        return new String(text);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.models;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An immutable, block-compressed copy of the content of a note.  The text is cut into
+ * blocks of about 64K characters, and each block is deflated at the fastest level.  A
+ * block that does not shrink by at least 10% is kept as plain UTF-8 instead, so
+ * incompressible text costs almost nothing extra.  Blocks are independent, so a range of
+ * the content can be read by inflating only the blocks that overlap it.
+ *
+ * The character count and fingerprint of the content are kept alongside the blocks, so
+ * neither needs any decompression.
+ */
+public final class PackedContent {
+    /**
+     * Content shorter than this (in characters) is not worth compressing
+     */
+    public static final int COMPRESSION_THRESHOLD = 1024;
+
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * A single compressed (or, if compression did not help, plain UTF-8) block of text
+     */
+    static final class Block {
+        final int length;
+        final int rawSize;
+        final boolean deflated;
+        final byte[] data;
+
+        /**
+         * The hash of the text, which NoteContent combines into the fingerprint without
+         * inflating the block
+         */
+        final long hash;
+
+        Block(int length, int rawSize, boolean deflated, byte[] data, long hash) {
+            this.length = length;
+            this.rawSize = rawSize;
+            this.deflated = deflated;
+            this.data = data;
+            this.hash = hash;
+        }
+
+        /**
+         * Decompress the block
+         */
+        String unpack() {
+            if (!deflated) return new String(data, StandardCharsets.UTF_8);
+
+            Inflater inflater = new Inflater();
+            try {
+                byte[] raw = new byte[rawSize];
+                inflater.setInput(data);
+                int size = 0;
+                while (size < rawSize && !inflater.finished()) {
+                    size += inflater.inflate(raw, size, rawSize - size);
+                }
+                return new String(raw, 0, size, StandardCharsets.UTF_8);
+            } catch (DataFormatException error) {
+                throw new IllegalStateException("Corrupt content block", error);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        /**
+         * Compress a piece of text into a block
+         */
+        static Block pack(CharSequence text) {
+            byte[] raw = text.toString().getBytes(StandardCharsets.UTF_8);
+            long hash = NoteContent.hash(text);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                // Give up as soon as the output reaches 90% of the input
+                byte[] buffer = new byte[raw.length - raw.length / 10];
+                int size = 0;
+                while (!deflater.finished() && size < buffer.length) {
+                    size += deflater.deflate(buffer, size, buffer.length - size);
+                }
+                if (!deflater.finished()) return new Block(text.length(), raw.length, false, raw, hash);
+                byte[] data = new byte[size];
+                System.arraycopy(buffer, 0, data, 0, size);
+                return new Block(text.length(), raw.length, true, data, hash);
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private final int length;
+    private final long fingerprint;
+    private final Block[] blocks;
+
+    PackedContent(int length, long fingerprint, List<Block> blocks) {
+        this.length = length;
+        this.fingerprint = fingerprint;
+        this.blocks = blocks.toArray(new Block[blocks.size()]);
+    }
+
+    /**
+     * Split text into blocks of about BLOCK_SIZE characters, never splitting a surrogate pair
+     */
+    static void packInto(CharSequence text, List<Block> blocks) {
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + BLOCK_SIZE);
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) end++;
+            blocks.add(Block.pack(text.subSequence(start, end)));
+            start = end;
+        }
+    }
+
+    /**
+     * The number of characters in the content
+     */
+    public int length() {
+        return length;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * The number of bytes used by the compressed blocks
+     */
+    public int getPackedSize() {
+        int size = 0;
+        for (Block block : blocks) size += block.data.length;
+        return size;
+    }
+
+    Block[] getBlocks() {
+        return blocks;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A condition on the tags of a note, used to filter the note list.  Filters are built from
+ * single tags with {@link #tag(String)}, and combined with {@link #all(TagFilter...)} (AND),
+ * {@link #any(TagFilter...)} (OR) and {@link #not(TagFilter)}.  For example, notes tagged
+ * "work" and either "urgent" or "today", but not "done":
+ *
+ * <pre>
+ * TagFilter.all(TagFilter.tag("work"), TagFilter.anyOf("urgent", "today"), TagFilter.not(TagFilter.tag("done")))
+ * </pre>
+ *
+ * Filters are immutable.  A data service that indexes tags evaluates the structure of the
+ * filter against its indexes; {@link #matches(Collection)} is there for ones that don't.
+ */
+public final class TagFilter {
+    public enum Operator { TAG, ALL, ANY, NOT }
+
+    private final Operator operator;
+    private final String tag;
+    private final List<TagFilter> operands;
+
+    private TagFilter(Operator operator, String tag, List<TagFilter> operands) {
+        this.operator = operator;
+        this.tag = tag;
+        this.operands = operands;
+    }
+
+    /**
+     * Notes that have the tag
+     */
+    public static TagFilter tag(String tag) {
+        if (tag == null || tag.isEmpty()) throw new IllegalArgumentException("Tag must not be empty");
+        return new TagFilter(Operator.TAG, tag, Collections.<TagFilter>emptyList());
+    }
+
+    /**
+     * Notes that match every one of the filters.  With no filters, this matches every note.
+     */
+    public static TagFilter all(TagFilter... filters) {
+        return new TagFilter(Operator.ALL, null, copy(filters));
+    }
+
+    /**
+     * Notes that match at least one of the filters.  With no filters, this matches no note.
+     */
+    public static TagFilter any(TagFilter... filters) {
+        return new TagFilter(Operator.ANY, null, copy(filters));
+    }
+
+    /**
+     * Notes that do not match the filter
+     */
+    public static TagFilter not(TagFilter filter) {
+        if (filter == null) throw new IllegalArgumentException("Filter must not be null");
+        return new TagFilter(Operator.NOT, null, Collections.singletonList(filter));
+    }
+
+    /**
+     * Notes that have every one of the tags
+     */
+    public static TagFilter allOf(String... tags) {
+        return all(tags(tags));
+    }
+
+    /**
+     * Notes that have at least one of the tags
+     */
+    public static TagFilter anyOf(String... tags) {
+        return any(tags(tags));
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * The tag of a TAG filter, or null for the other operators
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * The filters combined by an ALL, ANY or NOT filter
+     */
+    public List<TagFilter> getOperands() {
+        return operands;
+    }
+
+    /**
+     * Evaluate the filter against the tags of a single note
+     */
+    public boolean matches(Collection<String> tags) {
+        switch (operator) {
+            case TAG:
+                return tags.contains(tag);
+            case ALL:
+                for (TagFilter operand : operands) {
+                    if (!operand.matches(tags)) return false;
+                }
+                return true;
+            case ANY:
+                for (TagFilter operand : operands) {
+                    if (operand.matches(tags)) return true;
+                }
+                return false;
+            default:
+                return !operands.get(0).matches(tags);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof TagFilter)) return false;
+        TagFilter filter = (TagFilter) other;
+        return operator == filter.operator
+                && (tag == null ? filter.tag == null : tag.equals(filter.tag))
+                && operands.equals(filter.operands);
+    }
+
+    @Override
+    public int hashCode() {
+        return (operator.hashCode() * 31 + (tag == null ? 0 : tag.hashCode())) * 31 + operands.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        if (operator == Operator.TAG) return tag;
+        if (operator == Operator.NOT) return "NOT " + operands.get(0);
+        StringBuilder result = new StringBuilder("(");
+        for (int i = 0 ; i < operands.size() ; i++) {
+            if (i > 0) result.append(operator == Operator.ALL ? " AND " : " OR ");
+            result.append(operands.get(i));
+        }
+        return result.append(')').toString();
+    }
+
+    private static List<TagFilter> copy(TagFilter[] filters) {
+        for (TagFilter filter : filters) {
+            if (filter == null) throw new IllegalArgumentException("Filter must not be null");
+        }
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(filters)));
+    }
+
+    private static TagFilter[] tags(String[] tags) {
+        TagFilter[] result = new TagFilter[tags.length];
+        for (int i = 0 ; i < tags.length ; i++) {
+            result[i] = tag(tags[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+/**
+ * The net effect of a series of edits to a note's content, as a single range replacement.
+ * Each edit is given in the coordinates of the content as it is after the previous edits;
+ * the patch tracks the range of the original content that was replaced ([start, baseEnd))
+ * and where that range now ends in the edited content ([start, end)).  The edited content
+ * in that range is the replacement text, so a burst of keystrokes can be sent as one
+ * updateContent() call.
+ */
+public class ContentPatch {
+    private int start = Integer.MAX_VALUE;
+    private int baseEnd = 0;
+    private int end = 0;
+
+    /**
+     * Add an edit: the characters in [editStart, editEnd) were replaced by insertedLength
+     * characters.
+     */
+    public void apply(int editStart, int editEnd, int insertedLength) {
+        if (isEmpty()) {
+            start = editStart;
+            baseEnd = editEnd;
+            end = editStart + insertedLength;
+            return;
+        }
+        // Positions after the patched range are shifted by the patch so far
+        int shift = end - baseEnd;
+        start = Math.min(start, editStart);
+        baseEnd = Math.max(baseEnd, editEnd - shift);
+        end = Math.max(end, editEnd) + insertedLength - (editEnd - editStart);
+    }
+
+    /**
+     * Add the edits of a later patch
+     */
+    public void apply(ContentPatch later) {
+        if (!later.isEmpty()) apply(later.start, later.baseEnd, later.end - later.start);
+    }
+
+    public boolean isEmpty() {
+        return start == Integer.MAX_VALUE;
+    }
+
+    /**
+     * The first character of the replaced range
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * The end of the replaced range in the original content
+     */
+    public int getBaseEnd() {
+        return baseEnd;
+    }
+
+    /**
+     * The end of the replaced range in the edited content
+     */
+    public int getEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,500 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of unsaved note edits, so that edits survive the process dying
+ * before they reach the data service.  The editor records each title change and content
+ * edit here as it happens, saves to the data service only every few seconds, and records
+ * when a save starts and when it succeeds.  On the next launch, {@link #recover()} returns
+ * the edits that were never saved.
+ *
+ * Appending only encodes the record into a memory buffer; a single writer thread writes
+ * whatever has accumulated and fsyncs it in one go (group commit).  The writer waits
+ * COMMIT_DELAY_MS after the first record of a batch before committing, so a burst of
+ * typing costs one write and one fsync rather than one per keystroke.  An edit can
+ * therefore be lost if the device loses power within that window, but not if only the
+ * process dies.  Use {@link #sync()} to wait for everything appended so far to be durable.
+ *
+ * Each record is framed with its length and a CRC32, so a record torn by a crash is
+ * detected; recovery stops there and truncates the file.  Once every note in the journal
+ * has been saved, the file is truncated by the writer.
+ *
+ * A save may reach the data service and the process die before it is recorded as saved.
+ * So that its edits are not applied twice, the record for the start of a save carries a
+ * fingerprint of the content that the save produces; recovery compares it with the
+ * stored content to tell whether the save landed.
+ */
+public class DraftJournal {
+    private static final String TAG = "DraftJournal";
+
+    private static final byte TYPE_TITLE = 1;
+    private static final byte TYPE_EDIT = 2;
+    private static final byte TYPE_SAVING = 3;
+    private static final byte TYPE_SAVED = 4;
+
+    /**
+     * How long the writer collects records before committing them
+     */
+    private static final long COMMIT_DELAY_MS = 20;
+
+    /**
+     * The file is only truncated once it is at least this large
+     */
+    private static final long TRUNCATE_THRESHOLD = 64 * 1024;
+
+    /**
+     * Records longer than this are treated as corrupt during recovery
+     */
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * A content edit: the characters in [start, end) were replaced
+     */
+    public static class Edit {
+        private final long sequence;
+        private final int start;
+        private final int end;
+        private final String replacement;
+
+        Edit(long sequence, int start, int end, String replacement) {
+            this.sequence = sequence;
+            this.start = start;
+            this.end = end;
+            this.replacement = replacement;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public String getReplacement() {
+            return replacement;
+        }
+    }
+
+    /**
+     * The unsaved changes to one note found by recovery
+     */
+    public static class Draft {
+        private final String noteId;
+        private String title = null;
+        private long titleSequence = 0;
+        private final List<Edit> edits = new ArrayList<>();
+        private final List<long[]> saves = new ArrayList<>();
+
+        Draft(String noteId) {
+            this.noteId = noteId;
+        }
+
+        public String getNoteId() {
+            return noteId;
+        }
+
+        /**
+         * The edits to apply to the stored content, given the fingerprint of that content.
+         * If it matches the outcome of a save that was started but never recorded as
+         * saved, only the edits after that save are returned.
+         */
+        public List<Edit> getEdits(long storedFingerprint) {
+            long landed = landedSequence(storedFingerprint);
+            List<Edit> result = new ArrayList<>();
+            for (Edit edit : edits) {
+                if (edit.sequence > landed) result.add(edit);
+            }
+            return result;
+        }
+
+        /**
+         * The unsaved title, or null if the title was not changed (see getEdits())
+         */
+        public String getTitle(long storedFingerprint) {
+            return (titleSequence > landedSequence(storedFingerprint)) ? title : null;
+        }
+
+        /**
+         * The sequence number of the journal after these changes, for {@link #recordSaved}
+         */
+        public long getSequence() {
+            long result = titleSequence;
+            for (Edit edit : edits) {
+                result = Math.max(result, edit.sequence);
+            }
+            return result;
+        }
+
+        private long landedSequence(long storedFingerprint) {
+            long result = 0;
+            for (long[] save : saves) {
+                if (save[1] == storedFingerprint) result = Math.max(result, save[0]);
+            }
+            return result;
+        }
+
+        /**
+         * Forget everything up to a saved sequence number
+         *
+         * @return true if nothing is left unsaved
+         */
+        private boolean saved(long sequence) {
+            if (titleSequence <= sequence) {
+                title = null;
+                titleSequence = 0;
+            }
+            for (int i = edits.size() - 1 ; i >= 0 ; i--) {
+                if (edits.get(i).sequence <= sequence) edits.remove(i);
+            }
+            for (int i = saves.size() - 1 ; i >= 0 ; i--) {
+                if (saves.get(i)[0] <= sequence) saves.remove(i);
+            }
+            return title == null && edits.isEmpty();
+        }
+    }
+
+    private final File file;
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private RandomAccessFile output;
+    private Map<String, Draft> recovered;
+    private long sequence = 0;
+    private long appendedSequence = 0;
+    private long durableSequence = 0;
+    private long syncSequence = 0;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final HashMap<NoteId, Long> unsaved = new HashMap<>();
+    private boolean failed = false;
+    private Thread writer;
+
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    private final DataOutputStream payloadOut = new DataOutputStream(payload);
+    private final CRC32 crc = new CRC32();
+
+    public DraftJournal(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Read the journal and return the notes with unsaved changes.  This does disk I/O, so
+     * do not call it on the main thread.  Only the first call returns the drafts; later
+     * calls return an empty map.
+     */
+    @NonNull
+    public Map<String, Draft> recover() {
+        synchronized (lock) {
+            open();
+            Map<String, Draft> result = recovered;
+            recovered = new LinkedHashMap<>();
+            return result;
+        }
+    }
+
+    /**
+     * Record a new title for a note
+     *
+     * @return the sequence number of the record
+     */
+    public long recordTitle(String noteId, String title) {
+        synchronized (lock) {
+            return append(TYPE_TITLE, noteId, 0, 0, title);
+        }
+    }
+
+    /**
+     * Record a content edit: the characters in [start, end) were replaced
+     *
+     * @return the sequence number of the record
+     */
+    public long recordEdit(String noteId, int start, int end, CharSequence replacement) {
+        synchronized (lock) {
+            return append(TYPE_EDIT, noteId, start, end, replacement);
+        }
+    }
+
+    /**
+     * Record that a save of a note is being sent to the data service
+     *
+     * @param upTo the sequence number of the last change the save includes
+     * @param fingerprint the fingerprint of the note's content once the save is applied
+     */
+    public void recordSaving(String noteId, long upTo, long fingerprint) {
+        synchronized (lock) {
+            append(TYPE_SAVING, noteId, upTo, fingerprint, null);
+        }
+    }
+
+    /**
+     * Record that a note's changes up to a sequence number are stored by the data service
+     */
+    public void recordSaved(String noteId, long upTo) {
+        synchronized (lock) {
+            append(TYPE_SAVED, noteId, upTo, 0, null);
+            NoteId id = NoteId.tryParse(noteId);
+            Long last = unsaved.get(id);
+            if (last != null && last <= upTo) unsaved.remove(id);
+        }
+    }
+
+    /**
+     * Block until everything appended so far is on disk
+     *
+     * @return false if the journal could not be written
+     */
+    public boolean sync() throws InterruptedException {
+        synchronized (lock) {
+            long target = appendedSequence;
+            syncSequence = Math.max(syncSequence, target);
+            lock.notifyAll();
+            while (durableSequence < target && !failed) {
+                lock.wait();
+            }
+            return !failed;
+        }
+    }
+
+    /**
+     * Open the file, reading what is in it.  Called with the lock held.
+     */
+    private void open() {
+        if (output != null || failed) return;
+        recovered = new LinkedHashMap<>();
+        try {
+            long valid = read();
+            output = new RandomAccessFile(file, "rw");
+            if (valid < output.length()) {
+                Log.w(TAG, "Dropping " + (output.length() - valid) + " bytes after the last complete record");
+                output.setLength(valid);
+            }
+            output.seek(valid);
+        } catch (IOException error) {
+            Log.e(TAG, "Could not open the draft journal", error);
+            failed = true;
+            return;
+        }
+        for (Draft draft : recovered.values()) {
+            unsaved.put(NoteId.parse(draft.noteId), draft.getSequence());
+        }
+        durableSequence = sequence;
+        appendedSequence = sequence;
+        writer = new Thread(this::runWriter, "DraftJournal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Read every complete record, collecting the unsaved drafts
+     *
+     * @return the offset after the last complete record
+     */
+    private long read() throws IOException {
+        long valid = 0;
+        byte[] buffer = new byte[256];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || length > MAX_RECORD_LENGTH) break;
+                if (buffer.length < length) buffer = new byte[Math.max(length, buffer.length * 2)];
+                in.readFully(buffer, 0, length);
+                crc.reset();
+                crc.update(buffer, 0, length);
+                if ((int) crc.getValue() != checksum) break;
+                replay(new DataInputStream(new ByteArrayInputStream(buffer, 0, length)));
+                valid += 8 + length;
+            }
+        } catch (FileNotFoundException | EOFException error) {
+            // No journal yet, or a torn record at the end
+        }
+        return valid;
+    }
+
+    private void replay(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        long recordSequence = in.readLong();
+        String noteId = new NoteId(in.readLong(), in.readLong()).toString();
+        sequence = Math.max(sequence, recordSequence);
+        Draft draft = recovered.get(noteId);
+        if (draft == null) {
+            if (type == TYPE_SAVED) return;
+            draft = new Draft(noteId);
+            recovered.put(noteId, draft);
+        }
+        switch (type) {
+            case TYPE_TITLE:
+                draft.title = readString(in);
+                draft.titleSequence = recordSequence;
+                break;
+            case TYPE_EDIT: {
+                int start = in.readInt();
+                int end = in.readInt();
+                draft.edits.add(new Edit(recordSequence, start, end, readString(in)));
+                break;
+            }
+            case TYPE_SAVING: {
+                long upTo = in.readLong();
+                draft.saves.add(new long[] { upTo, in.readLong() });
+                break;
+            }
+            case TYPE_SAVED:
+                if (draft.saved(in.readLong())) recovered.remove(noteId);
+                break;
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    /**
+     * Encode a record into the pending buffer and wake the writer.  Called with the lock
+     * held.
+     *
+     * @param first the start of an edit, or the sequence number a save covers
+     * @param second the end of an edit, or the fingerprint of a save
+     * @param text the title or replacement text
+     */
+    private long append(byte type, String noteId, long first, long second, CharSequence text) {
+        open();
+        NoteId id = NoteId.tryParse(noteId);
+        if (failed || id == null) return 0;
+        long recordSequence = ++sequence;
+        try {
+            payload.reset();
+            payloadOut.writeByte(type);
+            payloadOut.writeLong(recordSequence);
+            payloadOut.writeLong(id.getHigh());
+            payloadOut.writeLong(id.getLow());
+            if (type == TYPE_EDIT) {
+                payloadOut.writeInt((int) first);
+                payloadOut.writeInt((int) second);
+            } else if (type == TYPE_SAVING) {
+                payloadOut.writeLong(first);
+                payloadOut.writeLong(second);
+            } else if (type == TYPE_SAVED) {
+                payloadOut.writeLong(first);
+            }
+            if (type == TYPE_TITLE || type == TYPE_EDIT) writeString(payloadOut, text);
+
+            byte[] bytes = payload.toByteArray();
+            crc.reset();
+            crc.update(bytes, 0, bytes.length);
+            DataOutputStream out = new DataOutputStream(pending);
+            out.writeInt(bytes.length);
+            out.writeInt((int) crc.getValue());
+            out.write(bytes);
+        } catch (IOException error) {
+            // Writing to memory does not fail
+            throw new IllegalStateException(error);
+        }
+        if (type == TYPE_TITLE || type == TYPE_EDIT) unsaved.put(id, recordSequence);
+        boolean idle = appendedSequence == durableSequence;
+        appendedSequence = recordSequence;
+        if (idle) lock.notifyAll();
+        return recordSequence;
+    }
+
+    private void runWriter() {
+        try {
+            while (true) {
+                ByteArrayOutputStream batch;
+                long batchSequence;
+                boolean truncate;
+                synchronized (lock) {
+                    while (appendedSequence == durableSequence) {
+                        lock.wait();
+                    }
+                    // Give the rest of a burst a chance to join this commit, unless
+                    // someone is waiting for it
+                    if (syncSequence <= durableSequence) lock.wait(COMMIT_DELAY_MS);
+                    batch = pending;
+                    batchSequence = appendedSequence;
+                    pending = new ByteArrayOutputStream(Math.max(256, batch.size()));
+                    truncate = unsaved.isEmpty();
+                }
+
+                try {
+                    if (truncate && output.getFilePointer() + batch.size() >= TRUNCATE_THRESHOLD) {
+                        // Everything in the file and the batch has been saved
+                        output.setLength(0);
+                        output.seek(0);
+                    } else {
+                        output.write(batch.toByteArray());
+                    }
+                    output.getFD().sync();
+                } catch (IOException error) {
+                    Log.e(TAG, "Could not write the draft journal", error);
+                    synchronized (lock) {
+                        failed = true;
+                        lock.notifyAll();
+                    }
+                    return;
+                }
+
+                synchronized (lock) {
+                    durableSequence = batchSequence;
+                    lock.notifyAll();
+                }
+            }
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, CharSequence value) throws IOException {
+        byte[] bytes = (value == null) ? new byte[0] : value.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_RECORD_LENGTH) throw new IOException("Bad string length " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,361 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+import com.amazonaws.mobile.samples.mynotes.services.DataService;
+import com.amazonaws.mobile.samples.mynotes.services.RequestPriority;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams notes between the data service and a JSON archive, so that large collections
+ * can be imported and exported in constant memory.  The archive is a JSON array of
+ * objects with "id", "title" and "content" fields, and a "tags" array for notes that have
+ * tags.  Notes with attachments have an "attachments" array of objects with "blobId",
+ * "fileName", "mimeType" and "size"; the attached bytes stay in the blob store and are
+ * not part of the archive.
+ *
+ * Imports are sent to the data service in batches through createNotes().  Progress is
+ * reported after each batch is stored; an interrupted import can be resumed by passing
+ * the last reported count as the number of notes to skip.  A note without an "id" gets
+ * one derived from its position in the archive and its text, so notes of a batch that
+ * was partly stored before the interruption are stored again under the same IDs rather
+ * than duplicated.
+ *
+ * Both directions block until done, so do not call them on the main thread.
+ */
+public class NoteArchive {
+    private static final int BATCH_SIZE = 500;
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Receives the number of notes imported or exported so far
+     */
+    public interface ProgressListener {
+        void onProgress(long count);
+    }
+
+    private final DataService dataService;
+
+    public NoteArchive(@NonNull DataService dataService) {
+        // Nobody is waiting on an import or export, so let interactive calls go first
+        this.dataService = dataService.withPriority(RequestPriority.BACKGROUND);
+    }
+
+    /**
+     * Import notes from an archive.  The stream is not closed.
+     *
+     * @param in the archive
+     * @param skip the number of notes at the start of the archive that were already imported
+     * @param listener receives the number of notes imported so far (including the skipped ones)
+     * @return the number of notes in the archive
+     * @throws IOException if the archive can't be read, or the data service does not store a batch
+     */
+    public long importNotes(@NonNull InputStream in, long skip, @Nullable ProgressListener listener) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<Note> batch = new ArrayList<>(BATCH_SIZE);
+        long count = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count < skip) {
+                reader.skipValue();
+                count++;
+                continue;
+            }
+            batch.add(readNote(reader, count + batch.size()));
+            if (batch.size() == BATCH_SIZE) {
+                count += store(batch);
+                if (listener != null) listener.onProgress(count);
+            }
+        }
+        reader.endArray();
+        if (!batch.isEmpty()) {
+            count += store(batch);
+            if (listener != null) listener.onProgress(count);
+        }
+        return count;
+    }
+
+    /**
+     * Export every note to an archive.  Notes are read through a {@link NoteStream}, so the
+     * next page is fetched while the current one is being written.  The stream is flushed
+     * but not closed.
+     *
+     * @param out the stream to write the archive to
+     * @param listener receives the number of notes exported so far
+     * @return the number of notes exported
+     * @throws IOException if the archive can't be written, or the notes can't be read
+     */
+    public long exportNotes(@NonNull OutputStream out, @Nullable ProgressListener listener) throws IOException {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        LinkedBlockingQueue<Runnable> work = new LinkedBlockingQueue<>();
+        ExportSubscriber subscriber = new ExportSubscriber(writer, listener);
+
+        writer.beginArray();
+        new NoteStream(dataService, work::add, RequestPriority.BACKGROUND, PAGE_SIZE, 2).subscribe(subscriber);
+        // Run the subscriber on this thread; page fetches happen on the data service's threads
+        try {
+            while (!subscriber.finished) {
+                work.take().run();
+            }
+        } catch (InterruptedException error) {
+            subscriber.cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting notes");
+        }
+        if (subscriber.failure != null) throw subscriber.failure;
+        writer.endArray();
+        writer.flush();
+        return subscriber.count;
+    }
+
+    /**
+     * Writes each note it receives to the archive, asking for a page of notes at a time
+     */
+    private static class ExportSubscriber implements NoteStream.Subscriber {
+        private final JsonWriter writer;
+        private final ProgressListener listener;
+        private NoteStream.Subscription subscription;
+        long count = 0;
+        boolean finished = false;
+        IOException failure = null;
+
+        ExportSubscriber(JsonWriter writer, ProgressListener listener) {
+            this.writer = writer;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSubscribe(NoteStream.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(PAGE_SIZE);
+        }
+
+        @Override
+        public void onNext(Note note) {
+            if (finished) return;
+            try {
+                writer.beginObject();
+                writer.name("id").value(note.getNoteId());
+                writer.name("title").value(note.getTitle());
+                writer.name("content").value(note.getContent());
+                if (!note.getTags().isEmpty()) {
+                    writer.name("tags").beginArray();
+                    for (String tag : note.getTags()) {
+                        writer.value(tag);
+                    }
+                    writer.endArray();
+                }
+                if (!note.getAttachments().isEmpty()) {
+                    writer.name("attachments").beginArray();
+                    for (Attachment attachment : note.getAttachments()) {
+                        writer.beginObject();
+                        writer.name("blobId").value(attachment.getBlobId());
+                        writer.name("fileName").value(attachment.getFileName());
+                        writer.name("mimeType").value(attachment.getMimeType());
+                        writer.name("size").value(attachment.getSize());
+                        writer.endObject();
+                    }
+                    writer.endArray();
+                }
+                writer.endObject();
+            } catch (IOException error) {
+                failure = error;
+                cancel();
+                return;
+            }
+            if (++count % PAGE_SIZE == 0) {
+                if (listener != null) listener.onProgress(count);
+                subscription.request(PAGE_SIZE);
+            }
+        }
+
+        @Override
+        public void onError(Exception error) {
+            failure = (error instanceof IOException) ? (IOException) error : new IOException(error);
+            finished = true;
+        }
+
+        @Override
+        public void onComplete() {
+            if (listener != null) listener.onProgress(count);
+            finished = true;
+        }
+
+        void cancel() {
+            finished = true;
+            if (subscription != null) subscription.cancel();
+        }
+    }
+
+    /**
+     * Read a note
+     *
+     * @param position the index of the note in the archive, to derive an ID from if it has none
+     */
+    private static Note readNote(JsonReader reader, long position) throws IOException {
+        NoteId id = null;
+        String title = "";
+        String content = "";
+        List<String> tags = null;
+        List<Attachment> attachments = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals("id")) {
+                id = NoteId.tryParse(reader.nextString());
+            } else if (name.equals("title")) {
+                title = reader.nextString();
+            } else if (name.equals("content")) {
+                content = reader.nextString();
+            } else if (name.equals("tags")) {
+                tags = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    tags.add(reader.nextString());
+                }
+                reader.endArray();
+            } else if (name.equals("attachments")) {
+                attachments = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Attachment attachment = readAttachment(reader);
+                    if (attachment != null) attachments.add(attachment);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        NoteContent body = new NoteContent(content);
+        Note note = new Note(id != null ? id : derivedId(position, title, body), title, body);
+        if (tags != null) note.setTags(tags);
+        if (attachments != null) note.setAttachments(attachments);
+        return note;
+    }
+
+    /**
+     * The ID of a note that has none in the archive.  Reading the same archive again gives
+     * the same ID; notes at the same position of different archives only share an ID if
+     * their text is the same.  The ID is laid out as a UUID version 8 (custom) so it can
+     * not be mistaken for a generated one.
+     */
+    private static NoteId derivedId(long position, String title, NoteContent content) {
+        long high = mix(position * 0x9e3779b97f4a7c15L + title.hashCode());
+        long low = mix(content.getFingerprint() ^ position);
+        return new NoteId((high & ~0xf000L) | 0x8000L, (low & 0x3fffffffffffffffL) | 0x8000000000000000L);
+    }
+
+    /**
+     * The MurmurHash3 finalizer
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    /**
+     * Read an attachment, or return null if it has no blob ID
+     */
+    private static Attachment readAttachment(JsonReader reader) throws IOException {
+        String blobId = null;
+        String fileName = null;
+        String mimeType = null;
+        long size = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals("blobId")) {
+                blobId = reader.nextString();
+            } else if (name.equals("fileName")) {
+                fileName = reader.nextString();
+            } else if (name.equals("mimeType")) {
+                mimeType = reader.nextString();
+            } else if (name.equals("size")) {
+                size = reader.nextLong();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return (blobId == null || blobId.isEmpty()) ? null : new Attachment(blobId, fileName, mimeType, size);
+    }
+
+    /**
+     * Send a batch to the data service and wait for it to be stored, then clear the batch
+     *
+     * @return the number of notes in the batch
+     */
+    private int store(List<Note> batch) throws IOException {
+        final int size = batch.size();
+        final AtomicReference<Integer> created = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        dataService.createNotes(batch, (Integer result) -> {
+            created.set(result);
+            done.countDown();
+        });
+        await(done);
+        Integer result = created.get();
+        if (result == null || result != size) {
+            throw new IOException(String.format("Only %s of %d notes were stored", result, size));
+        }
+        batch.clear();
+        return size;
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the data service");
+        }
+    }
+}
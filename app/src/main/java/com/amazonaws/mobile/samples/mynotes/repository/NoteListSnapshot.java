@@ -0,0 +1,203 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A small on-disk copy of the first page of the note list.  It is read on cold start so
+ * that the list can be drawn before the first loadNotes() call returns, and rewritten
+ * (on a background thread) every time the first page is loaded from the data service.
+ *
+ * Only what the list needs is stored: the note ID, the title, a short prefix of the
+ * content and the image attachment that the row shows, plus the nextToken for the
+ * following page.  The file starts with a format version; a file with any other version
+ * is ignored.
+ *
+ * The prefix is stored with the fingerprint of the whole content, so the notes read from
+ * the snapshot compare equal (in constant time) to the same notes when they are loaded.
+ */
+public class NoteListSnapshot {
+    private static final String TAG = "NoteListSnapshot";
+    private static final int MAGIC = 0x4e4f5453;    // "NOTS"
+    private static final int VERSION = 5;
+    private static final int MAX_TITLE_LENGTH = 1000;
+    private static final int MAX_SUMMARY_LENGTH = 200;
+
+    /**
+     * The longest string writeUTF() is sure to take: it allows 65535 bytes, and a
+     * character needs at most three
+     */
+    private static final int MAX_STRING_LENGTH = 65535 / 3;
+
+    private final File file;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor((Runnable runnable) -> {
+        Thread thread = new Thread(runnable, "NoteListSnapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicReference<PagedListConnectionResponse<Note>> pendingWrite = new AtomicReference<>();
+
+    public NoteListSnapshot(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Read the snapshot.  This does disk I/O, so do not call it on the main thread.
+     *
+     * @return the stored page, or null if there is no usable snapshot
+     */
+    @Nullable
+    public PagedListConnectionResponse<Note> read() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            String nextToken = in.readBoolean() ? in.readUTF() : null;
+            int count = in.readInt();
+            List<Note> items = new ArrayList<>(count);
+            for (int i = 0 ; i < count ; i++) {
+                NoteId id = new NoteId(in.readLong(), in.readLong());
+                String title = in.readUTF();
+                String summary = in.readUTF();
+                Note note = new Note(id, title, new NoteContent(summary, in.readLong()));
+                if (in.readBoolean()) {
+                    note.setAttachments(Collections.singletonList(new Attachment(in.readUTF(), in.readUTF(), in.readUTF(), in.readLong())));
+                }
+                items.add(note);
+            }
+            return new PagedListConnectionResponse<>(items, nextToken);
+        } catch (FileNotFoundException error) {
+            return null;
+        } catch (IOException error) {
+            Log.w(TAG, "Ignoring unreadable snapshot", error);
+            return null;
+        }
+    }
+
+    /**
+     * Replace the snapshot with a new first page.  The page is summarized and written on a
+     * background thread, since reading even a short prefix of packed content unpacks a
+     * block.  If several writes are requested before the writer gets to them, only the
+     * last one is written.
+     */
+    public void write(@NonNull List<Note> items, @Nullable String nextToken) {
+        PagedListConnectionResponse<Note> page = new PagedListConnectionResponse<>(new ArrayList<>(items), nextToken);
+        if (pendingWrite.getAndSet(page) == null) {
+            writer.execute(() -> writeToDisk(pendingWrite.getAndSet(null)));
+        }
+    }
+
+    /**
+     * Returns true if a freshly loaded page shows the same rows as the snapshot, so that
+     * there is nothing to patch.  The content is compared by fingerprint and never read.
+     * The nextToken is not compared: a backend may hand out a new token for the same page
+     * every time.
+     */
+    public static boolean matches(@NonNull PagedListConnectionResponse<Note> snapshot, @NonNull PagedListConnectionResponse<Note> fresh) {
+        List<Note> cached = snapshot.getItems();
+        List<Note> loaded = fresh.getItems();
+        if (cached.size() != loaded.size()) return false;
+        for (int i = 0 ; i < cached.size() ; i++) {
+            Note a = cached.get(i);
+            Note b = loaded.get(i);
+            if (!a.getId().equals(b.getId())
+                    || !a.getTitle().equals(truncate(b.getTitle(), MAX_TITLE_LENGTH))
+                    || a.getContentFingerprint() != b.getContentFingerprint()
+                    || !equal(a.getFirstImage(), b.getFirstImage())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeToDisk(PagedListConnectionResponse<Note> page) {
+        // Write to a temporary file, flush it to disk and rename it, so a crash mid-write
+        // leaves the old snapshot intact
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(page.getNextToken() != null);
+            if (page.getNextToken() != null) out.writeUTF(page.getNextToken());
+            out.writeInt(page.getItems().size());
+            for (Note note : page.getItems()) {
+                out.writeLong(note.getId().getHigh());
+                out.writeLong(note.getId().getLow());
+                writeString(out, truncate(note.getTitle(), MAX_TITLE_LENGTH));
+                writeString(out, note.getContentBody().read(0, MAX_SUMMARY_LENGTH));
+                out.writeLong(note.getContentFingerprint());
+                Attachment image = note.getFirstImage();
+                out.writeBoolean(image != null);
+                if (image != null) {
+                    writeString(out, image.getBlobId());
+                    writeString(out, image.getFileName());
+                    writeString(out, image.getMimeType());
+                    out.writeLong(image.getSize());
+                }
+            }
+            out.flush();
+            stream.getFD().sync();
+        } catch (IOException | RuntimeException error) {
+            // This runs on the writer thread, so nothing else would report the failure
+            Log.w(TAG, "Could not write snapshot", error);
+            return;
+        }
+        if (!temp.renameTo(file)) Log.w(TAG, "Could not replace snapshot");
+    }
+
+    /**
+     * writeUTF() for values that may be null, which are written as empty strings.  The
+     * value is cut short if it is too long for writeUTF().
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) value = "";
+        out.writeUTF(value.length() <= MAX_STRING_LENGTH ? value : value.substring(0, MAX_STRING_LENGTH));
+    }
+
+    private static String truncate(String value, int length) {
+        if (value == null) return "";
+        return value.length() <= length ? value : value.substring(0, length);
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
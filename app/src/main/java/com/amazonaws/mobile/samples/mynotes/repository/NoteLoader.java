@@ -0,0 +1,186 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.services.DataService;
+import com.amazonaws.mobile.samples.mynotes.services.RequestGroup;
+import com.amazonaws.mobile.samples.mynotes.services.RequestPriority;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads single notes in batches.  Calls to load() made within BATCH_WINDOW_MS of the
+ * first one are collected and sent as one getNotes() call, and each caller gets its own
+ * note back.  A note asked for twice in the same window is only loaded once, and the
+ * callers share the Note object, so copy it before changing it.  A batch is sent as soon
+ * as it holds MAX_BATCH notes.
+ *
+ * Notes are not cached between batches, so a load never returns a note that is older than
+ * the call.
+ */
+public class NoteLoader {
+    /**
+     * How long to wait for more calls after the first call of a batch
+     */
+    static final long BATCH_WINDOW_MS = 4;
+
+    /**
+     * The most notes loaded in one call
+     */
+    static final int MAX_BATCH = 100;
+
+    /**
+     * A caller waiting for a note
+     */
+    private static class Waiter {
+        final RequestGroup owner;
+        final boolean visible;
+        final ResultCallback<Note> callback;
+
+        Waiter(RequestGroup owner, boolean visible, ResultCallback<Note> callback) {
+            this.owner = owner;
+            this.visible = visible;
+            this.callback = callback;
+        }
+
+        boolean isWanted() {
+            return owner == null || !owner.isCancelled();
+        }
+    }
+
+    private final DataService dataService;
+    private final Handler handler;
+    private final Runnable dispatchPending = this::dispatchPending;
+    private LinkedHashMap<String, List<Waiter>> pending = new LinkedHashMap<>();
+
+    public NoteLoader(DataService dataService) {
+        this(dataService, new Handler(Looper.getMainLooper()));
+    }
+
+    /**
+     * @param dataService the data service to load the notes from
+     * @param handler the handler that the end of each batch window is timed on
+     */
+    NoteLoader(DataService dataService, Handler handler) {
+        this.dataService = dataService;
+        this.handler = handler;
+    }
+
+    /**
+     * Load a note as part of the next batch
+     *
+     * @param noteId the ID of the note
+     * @param callback the result (null if the note does not exist or could not be loaded)
+     * @return a handle on the load; cancelling it drops the result, and leaves the note
+     *         out of the batch if nobody else is waiting for it
+     */
+    public RequestGroup load(String noteId, ResultCallback<Note> callback) {
+        RequestGroup request = new RequestGroup();
+        add(noteId, new Waiter(request, false, callback));
+        return request;
+    }
+
+    /**
+     * Load a note as part of the next batch for a screen that is opening.  The batch is
+     * loaded at visible priority, and the result is dropped if the owner is cancelled
+     * first.  A batch is only skipped if every caller in it has been cancelled.
+     *
+     * @param noteId the ID of the note
+     * @param owner the group that the call belongs to, or null
+     * @param callback the result (null if the note does not exist or could not be loaded)
+     */
+    public void load(String noteId, RequestGroup owner, ResultCallback<Note> callback) {
+        add(noteId, new Waiter(owner, owner != null, callback));
+    }
+
+    private void add(String noteId, Waiter waiter) {
+        Map<String, List<Waiter>> full = null;
+        synchronized (this) {
+            boolean first = pending.isEmpty();
+            List<Waiter> waiters = pending.get(noteId);
+            if (waiters == null) {
+                waiters = new ArrayList<>(1);
+                pending.put(noteId, waiters);
+            }
+            waiters.add(waiter);
+
+            if (pending.size() >= MAX_BATCH) {
+                full = pending;
+                pending = new LinkedHashMap<>();
+                if (!first) handler.removeCallbacks(dispatchPending);
+            } else if (first) {
+                handler.postDelayed(dispatchPending, BATCH_WINDOW_MS);
+            }
+        }
+        if (full != null) dispatch(full);
+    }
+
+    private void dispatchPending() {
+        Map<String, List<Waiter>> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        if (!batch.isEmpty()) dispatch(batch);
+    }
+
+    private void dispatch(final Map<String, List<Waiter>> batch) {
+        // Leave out the notes that nobody is waiting for any more
+        boolean visible = false;
+        Iterator<List<Waiter>> entries = batch.values().iterator();
+        while (entries.hasNext()) {
+            boolean wanted = false;
+            for (Waiter waiter : entries.next()) {
+                if (waiter.isWanted()) {
+                    wanted = true;
+                    visible |= waiter.visible;
+                }
+            }
+            if (!wanted) entries.remove();
+        }
+        if (batch.isEmpty()) return;
+
+        DataService service = visible ? dataService.withPriority(RequestPriority.VISIBLE) : dataService;
+        if (batch.size() == 1) {
+            // A single note is loaded with getNote(), which the data service may be able to
+            // revalidate rather than transfer again
+            final Map.Entry<String, List<Waiter>> entry = batch.entrySet().iterator().next();
+            service.getNote(entry.getKey(), (Note note) -> deliver(entry.getValue(), note));
+            return;
+        }
+        service.getNotes(new ArrayList<>(batch.keySet()), (Map<String, Note> notes) -> {
+            for (Map.Entry<String, List<Waiter>> entry : batch.entrySet()) {
+                deliver(entry.getValue(), (notes == null) ? null : notes.get(entry.getKey()));
+            }
+        });
+    }
+
+    private static void deliver(List<Waiter> waiters, Note note) {
+        for (Waiter waiter : waiters) {
+            if (waiter.isWanted()) waiter.callback.onResult(note);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import android.support.annotation.NonNull;
+
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.services.DataService;
+import com.amazonaws.mobile.samples.mynotes.services.RequestGroup;
+import com.amazonaws.mobile.samples.mynotes.services.RequestPriority;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A backpressured stream of every note in the data service, for consumers that need to
+ * "iterate everything" (export, indexing, sync) without chaining next tokens by hand.
+ *
+ * A subscriber asks for notes with {@link Subscription#request(long)}, and gets at most
+ * that many onNext() calls.  Pages are fetched from the data service as notes are
+ * requested, reading ahead by a bounded number of pages so that the next page is being
+ * fetched while the subscriber works on the current one.  Memory use is bounded by the
+ * read-ahead, however many notes there are.
+ *
+ * The subscriber's methods are called one at a time on the delivery executor, never
+ * concurrently.  This follows the Reactive Streams rules, but uses its own interfaces
+ * since java.util.concurrent.Flow is not available at our minimum API level.
+ */
+public class NoteStream {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int DEFAULT_READ_AHEAD_PAGES = 2;
+
+    public interface Subscriber {
+        /**
+         * Called once, before any other call, with the subscription for requesting notes
+         */
+        void onSubscribe(Subscription subscription);
+
+        void onNext(Note note);
+
+        /**
+         * The stream failed.  No further calls are made.
+         */
+        void onError(Exception error);
+
+        /**
+         * Every note has been delivered.  No further calls are made.
+         */
+        void onComplete();
+    }
+
+    public interface Subscription {
+        /**
+         * Ask for up to n more notes
+         */
+        void request(long n);
+
+        /**
+         * Stop the stream.  Fetches in flight are cancelled, and no further calls are made.
+         */
+        void cancel();
+    }
+
+    private final DataService dataService;
+    private final Executor deliveryExecutor;
+    private final RequestPriority priority;
+    private final int pageSize;
+    private final int readAheadPages;
+
+    /**
+     * A stream with the default page size and read-ahead
+     *
+     * @param dataService the data service to read notes from
+     * @param deliveryExecutor the executor that subscriber methods are called on
+     * @param priority the priority of the page fetches
+     */
+    public NoteStream(@NonNull DataService dataService, @NonNull Executor deliveryExecutor, @NonNull RequestPriority priority) {
+        this(dataService, deliveryExecutor, priority, DEFAULT_PAGE_SIZE, DEFAULT_READ_AHEAD_PAGES);
+    }
+
+    /**
+     * @param dataService the data service to read notes from
+     * @param deliveryExecutor the executor that subscriber methods are called on
+     * @param priority the priority of the page fetches
+     * @param pageSize the number of notes to fetch per call
+     * @param readAheadPages the most pages to hold (or have in flight) ahead of the subscriber
+     */
+    public NoteStream(@NonNull DataService dataService, @NonNull Executor deliveryExecutor, @NonNull RequestPriority priority, int pageSize, int readAheadPages) {
+        this.dataService = dataService;
+        this.deliveryExecutor = deliveryExecutor;
+        this.priority = priority;
+        this.pageSize = pageSize;
+        this.readAheadPages = readAheadPages;
+    }
+
+    /**
+     * Start a new pass over the notes.  Each subscriber gets its own pass, starting from
+     * the first note.
+     */
+    public void subscribe(@NonNull Subscriber subscriber) {
+        NoteSubscription subscription = new NoteSubscription(subscriber);
+        deliveryExecutor.execute(() -> subscriber.onSubscribe(subscription));
+    }
+
+    /**
+     * The state of one pass.  The fields are guarded by the subscription's lock; the
+     * subscriber is only called from drain(), which the wip counter keeps to one thread
+     * at a time.
+     */
+    private class NoteSubscription implements Subscription {
+        private final Subscriber subscriber;
+        private final RequestGroup fetches = new RequestGroup();
+        private final DataService pages = dataService.withPriority(priority, fetches);
+        private final AtomicInteger wip = new AtomicInteger(0);
+
+        private final ArrayDeque<Note> buffer = new ArrayDeque<>();
+        private long demand = 0;
+        private boolean started = false;
+        private boolean fetching = false;
+        private boolean exhausted = false;
+        private String nextToken = null;
+        private Exception error = null;
+        private boolean terminated = false;
+
+        NoteSubscription(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (terminated) return;
+                if (n <= 0) {
+                    error = new IllegalArgumentException("request() must be positive, was " + n);
+                } else {
+                    demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+                    started = true;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                terminated = true;
+                buffer.clear();
+            }
+            fetches.cancel();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) deliveryExecutor.execute(this::drain);
+        }
+
+        /**
+         * Deliver what the subscriber has asked for, finish the stream if it is done, and
+         * start the next fetch if there is room to read ahead
+         */
+        private void drain() {
+            int missed = 1;
+            while (true) {
+                while (true) {
+                    Note note;
+                    synchronized (this) {
+                        if (terminated || demand == 0 || buffer.isEmpty()) break;
+                        note = buffer.poll();
+                        if (demand != Long.MAX_VALUE) demand--;
+                    }
+                    subscriber.onNext(note);
+                }
+
+                Exception failure;
+                boolean complete;
+                synchronized (this) {
+                    if (terminated) return;
+                    failure = error;
+                    complete = exhausted && buffer.isEmpty();
+                    if (failure != null || complete) terminated = true;
+                }
+                if (failure != null) {
+                    subscriber.onError(failure);
+                    return;
+                }
+                if (complete) {
+                    subscriber.onComplete();
+                    return;
+                }
+                fetchIfNeeded();
+
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) return;
+            }
+        }
+
+        private void fetchIfNeeded() {
+            String after;
+            synchronized (this) {
+                if (!started || fetching || exhausted || buffer.size() + pageSize > pageSize * readAheadPages) return;
+                fetching = true;
+                after = nextToken;
+            }
+            pages.loadNotes(pageSize, after, (PagedListConnectionResponse<Note> result) -> {
+                synchronized (this) {
+                    fetching = false;
+                    if (result == null) {
+                        error = new IOException("Could not load notes");
+                    } else if (!terminated) {
+                        buffer.addAll(result.getItems());
+                        nextToken = result.getNextToken();
+                        exhausted = (nextToken == null);
+                    }
+                }
+                schedule();
+            });
+        }
+    }
+}
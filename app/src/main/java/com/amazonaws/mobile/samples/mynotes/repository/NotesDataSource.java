@@ -17,13 +17,23 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.amazonaws.mobile.samples.mynotes.repository;
 
 import android.arch.paging.PageKeyedDataSource;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
 import com.amazonaws.mobile.samples.mynotes.models.Note;
 import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
 import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
 import com.amazonaws.mobile.samples.mynotes.services.DataService;
+import com.amazonaws.mobile.samples.mynotes.services.RequestGroup;
+import com.amazonaws.mobile.samples.mynotes.services.RequestPriority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.xml.transform.Result;
 
@@ -33,10 +43,66 @@ import javax.xml.transform.Result;
  */
 public class NotesDataSource extends PageKeyedDataSource<String,Note> {
     private static final String TAG = "NotesDataSource";
+
+    /**
+     * A failed page load is tried again after this long, doubling up to the maximum, for
+     * as long as the data source is valid
+     */
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long MAX_RETRY_DELAY_MS = 30000;
+
     private DataService dataService;
+    private NoteListSnapshot snapshot;
+    private boolean serveSnapshot;
+    private TagFilter filter;
+
+    /**
+     * The page loads of this data source.  They are cancelled when it is invalidated,
+     * since their results would only go to a dead paged list.
+     */
+    private final RequestGroup pageLoads = new RequestGroup();
+    private DataService visiblePages;
+    private DataService prefetchPages;
+    private final Handler retryHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * A first page that was already loaded, to answer loadInitial() with
+     */
+    private PagedListConnectionResponse<Note> firstPage;
+
+    /**
+     * A fresh first page that differs from the snapshot this data source painted.  The
+     * next data source starts from it instead of loading the page again.
+     */
+    private final AtomicReference<PagedListConnectionResponse<Note>> revalidatedPage = new AtomicReference<>();
+
+    /**
+     * While the snapshot is being revalidated, the nextToken stored with it may be stale.
+     * Loads of the page after the snapshot wait for the fresh token, and then use it.
+     */
+    private final Object revalidationLock = new Object();
+    private boolean revalidating = false;
+    private String snapshotNextToken;
+    private String freshNextToken;
+    private final List<Runnable> awaitingRevalidation = new ArrayList<>();
 
-    NotesDataSource(DataService dataService) {
+    /**
+     * @param dataService the data service to page through
+     * @param snapshot the first page snapshot, or null to not use one
+     * @param serveSnapshot true if loadInitial() should answer from the snapshot and then revalidate
+     * @param filter the tags that listed notes must match, or null to list every note
+     * @param firstPage a first page that is already loaded, or null to load it
+     */
+    NotesDataSource(DataService dataService, NoteListSnapshot snapshot, boolean serveSnapshot, TagFilter filter,
+                    PagedListConnectionResponse<Note> firstPage) {
         this.dataService = dataService;
+        this.snapshot = snapshot;
+        this.serveSnapshot = serveSnapshot;
+        this.filter = filter;
+        this.firstPage = firstPage;
+        this.visiblePages = dataService.withPriority(RequestPriority.VISIBLE, pageLoads);
+        this.prefetchPages = dataService.withPriority(RequestPriority.PREFETCH, pageLoads);
+        addInvalidatedCallback(pageLoads::cancel);
     }
 
     /**
@@ -49,7 +115,73 @@ public class NotesDataSource extends PageKeyedDataSource<String,Note> {
     @Override
     public void loadInitial(@NonNull LoadInitialParams<String> params, @NonNull final LoadInitialCallback<String, Note> callback) {
         Log.d(TAG, String.format("loadInitial(%d)", params.requestedLoadSize));
-        dataService.loadNotes(params.requestedLoadSize, null, (PagedListConnectionResponse<Note> result) -> {
+        if (firstPage != null) {
+            PagedListConnectionResponse<Note> page = firstPage;
+            firstPage = null;
+            callback.onResult(page.getItems(), null, page.getNextToken());
+            return;
+        }
+        if (serveSnapshot) {
+            final PagedListConnectionResponse<Note> cached = snapshot.read();
+            if (cached != null) {
+                // Paint the list from the snapshot straight away, then check it against the
+                // data service
+                synchronized (revalidationLock) {
+                    revalidating = true;
+                    snapshotNextToken = cached.getNextToken();
+                }
+                callback.onResult(cached.getItems(), null, cached.getNextToken());
+                prefetchPages.loadNotes(params.requestedLoadSize, null, filter, (PagedListConnectionResponse<Note> result) -> revalidate(cached, result));
+                return;
+            }
+        }
+        loadFirstPage(params.requestedLoadSize, callback, RETRY_DELAY_MS);
+    }
+
+    /**
+     * Compare the fresh first page with the snapshot that was painted.  If the rows
+     * changed, invalidate so the adapter diffs in the fresh page, which the next data
+     * source is handed.  If only the nextToken changed, keep the list and page on from the
+     * fresh token.
+     */
+    private void revalidate(PagedListConnectionResponse<Note> cached, PagedListConnectionResponse<Note> result) {
+        List<Runnable> waiting;
+        synchronized (revalidationLock) {
+            revalidating = false;
+            // If the page could not be loaded, carry on with the stored token
+            freshNextToken = (result != null) ? result.getNextToken() : snapshotNextToken;
+            waiting = new ArrayList<>(awaitingRevalidation);
+            awaitingRevalidation.clear();
+        }
+        if (result != null) {
+            snapshot.write(result.getItems(), result.getNextToken());
+            if (!NoteListSnapshot.matches(cached, result)) {
+                revalidatedPage.set(result);
+                invalidate();
+                return;
+            }
+        }
+        for (Runnable load : waiting) {
+            load.run();
+        }
+    }
+
+    /**
+     * The fresh first page, if revalidating the snapshot found that it changed.  It is
+     * only handed out once.
+     */
+    PagedListConnectionResponse<Note> takeRevalidatedPage() {
+        return revalidatedPage.getAndSet(null);
+    }
+
+    private void loadFirstPage(final int limit, final LoadInitialCallback<String, Note> callback, final long retryDelay) {
+        visiblePages.loadNotes(limit, null, filter, (PagedListConnectionResponse<Note> result) -> {
+            if (result == null) {
+                Log.w(TAG, "loadInitial failed; retrying in " + retryDelay + "ms");
+                retry(() -> loadFirstPage(limit, callback, nextRetryDelay(retryDelay)), retryDelay);
+                return;
+            }
+            if (snapshot != null) snapshot.write(result.getItems(), result.getNextToken());
             callback.onResult(result.getItems(), null, result.getNextToken());
         });
     }
@@ -60,19 +192,53 @@ public class NotesDataSource extends PageKeyedDataSource<String,Note> {
      * page of items.
      */
     @Override
-    public void loadBefore(@NonNull LoadParams<String> params, @NonNull final LoadCallback<String, Note> callback) {
+    public void loadAfter(@NonNull LoadParams<String> params, @NonNull final LoadCallback<String, Note> callback) {
         Log.d(TAG, String.format("loadAfter(%d, %s)", params.requestedLoadSize, params.key));
-        dataService.loadNotes(params.requestedLoadSize, params.key, (PagedListConnectionResponse<Note> result) -> {
+        loadNextPage(params.requestedLoadSize, params.key, callback, RETRY_DELAY_MS);
+    }
+
+    private void loadNextPage(final int limit, final String key, final LoadCallback<String, Note> callback, final long retryDelay) {
+        String token = key;
+        synchronized (revalidationLock) {
+            if (key.equals(snapshotNextToken)) {
+                if (revalidating) {
+                    awaitingRevalidation.add(() -> loadNextPage(limit, key, callback, retryDelay));
+                    return;
+                }
+                token = freshNextToken;
+            }
+        }
+        prefetchPages.loadNotes(limit, token, filter, (PagedListConnectionResponse<Note> result) -> {
+            if (result == null) {
+                Log.w(TAG, "loadAfter failed; retrying in " + retryDelay + "ms");
+                retry(() -> loadNextPage(limit, key, callback, nextRetryDelay(retryDelay)), retryDelay);
+                return;
+            }
             callback.onResult(result.getItems(), result.getNextToken());
         });
     }
 
+    /**
+     * Try a failed page load again later.  Without a retry the paged list would wait for
+     * the page forever.
+     */
+    private void retry(final Runnable load, long delay) {
+        retryHandler.postDelayed(() -> {
+            if (!isInvalid()) load.run();
+        }, delay);
+    }
+
+    private static long nextRetryDelay(long delay) {
+        return Math.min(MAX_RETRY_DELAY_MS, delay * 2);
+    }
+
     /**
      * Part of the PageKeyedDataSource - normally used to load the previous page, but this
-     * version does not support paging backwards, so it becomes an invalidation.
+     * version does not support paging backwards, so it becomes an invalidation.  The first
+     * page has no previous key, so this is not normally called.
      */
     @Override
-    public void loadAfter(@NonNull LoadParams<String> params, @NonNull LoadCallback<String, Note> callback) {
+    public void loadBefore(@NonNull LoadParams<String> params, @NonNull LoadCallback<String, Note> callback) {
         Log.d(TAG, String.format("loadBefore(%d, %s)", params.requestedLoadSize, params.key));
         invalidate();
     }
@@ -90,6 +256,17 @@ public class NotesDataSource extends PageKeyedDataSource<String,Note> {
         });
     }
 
+    /**
+     * Delete several items in one call.  The list is invalidated once, however many items
+     * are deleted.
+     */
+    public void deleteItems(@NonNull Collection<String> noteIds, @NonNull final ResultCallback<Integer> callback) {
+        dataService.deleteNotes(noteIds, (Integer result) -> {
+            if (result > 0) invalidate();
+            callback.onResult(result);
+        });
+    }
+
     /**
      * Obtain a single item from the data service.
      */
@@ -97,6 +274,52 @@ public class NotesDataSource extends PageKeyedDataSource<String,Note> {
         dataService.getNote(noteId, callback);
     }
 
+    /**
+     * Obtain a single item for a screen that is opening.  The call goes ahead of prefetches,
+     * and is dropped if the owner is cancelled.
+     */
+    public void getItem(String noteId, RequestGroup owner, @NonNull ResultCallback<Note> callback) {
+        dataService.withPriority(RequestPriority.VISIBLE, owner).getNote(noteId, callback);
+    }
+
+    /**
+     * Change the title of an item.  Titles are shown in the list, so the list is invalidated.
+     */
+    public void updateItemTitle(String noteId, @NonNull String title, @NonNull final ResultCallback<Boolean> callback) {
+        dataService.updateTitle(noteId, title, (Boolean result) -> {
+            if (result) invalidate();
+            callback.onResult(result);
+        });
+    }
+
+    /**
+     * Obtain a range of the content of an item from the data service.
+     *
+     * @return a handle on the call; cancelling it skips the call if it has not started,
+     *         and drops the result if it has
+     */
+    public RequestGroup getItemContent(String noteId, int start, int count, @NonNull ResultCallback<String> callback) {
+        RequestGroup request = new RequestGroup();
+        dataService.withPriority(RequestPriority.NORMAL, request).loadContent(noteId, start, count, callback);
+        return request;
+    }
+
+    /**
+     * Obtain a range of the content of an item for a screen that is opening.  The call goes
+     * ahead of prefetches, and is dropped if the owner is cancelled.
+     */
+    public void getItemContent(String noteId, int start, int count, RequestGroup owner, @NonNull ResultCallback<String> callback) {
+        dataService.withPriority(RequestPriority.VISIBLE, owner).loadContent(noteId, start, count, callback);
+    }
+
+    /**
+     * Edit a range of the content of an item.  The list only shows titles, so this does
+     * not invalidate the list.
+     */
+    public void updateItemContent(String noteId, int start, int end, @NonNull CharSequence replacement, @NonNull ResultCallback<Boolean> callback) {
+        dataService.updateContent(noteId, start, end, replacement, callback);
+    }
+
     /**
      * The notes repository needs to do non-paged list type operations as well.  These operations
      * are passed through directly to the data service.  However, deletions (and saves) affect
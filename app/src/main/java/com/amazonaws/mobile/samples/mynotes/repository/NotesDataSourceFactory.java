@@ -21,20 +21,40 @@ import android.arch.lifecycle.MutableLiveData;
 import android.arch.paging.DataSource;
 
 import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
 import com.amazonaws.mobile.samples.mynotes.services.DataService;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  * Factory for creating data sources.  When the NotesDataSource is invalidated (because
  * of reverse paging or because the list has been altered), we have to create a new
  * data source.
+ *
+ * The snapshot only holds the first page of the whole list, so it is not used while
+ * the list is filtered by tag.
+ *
+ * The factory keeps weak references to the data sources it has made, so that a test or
+ * soak run can check that invalidated data sources are garbage collected rather than held
+ * on to by a stray callback.
  */
 public class NotesDataSourceFactory extends DataSource.Factory<String, Note> {
     private DataService dataService;
+    private NoteListSnapshot snapshot;
+    private boolean snapshotServed = false;
+    private NotesDataSource snapshotDataSource = null;
+    private volatile TagFilter filter;
     private MutableLiveData<NotesDataSource> mDataSource;
     private LiveData<NotesDataSource> currentDataSource;
+    private final List<WeakReference<NotesDataSource>> created = new ArrayList<>();
 
-    NotesDataSourceFactory(DataService dataService) {
+    NotesDataSourceFactory(DataService dataService, NoteListSnapshot snapshot) {
         this.dataService = dataService;
+        this.snapshot = snapshot;
         mDataSource = new MutableLiveData<>();
         currentDataSource = mDataSource;
     }
@@ -43,9 +63,59 @@ public class NotesDataSourceFactory extends DataSource.Factory<String, Note> {
         return currentDataSource;
     }
 
+    public TagFilter getTagFilter() {
+        return filter;
+    }
+
+    /**
+     * Filter the data sources created from now on.  Invalidate the current data source
+     * for the change to show.
+     *
+     * @param filter the tags that listed notes must match, or null to list every note
+     */
+    public void setTagFilter(TagFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * The number of data sources made by this factory that have not been garbage
+     * collected yet, including the current one.  Run a GC first for a meaningful number.
+     */
+    public int getLiveDataSourceCount() {
+        synchronized (created) {
+            prune();
+            return created.size();
+        }
+    }
+
+    private void prune() {
+        Iterator<WeakReference<NotesDataSource>> iterator = created.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().get() == null) iterator.remove();
+        }
+    }
+
     @Override
     public DataSource<String, Note> create() {
-        NotesDataSource dataSource = new NotesDataSource(dataService);
+        TagFilter current = filter;
+        NotesDataSource dataSource;
+        if (current == null) {
+            // Only the very first data source (cold start) is served from the snapshot.  If
+            // that data source found the snapshot out of date, the fresh first page it
+            // loaded is passed on to the next one.
+            boolean serveSnapshot = snapshot != null && !snapshotServed;
+            PagedListConnectionResponse<Note> firstPage = (snapshotDataSource != null) ? snapshotDataSource.takeRevalidatedPage() : null;
+            dataSource = new NotesDataSource(dataService, snapshot, serveSnapshot, null, firstPage);
+            snapshotDataSource = serveSnapshot ? dataSource : null;
+            snapshotServed = true;
+        } else {
+            snapshotDataSource = null;
+            dataSource = new NotesDataSource(dataService, null, false, current, null);
+        }
+        synchronized (created) {
+            prune();
+            created.add(new WeakReference<>(dataSource));
+        }
         mDataSource.postValue(dataSource);
         return dataSource;
     }
@@ -17,21 +17,79 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.amazonaws.mobile.samples.mynotes.repository;
 
 import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MediatorLiveData;
 import android.arch.paging.LivePagedListBuilder;
 import android.arch.paging.PagedList;
+import android.content.ComponentCallbacks2;
 
+import com.amazonaws.mobile.samples.mynotes.Trimmable;
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
 import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
 import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+import com.amazonaws.mobile.samples.mynotes.services.BlobStore;
 import com.amazonaws.mobile.samples.mynotes.services.DataService;
+import com.amazonaws.mobile.samples.mynotes.services.RequestGroup;
 
-public class NotesRepository {
-    private LiveData<PagedList<Note>> pagedList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NotesRepository implements Trimmable {
+    /**
+     * Approximate cost of a loaded note beyond its characters: the Note, its ID, its
+     * content chunks and the String headers
+     */
+    private static final int NOTE_OVERHEAD_BYTES = 160;
+
+    private DataService dataService;
+    private BlobStore blobStore;
+
+    /**
+     * Deletes unused blobs, since the data service calls back on the main thread
+     */
+    private final Executor blobDeleter = Executors.newSingleThreadExecutor((Runnable runnable) -> {
+        Thread thread = new Thread(runnable, "NotesRepository-blobDeleter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private DraftJournal draftJournal;
+    private NoteLoader noteLoader;
+    private NotesDataSourceFactory factory;
+    private final MediatorLiveData<PagedList<Note>> pagedList = new MediatorLiveData<>();
+    private LiveData<PagedList<Note>> pagedListSource;
     private LiveData<NotesDataSource> dataSource;
 
     public NotesRepository(DataService dataService) {
-        NotesDataSourceFactory factory = new NotesDataSourceFactory(dataService);
+        this(dataService, null, null, null);
+    }
+
+    /**
+     * @param dataService the data service that backs the repository
+     * @param snapshot a snapshot of the first page, used to paint the list on cold start
+     * @param draftJournal the journal of unsaved edits, or null to not keep one
+     * @param blobStore the store for the bytes of attachments, or null if notes can't have any
+     */
+    public NotesRepository(DataService dataService, NoteListSnapshot snapshot, DraftJournal draftJournal, BlobStore blobStore) {
+        this.dataService = dataService;
+        this.blobStore = blobStore;
+        this.draftJournal = draftJournal;
+        this.noteLoader = new NoteLoader(dataService);
+        factory = new NotesDataSourceFactory(dataService, snapshot);
         dataSource = factory.getCurrentDataSource();
-        pagedList = new LivePagedListBuilder<>(factory, 20).build();
+        attachPagedListSource();
+    }
+
+    private void attachPagedListSource() {
+        pagedListSource = new LivePagedListBuilder<>(factory, 20).build();
+        pagedList.addSource(pagedListSource, pagedList::setValue);
     }
 
     /**
@@ -42,6 +100,95 @@ public class NotesRepository {
         return pagedList;
     }
 
+    /**
+     * The journal that editors record unsaved changes in, or null if there is none
+     */
+    public DraftJournal getDraftJournal() {
+        return draftJournal;
+    }
+
+    /**
+     * Save the changes that a previous run recorded in the draft journal but never saved
+     * to the data service.  This reads the journal, so do not call it on the main thread.
+     * The notes are loaded in batches, and the edits of each note are applied to its
+     * stored content and sent as one range update.
+     */
+    public void recoverDrafts() {
+        if (draftJournal == null) return;
+        Map<String, DraftJournal.Draft> drafts = draftJournal.recover();
+        for (DraftJournal.Draft draft : drafts.values()) {
+            noteLoader.load(draft.getNoteId(), (Note note) -> {
+                if (note == null) {
+                    // The note has gone (or can't be loaded); there is nothing to save into
+                    draftJournal.recordSaved(draft.getNoteId(), draft.getSequence());
+                    return;
+                }
+                recoverDraft(draft, note);
+            });
+        }
+    }
+
+    private void recoverDraft(final DraftJournal.Draft draft, Note note) {
+        long storedFingerprint = note.getContentFingerprint();
+        List<DraftJournal.Edit> edits = draft.getEdits(storedFingerprint);
+        String title = draft.getTitle(storedFingerprint);
+
+        NoteContent content = new NoteContent(note.getContentBody());
+        ContentPatch patch = new ContentPatch();
+        for (DraftJournal.Edit edit : edits) {
+            if (edit.getStart() < 0 || edit.getEnd() < edit.getStart() || edit.getEnd() > content.length()) break;
+            content.replace(edit.getStart(), edit.getEnd(), edit.getReplacement());
+            patch.apply(edit.getStart(), edit.getEnd(), edit.getReplacement().length());
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(1);
+        final ResultCallback<Boolean> done = (Boolean result) -> {
+            if (!result) return;
+            if (remaining.decrementAndGet() == 0) {
+                draftJournal.recordSaved(draft.getNoteId(), draft.getSequence());
+                NotesDataSource source = dataSource.getValue();
+                if (source != null) source.invalidate();
+            }
+        };
+        if (title != null) {
+            remaining.incrementAndGet();
+            dataService.updateTitle(draft.getNoteId(), title, done);
+        }
+        if (!patch.isEmpty()) {
+            remaining.incrementAndGet();
+            String replacement = content.read(patch.getStart(), patch.getEnd() - patch.getStart());
+            dataService.updateContent(draft.getNoteId(), patch.getStart(), patch.getBaseEnd(), replacement, done);
+        }
+        done.onResult(true);
+    }
+
+    /**
+     * The tag filter applied to the paged list, or null if every note is listed
+     */
+    public TagFilter getTagFilter() {
+        return factory.getTagFilter();
+    }
+
+    /**
+     * Only list the notes that match a tag filter.  The paged list is reloaded from the
+     * first page.
+     *
+     * @param filter the filter, or null to list every note
+     */
+    public void setTagFilter(TagFilter filter) {
+        factory.setTagFilter(filter);
+        NotesDataSource source = dataSource.getValue();
+        if (source != null) source.invalidate();
+    }
+
+    /**
+     * The number of data sources of the list that have not been garbage collected.  Each
+     * refresh replaces the data source, so this should stay small once a GC has run.
+     */
+    public int getLiveDataSourceCount() {
+        return factory.getLiveDataSourceCount();
+    }
+
     /**
      * API operation to create an item in the data store
      */
@@ -56,6 +203,13 @@ public class NotesRepository {
         dataSource.getValue().updateItem(note, callback);
     }
 
+    /**
+     * API operation to change the title of an item in the data store
+     */
+    public void updateTitle(String noteId, String title, ResultCallback<Boolean> callback) {
+        dataSource.getValue().updateItemTitle(noteId, title, callback);
+    }
+
     /**
      * API operation to delete an item from the data store
      */
@@ -64,9 +218,163 @@ public class NotesRepository {
     }
 
     /**
-     * API operation to get an item from the data store
+     * API operation to delete several items from the data store, refreshing the list once
+     */
+    public void delete(Collection<String> noteIds, ResultCallback<Integer> callback) {
+        dataSource.getValue().deleteItems(noteIds, callback);
+    }
+
+    /**
+     * API operation to get an item from the data store.  Gets made close together are
+     * sent as one call; see {@link NoteLoader}.
+     *
+     * @return a handle on the get; cancelling it drops the result
+     */
+    public RequestGroup get(String noteId, ResultCallback<Note> callback) {
+        return noteLoader.load(noteId, callback);
+    }
+
+    /**
+     * API operation to get an item from the data store for a screen that is opening.  The
+     * result is dropped if the owner is cancelled first.  Gets made close together are
+     * sent as one call; see {@link NoteLoader}.
+     */
+    public void get(String noteId, RequestGroup owner, ResultCallback<Note> callback) {
+        noteLoader.load(noteId, owner, callback);
+    }
+
+    /**
+     * API operation to get a range of the content of an item from the data store
+     *
+     * @return a handle on the get; cancelling it drops the result
+     */
+    public RequestGroup getContent(String noteId, int start, int count, ResultCallback<String> callback) {
+        return dataSource.getValue().getItemContent(noteId, start, count, callback);
+    }
+
+    /**
+     * API operation to get a range of the content of an item for a screen that is opening.
+     * The result is dropped if the owner is cancelled first.
+     */
+    public void getContent(String noteId, int start, int count, RequestGroup owner, ResultCallback<String> callback) {
+        dataSource.getValue().getItemContent(noteId, start, count, owner, callback);
+    }
+
+    /**
+     * API operation to replace a range of the content of an item in the data store
+     */
+    public void updateContent(String noteId, int start, int end, CharSequence replacement, ResultCallback<Boolean> callback) {
+        dataSource.getValue().updateItemContent(noteId, start, end, replacement, callback);
+    }
+
+    /**
+     * The store that holds the bytes of attachments, or null if there is none
+     */
+    public BlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    /**
+     * Attach a file to a note.  The file is copied into the blob store a chunk at a time,
+     * then added to the note, and the list is refreshed.  This blocks while the file is
+     * copied, so do not call it on the main thread.
+     *
+     * @param in the bytes of the file; read to the end but not closed
+     * @param callback the new attachment, or null if the note could not be updated
      */
-    public void get(String noteId, ResultCallback<Note> callback) {
-        dataSource.getValue().getItem(noteId, callback);
+    public void addAttachment(String noteId, InputStream in, String fileName, String mimeType, ResultCallback<Attachment> callback) throws IOException {
+        if (blobStore == null) throw new IllegalStateException("No blob store for attachments");
+        final Attachment attachment = blobStore.write(in, fileName, mimeType);
+        dataService.addAttachment(noteId, attachment, (Boolean result) -> {
+            if (!result) {
+                // Nothing refers to the stored bytes, so don't keep them
+                blobDeleter.execute(() -> blobStore.delete(attachment.getBlobId()));
+                callback.onResult(null);
+                return;
+            }
+            NotesDataSource source = dataSource.getValue();
+            if (source != null) source.invalidate();
+            callback.onResult(attachment);
+        });
+    }
+
+    /**
+     * Remove an attachment from a note, then refresh the list.  The bytes are deleted from
+     * the blob store once the note no longer refers to them.
+     */
+    public void removeAttachment(String noteId, String blobId, ResultCallback<Boolean> callback) {
+        dataService.removeAttachment(noteId, blobId, (Boolean result) -> {
+            if (result) {
+                if (blobStore != null) blobDeleter.execute(() -> blobStore.delete(blobId));
+                NotesDataSource source = dataSource.getValue();
+                if (source != null) source.invalidate();
+            }
+            callback.onResult(result);
+        });
+    }
+
+    /**
+     * Import notes from a JSON archive, then refresh the list.  This blocks until the
+     * import is done, so do not call it on the main thread.
+     *
+     * @see NoteArchive#importNotes(InputStream, long, NoteArchive.ProgressListener)
+     */
+    public long importNotes(InputStream in, long skip, NoteArchive.ProgressListener listener) throws IOException {
+        try {
+            return new NoteArchive(dataService).importNotes(in, skip, listener);
+        } finally {
+            // Some notes may have been stored even if the import failed part way
+            NotesDataSource source = dataSource.getValue();
+            if (source != null) source.invalidate();
+        }
+    }
+
+    /**
+     * Export all notes to a JSON archive.  This blocks until the export is done, so do
+     * not call it on the main thread.
+     *
+     * @see NoteArchive#exportNotes(OutputStream, NoteArchive.ProgressListener)
+     */
+    public long exportNotes(OutputStream out, NoteArchive.ProgressListener listener) throws IOException {
+        return new NoteArchive(dataService).exportNotes(out, listener);
+    }
+
+    /**
+     * The estimated size of the loaded pages of the current list, in bytes
+     */
+    @Override
+    public long getSizeBytes() {
+        PagedList<Note> list = pagedList.getValue();
+        return (list == null) ? 0 : estimateSize(list);
+    }
+
+    /**
+     * Once the app is in the background, drop the loaded pages of the list.  The list is
+     * loaded again from the first page when it is next observed.
+     */
+    @Override
+    public long trimMemory(int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) return 0;
+        PagedList<Note> list = pagedList.getValue();
+        if (list == null) return 0;
+
+        long released = estimateSize(list);
+        // The paged list LiveData keeps its last list until it is observed again, so
+        // replace it with a new one rather than just invalidating the data source
+        pagedList.removeSource(pagedListSource);
+        NotesDataSource source = dataSource.getValue();
+        if (source != null) source.invalidate();
+        pagedList.setValue(null);
+        attachPagedListSource();
+        return released;
+    }
+
+    private static long estimateSize(PagedList<Note> list) {
+        long bytes = 0;
+        for (Note note : list.snapshot()) {
+            if (note == null) continue;
+            bytes += NOTE_OVERHEAD_BYTES + 2L * (note.getTitle().length() + note.getContentBody().length());
+        }
+        return bytes;
     }
 }
@@ -0,0 +1,155 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services;
+
+import android.support.v4.util.Pools;
+
+/**
+ * A reusable analytics event.  Events are obtained from a small pool, filled in with
+ * interned keys and primitive metric values, and handed to
+ * {@link AnalyticsService#recordEvent(AnalyticsEvent)}, which recycles them.  In steady
+ * state recording an event this way does not allocate.
+ *
+ * <pre>
+ *     analyticsService.recordEvent(AnalyticsEvent.obtain(EVENT)
+ *             .putAttribute(TWO_PANE, twoPane ? "true" : "false")
+ *             .putMetric(ELAPSED_MS, elapsed));
+ * </pre>
+ */
+public final class AnalyticsEvent {
+    /**
+     * The maximum number of attributes that can be attached to a single event
+     */
+    public static final int MAX_ATTRIBUTES = 8;
+
+    /**
+     * The maximum number of metrics (double and long together) that can be attached to a single event
+     */
+    public static final int MAX_METRICS = 8;
+
+    private static final Pools.SynchronizedPool<AnalyticsEvent> pool = new Pools.SynchronizedPool<>(16);
+
+    private AnalyticsKey name;
+    private final AnalyticsKey[] attributeKeys = new AnalyticsKey[MAX_ATTRIBUTES];
+    private final String[] attributeValues = new String[MAX_ATTRIBUTES];
+    private int attributeCount;
+    private final AnalyticsKey[] metricKeys = new AnalyticsKey[MAX_METRICS];
+    private final double[] doubleValues = new double[MAX_METRICS];
+    private final long[] longValues = new long[MAX_METRICS];
+    private final boolean[] isLong = new boolean[MAX_METRICS];
+    private int metricCount;
+
+    private AnalyticsEvent() {
+    }
+
+    /**
+     * Obtain an empty event from the pool.
+     *
+     * @param name the event name
+     * @return an event that must be passed to recordEvent() or recycled
+     */
+    public static AnalyticsEvent obtain(AnalyticsKey name) {
+        if (name == null) throw new IllegalArgumentException("name must not be null");
+
+        AnalyticsEvent event = pool.acquire();
+        if (event == null) event = new AnalyticsEvent();
+        event.name = name;
+        return event;
+    }
+
+    /**
+     * Clear the event and return it to the pool.  The event must not be used afterwards.
+     */
+    public void recycle() {
+        for (int i = 0 ; i < attributeCount ; i++) {
+            attributeKeys[i] = null;
+            attributeValues[i] = null;
+        }
+        for (int i = 0 ; i < metricCount ; i++) {
+            metricKeys[i] = null;
+        }
+        name = null;
+        attributeCount = 0;
+        metricCount = 0;
+        pool.release(this);
+    }
+
+    public AnalyticsEvent putAttribute(AnalyticsKey key, String value) {
+        if (attributeCount == MAX_ATTRIBUTES) throw new IllegalStateException("Too many attributes");
+        attributeKeys[attributeCount] = key;
+        attributeValues[attributeCount] = value;
+        attributeCount++;
+        return this;
+    }
+
+    public AnalyticsEvent putMetric(AnalyticsKey key, double value) {
+        if (metricCount == MAX_METRICS) throw new IllegalStateException("Too many metrics");
+        metricKeys[metricCount] = key;
+        doubleValues[metricCount] = value;
+        isLong[metricCount] = false;
+        metricCount++;
+        return this;
+    }
+
+    public AnalyticsEvent putMetric(AnalyticsKey key, long value) {
+        if (metricCount == MAX_METRICS) throw new IllegalStateException("Too many metrics");
+        metricKeys[metricCount] = key;
+        longValues[metricCount] = value;
+        isLong[metricCount] = true;
+        metricCount++;
+        return this;
+    }
+
+    public AnalyticsKey getName() {
+        return name;
+    }
+
+    public int getAttributeCount() {
+        return attributeCount;
+    }
+
+    public AnalyticsKey getAttributeKey(int index) {
+        return attributeKeys[index];
+    }
+
+    public String getAttributeValue(int index) {
+        return attributeValues[index];
+    }
+
+    public int getMetricCount() {
+        return metricCount;
+    }
+
+    public AnalyticsKey getMetricKey(int index) {
+        return metricKeys[index];
+    }
+
+    /**
+     * @return true if the metric at this index was recorded as a long
+     */
+    public boolean isLongMetric(int index) {
+        return isLong[index];
+    }
+
+    public double getDoubleMetric(int index) {
+        return isLong[index] ? (double) longValues[index] : doubleValues[index];
+    }
+
+    public long getLongMetric(int index) {
+        return isLong[index] ? longValues[index] : (long) doubleValues[index];
+    }
+}
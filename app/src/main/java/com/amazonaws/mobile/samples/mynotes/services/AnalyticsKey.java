@@ -0,0 +1,73 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An interned name for an analytics event, attribute or metric.  Keys are meant to be
+ * created once (usually as a static final field) and then compared by identity, so
+ * recording an event never needs to build or hash a String.
+ */
+public final class AnalyticsKey {
+    private static final ConcurrentHashMap<String, AnalyticsKey> keys = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextId = new AtomicInteger(0);
+
+    private final String name;
+    private final int id;
+
+    private AnalyticsKey(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * Returns the interned key for the given name.  Calling this twice with the same
+     * name returns the same object.
+     *
+     * @param name the name of the event, attribute or metric
+     * @return the interned key
+     */
+    public static AnalyticsKey of(String name) {
+        if (name == null || name.isEmpty()) throw new IllegalArgumentException("name must not be empty");
+
+        AnalyticsKey key = keys.get(name);
+        if (key == null) {
+            AnalyticsKey newKey = new AnalyticsKey(name, nextId.getAndIncrement());
+            key = keys.putIfAbsent(name, newKey);
+            if (key == null) key = newKey;
+        }
+        return key;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * A small, dense, process-unique number for the key.  Useful for indexing arrays.
+     */
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -16,6 +16,7 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 package com.amazonaws.mobile.samples.mynotes.services;
 
+import java.util.HashMap;
 import java.util.Map;
 
 public interface AnalyticsService {
@@ -37,4 +38,93 @@ public interface AnalyticsService {
      * @param metrics a list of key-value pairs for recording numeric metrics
      */
     void recordEvent(String eventName, Map<String,String> attributes, Map<String,Double> metrics);
+
+    /**
+     * Record a custom event that was obtained from {@link AnalyticsEvent#obtain(AnalyticsKey)}.
+     * The event is recycled once it has been recorded, so it must not be used afterwards.
+     *
+     * The default implementation copies the event into maps and calls the map-based
+     * recordEvent().  Implementations should override this if they want hot paths to be
+     * allocation-free.
+     *
+     * @param event the event to record
+     */
+    default void recordEvent(AnalyticsEvent event) {
+        HashMap<String,String> attributes = new HashMap<>();
+        for (int i = 0 ; i < event.getAttributeCount() ; i++) {
+            attributes.put(event.getAttributeKey(i).getName(), event.getAttributeValue(i));
+        }
+        HashMap<String,Double> metrics = new HashMap<>();
+        for (int i = 0 ; i < event.getMetricCount() ; i++) {
+            metrics.put(event.getMetricKey(i).getName(), event.getDoubleMetric(i));
+        }
+        String eventName = event.getName().getName();
+        event.recycle();
+        recordEvent(eventName, attributes, metrics);
+    }
+
+    /**
+     * Add a delta to a session-level counter.  Implementations that aggregate (see
+     * {@link MetricsAggregator}) emit one summary per counter when the session stops; the
+     * default implementation records an individual event.
+     *
+     * @param eventName the event the counter belongs to
+     * @param metric the counter name
+     * @param delta the amount to add
+     */
+    default void incrementCounter(AnalyticsKey eventName, AnalyticsKey metric, long delta) {
+        recordEvent(AnalyticsEvent.obtain(eventName).putMetric(metric, delta));
+    }
+
+    /**
+     * Set the value of a session-level gauge.
+     *
+     * @param eventName the event the gauge belongs to
+     * @param metric the gauge name
+     * @param value the current value
+     */
+    default void recordGauge(AnalyticsKey eventName, AnalyticsKey metric, double value) {
+        recordEvent(AnalyticsEvent.obtain(eventName).putMetric(metric, value));
+    }
+
+    /**
+     * Add a sample to a session-level histogram (e.g. a timing in milliseconds).
+     *
+     * @param eventName the event the histogram belongs to
+     * @param metric the histogram name
+     * @param value the sample
+     */
+    default void recordHistogram(AnalyticsKey eventName, AnalyticsKey metric, double value) {
+        recordEvent(AnalyticsEvent.obtain(eventName).putMetric(metric, value));
+    }
+
+    /**
+     * Add a delta to a session-level counter that is broken down by an attribute.  Each
+     * value of the attribute is aggregated (and emitted) separately.
+     *
+     * @param eventName the event the counter belongs to
+     * @param attribute the attribute the counter is broken down by
+     * @param attributeValue the value of the attribute for this delta
+     * @param metric the counter name
+     * @param delta the amount to add
+     */
+    default void incrementCounter(AnalyticsKey eventName, AnalyticsKey attribute, String attributeValue, AnalyticsKey metric, long delta) {
+        recordEvent(AnalyticsEvent.obtain(eventName).putAttribute(attribute, attributeValue).putMetric(metric, delta));
+    }
+
+    /**
+     * Set the value of a session-level gauge for one value of an attribute.  See
+     * {@link #incrementCounter(AnalyticsKey, AnalyticsKey, String, AnalyticsKey, long)}.
+     */
+    default void recordGauge(AnalyticsKey eventName, AnalyticsKey attribute, String attributeValue, AnalyticsKey metric, double value) {
+        recordEvent(AnalyticsEvent.obtain(eventName).putAttribute(attribute, attributeValue).putMetric(metric, value));
+    }
+
+    /**
+     * Add a sample to a session-level histogram for one value of an attribute.  See
+     * {@link #incrementCounter(AnalyticsKey, AnalyticsKey, String, AnalyticsKey, long)}.
+     */
+    default void recordHistogram(AnalyticsKey eventName, AnalyticsKey attribute, String attributeValue, AnalyticsKey metric, double value) {
+        recordEvent(AnalyticsEvent.obtain(eventName).putAttribute(attribute, attributeValue).putMetric(metric, value));
+    }
 }
@@ -0,0 +1,348 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A data service that runs every call of another data service on a background thread,
+ * and delivers the results on a callback executor (the main thread by default).  This
+ * makes any data service - including ones that answer synchronously, like the mock -
+ * keep the "async, on a background thread" contract of {@link DataService}.
+ *
+ * Calls go to one of two bounded pools: an I/O pool for calls that wait on the backend,
+ * and a CPU pool for calls that spend their time compressing or decompressing note
+ * content.  Work is never run on the calling thread; if a pool's queue is full, a read
+ * fails (with the operation's failure result) instead.  Writes are queued whatever the
+ * depth, so that prefetches can never crowd out a user's edit.  A call that throws also
+ * fails with the failure result.  The queue depth at submission and the time each call
+ * waited in the queue are recorded as histograms through the analytics service.
+ *
+ * Queued calls run in {@link RequestPriority} order (first come, first served within a
+ * priority).  Views returned by withPriority() share the pools and tag their calls with
+ * a priority and, optionally, a {@link RequestGroup}: calls of a cancelled group are
+ * skipped if they have not started, and their results are dropped if they have.  Both
+ * are counted, as a measure of work wasted on requests nobody wanted any more.
+ *
+ * The number of calls that have been made but not yet answered is kept, across all the
+ * views, so that a test or soak run can check that every call eventually completes.
+ */
+public class AsyncDataService implements DataService {
+    private static final String TAG = "AsyncDataService";
+    private static final AnalyticsKey EVENT_NAME = AnalyticsKey.of("DataServiceExecution");
+    private static final AnalyticsKey METRIC_REJECTED = AnalyticsKey.of("rejected");
+    private static final AnalyticsKey METRIC_SKIPPED = AnalyticsKey.of("cancelledBeforeRun");
+    private static final AnalyticsKey METRIC_DROPPED = AnalyticsKey.of("droppedResults");
+    private static final AnalyticsKey METRIC_FAILED = AnalyticsKey.of("failedCalls");
+
+    private static final int IO_THREADS = 4;
+    private static final int IO_QUEUE_SIZE = 256;
+    private static final int CPU_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final int CPU_QUEUE_SIZE = 64;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /**
+     * One of the two call pools, with its metrics
+     */
+    private static class Pool {
+        final ThreadPoolExecutor executor;
+        final int queueSize;
+        final AnalyticsKey queueDepthMetric;
+        final AnalyticsKey waitMetric;
+
+        Pool(final String name, int threads, int queueSize) {
+            this.queueSize = queueSize;
+            final AtomicInteger count = new AtomicInteger(0);
+            ThreadFactory factory = (Runnable runnable) -> {
+                Thread thread = new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "DataService-" + name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<Runnable>(), factory);
+            executor.allowCoreThreadTimeOut(true);
+            queueDepthMetric = AnalyticsKey.of(name + "QueueDepth");
+            waitMetric = AnalyticsKey.of(name + "WaitMs");
+        }
+    }
+
+    /**
+     * A queued call, ordered by priority and then by submission order
+     */
+    private static class Task implements Runnable, Comparable<Task> {
+        private static final AtomicLong submitted = new AtomicLong(0);
+
+        private final int priority;
+        private final long sequence = submitted.incrementAndGet();
+        private final Runnable body;
+
+        Task(RequestPriority priority, Runnable body) {
+            this.priority = priority.ordinal();
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            body.run();
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (priority != other.priority) return priority < other.priority ? -1 : 1;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * A call on the wrapped data service
+     */
+    private interface Call<T> {
+        void invoke(ResultCallback<T> callback);
+    }
+
+    private final DataService delegate;
+    private final AnalyticsService analyticsService;
+    private final Executor callbackExecutor;
+    private final Pool ioPool;
+    private final Pool cpuPool;
+    private final RequestPriority priority;
+    private final RequestGroup group;
+    private final AtomicInteger outstandingCalls;
+
+    /**
+     * Wrap a data service, delivering results on the main thread
+     */
+    public AsyncDataService(DataService delegate, AnalyticsService analyticsService) {
+        this(delegate, analyticsService, new Executor() {
+            private final Handler handler = new Handler(Looper.getMainLooper());
+
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        });
+    }
+
+    /**
+     * Wrap a data service, delivering results on the given executor
+     */
+    public AsyncDataService(DataService delegate, AnalyticsService analyticsService, Executor callbackExecutor) {
+        this.delegate = delegate;
+        this.analyticsService = analyticsService;
+        this.callbackExecutor = callbackExecutor;
+        this.ioPool = new Pool("io", IO_THREADS, IO_QUEUE_SIZE);
+        this.cpuPool = new Pool("cpu", CPU_THREADS, CPU_QUEUE_SIZE);
+        this.priority = RequestPriority.NORMAL;
+        this.group = null;
+        this.outstandingCalls = new AtomicInteger(0);
+    }
+
+    /**
+     * A view of another AsyncDataService that shares its pools
+     */
+    private AsyncDataService(AsyncDataService parent, RequestPriority priority, RequestGroup group) {
+        this.delegate = parent.delegate;
+        this.analyticsService = parent.analyticsService;
+        this.callbackExecutor = parent.callbackExecutor;
+        this.ioPool = parent.ioPool;
+        this.cpuPool = parent.cpuPool;
+        this.priority = priority;
+        this.group = group;
+        this.outstandingCalls = parent.outstandingCalls;
+    }
+
+    /**
+     * The number of calls, through this service or any of its views, whose result has not
+     * been delivered or dropped yet.  A call that is skipped because its group was
+     * cancelled counts as done.
+     */
+    public int getOutstandingCalls() {
+        return outstandingCalls.get();
+    }
+
+    @Override
+    public DataService withPriority(RequestPriority priority, RequestGroup group) {
+        return new AsyncDataService(this, priority, group);
+    }
+
+    @Override
+    public void loadNotes(int limit, String after, ResultCallback<PagedListConnectionResponse<Note>> callback) {
+        execute(ioPool, null, callback, (ResultCallback<PagedListConnectionResponse<Note>> done) -> delegate.loadNotes(limit, after, done));
+    }
+
+    @Override
+    public void loadNotes(int limit, String after, TagFilter filter, ResultCallback<PagedListConnectionResponse<Note>> callback) {
+        execute(ioPool, null, callback, (ResultCallback<PagedListConnectionResponse<Note>> done) -> delegate.loadNotes(limit, after, filter, done));
+    }
+
+    @Override
+    public void getNote(String noteId, ResultCallback<Note> callback) {
+        execute(ioPool, null, callback, (ResultCallback<Note> done) -> delegate.getNote(noteId, done));
+    }
+
+    @Override
+    public void getNotes(Collection<String> noteIds, ResultCallback<Map<String, Note>> callback) {
+        execute(ioPool, null, callback, (ResultCallback<Map<String, Note>> done) -> delegate.getNotes(noteIds, done));
+    }
+
+    @Override
+    public void createNote(String title, String content, ResultCallback<Note> callback) {
+        executeWrite(ioPool, null, callback, (ResultCallback<Note> done) -> delegate.createNote(title, content, done));
+    }
+
+    @Override
+    public void updateNote(Note note, ResultCallback<Note> callback) {
+        executeWrite(ioPool, null, callback, (ResultCallback<Note> done) -> delegate.updateNote(note, done));
+    }
+
+    @Override
+    public void deleteNote(String noteId, ResultCallback<Boolean> callback) {
+        executeWrite(ioPool, false, callback, (ResultCallback<Boolean> done) -> delegate.deleteNote(noteId, done));
+    }
+
+    @Override
+    public void updateTitle(String noteId, String title, ResultCallback<Boolean> callback) {
+        executeWrite(ioPool, false, callback, (ResultCallback<Boolean> done) -> delegate.updateTitle(noteId, title, done));
+    }
+
+    @Override
+    public void loadContent(String noteId, int start, int count, ResultCallback<String> callback) {
+        execute(cpuPool, null, callback, (ResultCallback<String> done) -> delegate.loadContent(noteId, start, count, done));
+    }
+
+    @Override
+    public void updateContent(String noteId, int start, int end, CharSequence replacement, ResultCallback<Boolean> callback) {
+        // Copy the replacement, since the caller may keep editing it while the call is queued
+        final String text = replacement.toString();
+        executeWrite(cpuPool, false, callback, (ResultCallback<Boolean> done) -> delegate.updateContent(noteId, start, end, text, done));
+    }
+
+    @Override
+    public void addAttachment(String noteId, Attachment attachment, ResultCallback<Boolean> callback) {
+        executeWrite(ioPool, false, callback, (ResultCallback<Boolean> done) -> delegate.addAttachment(noteId, attachment, done));
+    }
+
+    @Override
+    public void removeAttachment(String noteId, String blobId, ResultCallback<Boolean> callback) {
+        executeWrite(ioPool, false, callback, (ResultCallback<Boolean> done) -> delegate.removeAttachment(noteId, blobId, done));
+    }
+
+    @Override
+    public void createNotes(List<Note> notes, ResultCallback<Integer> callback) {
+        executeWrite(ioPool, 0, callback, (ResultCallback<Integer> done) -> delegate.createNotes(notes, done));
+    }
+
+    @Override
+    public void deleteNotes(Collection<String> noteIds, ResultCallback<Integer> callback) {
+        executeWrite(ioPool, 0, callback, (ResultCallback<Integer> done) -> delegate.deleteNotes(noteIds, done));
+    }
+
+    /**
+     * Queue a call on a pool.  The result is passed to the callback on the callback executor.
+     *
+     * @param pool the pool to run the call on
+     * @param failure the result to deliver if the call can't be queued, or throws
+     * @param callback the caller's callback
+     * @param call the call on the wrapped data service
+     */
+    private <T> void execute(final Pool pool, final T failure, final ResultCallback<T> callback, final Call<T> call) {
+        submit(pool, true, failure, callback, call);
+    }
+
+    /**
+     * Queue a write on a pool.  Writes are not subject to the queue bound.
+     */
+    private <T> void executeWrite(final Pool pool, final T failure, final ResultCallback<T> callback, final Call<T> call) {
+        submit(pool, false, failure, callback, call);
+    }
+
+    private <T> void submit(final Pool pool, final boolean bounded, final T failure, final ResultCallback<T> callback, final Call<T> call) {
+        final RequestGroup owner = group;
+        final long queuedAt = System.nanoTime();
+        outstandingCalls.incrementAndGet();
+        Task task = new Task(priority, () -> {
+            if (owner != null && owner.isCancelled()) {
+                analyticsService.incrementCounter(EVENT_NAME, METRIC_SKIPPED, 1);
+                outstandingCalls.decrementAndGet();
+                return;
+            }
+            analyticsService.recordHistogram(EVENT_NAME, pool.waitMetric, (System.nanoTime() - queuedAt) / NANOS_PER_MILLI);
+            // A delegate that throws after answering must not be answered for twice
+            final AtomicBoolean answered = new AtomicBoolean(false);
+            try {
+                call.invoke((T result) -> {
+                    if (answered.compareAndSet(false, true)) deliver(owner, callback, result);
+                });
+            } catch (RuntimeException error) {
+                Log.w(TAG, "Data service call failed", error);
+                analyticsService.incrementCounter(EVENT_NAME, METRIC_FAILED, 1);
+                if (answered.compareAndSet(false, true)) deliver(owner, callback, failure);
+            }
+        });
+
+        try {
+            // The priority queue is unbounded, so enforce the bound here
+            int depth = pool.executor.getQueue().size();
+            if (bounded && depth >= pool.queueSize) throw new RejectedExecutionException();
+            pool.executor.execute(task);
+            analyticsService.recordHistogram(EVENT_NAME, pool.queueDepthMetric, depth + 1);
+        } catch (RejectedExecutionException error) {
+            Log.w(TAG, "Data service queue is full; failing the call");
+            analyticsService.incrementCounter(EVENT_NAME, METRIC_REJECTED, 1);
+            deliver(owner, callback, failure);
+        }
+    }
+
+    /**
+     * Pass a result to the callback on the callback executor, unless the owner has gone away
+     */
+    private <T> void deliver(final RequestGroup owner, final ResultCallback<T> callback, final T result) {
+        callbackExecutor.execute(() -> {
+            outstandingCalls.decrementAndGet();
+            if (owner != null && owner.isCancelled()) {
+                analyticsService.incrementCounter(EVENT_NAME, METRIC_DROPPED, 1);
+                return;
+            }
+            callback.onResult(result);
+        });
+    }
+}
@@ -0,0 +1,62 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Storage for the bytes of attachments, kept apart from the notes so that loading a note
+ * (or a page of notes) never loads what is attached to it.  A note only holds the
+ * {@link Attachment} descriptions; the bytes are written and read here as streams, so an
+ * attachment is never held in memory in one piece.
+ *
+ * Every call does I/O and blocks until it is done, so do not call them on the main thread.
+ */
+public interface BlobStore {
+    /**
+     * Copy a stream into the store.  The stream is read to the end but not closed.
+     *
+     * @param in the bytes to store
+     * @param fileName the name to show for the attachment
+     * @param mimeType the type of the bytes, such as "image/jpeg"
+     * @return the description of the stored attachment
+     */
+    Attachment write(InputStream in, String fileName, String mimeType) throws IOException;
+
+    /**
+     * Open a stored blob for reading.  The caller must close the stream.
+     *
+     * @param blobId the ID from {@link Attachment#getBlobId()}
+     * @throws java.io.FileNotFoundException if there is no such blob
+     */
+    InputStream open(String blobId) throws IOException;
+
+    /**
+     * The size of a stored blob in bytes, or -1 if there is no such blob
+     */
+    long size(String blobId);
+
+    /**
+     * Remove a blob from the store
+     *
+     * @return true if the blob was there
+     */
+    boolean delete(String blobId);
+}
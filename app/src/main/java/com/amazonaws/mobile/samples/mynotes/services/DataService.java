@@ -16,9 +16,21 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 package com.amazonaws.mobile.samples.mynotes.services;
 
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
 import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
 import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
 import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Definition of a data service.  This maps to an API definition on the cloud backend.
@@ -34,6 +46,41 @@ public interface DataService {
      */
     void loadNotes(int limit, String after, ResultCallback<PagedListConnectionResponse<Note>> callback);
 
+    /**
+     * Load a single page of the notes that match a tag filter.  A page may hold fewer
+     * notes than the limit even when there are more to come; only a null next token marks
+     * the end of the list.
+     *
+     * The default implementation loads pages of the unfiltered list and filters them,
+     * loading further pages until it finds a match or reaches the end.
+     *
+     * @param limit the requested number of items
+     * @param after the "next token" from a prior call with the same filter
+     * @param filter the tags that the notes must match, or null for every note
+     * @param callback the response from the server
+     */
+    default void loadNotes(int limit, String after, TagFilter filter, ResultCallback<PagedListConnectionResponse<Note>> callback) {
+        if (filter == null) {
+            loadNotes(limit, after, callback);
+            return;
+        }
+        loadNotes(limit, after, (PagedListConnectionResponse<Note> result) -> {
+            if (result == null) {
+                callback.onResult(null);
+                return;
+            }
+            List<Note> matches = new ArrayList<>();
+            for (Note note : result.getItems()) {
+                if (filter.matches(note.getTags())) matches.add(note);
+            }
+            if (matches.isEmpty() && result.getNextToken() != null) {
+                loadNotes(limit, result.getNextToken(), filter, callback);
+            } else {
+                callback.onResult(new PagedListConnectionResponse<>(matches, result.getNextToken()));
+            }
+        });
+    }
+
     /**
      * Load a single note
      *
@@ -42,6 +89,30 @@ public interface DataService {
      */
     void getNote(String noteId, ResultCallback<Note> callback);
 
+    /**
+     * Load several notes in one call.  Notes that do not exist are left out of the result.
+     *
+     * The default implementation calls getNote() for each note.
+     *
+     * @param noteIds the IDs of the notes to load
+     * @param callback the response from the server (the notes by ID; null would indicate
+     *                 that the operation failed)
+     */
+    default void getNotes(Collection<String> noteIds, ResultCallback<Map<String, Note>> callback) {
+        if (noteIds.isEmpty()) {
+            callback.onResult(Collections.<String, Note>emptyMap());
+            return;
+        }
+        final Map<String, Note> notes = new ConcurrentHashMap<>();
+        final AtomicInteger remaining = new AtomicInteger(noteIds.size());
+        for (String noteId : noteIds) {
+            getNote(noteId, (Note note) -> {
+                if (note != null) notes.put(noteId, note);
+                if (remaining.decrementAndGet() == 0) callback.onResult(notes);
+            });
+        }
+    }
+
     /**
      * Create a new note a note to the backing store
      *
@@ -67,4 +138,205 @@ public interface DataService {
      */
     void deleteNote(String noteId, ResultCallback<Boolean> callback);
 
+    /**
+     * Change the title of a note, leaving the content alone.
+     *
+     * The default implementation loads the note and updates it with the new title.
+     *
+     * @param noteId the ID of the note
+     * @param title the new title
+     * @param callback the response from the server (Boolean = true indicates success)
+     */
+    default void updateTitle(String noteId, String title, ResultCallback<Boolean> callback) {
+        getNote(noteId, (Note note) -> {
+            if (note == null) {
+                callback.onResult(false);
+                return;
+            }
+            Note updated = new Note(noteId, title, note.getContentBody());
+            updated.setTags(note.getTags());
+            updated.setAttachments(note.getAttachments());
+            updateNote(updated, (Note result) -> callback.onResult(result != null));
+        });
+    }
+
+    /**
+     * Load a range of the content of a note.  Large notes can be loaded a piece at a time
+     * by calling this until it returns fewer characters than were asked for.
+     *
+     * The default implementation loads the whole note and returns the requested range.
+     *
+     * @param noteId the ID of the note
+     * @param start the first character to load
+     * @param count the maximum number of characters to load
+     * @param callback the response from the server (null if the note does not exist)
+     */
+    default void loadContent(String noteId, int start, int count, ResultCallback<String> callback) {
+        getNote(noteId, (Note note) -> {
+            if (note == null) {
+                callback.onResult(null);
+            } else {
+                NoteContent content = note.getContentBody();
+                callback.onResult(start >= content.length() ? "" : content.read(start, count));
+            }
+        });
+    }
+
+    /**
+     * Replace a range of the content of a note without sending the whole note.
+     *
+     * The default implementation loads the whole note, edits it and updates it.
+     *
+     * @param noteId the ID of the note
+     * @param start the first character to replace
+     * @param end the character after the last one to replace
+     * @param replacement the new text for the range
+     * @param callback the response from the server (Boolean = true indicates success)
+     */
+    default void updateContent(String noteId, int start, int end, CharSequence replacement, ResultCallback<Boolean> callback) {
+        getNote(noteId, (Note note) -> {
+            if (note == null) {
+                callback.onResult(false);
+                return;
+            }
+            NoteContent content = new NoteContent(note.getContentBody());
+            content.replace(start, end, replacement);
+            Note updated = new Note(noteId, note.getTitle(), content);
+            updated.setTags(note.getTags());
+            updated.setAttachments(note.getAttachments());
+            updateNote(updated, (Note result) -> callback.onResult(result != null));
+        });
+    }
+
+    /**
+     * Attach a file to a note.  The bytes must already be in the blob store; only the
+     * description is stored with the note.
+     *
+     * The default implementation loads the note and updates it with the attachment added.
+     *
+     * @param noteId the ID of the note
+     * @param attachment the attachment to add at the end of the note's attachments
+     * @param callback the response from the server (Boolean = true indicates success)
+     */
+    default void addAttachment(String noteId, Attachment attachment, ResultCallback<Boolean> callback) {
+        getNote(noteId, (Note note) -> {
+            if (note == null) {
+                callback.onResult(false);
+                return;
+            }
+            List<Attachment> attachments = new ArrayList<>(note.getAttachments());
+            attachments.add(attachment);
+            Note updated = new Note(noteId, note.getTitle(), note.getContentBody());
+            updated.setTags(note.getTags());
+            updated.setAttachments(attachments);
+            updateNote(updated, (Note result) -> callback.onResult(result != null));
+        });
+    }
+
+    /**
+     * Remove an attachment from a note.  The bytes are left in the blob store; deleting
+     * them is up to the caller.
+     *
+     * The default implementation loads the note and updates it without the attachment.
+     *
+     * @param noteId the ID of the note
+     * @param blobId the blob ID of the attachment to remove
+     * @param callback the response from the server (Boolean = true if it was removed)
+     */
+    default void removeAttachment(String noteId, String blobId, ResultCallback<Boolean> callback) {
+        getNote(noteId, (Note note) -> {
+            if (note == null) {
+                callback.onResult(false);
+                return;
+            }
+            List<Attachment> attachments = new ArrayList<>(note.getAttachments());
+            boolean removed = false;
+            for (Iterator<Attachment> i = attachments.iterator() ; i.hasNext() ; ) {
+                if (i.next().getBlobId().equals(blobId)) {
+                    i.remove();
+                    removed = true;
+                }
+            }
+            if (!removed) {
+                callback.onResult(false);
+                return;
+            }
+            Note updated = new Note(noteId, note.getTitle(), note.getContentBody());
+            updated.setTags(note.getTags());
+            updated.setAttachments(attachments);
+            updateNote(updated, (Note result) -> callback.onResult(result != null));
+        });
+    }
+
+    /**
+     * Create several notes in one call.  This is used for bulk imports, where a call per
+     * note would be too slow.
+     *
+     * The default implementation calls createNote() for each note, so the notes get new
+     * IDs.  Implementations that can store the notes directly should keep the IDs of the
+     * notes, replacing any existing note with the same ID, so that a batch can be retried.
+     *
+     * @param notes the notes to create
+     * @param callback the response from the server (the number of notes created)
+     */
+    default void createNotes(List<Note> notes, ResultCallback<Integer> callback) {
+        if (notes.isEmpty()) {
+            callback.onResult(0);
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(notes.size());
+        final AtomicInteger created = new AtomicInteger(0);
+        for (Note note : notes) {
+            createNote(note.getTitle(), note.getContent(), (Note result) -> {
+                if (result != null) created.incrementAndGet();
+                if (remaining.decrementAndGet() == 0) callback.onResult(created.get());
+            });
+        }
+    }
+
+    /**
+     * Delete several notes in one call
+     *
+     * The default implementation calls deleteNote() for each note.
+     *
+     * @param noteIds the IDs of the notes to be deleted
+     * @param callback the response from the server (the number of notes deleted)
+     */
+    default void deleteNotes(Collection<String> noteIds, ResultCallback<Integer> callback) {
+        if (noteIds.isEmpty()) {
+            callback.onResult(0);
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(noteIds.size());
+        final AtomicInteger deleted = new AtomicInteger(0);
+        for (String noteId : noteIds) {
+            deleteNote(noteId, (Boolean result) -> {
+                if (result) deleted.incrementAndGet();
+                if (remaining.decrementAndGet() == 0) callback.onResult(deleted.get());
+            });
+        }
+    }
+
+    /**
+     * A view of this data service whose calls are scheduled at the given priority.
+     *
+     * The default implementation returns this data service unchanged.
+     */
+    default DataService withPriority(RequestPriority priority) {
+        return withPriority(priority, null);
+    }
+
+    /**
+     * A view of this data service whose calls are scheduled at the given priority, and
+     * are cancelled when the group is.
+     *
+     * The default implementation returns this data service unchanged, so calls are neither
+     * prioritized nor cancelled.
+     *
+     * @param priority the priority of calls made through the view
+     * @param group the group that the calls belong to, or null
+     */
+    default DataService withPriority(RequestPriority priority, RequestGroup group) {
+        return this;
+    }
 }
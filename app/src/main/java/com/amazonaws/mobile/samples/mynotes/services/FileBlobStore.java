@@ -0,0 +1,101 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+/**
+ * A blob store that keeps each blob in its own file in a directory on the device.
+ *
+ * Writes are copied a chunk at a time into a temporary file, which is synced and renamed
+ * once complete, so a blob is either all there or not there at all.  Reads hand out a
+ * buffered stream over the file.  Neither direction holds more than a chunk in memory.
+ */
+public class FileBlobStore implements BlobStore {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+
+    public FileBlobStore(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public Attachment write(InputStream in, String fileName, String mimeType) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create " + directory);
+
+        String blobId = UUID.randomUUID().toString();
+        File temp = new File(directory, blobId + TEMP_SUFFIX);
+        long size = 0;
+        boolean complete = false;
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                byte[] chunk = new byte[CHUNK_SIZE];
+                for (int read ; (read = in.read(chunk)) != -1 ; ) {
+                    out.write(chunk, 0, read);
+                    size += read;
+                }
+                out.getFD().sync();
+            }
+            if (!temp.renameTo(fileOf(blobId))) throw new IOException("Could not store " + blobId);
+            complete = true;
+        } finally {
+            if (!complete) temp.delete();
+        }
+        return new Attachment(blobId, fileName, mimeType, size);
+    }
+
+    @Override
+    public InputStream open(String blobId) throws IOException {
+        return new BufferedInputStream(new FileInputStream(fileOf(blobId)), CHUNK_SIZE);
+    }
+
+    @Override
+    public long size(String blobId) {
+        File file = fileOf(blobId);
+        return file.isFile() ? file.length() : -1;
+    }
+
+    @Override
+    public boolean delete(String blobId) {
+        return fileOf(blobId).delete();
+    }
+
+    /**
+     * The file of a blob.  Blob IDs come in with the notes, so anything that is not a
+     * plain ID is refused rather than allowed to name a file outside the directory.
+     */
+    private File fileOf(String blobId) {
+        if (blobId == null || blobId.isEmpty()) throw new IllegalArgumentException("Missing blob ID");
+        for (int i = 0 ; i < blobId.length() ; i++) {
+            char c = blobId.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || c == '-')) {
+                throw new IllegalArgumentException("Invalid blob ID " + blobId);
+            }
+        }
+        return new File(directory, blobId);
+    }
+}
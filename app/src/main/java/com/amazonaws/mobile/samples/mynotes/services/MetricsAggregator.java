@@ -0,0 +1,310 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services;
+
+import android.os.SystemClock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates counters, gauges and histograms in-process so that chatty metrics can be
+ * sent as one summary event per (event, attribute value, metric) instead of one event per
+ * sample.  Recording is lock-free and safe to call from any thread; the aggregates are
+ * emitted through the analytics service on flush(), which is called at the end of a
+ * session and (if configured) whenever the flush interval has elapsed.
+ *
+ * A metric can be broken down by one attribute, such as the screen it was measured on.
+ * Each value of the attribute gets its own aggregate and its own summary event, with the
+ * attribute attached.  A metric is always recorded with the same attribute (or always
+ * without one), and the attribute should only take a handful of values.
+ */
+public class MetricsAggregator {
+    public static final AnalyticsKey ATTR_METRIC = AnalyticsKey.of("metric");
+    public static final AnalyticsKey ATTR_KIND = AnalyticsKey.of("kind");
+    public static final AnalyticsKey METRIC_COUNT = AnalyticsKey.of("count");
+    public static final AnalyticsKey METRIC_VALUE = AnalyticsKey.of("value");
+    public static final AnalyticsKey METRIC_MIN = AnalyticsKey.of("min");
+    public static final AnalyticsKey METRIC_MAX = AnalyticsKey.of("max");
+    public static final AnalyticsKey METRIC_MEAN = AnalyticsKey.of("mean");
+    public static final AnalyticsKey METRIC_P50 = AnalyticsKey.of("p50");
+    public static final AnalyticsKey METRIC_P90 = AnalyticsKey.of("p90");
+    public static final AnalyticsKey METRIC_P99 = AnalyticsKey.of("p99");
+
+    private enum Kind { COUNTER, GAUGE, HISTOGRAM }
+
+    private final AnalyticsService analyticsService;
+    private final long flushIntervalMillis;
+    private final AtomicLong lastFlush;
+    private final ConcurrentHashMap<AnalyticsKey, ConcurrentHashMap<AnalyticsKey, Aggregate>> aggregates = new ConcurrentHashMap<>();
+
+    /**
+     * @param analyticsService the service that receives the summary events
+     * @param flushIntervalMillis how often to flush automatically, or 0 to only flush when asked
+     */
+    public MetricsAggregator(AnalyticsService analyticsService, long flushIntervalMillis) {
+        this.analyticsService = analyticsService;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.lastFlush = new AtomicLong(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Add a delta to a counter
+     */
+    public void incrementCounter(AnalyticsKey eventName, AnalyticsKey metric, long delta) {
+        incrementCounter(eventName, null, null, metric, delta);
+    }
+
+    /**
+     * Add a delta to the counter for one value of an attribute
+     */
+    public void incrementCounter(AnalyticsKey eventName, AnalyticsKey attribute, String attributeValue, AnalyticsKey metric, long delta) {
+        aggregate(eventName, attribute, attributeValue, metric, Kind.COUNTER).count.addAndGet(delta);
+        maybeFlush();
+    }
+
+    /**
+     * Set the current value of a gauge.  Only the last value in each interval is emitted.
+     */
+    public void recordGauge(AnalyticsKey eventName, AnalyticsKey metric, double value) {
+        recordGauge(eventName, null, null, metric, value);
+    }
+
+    /**
+     * Set the current value of the gauge for one value of an attribute
+     */
+    public void recordGauge(AnalyticsKey eventName, AnalyticsKey attribute, String attributeValue, AnalyticsKey metric, double value) {
+        Aggregate aggregate = aggregate(eventName, attribute, attributeValue, metric, Kind.GAUGE);
+        aggregate.last.set(Double.doubleToRawLongBits(value));
+        aggregate.count.incrementAndGet();
+        maybeFlush();
+    }
+
+    /**
+     * Add a sample to a histogram.  Samples should be non-negative (timings, sizes, etc.)
+     */
+    public void recordHistogram(AnalyticsKey eventName, AnalyticsKey metric, double value) {
+        recordHistogram(eventName, null, null, metric, value);
+    }
+
+    /**
+     * Add a sample to the histogram for one value of an attribute
+     */
+    public void recordHistogram(AnalyticsKey eventName, AnalyticsKey attribute, String attributeValue, AnalyticsKey metric, double value) {
+        aggregate(eventName, attribute, attributeValue, metric, Kind.HISTOGRAM).addSample(value);
+        maybeFlush();
+    }
+
+    /**
+     * Emit a summary event for every aggregate that has received data since the last
+     * flush, then reset the aggregates.
+     */
+    public void flush() {
+        lastFlush.set(SystemClock.elapsedRealtime());
+        for (Map.Entry<AnalyticsKey, ConcurrentHashMap<AnalyticsKey, Aggregate>> event : aggregates.entrySet()) {
+            for (Map.Entry<AnalyticsKey, Aggregate> metric : event.getValue().entrySet()) {
+                Aggregate aggregate = metric.getValue();
+                if (aggregate.byValue == null) {
+                    aggregate.emit(analyticsService, event.getKey(), metric.getKey(), null, null);
+                } else {
+                    for (Map.Entry<String, Aggregate> value : aggregate.byValue.entrySet()) {
+                        value.getValue().emit(analyticsService, event.getKey(), metric.getKey(), aggregate.attribute, value.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop everything that has been aggregated so far without emitting it
+     */
+    public void reset() {
+        aggregates.clear();
+        lastFlush.set(SystemClock.elapsedRealtime());
+    }
+
+    private void maybeFlush() {
+        if (flushIntervalMillis <= 0) return;
+        long last = lastFlush.get();
+        long now = SystemClock.elapsedRealtime();
+        // Only the thread that wins the compare-and-set does the flush
+        if (now - last >= flushIntervalMillis && lastFlush.compareAndSet(last, now)) {
+            flush();
+        }
+    }
+
+    private Aggregate aggregate(AnalyticsKey eventName, AnalyticsKey attribute, String attributeValue, AnalyticsKey metric, Kind kind) {
+        ConcurrentHashMap<AnalyticsKey, Aggregate> metrics = aggregates.get(eventName);
+        if (metrics == null) {
+            ConcurrentHashMap<AnalyticsKey, Aggregate> newMetrics = new ConcurrentHashMap<>();
+            metrics = aggregates.putIfAbsent(eventName, newMetrics);
+            if (metrics == null) metrics = newMetrics;
+        }
+
+        Aggregate aggregate = metrics.get(metric);
+        if (aggregate == null) {
+            Aggregate newAggregate = new Aggregate(kind, attribute);
+            aggregate = metrics.putIfAbsent(metric, newAggregate);
+            if (aggregate == null) aggregate = newAggregate;
+        }
+        if (aggregate.kind != kind) {
+            throw new IllegalArgumentException(String.format("%s/%s is already a %s", eventName, metric, aggregate.kind));
+        }
+        if (aggregate.attribute != attribute) {
+            throw new IllegalArgumentException(String.format("%s/%s is broken down by %s", eventName, metric, aggregate.attribute));
+        }
+        return (attribute == null) ? aggregate : aggregate.forValue(attributeValue);
+    }
+
+    /**
+     * A single aggregated metric.  Histograms use log-linear buckets: four buckets per
+     * power of two, which gives percentiles to within about 20% with a fixed amount of
+     * memory and no locking.
+     *
+     * A metric that is broken down by an attribute holds no data itself, only one
+     * aggregate per attribute value.
+     */
+    private static final class Aggregate {
+        private static final int SUB_BUCKETS = 4;
+        private static final int MIN_EXPONENT = -16;
+        private static final int MAX_EXPONENT = 47;
+        private static final int BUCKETS = (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+
+        final Kind kind;
+        final AnalyticsKey attribute;
+        final ConcurrentHashMap<String, Aggregate> byValue;
+        final AtomicLong count = new AtomicLong(0);
+        final AtomicLong last = new AtomicLong(0);
+        final AtomicLong sum;
+        final AtomicLong min;
+        final AtomicLong max;
+        final AtomicLongArray buckets;
+
+        Aggregate(Kind kind, AnalyticsKey attribute) {
+            this.kind = kind;
+            this.attribute = attribute;
+            this.byValue = (attribute == null) ? null : new ConcurrentHashMap<String, Aggregate>();
+            if (kind == Kind.HISTOGRAM && attribute == null) {
+                sum = new AtomicLong(Double.doubleToRawLongBits(0.0));
+                min = new AtomicLong(Double.doubleToRawLongBits(Double.POSITIVE_INFINITY));
+                max = new AtomicLong(Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY));
+                buckets = new AtomicLongArray(BUCKETS);
+            } else {
+                sum = min = max = null;
+                buckets = null;
+            }
+        }
+
+        /**
+         * The aggregate for one value of the attribute
+         */
+        Aggregate forValue(String value) {
+            if (value == null) value = "";
+            Aggregate aggregate = byValue.get(value);
+            if (aggregate == null) {
+                Aggregate newAggregate = new Aggregate(kind, null);
+                aggregate = byValue.putIfAbsent(value, newAggregate);
+                if (aggregate == null) aggregate = newAggregate;
+            }
+            return aggregate;
+        }
+
+        void addSample(double value) {
+            buckets.incrementAndGet(bucketOf(value));
+            count.incrementAndGet();
+            long bits;
+            do {
+                bits = sum.get();
+            } while (!sum.compareAndSet(bits, Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + value)));
+            do {
+                bits = min.get();
+            } while (value < Double.longBitsToDouble(bits) && !min.compareAndSet(bits, Double.doubleToRawLongBits(value)));
+            do {
+                bits = max.get();
+            } while (value > Double.longBitsToDouble(bits) && !max.compareAndSet(bits, Double.doubleToRawLongBits(value)));
+        }
+
+        /**
+         * Emit the aggregate as a single event and reset it.  Samples that race with the
+         * reset land in either this summary or the next one.
+         */
+        void emit(AnalyticsService analyticsService, AnalyticsKey eventName, AnalyticsKey metric, AnalyticsKey attribute, String attributeValue) {
+            long n = count.getAndSet(0);
+            if (n == 0) return;
+
+            AnalyticsEvent event = AnalyticsEvent.obtain(eventName)
+                    .putAttribute(ATTR_METRIC, metric.getName())
+                    .putAttribute(ATTR_KIND, kind.name());
+            if (attribute != null) event.putAttribute(attribute, attributeValue);
+            switch (kind) {
+                case COUNTER:
+                    event.putMetric(METRIC_COUNT, n);
+                    break;
+                case GAUGE:
+                    event.putMetric(METRIC_VALUE, Double.longBitsToDouble(last.get()));
+                    break;
+                case HISTOGRAM:
+                    long[] snapshot = new long[BUCKETS];
+                    long total = 0;
+                    for (int i = 0 ; i < BUCKETS ; i++) {
+                        snapshot[i] = buckets.getAndSet(i, 0);
+                        total += snapshot[i];
+                    }
+                    double sumValue = Double.longBitsToDouble(sum.getAndSet(Double.doubleToRawLongBits(0.0)));
+                    event.putMetric(METRIC_COUNT, n)
+                            .putMetric(METRIC_MIN, Double.longBitsToDouble(min.getAndSet(Double.doubleToRawLongBits(Double.POSITIVE_INFINITY))))
+                            .putMetric(METRIC_MAX, Double.longBitsToDouble(max.getAndSet(Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY))))
+                            .putMetric(METRIC_MEAN, sumValue / n)
+                            .putMetric(METRIC_P50, percentile(snapshot, total, 0.50))
+                            .putMetric(METRIC_P90, percentile(snapshot, total, 0.90))
+                            .putMetric(METRIC_P99, percentile(snapshot, total, 0.99));
+                    break;
+            }
+            analyticsService.recordEvent(event);
+        }
+
+        private static int bucketOf(double value) {
+            if (!(value > 0)) return 0;
+            int exponent = Math.getExponent(value);
+            if (exponent < MIN_EXPONENT) return 0;
+            if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+            // The top two bits of the mantissa select the sub-bucket
+            int subBucket = (int) ((Double.doubleToRawLongBits(value) >>> 50) & (SUB_BUCKETS - 1));
+            return (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * @return the midpoint of the bucket that contains the requested quantile
+         */
+        private static double percentile(long[] snapshot, long total, double quantile) {
+            if (total == 0) return 0.0;
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0 ; i < snapshot.length ; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    double lower = Math.scalb(1.0 + (double) (i % SUB_BUCKETS) / SUB_BUCKETS, i / SUB_BUCKETS + MIN_EXPONENT);
+                    double upper = Math.scalb(1.0 + (double) (i % SUB_BUCKETS + 1) / SUB_BUCKETS, i / SUB_BUCKETS + MIN_EXPONENT);
+                    return (lower + upper) / 2;
+                }
+            }
+            return 0.0;
+        }
+    }
+}
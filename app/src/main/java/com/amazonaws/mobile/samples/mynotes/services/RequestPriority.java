@@ -0,0 +1,44 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services;
+
+/**
+ * How urgently a data service call is needed.  A scheduling data service runs queued calls
+ * in this order, so that what the user is waiting for goes ahead of prefetching and
+ * background work.
+ */
+public enum RequestPriority {
+    /**
+     * The user is waiting for the result: the visible page of the list, or the note being opened
+     */
+    VISIBLE,
+
+    /**
+     * Ordinary calls, such as saving changes
+     */
+    NORMAL,
+
+    /**
+     * Loading ahead of what the user is looking at
+     */
+    PREFETCH,
+
+    /**
+     * Bulk or sync work that nobody is waiting for
+     */
+    BACKGROUND
+}
@@ -18,7 +18,10 @@ package com.amazonaws.mobile.samples.mynotes.services.mock;
 
 import android.util.Log;
 
+import com.amazonaws.mobile.samples.mynotes.services.AnalyticsEvent;
+import com.amazonaws.mobile.samples.mynotes.services.AnalyticsKey;
 import com.amazonaws.mobile.samples.mynotes.services.AnalyticsService;
+import com.amazonaws.mobile.samples.mynotes.services.MetricsAggregator;
 
 import java.util.Locale;
 import java.util.Map;
@@ -26,15 +29,53 @@ import java.util.Map;
 public class MockAnalyticsService implements AnalyticsService {
     private static final String TAG = "MockAnalyticsService";
 
+    /**
+     * How often aggregated metrics are flushed during a long session
+     */
+    private static final long FLUSH_INTERVAL_MILLIS = 5 * 60 * 1000;
+
+    private final MetricsAggregator aggregator = new MetricsAggregator(this, FLUSH_INTERVAL_MILLIS);
+
     @Override
     public void startSession() {
         Log.v(TAG, "startSession()");
+        aggregator.flush();
     }
 
     @Override
     public void stopSession() {
         Log.v(TAG, "stopSession()");
+        aggregator.flush();
+    }
 
+    @Override
+    public void incrementCounter(AnalyticsKey eventName, AnalyticsKey metric, long delta) {
+        aggregator.incrementCounter(eventName, metric, delta);
+    }
+
+    @Override
+    public void recordGauge(AnalyticsKey eventName, AnalyticsKey metric, double value) {
+        aggregator.recordGauge(eventName, metric, value);
+    }
+
+    @Override
+    public void recordHistogram(AnalyticsKey eventName, AnalyticsKey metric, double value) {
+        aggregator.recordHistogram(eventName, metric, value);
+    }
+
+    @Override
+    public void incrementCounter(AnalyticsKey eventName, AnalyticsKey attribute, String attributeValue, AnalyticsKey metric, long delta) {
+        aggregator.incrementCounter(eventName, attribute, attributeValue, metric, delta);
+    }
+
+    @Override
+    public void recordGauge(AnalyticsKey eventName, AnalyticsKey attribute, String attributeValue, AnalyticsKey metric, double value) {
+        aggregator.recordGauge(eventName, attribute, attributeValue, metric, value);
+    }
+
+    @Override
+    public void recordHistogram(AnalyticsKey eventName, AnalyticsKey attribute, String attributeValue, AnalyticsKey metric, double value) {
+        aggregator.recordHistogram(eventName, attribute, attributeValue, metric, value);
     }
 
     @Override
@@ -55,4 +96,33 @@ public class MockAnalyticsService implements AnalyticsService {
         }
         Log.v(TAG, String.format(Locale.US, "recordEvent(%s)%s", eventName, event.toString()));
     }
+
+    /**
+     * Allocation-free version of recordEvent().  The event is only formatted when verbose
+     * logging is enabled for this tag (adb shell setprop log.tag.MockAnalyticsService VERBOSE),
+     * so in the normal case recording an event costs nothing but returning it to the pool.
+     */
+    @Override
+    public void recordEvent(AnalyticsEvent event) {
+        if (Log.isLoggable(TAG, Log.VERBOSE)) {
+            StringBuilder line = new StringBuilder("recordEvent(").append(event.getName().getName()).append(')');
+            char separator = ':';
+            for (int i = 0 ; i < event.getAttributeCount() ; i++) {
+                line.append(separator).append(' ').append(event.getAttributeKey(i).getName())
+                        .append("=\"").append(event.getAttributeValue(i)).append('"');
+                separator = ',';
+            }
+            for (int i = 0 ; i < event.getMetricCount() ; i++) {
+                line.append(separator).append(' ').append(event.getMetricKey(i).getName()).append('=');
+                if (event.isLongMetric(i)) {
+                    line.append(event.getLongMetric(i));
+                } else {
+                    line.append(String.format(Locale.US, "%.2f", event.getDoubleMetric(i)));
+                }
+                separator = ',';
+            }
+            Log.v(TAG, line.toString());
+        }
+        event.recycle();
+    }
 }
@@ -16,25 +16,57 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 package com.amazonaws.mobile.samples.mynotes.services.mock;
 
+import android.os.SystemClock;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
 import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
 import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
 import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
 import com.amazonaws.mobile.samples.mynotes.services.DataService;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * A mock data store.  This will create 30 notes so you can see the scrolling action, but
  * otherwise acts as a data service.  This should be easily rewritten to use an actual cloud API
+ *
+ * The notes are held in a column-oriented {@link NoteStore}, so that the mock can hold a
+ * very large number of notes.  Content longer than PackedContent.COMPRESSION_THRESHOLD is
+ * stored block-compressed, and is only inflated when (and where) it is read or edited.
+ *
+ * Paging is snapshot-consistent: the first page fixes a snapshot of the store, and the
+ * next token carries that snapshot and the position reached, so paging through the list
+ * sees the same set of notes however many are created or deleted in the meantime.  Each
+ * call only holds the store lock for as long as it takes to read or write its own rows.
+ * Tag filters are answered from the store's per-tag bitmap indexes.
  */
 public class MockDataService implements DataService {
-    private ArrayList<Note> items;
+    /**
+     * How long a snapshot is guaranteed to stay consistent after the first page is loaded
+     */
+    private static final long SNAPSHOT_RETENTION_MS = 5 * 60 * 1000;
+    private static final int MAX_SNAPSHOTS = 64;
+
+    private NoteStore items;
+
+    /**
+     * Snapshots handed out within the retention period, oldest first, as {time, sequence}
+     */
+    private final ArrayDeque<long[]> snapshots = new ArrayDeque<>();
 
     public MockDataService() {
-        items = new ArrayList<>();
+        items = new NoteStore();
         for (int i = 0 ; i < 30 ; i++) {
             Note item = new Note();
             item.setTitle(String.format(Locale.US, "Note %d", i));
@@ -46,36 +78,67 @@ public class MockDataService implements DataService {
     /**
      * Simulate an API call to a network service that returns paged data.
      *
+     * The next token has the form "snapshot:position", where the snapshot is the store
+     * sequence number when the first page was loaded, and the position is the creation
+     * sequence number of the last note returned.  Neither depends on that note still
+     * existing.
+     *
      * @param limit the requested number of items
      * @param after the "next token" from a prior call
      * @param callback the response from the server
      */
     @Override
     public void loadNotes(int limit, String after, ResultCallback<PagedListConnectionResponse<Note>> callback) {
+        loadNotes(limit, after, null, callback);
+    }
+
+    /**
+     * Simulate an API call that returns a page of the notes that match a tag filter.  The
+     * next token works as for the unfiltered list, and is only valid with the same filter.
+     *
+     * @param limit the requested number of items
+     * @param after the "next token" from a prior call
+     * @param filter the tags that the notes must match, or null for every note
+     * @param callback the response from the server
+     */
+    @Override
+    public void loadNotes(int limit, String after, TagFilter filter, ResultCallback<PagedListConnectionResponse<Note>> callback) {
         if (limit < 1 || limit > 100) throw new IllegalArgumentException("Limit must be between 1 and 100");
 
-        int firstItem = 0;
-        if (after != null) {
-            firstItem = indexOfFirst(after);
-            if (firstItem < 0) {
+        long snapshot;
+        long position;
+        if (after == null) {
+            snapshot = -1;
+            position = 0;
+        } else {
+            int separator = after.indexOf(':');
+            try {
+                snapshot = Long.parseLong(after.substring(0, Math.max(separator, 0)));
+                position = Long.parseLong(after.substring(separator + 1));
+            } catch (NumberFormatException error) {
                 callback.onResult(new PagedListConnectionResponse<>(Collections.<Note>emptyList(), null));
                 return;
             }
-            firstItem++;
-        }
-        if (firstItem > items.size() - 1) {
-            callback.onResult(new PagedListConnectionResponse<>(Collections.<Note>emptyList(), null));
-            return;
-        }
-        int nItems = Math.min(limit, items.size() - firstItem);
-        if (nItems == 0) {
-            callback.onResult(new PagedListConnectionResponse<>(Collections.<Note>emptyList(), null));
-            return;
         }
 
-        List<Note> sublist = new ArrayList<>(items.subList(firstItem, firstItem + nItems));
-        String nextToken = (firstItem + nItems - 1 == items.size()) ? null : sublist.get(sublist.size() - 1).getNoteId();
-        callback.onResult(new PagedListConnectionResponse<>(sublist, nextToken));
+        List<Note> page = new ArrayList<>(limit);
+        int row;
+        synchronized (items) {
+            if (snapshot < 0) {
+                snapshot = items.getSequence();
+                openSnapshot(snapshot);
+            }
+            NoteStore.FilterScan scan = items.scan(filter);
+            row = scan.next(items.firstRowCreatedAfter(position), snapshot);
+            while (row >= 0 && page.size() < limit) {
+                page.add(items.get(row));
+                position = items.getCreatedSequence(row);
+                row = scan.next(row + 1, snapshot);
+            }
+        }
+        // Only hand out a next token if there is something after this page
+        String nextToken = (row < 0 || page.isEmpty()) ? null : snapshot + ":" + position;
+        callback.onResult(new PagedListConnectionResponse<>(page, nextToken));
     }
 
     /**
@@ -88,8 +151,32 @@ public class MockDataService implements DataService {
     public void getNote(String noteId, ResultCallback<Note> callback) {
         if (noteId == null || noteId.isEmpty()) throw new IllegalArgumentException();
 
-        int idx = indexOfFirst(noteId);
-        callback.onResult(idx >= 0 ? items.get(idx) : null);
+        Note note;
+        synchronized (items) {
+            int row = find(noteId);
+            note = (row >= 0) ? items.get(row) : null;
+        }
+        callback.onResult(note);
+    }
+
+    /**
+     * Load several notes from the current list of notes, taking the store lock once
+     *
+     * @param noteIds the IDs of the notes to load (at most 100)
+     * @param callback the response from the server (the notes by ID)
+     */
+    @Override
+    public void getNotes(Collection<String> noteIds, ResultCallback<Map<String, Note>> callback) {
+        if (noteIds.size() > 100) throw new IllegalArgumentException("Can't load more than 100 notes at a time");
+
+        Map<String, Note> notes = new HashMap<>();
+        synchronized (items) {
+            for (String noteId : noteIds) {
+                int row = find(noteId);
+                if (row >= 0) notes.put(noteId, items.get(row));
+            }
+        }
+        callback.onResult(notes);
     }
 
     /**
@@ -104,7 +191,9 @@ public class MockDataService implements DataService {
         Note note = new Note();
         note.setTitle(title);
         note.setContent(content);
-        items.add(note);
+        synchronized (items) {
+            items.add(note);
+        }
         callback.onResult(note);
     }
 
@@ -116,13 +205,12 @@ public class MockDataService implements DataService {
      */
     @Override
     public void updateNote(Note note, ResultCallback<Note> callback) {
-        int idx = indexOfFirst(note.getNoteId());
-        if (idx >= 0) {
-            items.set(idx, note);
-            callback.onResult(note);
-        } else {
-            callback.onResult(null);
+        int row;
+        synchronized (items) {
+            row = items.find(note.getId());
+            if (row >= 0) items.set(row, note);
         }
+        callback.onResult(row >= 0 ? note : null);
     }
 
     /**
@@ -135,22 +223,196 @@ public class MockDataService implements DataService {
     public void deleteNote(String noteId, ResultCallback<Boolean> callback) {
         if (noteId == null || noteId.isEmpty()) throw new IllegalArgumentException();
 
-        int idx = indexOfFirst(noteId);
-        if (idx >= 0) items.remove(idx);
-        callback.onResult(idx >= 0);
+        int row;
+        synchronized (items) {
+            row = find(noteId);
+            if (row >= 0) delete(row);
+        }
+        callback.onResult(row >= 0);
+    }
+
+    /**
+     * Load a range of the content of a note.  Only the compressed blocks that overlap the
+     * range are inflated.
+     *
+     * @param noteId the ID of the note
+     * @param start the first character to load
+     * @param count the maximum number of characters to load
+     * @param callback the response from the server (null if the note does not exist)
+     */
+    @Override
+    public void loadContent(String noteId, int start, int count, ResultCallback<String> callback) {
+        if (noteId == null || noteId.isEmpty()) throw new IllegalArgumentException();
+
+        NoteContent content;
+        synchronized (items) {
+            int row = find(noteId);
+            content = (row >= 0) ? items.getContent(row) : null;
+        }
+        if (content == null) {
+            callback.onResult(null);
+            return;
+        }
+        callback.onResult(start >= content.length() ? "" : content.read(start, count));
     }
 
     /**
-     * Returns the index of the first note that matches
-     * @param noteId the note to match
-     * @return the index of the note, or -1 if not found
+     * Replace a range of the content of a note.  Only the compressed block that the edit
+     * lands in is inflated and compressed again.
+     *
+     * @param noteId the ID of the note
+     * @param start the first character to replace
+     * @param end the character after the last one to replace
+     * @param replacement the new text for the range
+     * @param callback the response from the server (Boolean = true indicates success)
      */
-    private int indexOfFirst(String noteId) {
-        if (items.isEmpty()) throw new IndexOutOfBoundsException();
-        for (int i = 0 ; i < items.size() ; i++) {
-            if (items.get(i).getNoteId().equals(noteId))
-                return i;
+    @Override
+    public void updateContent(String noteId, int start, int end, CharSequence replacement, ResultCallback<Boolean> callback) {
+        if (noteId == null || noteId.isEmpty()) throw new IllegalArgumentException();
+
+        boolean updated = false;
+        synchronized (items) {
+            int row = find(noteId);
+            if (row >= 0) {
+                NoteContent content = items.getContent(row);
+                if (start >= 0 && end >= start && end <= content.length()) {
+                    content.replace(start, end, replacement);
+                    items.setContent(row, content);
+                    updated = true;
+                }
+            }
+        }
+        callback.onResult(updated);
+    }
+
+    /**
+     * Attach a file to a note, changing only the attachments of its row
+     *
+     * @param noteId the ID of the note
+     * @param attachment the attachment to add at the end of the note's attachments
+     * @param callback the response from the server (Boolean = true indicates success)
+     */
+    @Override
+    public void addAttachment(String noteId, Attachment attachment, ResultCallback<Boolean> callback) {
+        if (noteId == null || noteId.isEmpty()) throw new IllegalArgumentException();
+
+        int row;
+        synchronized (items) {
+            row = find(noteId);
+            if (row >= 0) {
+                List<Attachment> attachments = new ArrayList<>(Arrays.asList(items.getAttachments(row)));
+                attachments.add(attachment);
+                items.setAttachments(row, attachments);
+            }
+        }
+        callback.onResult(row >= 0);
+    }
+
+    /**
+     * Remove an attachment from a note, changing only the attachments of its row
+     *
+     * @param noteId the ID of the note
+     * @param blobId the blob ID of the attachment to remove
+     * @param callback the response from the server (Boolean = true if it was removed)
+     */
+    @Override
+    public void removeAttachment(String noteId, String blobId, ResultCallback<Boolean> callback) {
+        if (noteId == null || noteId.isEmpty()) throw new IllegalArgumentException();
+
+        boolean removed = false;
+        synchronized (items) {
+            int row = find(noteId);
+            if (row >= 0) {
+                List<Attachment> attachments = new ArrayList<>();
+                for (Attachment attachment : items.getAttachments(row)) {
+                    if (attachment.getBlobId().equals(blobId)) {
+                        removed = true;
+                    } else {
+                        attachments.add(attachment);
+                    }
+                }
+                if (removed) items.setAttachments(row, attachments);
+            }
+        }
+        callback.onResult(removed);
+    }
+
+    /**
+     * Create several notes in one call.  The notes keep their IDs, and a note with the same
+     * ID as an existing one replaces it, so a batch can safely be sent again.
+     *
+     * @param notes the notes to create
+     * @param callback the response from the server (the number of notes created)
+     */
+    @Override
+    public void createNotes(List<Note> notes, ResultCallback<Integer> callback) {
+        synchronized (items) {
+            for (Note note : notes) {
+                int row = items.find(note.getId());
+                if (row >= 0) {
+                    items.set(row, note);
+                } else {
+                    items.add(note);
+                }
+            }
+        }
+        callback.onResult(notes.size());
+    }
+
+    /**
+     * Delete several notes in one call
+     *
+     * @param noteIds the IDs of the notes to be deleted
+     * @param callback the response from the server (the number of notes deleted)
+     */
+    @Override
+    public void deleteNotes(Collection<String> noteIds, ResultCallback<Integer> callback) {
+        int deleted = 0;
+        synchronized (items) {
+            for (String noteId : noteIds) {
+                int row = find(noteId);
+                if (row >= 0) {
+                    delete(row);
+                    deleted++;
+                }
+            }
+        }
+        callback.onResult(deleted);
+    }
+
+    /**
+     * Find the row of a note from the text form of its ID
+     *
+     * @return the row number, or -1 if there is no such note (or the ID is not valid)
+     */
+    private int find(String noteId) {
+        NoteId id = NoteId.tryParse(noteId);
+        return (id != null) ? items.find(id) : -1;
+    }
+
+    /**
+     * Delete a row, letting the store drop tombstones that no open snapshot can see
+     */
+    private void delete(int row) {
+        long now = SystemClock.elapsedRealtime();
+        while (!snapshots.isEmpty() && now - snapshots.peekFirst()[0] > SNAPSHOT_RETENTION_MS) {
+            snapshots.removeFirst();
+        }
+        items.setHorizon(snapshots.isEmpty() ? items.getSequence() : snapshots.peekFirst()[1]);
+        items.delete(row);
+    }
+
+    /**
+     * Remember a snapshot handed out with a first page, so that the rows it can see are
+     * kept for the retention period
+     */
+    private void openSnapshot(long sequence) {
+        long[] newest = snapshots.peekLast();
+        if (newest != null && newest[1] == sequence) {
+            newest[0] = SystemClock.elapsedRealtime();
+            return;
         }
-        return -1;
+        if (snapshots.size() == MAX_SNAPSHOTS) snapshots.removeFirst();
+        snapshots.addLast(new long[] { SystemClock.elapsedRealtime(), sequence });
     }
 }
@@ -0,0 +1,516 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services.mock;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+import com.amazonaws.mobile.samples.mynotes.models.PackedContent;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A compact, column-oriented note store.  Instead of one Note object (plus its Strings)
+ * per note, each field is held in its own array: IDs as two longs, titles as UTF-8 bytes,
+ * and the content as UTF-8 bytes or, when it is large, as {@link PackedContent}.  Note objects
+ * are only created when a row is read.  Attachments are kept as arrays of their (immutable)
+ * descriptions; the attached bytes are in the blob store, not here.
+ *
+ * Rows are kept in insertion order.  An open-addressing hash table of row numbers gives
+ * O(1) lookup by ID.
+ *
+ * Every insert and delete takes the next number from a sequence, and each row records the
+ * sequence numbers at which it was created and deleted.  A sequence number is therefore a
+ * snapshot: a row is visible in snapshot S if it was created at or before S and not
+ * deleted at or before S.  Deleted rows are kept (as tombstones) so that older snapshots
+ * still see them, until they are older than the retention horizon; the store is compacted
+ * once a quarter of the rows are tombstones that can be dropped.  Rows are created in
+ * sequence order, so a position in the list can be found again by creation sequence
+ * with a binary search, even after the note at that position has been deleted.  Title
+ * and content updates are made in place, so a snapshot covers which notes are in the
+ * list and their order, not their field values.
+ *
+ * Tags are interned as small integers.  Each row keeps its tag numbers, and each tag has
+ * a compressed {@link RowBitmap} of the rows that carry it, kept up to date as rows are
+ * added and updated.  Tag filters are answered from the bitmaps a chunk of rows at a time
+ * (see {@link FilterScan}), so the cost of finding the next match depends on the number
+ * of tags in the filter and the distance to the match, not on the notes' content.
+ *
+ * This class is not thread-safe; MockDataService holds its lock for each call.
+ */
+class NoteStore {
+    private static final byte[] EMPTY = new byte[0];
+    private static final int[] NO_TAGS = new int[0];
+    private static final Attachment[] NO_ATTACHMENTS = new Attachment[0];
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long LIVE = Long.MAX_VALUE;
+
+    private long[] idHigh = new long[INITIAL_CAPACITY];
+    private long[] idLow = new long[INITIAL_CAPACITY];
+    private byte[][] titles = new byte[INITIAL_CAPACITY][];
+    private Object[] contents = new Object[INITIAL_CAPACITY];
+    private long[] createdSeq = new long[INITIAL_CAPACITY];
+    private long[] deletedSeq = new long[INITIAL_CAPACITY];
+    private int[][] rowTags = new int[INITIAL_CAPACITY][];
+    private Attachment[][] rowAttachments = new Attachment[INITIAL_CAPACITY][];
+    private int rows = 0;
+    private int deletedRows = 0;
+
+    /**
+     * The number of deleted rows that the last compaction had to keep
+     */
+    private int retainedRows = 0;
+
+    /**
+     * The last sequence number handed out
+     */
+    private long sequence = 0;
+
+    /**
+     * Rows deleted at or before this sequence number can be dropped by compaction
+     */
+    private long horizon = 0;
+
+    /**
+     * Hash index of row + 1 (0 is an empty slot), sized to stay at most half full
+     */
+    private int[] index = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Tag dictionary: the number of each tag, and the name and rows of each number
+     */
+    private final HashMap<String, Integer> tagNumbers = new HashMap<>();
+    private final List<String> tagNames = new ArrayList<>();
+    private final List<RowBitmap> tagRows = new ArrayList<>();
+
+    /**
+     * Finds the rows that match a tag filter.  A scan evaluates the filter against the tag
+     * bitmaps one chunk of rows at a time, and keeps the last chunk it evaluated, so that
+     * reading a page of matches evaluates the filter once.  A scan is only valid until the
+     * store is next changed.
+     */
+    class FilterScan {
+        private final TagFilter filter;
+        private final long[] words = new long[RowBitmap.WORDS_PER_CHUNK];
+        private int evaluatedChunk = -1;
+
+        private FilterScan(TagFilter filter) {
+            this.filter = filter;
+        }
+
+        /**
+         * Returns the first row at or after the given one that matches the filter and is
+         * visible in a snapshot, or -1
+         */
+        int next(int row, long snapshot) {
+            if (filter == null) return nextRow(row, snapshot);
+            for (int chunk = row >>> RowBitmap.CHUNK_BITS ; row < rows ; chunk++) {
+                if (chunk != evaluatedChunk) {
+                    evaluate(filter, chunk, words);
+                    evaluatedChunk = chunk;
+                }
+                int base = chunk << RowBitmap.CHUNK_BITS;
+                int offset = row - base;
+                for (int word = offset >>> 6 ; word < RowBitmap.WORDS_PER_CHUNK ; word++) {
+                    long bits = words[word];
+                    if (word == offset >>> 6) bits &= -1L << offset;
+                    while (bits != 0) {
+                        int match = base + (word << 6) + Long.numberOfTrailingZeros(bits);
+                        if (match >= rows) return -1;
+                        if (createdSeq[match] <= snapshot && deletedSeq[match] > snapshot) return match;
+                        bits &= bits - 1;
+                    }
+                }
+                row = base + RowBitmap.CHUNK_SIZE;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * The number of notes in the store
+     */
+    int size() {
+        return rows - deletedRows;
+    }
+
+    /**
+     * Add a note at the end of the store
+     *
+     * @return the row number of the new note
+     */
+    int add(Note note) {
+        if (rows == idHigh.length) grow();
+        int row = rows++;
+        NoteId id = note.getId();
+        idHigh[row] = id.getHigh();
+        idLow[row] = id.getLow();
+        titles[row] = encode(note.getTitle());
+        contents[row] = encode(note.getContentBody());
+        createdSeq[row] = ++sequence;
+        deletedSeq[row] = LIVE;
+        rowTags[row] = NO_TAGS;
+        setTags(row, note.getTags());
+        rowAttachments[row] = toArray(note.getAttachments());
+        if (rows * 2 > index.length) {
+            rebuildIndex();
+        } else {
+            indexRow(row);
+        }
+        return row;
+    }
+
+    /**
+     * Replace the title, content, tags and attachments of a row
+     */
+    void set(int row, Note note) {
+        titles[row] = encode(note.getTitle());
+        contents[row] = encode(note.getContentBody());
+        setTags(row, note.getTags());
+        rowAttachments[row] = toArray(note.getAttachments());
+    }
+
+    /**
+     * The attachments of a row.  The array is shared with the store, so don't modify it.
+     */
+    Attachment[] getAttachments(int row) {
+        return rowAttachments[row];
+    }
+
+    /**
+     * Replace the attachments of a row
+     */
+    void setAttachments(int row, List<Attachment> attachments) {
+        rowAttachments[row] = toArray(attachments);
+    }
+
+    /**
+     * Replace the content of a row
+     */
+    void setContent(int row, NoteContent content) {
+        contents[row] = encode(content);
+    }
+
+    /**
+     * Delete a row.  Row numbers of other notes stay valid until the next add() or delete().
+     */
+    void delete(int row) {
+        deletedSeq[row] = ++sequence;
+        deletedRows++;
+        if ((deletedRows - retainedRows) * 4 > rows) compact();
+    }
+
+    /**
+     * The current sequence number.  This is a snapshot of the store as it is now.
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Allow compaction to drop rows deleted at or before the given sequence number.  Any
+     * snapshot older than this may then miss notes that were deleted after it was taken.
+     */
+    void setHorizon(long horizon) {
+        this.horizon = horizon;
+    }
+
+    /**
+     * The sequence number at which a row was created
+     */
+    long getCreatedSequence(int row) {
+        return createdSeq[row];
+    }
+
+    /**
+     * Find the first row created after the given sequence number
+     *
+     * @return the row number, which is size() if there is no such row
+     */
+    int firstRowCreatedAfter(long sequence) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (createdSeq[mid] <= sequence) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find the row of a note
+     *
+     * @return the row number, or -1 if there is no such note
+     */
+    int find(NoteId noteId) {
+        long high = noteId.getHigh();
+        long low = noteId.getLow();
+        int mask = index.length - 1;
+        for (int slot = NoteId.hash(high, low) & mask ; index[slot] != 0 ; slot = (slot + 1) & mask) {
+            int row = index[slot] - 1;
+            if (idHigh[row] == high && idLow[row] == low && deletedSeq[row] == LIVE) return row;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first row at or after the given one that is visible in a snapshot, or -1
+     */
+    int nextRow(int row, long snapshot) {
+        for (int i = row ; i < rows ; i++) {
+            if (createdSeq[i] <= snapshot && deletedSeq[i] > snapshot) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Start finding the rows that match a tag filter
+     *
+     * @param filter the filter, or null to find every row
+     */
+    FilterScan scan(TagFilter filter) {
+        return new FilterScan(filter);
+    }
+
+    /**
+     * Create a Note for a row
+     */
+    Note get(int row) {
+        Note note = new Note(getNoteId(row), new String(titles[row], StandardCharsets.UTF_8), getContent(row));
+        int[] tags = rowTags[row];
+        if (tags.length > 0) {
+            List<String> names = new ArrayList<>(tags.length);
+            for (int tag : tags) {
+                names.add(tagNames.get(tag));
+            }
+            note.setTags(names);
+        }
+        Attachment[] attachments = rowAttachments[row];
+        if (attachments.length > 0) note.setAttachments(Arrays.asList(attachments));
+        return note;
+    }
+
+    NoteId getNoteId(int row) {
+        return new NoteId(idHigh[row], idLow[row]);
+    }
+
+    /**
+     * The content of a row.  Large content is returned still compressed.
+     */
+    NoteContent getContent(int row) {
+        Object content = contents[row];
+        if (content instanceof PackedContent) return NoteContent.fromPacked((PackedContent) content);
+        return new NoteContent(new String((byte[]) content, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] encode(String value) {
+        return (value == null || value.isEmpty()) ? EMPTY : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Attachment[] toArray(List<Attachment> attachments) {
+        return attachments.isEmpty() ? NO_ATTACHMENTS : attachments.toArray(new Attachment[attachments.size()]);
+    }
+
+    private static Object encode(NoteContent content) {
+        if (content.length() >= PackedContent.COMPRESSION_THRESHOLD) return content.pack();
+        return encode(content.toString());
+    }
+
+    private void grow() {
+        int capacity = idHigh.length * 2;
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        contents = Arrays.copyOf(contents, capacity);
+        createdSeq = Arrays.copyOf(createdSeq, capacity);
+        deletedSeq = Arrays.copyOf(deletedSeq, capacity);
+        rowTags = Arrays.copyOf(rowTags, capacity);
+        rowAttachments = Arrays.copyOf(rowAttachments, capacity);
+    }
+
+    /**
+     * Replace the tags of a row, updating the bitmaps of the tags that were added or removed
+     */
+    private void setTags(int row, Collection<String> tags) {
+        int[] previous = rowTags[row];
+        int[] numbers = tags.isEmpty() ? NO_TAGS : new int[tags.size()];
+        int next = 0;
+        for (String tag : tags) {
+            Integer number = tagNumbers.get(tag);
+            if (number == null) {
+                number = tagNames.size();
+                tagNumbers.put(tag, number);
+                tagNames.add(tag);
+                tagRows.add(new RowBitmap());
+            }
+            numbers[next++] = number;
+        }
+        for (int tag : previous) {
+            if (!contains(numbers, tag)) tagRows.get(tag).remove(row);
+        }
+        for (int tag : numbers) {
+            if (!contains(previous, tag)) tagRows.get(tag).add(row);
+        }
+        rowTags[row] = numbers;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int candidate : values) {
+            if (candidate == value) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compute the rows of a chunk that match a filter, as a bitmap in a word buffer.  Bits
+     * may be set for rows past the end of the store or not visible in a snapshot.
+     */
+    private void evaluate(TagFilter filter, int chunk, long[] words) {
+        switch (filter.getOperator()) {
+            case TAG:
+                Arrays.fill(words, 0);
+                RowBitmap tagged = bitmap(filter.getTag());
+                if (tagged != null) tagged.orInto(chunk, words);
+                break;
+            case NOT:
+                evaluate(filter.getOperands().get(0), chunk, words);
+                for (int i = 0 ; i < words.length ; i++) {
+                    words[i] = ~words[i];
+                }
+                break;
+            case ALL:
+                Arrays.fill(words, -1L);
+                for (TagFilter operand : filter.getOperands()) {
+                    combine(operand, chunk, words, true);
+                }
+                break;
+            default:
+                Arrays.fill(words, 0);
+                for (TagFilter operand : filter.getOperands()) {
+                    combine(operand, chunk, words, false);
+                }
+                break;
+        }
+    }
+
+    /**
+     * AND or OR the rows of a chunk that match a filter into a word buffer.  Single tags
+     * (and, under AND, negated single tags) are applied straight from their bitmaps.
+     */
+    private void combine(TagFilter operand, int chunk, long[] words, boolean and) {
+        if (operand.getOperator() == TagFilter.Operator.TAG) {
+            RowBitmap tagged = bitmap(operand.getTag());
+            if (and) {
+                if (tagged == null) {
+                    Arrays.fill(words, 0);
+                } else {
+                    tagged.andInto(chunk, words);
+                }
+            } else if (tagged != null) {
+                tagged.orInto(chunk, words);
+            }
+            return;
+        }
+        TagFilter negated = operand.getOperator() == TagFilter.Operator.NOT ? operand.getOperands().get(0) : null;
+        if (and && negated != null && negated.getOperator() == TagFilter.Operator.TAG) {
+            RowBitmap tagged = bitmap(negated.getTag());
+            if (tagged != null) tagged.andNotInto(chunk, words);
+            return;
+        }
+        long[] result = new long[RowBitmap.WORDS_PER_CHUNK];
+        evaluate(operand, chunk, result);
+        for (int i = 0 ; i < words.length ; i++) {
+            words[i] = and ? (words[i] & result[i]) : (words[i] | result[i]);
+        }
+    }
+
+    private RowBitmap bitmap(String tag) {
+        Integer number = tagNumbers.get(tag);
+        return (number == null) ? null : tagRows.get(number);
+    }
+
+    /**
+     * Squeeze out the rows deleted before the horizon and rebuild the index
+     */
+    private void compact() {
+        int to = 0;
+        for (int from = 0 ; from < rows ; from++) {
+            if (deletedSeq[from] <= horizon) continue;
+            idHigh[to] = idHigh[from];
+            idLow[to] = idLow[from];
+            titles[to] = titles[from];
+            contents[to] = contents[from];
+            createdSeq[to] = createdSeq[from];
+            deletedSeq[to] = deletedSeq[from];
+            rowTags[to] = rowTags[from];
+            rowAttachments[to] = rowAttachments[from];
+            to++;
+        }
+        for (int i = to ; i < rows ; i++) {
+            titles[i] = null;
+            contents[i] = null;
+            rowTags[i] = null;
+            rowAttachments[i] = null;
+        }
+        deletedRows -= rows - to;
+        retainedRows = deletedRows;
+        rows = to;
+        rebuildIndex();
+        rebuildTagRows();
+    }
+
+    /**
+     * Rebuild the tag bitmaps after compaction has renumbered the rows
+     */
+    private void rebuildTagRows() {
+        for (RowBitmap bitmap : tagRows) {
+            bitmap.clear();
+        }
+        for (int row = 0 ; row < rows ; row++) {
+            for (int tag : rowTags[row]) {
+                tagRows.get(tag).add(row);
+            }
+        }
+    }
+
+    private void rebuildIndex() {
+        int capacity = INITIAL_CAPACITY * 2;
+        while (capacity < rows * 2) capacity *= 2;
+        index = new int[capacity];
+        for (int row = 0 ; row < rows ; row++) {
+            if (deletedSeq[row] == LIVE) indexRow(row);
+        }
+    }
+
+    private void indexRow(int row) {
+        int mask = index.length - 1;
+        int slot = NoteId.hash(idHigh[row], idLow[row]) & mask;
+        while (index[slot] != 0) slot = (slot + 1) & mask;
+        index[slot] = row + 1;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services.mock;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of row numbers, in the style of a Roaring bitmap.  The rows are split
+ * into chunks of 65536, and each chunk is held in whichever form is smaller: a sorted
+ * array of the 16-bit offsets when the chunk has few rows in the set, or a plain bitmap of
+ * 1024 words when it has many.  Empty chunks take no space.  A tag on one note in a
+ * thousand costs about two bytes per tagged note; a tag on every other note costs one bit
+ * per row.
+ *
+ * Queries work a chunk at a time on a word buffer: {@link #orInto}, {@link #andInto} and
+ * {@link #andNotInto} combine a chunk of the set with the bits already in the buffer.
+ *
+ * This class is not thread-safe.
+ */
+class RowBitmap {
+    static final int CHUNK_BITS = 16;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int WORDS_PER_CHUNK = CHUNK_SIZE / 64;
+
+    /**
+     * Array chunks are converted to bitmaps above this many rows (where the array would
+     * be larger than the 8KB bitmap), and bitmaps back to arrays below half of it
+     */
+    private static final int ARRAY_LIMIT = 4096;
+    private static final char[] EMPTY = new char[0];
+
+    /**
+     * Per chunk: null when empty, a char[] of sorted offsets, or a long[] bitmap
+     */
+    private Object[] chunks = new Object[0];
+
+    /**
+     * The number of rows in each chunk
+     */
+    private int[] counts = new int[0];
+
+    private int cardinality = 0;
+
+    /**
+     * The number of rows in the set
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean contains(int row) {
+        int chunk = row >>> CHUNK_BITS;
+        if (chunk >= chunks.length) return false;
+        Object container = chunks[chunk];
+        char offset = (char) row;
+        if (container instanceof long[]) return (((long[]) container)[offset >>> 6] & (1L << offset)) != 0;
+        return container != null && Arrays.binarySearch((char[]) container, 0, counts[chunk], offset) >= 0;
+    }
+
+    void add(int row) {
+        int chunk = row >>> CHUNK_BITS;
+        if (chunk >= chunks.length) {
+            int capacity = Math.max(chunk + 1, chunks.length * 2);
+            chunks = Arrays.copyOf(chunks, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        char offset = (char) row;
+        Object container = chunks[chunk];
+        if (container instanceof long[]) {
+            long[] words = (long[]) container;
+            long bit = 1L << offset;
+            if ((words[offset >>> 6] & bit) != 0) return;
+            words[offset >>> 6] |= bit;
+        } else {
+            char[] values = (container == null) ? EMPTY : (char[]) container;
+            int count = counts[chunk];
+            // Rows are mostly added in order, so check the end before searching
+            int position = (count > 0 && values[count - 1] < offset) ? -count - 1 : Arrays.binarySearch(values, 0, count, offset);
+            if (position >= 0) return;
+            position = -position - 1;
+            if (count == ARRAY_LIMIT) {
+                long[] words = toBitmap(values, count);
+                words[offset >>> 6] |= 1L << offset;
+                chunks[chunk] = words;
+            } else {
+                if (count == values.length) values = Arrays.copyOf(values, Math.max(4, Math.min(ARRAY_LIMIT, count * 2)));
+                System.arraycopy(values, position, values, position + 1, count - position);
+                values[position] = offset;
+                chunks[chunk] = values;
+            }
+        }
+        counts[chunk]++;
+        cardinality++;
+    }
+
+    void remove(int row) {
+        int chunk = row >>> CHUNK_BITS;
+        if (chunk >= chunks.length || chunks[chunk] == null) return;
+        char offset = (char) row;
+        Object container = chunks[chunk];
+        int count = counts[chunk];
+        if (container instanceof long[]) {
+            long[] words = (long[]) container;
+            long bit = 1L << offset;
+            if ((words[offset >>> 6] & bit) == 0) return;
+            words[offset >>> 6] &= ~bit;
+            if (count - 1 < ARRAY_LIMIT / 2) chunks[chunk] = toArray(words, count - 1);
+        } else {
+            char[] values = (char[]) container;
+            int position = Arrays.binarySearch(values, 0, count, offset);
+            if (position < 0) return;
+            System.arraycopy(values, position + 1, values, position, count - position - 1);
+            if (count == 1) chunks[chunk] = null;
+        }
+        counts[chunk]--;
+        cardinality--;
+    }
+
+    void clear() {
+        chunks = new Object[0];
+        counts = new int[0];
+        cardinality = 0;
+    }
+
+    /**
+     * Set the bits of a chunk of this set in a word buffer
+     */
+    void orInto(int chunk, long[] words) {
+        if (chunk >= chunks.length) return;
+        Object container = chunks[chunk];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            for (int i = 0 ; i < WORDS_PER_CHUNK ; i++) {
+                words[i] |= bits[i];
+            }
+        } else if (container != null) {
+            char[] values = (char[]) container;
+            for (int i = 0, count = counts[chunk] ; i < count ; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+        }
+    }
+
+    /**
+     * Clear the bits of a word buffer that are not in a chunk of this set
+     */
+    void andInto(int chunk, long[] words) {
+        Object container = (chunk < chunks.length) ? chunks[chunk] : null;
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            for (int i = 0 ; i < WORDS_PER_CHUNK ; i++) {
+                words[i] &= bits[i];
+            }
+        } else if (container != null) {
+            char[] values = (char[]) container;
+            int count = counts[chunk];
+            int next = 0;
+            for (int word = 0 ; word < WORDS_PER_CHUNK ; word++) {
+                long mask = 0;
+                while (next < count && values[next] >>> 6 == word) {
+                    mask |= 1L << values[next++];
+                }
+                words[word] &= mask;
+            }
+        } else {
+            Arrays.fill(words, 0);
+        }
+    }
+
+    /**
+     * Clear the bits of a word buffer that are in a chunk of this set
+     */
+    void andNotInto(int chunk, long[] words) {
+        if (chunk >= chunks.length) return;
+        Object container = chunks[chunk];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            for (int i = 0 ; i < WORDS_PER_CHUNK ; i++) {
+                words[i] &= ~bits[i];
+            }
+        } else if (container != null) {
+            char[] values = (char[]) container;
+            for (int i = 0, count = counts[chunk] ; i < count ; i++) {
+                words[values[i] >>> 6] &= ~(1L << values[i]);
+            }
+        }
+    }
+
+    private static long[] toBitmap(char[] values, int count) {
+        long[] words = new long[WORDS_PER_CHUNK];
+        for (int i = 0 ; i < count ; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        return words;
+    }
+
+    private static char[] toArray(long[] words, int count) {
+        char[] values = new char[count];
+        int next = 0;
+        for (int word = 0 ; word < WORDS_PER_CHUNK ; word++) {
+            long bits = words[word];
+            while (bits != 0) {
+                values[next++] = (char) ((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return values;
+    }
+}
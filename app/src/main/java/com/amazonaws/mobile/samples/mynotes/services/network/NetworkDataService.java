@@ -0,0 +1,611 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services.network;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.amazonaws.mobile.samples.mynotes.MemoryBudget;
+import com.amazonaws.mobile.samples.mynotes.Trimmable;
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+import com.amazonaws.mobile.samples.mynotes.services.DataService;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A data service that calls a GraphQL-style HTTP endpoint.  Each call is an operation
+ * with a name and variables; operations are POSTed as a JSON array and the response is
+ * an array of {"data": {name: result}} or {"errors": [...]} objects in the same order,
+ * as with batched persisted queries.
+ *
+ * Calls are queued and sent by a small number of connection threads.  Each thread takes
+ * every call that is waiting (up to MAX_BATCH) and sends them in one request, so under
+ * load many calls share a round trip, while a call made when the service is idle is sent
+ * straight away.  Connections are kept alive between requests.  Request bodies above
+ * GZIP_THRESHOLD are gzipped, and gzipped responses are accepted.
+ *
+ * Responses are parsed as a stream, and each callback is invoked as soon as its result
+ * has been read, on the connection thread.  Wrap the service in an AsyncDataService to
+ * have results delivered on the main thread.  If a request fails, every call in it gets
+ * its failure result (null, false or 0).
+ *
+ * Reads (getNote, loadContent and loadNotes) are revalidated rather than transferred again.
+ * The server tags their results with an etag, and the client keeps the latest result of
+ * each read, by operation and variables, in a memory cache.  When the same read is made
+ * again it carries the etag as "ifNoneMatch", and a "notModified" reply is answered from
+ * the cache.  Every read still goes to the server, so a cached result is never stale.
+ * Cached results are kept as JSON and parsed for each caller, so callers never share
+ * objects.  The cache is trimmed under memory pressure.
+ */
+public class NetworkDataService implements DataService, Trimmable {
+    private static final String TAG = "NetworkDataService";
+
+    private static final int CONNECTIONS = 2;
+    private static final int MAX_BATCH = 32;
+    private static final int GZIP_THRESHOLD = 1024;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+    private static final int MAX_CACHE_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * Results bigger than this are not cached, so that one large note does not push out
+     * everything else
+     */
+    private static final int MAX_CACHED_RESULT_BYTES = MAX_CACHE_BYTES / 4;
+
+    /**
+     * Approximate cost of a cache entry beyond its characters
+     */
+    private static final int CACHE_ENTRY_OVERHEAD_BYTES = 96;
+
+    /**
+     * Writes the variables of an operation into the variables object
+     */
+    private interface Variables {
+        void write(JsonWriter out) throws IOException;
+    }
+
+    /**
+     * Reads the result of an operation
+     */
+    private interface Reader<T> {
+        T read(JsonReader in) throws IOException;
+    }
+
+    /**
+     * Writes the result of an operation, for the cache
+     */
+    private interface Writer<T> {
+        void write(JsonWriter out, T result) throws IOException;
+    }
+
+    /**
+     * The latest result of a read, as JSON, with the etag the server gave it
+     */
+    private static class CachedResult {
+        final String etag;
+        final String json;
+
+        CachedResult(String etag, String json) {
+            this.etag = etag;
+            this.json = json;
+        }
+    }
+
+    /**
+     * Counts the bytes read through it
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) counter.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) counter.addAndGet(count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            counter.addAndGet(skipped);
+            return skipped;
+        }
+    }
+
+    /**
+     * A queued call
+     */
+    private class Operation<T> {
+        final String name;
+        final Variables variables;
+        final Reader<T> reader;
+        final T failure;
+        final ResultCallback<T> callback;
+
+        /**
+         * For reads, the cache key and the writer used to cache the result; otherwise null
+         */
+        final String cacheKey;
+        final Writer<? super T> cacheWriter;
+
+        /**
+         * The cached result whose etag was sent with the operation
+         */
+        private CachedResult cached;
+        private boolean completed = false;
+
+        Operation(String name, Variables variables, Reader<T> reader, T failure, ResultCallback<T> callback) {
+            this(name, variables, reader, null, failure, callback);
+        }
+
+        Operation(String name, Variables variables, Reader<T> reader, Writer<? super T> cacheWriter, T failure, ResultCallback<T> callback) {
+            this.name = name;
+            this.variables = variables;
+            this.reader = reader;
+            this.failure = failure;
+            this.callback = callback;
+            this.cacheWriter = cacheWriter;
+            this.cacheKey = (cacheWriter == null) ? null : cacheKey(name, variables);
+        }
+
+        void write(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("operationName").value(name);
+            out.name("variables").beginObject();
+            variables.write(out);
+            out.endObject();
+            cached = (cacheKey == null) ? null : cache.get(cacheKey);
+            if (cached != null) out.name("ifNoneMatch").value(cached.etag);
+            out.endObject();
+        }
+
+        /**
+         * Read this operation's entry of the response and complete the call
+         */
+        void read(JsonReader in) throws IOException {
+            T result = failure;
+            String etag = null;
+            boolean received = false;
+            boolean notModified = false;
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (field.equals("data") && in.peek() != JsonToken.NULL) {
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if (in.nextName().equals(name)) {
+                            result = reader.read(in);
+                            received = true;
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                } else if (field.equals("etag") && in.peek() != JsonToken.NULL) {
+                    etag = in.nextString();
+                } else if (field.equals("notModified") && in.peek() != JsonToken.NULL) {
+                    notModified = in.nextBoolean();
+                } else if (field.equals("errors") && in.peek() != JsonToken.NULL) {
+                    Log.w(TAG, name + " returned errors");
+                    in.skipValue();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            if (notModified && cached != null && cached.etag.equals(etag)) {
+                notModifiedCount.incrementAndGet();
+                result = readCached(cached);
+            } else if (received && cacheKey != null && etag != null) {
+                store(etag, result);
+            }
+            complete(result);
+        }
+
+        private T readCached(CachedResult entry) throws IOException {
+            JsonReader in = new JsonReader(new StringReader(entry.json));
+            in.beginArray();
+            T result = reader.read(in);
+            in.endArray();
+            return result;
+        }
+
+        private void store(String etag, T result) throws IOException {
+            StringWriter json = new StringWriter();
+            JsonWriter out = new JsonWriter(json);
+            // Wrapped in an array, as a bare string or null is not a valid JSON document
+            out.beginArray();
+            cacheWriter.write(out, result);
+            out.endArray();
+            out.close();
+            CachedResult entry = new CachedResult(etag, json.toString());
+            if (sizeOf(cacheKey, entry) <= MAX_CACHED_RESULT_BYTES) {
+                cache.put(cacheKey, entry);
+            } else {
+                cache.remove(cacheKey);
+            }
+        }
+
+        void complete(T result) {
+            if (completed) return;
+            completed = true;
+            callback.onResult(result);
+        }
+
+        void fail() {
+            complete(failure);
+        }
+    }
+
+    private final URL endpoint;
+    private final LruCache<String, CachedResult> cache = new LruCache<String, CachedResult>(MAX_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, CachedResult value) {
+            return NetworkDataService.sizeOf(key, value);
+        }
+    };
+    private final AtomicLong bytesSent = new AtomicLong(0);
+    private final AtomicLong bytesReceived = new AtomicLong(0);
+    private final AtomicLong notModifiedCount = new AtomicLong(0);
+    private final LinkedBlockingQueue<Operation<?>> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> connections = new ArrayList<>();
+    private volatile boolean shutdown = false;
+
+    /**
+     * @param endpoint the URL that operations are POSTed to
+     */
+    public NetworkDataService(URL endpoint) {
+        this.endpoint = endpoint;
+        for (int i = 0 ; i < CONNECTIONS ; i++) {
+            Thread thread = new Thread(this::runConnection, "NetworkDataService-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            connections.add(thread);
+        }
+    }
+
+    /**
+     * Stop the connection threads.  Calls that have not been sent fail.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (Thread thread : connections) {
+            thread.interrupt();
+        }
+        List<Operation<?>> unsent = new ArrayList<>();
+        queue.drainTo(unsent);
+        for (Operation<?> operation : unsent) {
+            operation.fail();
+        }
+    }
+
+    /**
+     * The bytes of request bodies sent so far, after compression.  Headers are not counted.
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * The bytes of response bodies received so far, before decompression.  Headers are not
+     * counted.
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * The number of reads answered from the cache after the server said they had not changed
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    /**
+     * The estimated size of the cached results, in bytes
+     */
+    @Override
+    public long getSizeBytes() {
+        return cache.size();
+    }
+
+    /**
+     * Shrink the cache of results, evicting the least recently used.  Trimming only costs
+     * full transfers later.
+     */
+    @Override
+    public long trimMemory(int level) {
+        int before = cache.size();
+        cache.trimToSize(Math.min(before, (int) (cache.maxSize() * MemoryBudget.retainFraction(level))));
+        return before - cache.size();
+    }
+
+    @Override
+    public void loadNotes(int limit, String after, ResultCallback<PagedListConnectionResponse<Note>> callback) {
+        loadNotes(limit, after, null, callback);
+    }
+
+    @Override
+    public void loadNotes(int limit, String after, TagFilter filter, ResultCallback<PagedListConnectionResponse<Note>> callback) {
+        enqueue(new Operation<>("loadNotes", (JsonWriter out) -> {
+            out.name("limit").value(limit);
+            if (after != null) out.name("after").value(after);
+            if (filter != null) {
+                out.name("filter");
+                NoteJson.writeFilter(out, filter);
+            }
+        }, NoteJson::readPage, NoteJson::writePage, null, callback));
+    }
+
+    @Override
+    public void getNote(String noteId, ResultCallback<Note> callback) {
+        enqueue(new Operation<>("getNote", (JsonWriter out) -> out.name("noteId").value(noteId), NoteJson::readNote, NoteJson::writeNote, null, callback));
+    }
+
+    @Override
+    public void getNotes(Collection<String> noteIds, ResultCallback<Map<String, Note>> callback) {
+        enqueue(new Operation<>("getNotes", (JsonWriter out) -> {
+            out.name("noteIds");
+            NoteJson.writeStrings(out, noteIds);
+        }, NoteJson::readNoteMap, null, callback));
+    }
+
+    @Override
+    public void createNote(String title, String content, ResultCallback<Note> callback) {
+        enqueue(new Operation<>("createNote", (JsonWriter out) -> {
+            out.name("title").value(title);
+            out.name("content").value(content);
+        }, NoteJson::readNote, null, callback));
+    }
+
+    @Override
+    public void updateNote(Note note, ResultCallback<Note> callback) {
+        enqueue(new Operation<>("updateNote", (JsonWriter out) -> {
+            out.name("note");
+            NoteJson.writeNote(out, note);
+        }, NoteJson::readNote, null, callback));
+    }
+
+    @Override
+    public void deleteNote(String noteId, ResultCallback<Boolean> callback) {
+        enqueue(new Operation<>("deleteNote", (JsonWriter out) -> out.name("noteId").value(noteId), JsonReader::nextBoolean, false, callback));
+    }
+
+    @Override
+    public void updateTitle(String noteId, String title, ResultCallback<Boolean> callback) {
+        enqueue(new Operation<>("updateTitle", (JsonWriter out) -> {
+            out.name("noteId").value(noteId);
+            out.name("title").value(title);
+        }, JsonReader::nextBoolean, false, callback));
+    }
+
+    @Override
+    public void loadContent(String noteId, int start, int count, ResultCallback<String> callback) {
+        enqueue(new Operation<>("loadContent", (JsonWriter out) -> {
+            out.name("noteId").value(noteId);
+            out.name("start").value(start);
+            out.name("count").value(count);
+        }, NoteJson::readNullableString, NoteJson::writeNullableString, null, callback));
+    }
+
+    @Override
+    public void updateContent(String noteId, int start, int end, CharSequence replacement, ResultCallback<Boolean> callback) {
+        // Copy the replacement, since the caller may keep editing it while the call is queued
+        final String text = replacement.toString();
+        enqueue(new Operation<>("updateContent", (JsonWriter out) -> {
+            out.name("noteId").value(noteId);
+            out.name("start").value(start);
+            out.name("end").value(end);
+            out.name("replacement").value(text);
+        }, JsonReader::nextBoolean, false, callback));
+    }
+
+    @Override
+    public void addAttachment(String noteId, Attachment attachment, ResultCallback<Boolean> callback) {
+        enqueue(new Operation<>("addAttachment", (JsonWriter out) -> {
+            out.name("noteId").value(noteId);
+            out.name("attachment");
+            NoteJson.writeAttachment(out, attachment);
+        }, JsonReader::nextBoolean, false, callback));
+    }
+
+    @Override
+    public void removeAttachment(String noteId, String blobId, ResultCallback<Boolean> callback) {
+        enqueue(new Operation<>("removeAttachment", (JsonWriter out) -> {
+            out.name("noteId").value(noteId);
+            out.name("blobId").value(blobId);
+        }, JsonReader::nextBoolean, false, callback));
+    }
+
+    @Override
+    public void createNotes(List<Note> notes, ResultCallback<Integer> callback) {
+        enqueue(new Operation<>("createNotes", (JsonWriter out) -> {
+            out.name("notes");
+            NoteJson.writeNotes(out, notes);
+        }, JsonReader::nextInt, 0, callback));
+    }
+
+    @Override
+    public void deleteNotes(Collection<String> noteIds, ResultCallback<Integer> callback) {
+        enqueue(new Operation<>("deleteNotes", (JsonWriter out) -> {
+            out.name("noteIds");
+            NoteJson.writeStrings(out, noteIds);
+        }, JsonReader::nextInt, 0, callback));
+    }
+
+    private void enqueue(Operation<?> operation) {
+        if (shutdown) {
+            operation.fail();
+            return;
+        }
+        queue.add(operation);
+    }
+
+    private void runConnection() {
+        List<Operation<?>> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (!shutdown) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                send(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Send a batch of operations in one request and complete each of them
+     */
+    private void send(List<Operation<?>> batch) {
+        try {
+            byte[] body = encode(batch);
+            boolean gzipped = body.length >= GZIP_THRESHOLD;
+            if (gzipped) body = gzip(body);
+
+            HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            if (gzipped) connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            bytesSent.addAndGet(body.length);
+
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                InputStream error = connection.getErrorStream();
+                if (error != null) drainAndClose(error);
+                throw new IOException("HTTP " + status);
+            }
+            InputStream in = new CountingInputStream(connection.getInputStream(), bytesReceived);
+            if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) in = new GZIPInputStream(in);
+            JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            reader.beginArray();
+            for (Operation<?> operation : batch) {
+                operation.read(reader);
+            }
+            reader.endArray();
+            // Read to the end, so the connection can be reused
+            drainAndClose(in);
+        } catch (IOException | RuntimeException error) {
+            Log.w(TAG, "Request of " + batch.size() + " operations failed", error);
+        } finally {
+            for (Operation<?> operation : batch) {
+                operation.fail();
+            }
+        }
+    }
+
+    /**
+     * The key of a read in the cache: the operation name and the JSON of its variables
+     */
+    private static String cacheKey(String name, Variables variables) {
+        try {
+            StringWriter key = new StringWriter();
+            key.write(name);
+            JsonWriter out = new JsonWriter(key);
+            out.beginObject();
+            variables.write(out);
+            out.endObject();
+            out.close();
+            return key.toString();
+        } catch (IOException error) {
+            throw new IllegalStateException(error);   // A StringWriter does not throw
+        }
+    }
+
+    private static int sizeOf(String key, CachedResult value) {
+        return CACHE_ENTRY_OVERHEAD_BYTES + 2 * (key.length() + value.etag.length() + value.json.length());
+    }
+
+    private static byte[] encode(List<Operation<?>> batch) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+        writer.beginArray();
+        for (Operation<?> operation : batch) {
+            operation.write(writer);
+        }
+        writer.endArray();
+        writer.close();
+        return body.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(result)) {
+            out.write(data);
+        }
+        return result.toByteArray();
+    }
+
+    private static void drainAndClose(InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+        try (InputStream stream = in) {
+            while (stream.read(buffer) >= 0) {
+                // Discard
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services.network;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JSON encoding of the models on the wire, shared by the client and the stand-in
+ * server.  A note is an object with "noteId", "title", "content", "contentFingerprint"
+ * (see {@link Note#getContentFingerprint()}) and (if it has any) "tags" and
+ * "attachments".  The fingerprint is optional; when it is sent, the receiver does not
+ * have to compute it over the whole content to compare the note with one it has.  An
+ * attachment is an object with "blobId", "fileName", "mimeType" and "size", and never
+ * carries the attached bytes; a page is an object with "items" and "nextToken"; a tag
+ * filter is one of {"tag": name}, {"all": [filters]}, {"any": [filters]} or
+ * {"not": filter}.
+ *
+ * Everything is read and written as a stream, without building a tree of the document.
+ */
+final class NoteJson {
+    private NoteJson() {
+    }
+
+    static void writeNote(JsonWriter out, Note note) throws IOException {
+        if (note == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("noteId").value(note.getNoteId());
+        out.name("title").value(note.getTitle());
+        out.name("content").value(note.getContent());
+        out.name("contentFingerprint").value(note.getContentFingerprint());
+        if (!note.getTags().isEmpty()) {
+            out.name("tags");
+            writeStrings(out, note.getTags());
+        }
+        if (!note.getAttachments().isEmpty()) {
+            out.name("attachments").beginArray();
+            for (Attachment attachment : note.getAttachments()) {
+                writeAttachment(out, attachment);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    static Note readNote(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        NoteId id = null;
+        String title = "";
+        String content = "";
+        long contentFingerprint = 0;
+        List<String> tags = null;
+        List<Attachment> attachments = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (name.equals("noteId")) {
+                id = NoteId.tryParse(in.nextString());
+            } else if (name.equals("title")) {
+                title = in.nextString();
+            } else if (name.equals("content")) {
+                content = in.nextString();
+            } else if (name.equals("contentFingerprint")) {
+                contentFingerprint = in.nextLong();
+            } else if (name.equals("tags")) {
+                tags = readStrings(in);
+            } else if (name.equals("attachments")) {
+                attachments = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    attachments.add(readAttachment(in));
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        if (id == null) throw new IOException("Note without a valid noteId");
+        NoteContent body = (contentFingerprint != 0) ? new NoteContent(content, contentFingerprint) : new NoteContent(content);
+        Note note = new Note(id, title, body);
+        if (tags != null) note.setTags(tags);
+        if (attachments != null) note.setAttachments(attachments);
+        return note;
+    }
+
+    static void writeAttachment(JsonWriter out, Attachment attachment) throws IOException {
+        out.beginObject();
+        out.name("blobId").value(attachment.getBlobId());
+        out.name("fileName").value(attachment.getFileName());
+        out.name("mimeType").value(attachment.getMimeType());
+        out.name("size").value(attachment.getSize());
+        out.endObject();
+    }
+
+    static Attachment readAttachment(JsonReader in) throws IOException {
+        String blobId = null;
+        String fileName = null;
+        String mimeType = null;
+        long size = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (name.equals("blobId")) {
+                blobId = in.nextString();
+            } else if (name.equals("fileName")) {
+                fileName = in.nextString();
+            } else if (name.equals("mimeType")) {
+                mimeType = in.nextString();
+            } else if (name.equals("size")) {
+                size = in.nextLong();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        if (blobId == null || blobId.isEmpty()) throw new IOException("Attachment without a blobId");
+        return new Attachment(blobId, fileName, mimeType, size);
+    }
+
+    static void writeNotes(JsonWriter out, List<Note> notes) throws IOException {
+        out.beginArray();
+        for (Note note : notes) {
+            writeNote(out, note);
+        }
+        out.endArray();
+    }
+
+    static List<Note> readNotes(JsonReader in) throws IOException {
+        List<Note> notes = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            notes.add(readNote(in));
+        }
+        in.endArray();
+        return notes;
+    }
+
+    /**
+     * Notes by ID are sent as an array of the notes, since each note carries its ID
+     */
+    static void writeNoteMap(JsonWriter out, Map<String, Note> notes) throws IOException {
+        if (notes == null) {
+            out.nullValue();
+            return;
+        }
+        writeNotes(out, new ArrayList<>(notes.values()));
+    }
+
+    static Map<String, Note> readNoteMap(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Map<String, Note> notes = new HashMap<>();
+        for (Note note : readNotes(in)) {
+            if (note != null) notes.put(note.getNoteId(), note);
+        }
+        return notes;
+    }
+
+    static void writePage(JsonWriter out, PagedListConnectionResponse<Note> page) throws IOException {
+        if (page == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("items");
+        writeNotes(out, page.getItems());
+        out.name("nextToken");
+        if (page.getNextToken() == null) {
+            out.nullValue();
+        } else {
+            out.value(page.getNextToken());
+        }
+        out.endObject();
+    }
+
+    static PagedListConnectionResponse<Note> readPage(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<Note> items = new ArrayList<>();
+        String nextToken = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (name.equals("items")) {
+                items = readNotes(in);
+            } else if (name.equals("nextToken")) {
+                nextToken = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new PagedListConnectionResponse<>(items, nextToken);
+    }
+
+    static void writeFilter(JsonWriter out, TagFilter filter) throws IOException {
+        if (filter == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        switch (filter.getOperator()) {
+            case TAG:
+                out.name("tag").value(filter.getTag());
+                break;
+            case NOT:
+                out.name("not");
+                writeFilter(out, filter.getOperands().get(0));
+                break;
+            default:
+                out.name(filter.getOperator() == TagFilter.Operator.ALL ? "all" : "any");
+                out.beginArray();
+                for (TagFilter operand : filter.getOperands()) {
+                    writeFilter(out, operand);
+                }
+                out.endArray();
+                break;
+        }
+        out.endObject();
+    }
+
+    static TagFilter readFilter(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        TagFilter filter = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (name.equals("tag")) {
+                filter = TagFilter.tag(in.nextString());
+            } else if (name.equals("not")) {
+                filter = TagFilter.not(readFilter(in));
+            } else if (name.equals("all") || name.equals("any")) {
+                List<TagFilter> operands = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    operands.add(readFilter(in));
+                }
+                in.endArray();
+                TagFilter[] array = operands.toArray(new TagFilter[operands.size()]);
+                filter = name.equals("all") ? TagFilter.all(array) : TagFilter.any(array);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        if (filter == null) throw new IOException("Empty tag filter");
+        return filter;
+    }
+
+    static void writeStrings(JsonWriter out, Iterable<String> values) throws IOException {
+        out.beginArray();
+        for (String value : values) {
+            out.value(value);
+        }
+        out.endArray();
+    }
+
+    static List<String> readStrings(JsonReader in) throws IOException {
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(in.nextString());
+        }
+        in.endArray();
+        return values;
+    }
+
+    /**
+     * Write a string that may be null
+     */
+    static void writeNullableString(JsonWriter out, String value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value);
+        }
+    }
+
+    static String readNullableString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+}
@@ -0,0 +1,504 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services.network;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+import com.amazonaws.mobile.samples.mynotes.services.DataService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A small HTTP/1.1 server that answers the requests of {@link NetworkDataService} from
+ * another data service (normally a MockDataService), so that the network path can be
+ * run and measured on a device or machine without a backend.  It listens on the loopback
+ * interface only.
+ *
+ * It supports what the client uses: POST with a Content-Length body, keep-alive
+ * connections, and gzip in both directions.  Each connection is served by its own thread.
+ * In each operation, "operationName" must come before "variables".
+ *
+ * The results of reads (getNote, loadContent and loadNotes) are tagged with an "etag", a
+ * hash of their JSON.  If an operation carries an "ifNoneMatch" equal to the tag of its
+ * result, the result is replaced by "notModified": true.  The backing service still does
+ * the work; only the transfer is saved.
+ */
+public class StandInServer {
+    private static final String TAG = "StandInServer";
+    public static final String PATH = "/graphql";
+
+    private static final int GZIP_THRESHOLD = 1024;
+    private static final int MAX_HEADER_LINE = 8 * 1024;
+    private static final int MAX_BODY = 64 * 1024 * 1024;
+    private static final long OPERATION_TIMEOUT_SECONDS = 30;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * The variables of an operation.  Every operation is parsed into the same holder.
+     */
+    private static class Variables {
+        int limit;
+        String after;
+        TagFilter filter;
+        String noteId;
+        String title;
+        String content;
+        Note note;
+        int start;
+        int end;
+        int count;
+        String replacement;
+        List<Note> notes;
+        List<String> noteIds;
+        Attachment attachment;
+        String blobId;
+    }
+
+    /**
+     * A sink that keeps a 64-bit FNV-1a hash of the characters written to it
+     */
+    private static class HashingWriter extends java.io.Writer {
+        long hash = FNV_OFFSET_BASIS;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            for (int i = offset ; i < offset + length ; i++) {
+                hash ^= buffer[i];
+                hash *= FNV_PRIME;
+            }
+        }
+
+        @Override public void flush() { }
+        @Override public void close() { }
+    }
+
+    /**
+     * A call on the backing data service
+     */
+    private interface Call<T> {
+        void invoke(ResultCallback<T> callback);
+    }
+
+    /**
+     * Writes the result of an operation
+     */
+    private interface Writer<T> {
+        void write(JsonWriter out, T result) throws IOException;
+    }
+
+    private final DataService backend;
+    private ServerSocket serverSocket;
+    private ExecutorService connections;
+
+    public StandInServer(DataService backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Start listening on a free port of the loopback interface
+     *
+     * @return the URL to give to NetworkDataService
+     */
+    public synchronized URL start() throws IOException {
+        if (serverSocket != null) return getEndpoint();
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        final AtomicInteger count = new AtomicInteger(0);
+        connections = Executors.newCachedThreadPool((Runnable runnable) -> {
+            Thread thread = new Thread(runnable, "StandInServer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final ServerSocket listener = serverSocket;
+        final ExecutorService pool = connections;
+        Thread acceptor = new Thread(() -> accept(listener, pool), "StandInServer-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return getEndpoint();
+    }
+
+    public synchronized URL getEndpoint() throws IOException {
+        return new URL("http", "127.0.0.1", serverSocket.getLocalPort(), PATH);
+    }
+
+    public synchronized void stop() {
+        if (serverSocket == null) return;
+        try {
+            serverSocket.close();
+        } catch (IOException error) {
+            Log.w(TAG, "Could not close the server socket", error);
+        }
+        connections.shutdownNow();
+        serverSocket = null;
+        connections = null;
+    }
+
+    private void accept(ServerSocket listener, ExecutorService pool) {
+        while (true) {
+            try {
+                final Socket socket = listener.accept();
+                pool.execute(() -> serve(socket));
+            } catch (SocketException error) {
+                return; // Closed by stop()
+            } catch (IOException | RuntimeException error) {
+                if (listener.isClosed()) return;
+                Log.w(TAG, "Accept failed", error);
+            }
+        }
+    }
+
+    /**
+     * Answer the requests on a connection until the client closes it
+     */
+    private void serve(Socket socket) {
+        try (Socket connection = socket) {
+            connection.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(connection.getInputStream());
+            OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+            while (true) {
+                String requestLine = readLine(in);
+                if (requestLine == null) return;
+                if (requestLine.isEmpty()) continue;
+                Map<String, String> headers = new HashMap<>();
+                for (String line = readLine(in) ; line != null && !line.isEmpty() ; line = readLine(in)) {
+                    int colon = line.indexOf(':');
+                    if (colon > 0) headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US), line.substring(colon + 1).trim());
+                }
+
+                String[] parts = requestLine.split(" ");
+                boolean keepAlive = parts.length == 3 && parts[2].equals("HTTP/1.1") && !"close".equalsIgnoreCase(headers.get("connection"));
+                int length;
+                try {
+                    length = Integer.parseInt(headers.containsKey("content-length") ? headers.get("content-length") : "0");
+                } catch (NumberFormatException error) {
+                    length = -1;
+                }
+                if (length < 0 || length > MAX_BODY || headers.containsKey("transfer-encoding")) {
+                    respond(out, 411, "Length Required", null, false, false);
+                    return;
+                }
+                byte[] body = new byte[length];
+                readFully(in, body);
+
+                if (parts.length != 3 || !parts[0].equals("POST") || !parts[1].equals(PATH)) {
+                    respond(out, 404, "Not Found", null, false, keepAlive);
+                } else {
+                    InputStream request = new ByteArrayInputStream(body);
+                    if ("gzip".equalsIgnoreCase(headers.get("content-encoding"))) request = new GZIPInputStream(request);
+                    byte[] response;
+                    try {
+                        response = execute(request);
+                    } catch (IOException | RuntimeException error) {
+                        Log.w(TAG, "Bad request", error);
+                        respond(out, 400, "Bad Request", null, false, keepAlive);
+                        if (!keepAlive) return;
+                        continue;
+                    }
+                    String acceptEncoding = headers.get("accept-encoding");
+                    boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip") && response.length >= GZIP_THRESHOLD;
+                    respond(out, 200, "OK", response, gzip, keepAlive);
+                }
+                if (!keepAlive) return;
+            }
+        } catch (IOException error) {
+            // The client went away
+        }
+    }
+
+    private static void respond(OutputStream out, int status, String reason, byte[] body, boolean gzip, boolean keepAlive) throws IOException {
+        if (body == null) body = new byte[0];
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream zip = new GZIPOutputStream(compressed)) {
+                zip.write(body);
+            }
+            body = compressed.toByteArray();
+        }
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n");
+        head.append("Content-Type: application/json; charset=utf-8\r\n");
+        head.append("Content-Length: ").append(body.length).append("\r\n");
+        if (gzip) head.append("Content-Encoding: gzip\r\n");
+        head.append(keepAlive ? "Connection: keep-alive\r\n" : "Connection: close\r\n");
+        head.append("\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+        out.flush();
+    }
+
+    /**
+     * Run the operations of a request and encode their results
+     */
+    private byte[] execute(InputStream request) throws IOException {
+        JsonReader in = new JsonReader(new InputStreamReader(request, StandardCharsets.UTF_8));
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        JsonWriter out = new JsonWriter(new OutputStreamWriter(response, StandardCharsets.UTF_8));
+        in.beginArray();
+        out.beginArray();
+        while (in.hasNext()) {
+            String name = null;
+            String ifNoneMatch = null;
+            Variables variables = new Variables();
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (field.equals("operationName")) {
+                    name = in.nextString();
+                } else if (field.equals("variables")) {
+                    readVariables(in, variables);
+                } else if (field.equals("ifNoneMatch") && in.peek() != JsonToken.NULL) {
+                    ifNoneMatch = in.nextString();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            dispatch(name, variables, ifNoneMatch, out);
+        }
+        in.endArray();
+        out.endArray();
+        out.close();
+        return response.toByteArray();
+    }
+
+    private static void readVariables(JsonReader in, Variables variables) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "limit": variables.limit = in.nextInt(); break;
+                case "after": variables.after = in.nextString(); break;
+                case "filter": variables.filter = NoteJson.readFilter(in); break;
+                case "noteId": variables.noteId = in.nextString(); break;
+                case "title": variables.title = in.nextString(); break;
+                case "content": variables.content = in.nextString(); break;
+                case "note": variables.note = NoteJson.readNote(in); break;
+                case "start": variables.start = in.nextInt(); break;
+                case "end": variables.end = in.nextInt(); break;
+                case "count": variables.count = in.nextInt(); break;
+                case "replacement": variables.replacement = in.nextString(); break;
+                case "notes": variables.notes = NoteJson.readNotes(in); break;
+                case "noteIds": variables.noteIds = NoteJson.readStrings(in); break;
+                case "attachment": variables.attachment = NoteJson.readAttachment(in); break;
+                case "blobId": variables.blobId = in.nextString(); break;
+                default: in.skipValue(); break;
+            }
+        }
+        in.endObject();
+    }
+
+    private void dispatch(String name, Variables v, String ifNoneMatch, JsonWriter out) throws IOException {
+        if (name == null) {
+            error(out, "Missing operationName");
+            return;
+        }
+        switch (name) {
+            case "loadNotes":
+                runTagged(out, name, ifNoneMatch, NoteJson::writePage, (ResultCallback<PagedListConnectionResponse<Note>> done) -> backend.loadNotes(v.limit, v.after, v.filter, done));
+                break;
+            case "getNote":
+                runTagged(out, name, ifNoneMatch, NoteJson::writeNote, (ResultCallback<Note> done) -> backend.getNote(v.noteId, done));
+                break;
+            case "getNotes":
+                run(out, name, NoteJson::writeNoteMap, (ResultCallback<Map<String, Note>> done) -> backend.getNotes(v.noteIds, done));
+                break;
+            case "createNote":
+                run(out, name, NoteJson::writeNote, (ResultCallback<Note> done) -> backend.createNote(v.title, v.content, done));
+                break;
+            case "updateNote":
+                run(out, name, NoteJson::writeNote, (ResultCallback<Note> done) -> backend.updateNote(v.note, done));
+                break;
+            case "deleteNote":
+                run(out, name, StandInServer::writeBoolean, (ResultCallback<Boolean> done) -> backend.deleteNote(v.noteId, done));
+                break;
+            case "updateTitle":
+                run(out, name, StandInServer::writeBoolean, (ResultCallback<Boolean> done) -> backend.updateTitle(v.noteId, v.title, done));
+                break;
+            case "loadContent":
+                runTagged(out, name, ifNoneMatch, NoteJson::writeNullableString, (ResultCallback<String> done) -> backend.loadContent(v.noteId, v.start, v.count, done));
+                break;
+            case "updateContent":
+                run(out, name, StandInServer::writeBoolean, (ResultCallback<Boolean> done) -> backend.updateContent(v.noteId, v.start, v.end, v.replacement, done));
+                break;
+            case "addAttachment":
+                run(out, name, StandInServer::writeBoolean, (ResultCallback<Boolean> done) -> backend.addAttachment(v.noteId, v.attachment, done));
+                break;
+            case "removeAttachment":
+                run(out, name, StandInServer::writeBoolean, (ResultCallback<Boolean> done) -> backend.removeAttachment(v.noteId, v.blobId, done));
+                break;
+            case "createNotes":
+                run(out, name, StandInServer::writeInteger, (ResultCallback<Integer> done) -> backend.createNotes(v.notes, done));
+                break;
+            case "deleteNotes":
+                run(out, name, StandInServer::writeInteger, (ResultCallback<Integer> done) -> backend.deleteNotes(v.noteIds, done));
+                break;
+            default:
+                error(out, "Unknown operation " + name);
+                break;
+        }
+    }
+
+    /**
+     * Call the backing data service, wait for the result and write it as the data of the
+     * operation.  Invalid arguments become an error entry rather than failing the request.
+     */
+    private <T> void run(JsonWriter out, String name, Writer<? super T> writer, Call<T> call) throws IOException {
+        run(out, name, false, null, writer, call);
+    }
+
+    /**
+     * Like run(), but tag the result with an etag, and leave it out if the client already
+     * has it
+     */
+    private <T> void runTagged(JsonWriter out, String name, String ifNoneMatch, Writer<? super T> writer, Call<T> call) throws IOException {
+        run(out, name, true, ifNoneMatch, writer, call);
+    }
+
+    private <T> void run(JsonWriter out, String name, boolean tagged, String ifNoneMatch, Writer<? super T> writer, Call<T> call) throws IOException {
+        final AtomicReference<T> result = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        try {
+            call.invoke((T value) -> {
+                result.set(value);
+                done.countDown();
+            });
+            if (!done.await(OPERATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                error(out, name + " timed out");
+                return;
+            }
+        } catch (RuntimeException error) {
+            error(out, name + " failed: " + error.getMessage());
+            return;
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new EOFException("Interrupted");
+        }
+        out.beginObject();
+        if (tagged) {
+            String etag = etag(writer, result.get());
+            out.name("etag").value(etag);
+            if (etag.equals(ifNoneMatch)) {
+                out.name("notModified").value(true);
+                out.endObject();
+                return;
+            }
+        }
+        out.name("data").beginObject();
+        out.name(name);
+        writer.write(out, result.get());
+        out.endObject();
+        out.endObject();
+    }
+
+    /**
+     * A hash of the JSON of a result.  The result is written twice, but the first time
+     * only into the hash, so nothing is buffered.
+     */
+    private static <T> String etag(Writer<? super T> writer, T result) throws IOException {
+        HashingWriter hash = new HashingWriter();
+        JsonWriter out = new JsonWriter(hash);
+        out.beginArray();
+        writer.write(out, result);
+        out.endArray();
+        out.flush();
+        return Long.toHexString(hash.hash);
+    }
+
+    private static void error(JsonWriter out, String message) throws IOException {
+        out.beginObject();
+        out.name("errors").beginArray();
+        out.beginObject().name("message").value(message).endObject();
+        out.endArray();
+        out.endObject();
+    }
+
+    private static void writeBoolean(JsonWriter out, Boolean value) throws IOException {
+        out.value(value != null && value);
+    }
+
+    private static void writeInteger(JsonWriter out, Integer value) throws IOException {
+        out.value(value == null ? 0 : value);
+    }
+
+    /**
+     * Read a CRLF-terminated ASCII line, or null at the end of the stream
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') line.setLength(length - 1);
+                return line.toString();
+            }
+            if (line.length() == MAX_HEADER_LINE) throw new IOException("Header line too long");
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+        int read = 0;
+        while (read < buffer.length) {
+            int count = in.read(buffer, read, buffer.length - read);
+            if (count < 0) throw new EOFException();
+            read += count;
+        }
+    }
+}
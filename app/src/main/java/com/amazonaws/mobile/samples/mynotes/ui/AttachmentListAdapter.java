@@ -0,0 +1,99 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.ui;
+
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.amazonaws.mobile.samples.mynotes.R;
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The strip of attachments at the bottom of a note.  Only the rows the RecyclerView binds
+ * ask for thumbnails, and none are asked for until the strip has been scrolled onto the
+ * screen, so opening a note with many large pictures costs nothing until they are seen.
+ */
+class AttachmentListAdapter extends RecyclerView.Adapter<AttachmentListAdapter.AttachmentViewHolder> {
+    static class AttachmentViewHolder extends RecyclerView.ViewHolder {
+        final ImageView thumbnail;
+        final TextView name;
+
+        AttachmentViewHolder(View view) {
+            super(view);
+            thumbnail = view.findViewById(R.id.attachment_thumbnail);
+            name = view.findViewById(R.id.attachment_name);
+        }
+    }
+
+    private final ThumbnailCache thumbnails;
+    private List<Attachment> attachments = Collections.emptyList();
+    private boolean onScreen = false;
+
+    AttachmentListAdapter(ThumbnailCache thumbnails) {
+        this.thumbnails = thumbnails;
+    }
+
+    void setAttachments(@NonNull List<Attachment> attachments) {
+        this.attachments = attachments;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Start loading thumbnails.  Call this once the strip is on the screen.
+     */
+    void setOnScreen() {
+        if (onScreen) return;
+        onScreen = true;
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public AttachmentViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.attachment_list_content, parent, false);
+        return new AttachmentViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull AttachmentViewHolder holder, int position) {
+        Attachment attachment = attachments.get(position);
+        holder.name.setText(attachment.getFileName());
+        if (onScreen && attachment.isImage()) {
+            thumbnails.load(attachment, holder.thumbnail);
+        } else {
+            thumbnails.cancel(holder.thumbnail);
+        }
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull AttachmentViewHolder holder) {
+        thumbnails.cancel(holder.thumbnail);
+    }
+
+    @Override
+    public int getItemCount() {
+        return attachments.size();
+    }
+}
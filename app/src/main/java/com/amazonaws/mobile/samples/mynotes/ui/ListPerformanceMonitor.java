@@ -0,0 +1,128 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.ui;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.Choreographer;
+
+import com.amazonaws.mobile.samples.mynotes.services.AnalyticsKey;
+import com.amazonaws.mobile.samples.mynotes.services.AnalyticsService;
+
+/**
+ * Collects scroll performance data for the note list: frame durations and dropped frames
+ * while the list is moving, view holder create/bind times, and how often a row had to be
+ * bound before its page was loaded.  Everything is reported as session-level histograms
+ * and counters through the analytics service, so the cost per sample is a couple of
+ * atomic operations.  Frame callbacks are only registered while the list is scrolling.
+ */
+public class ListPerformanceMonitor extends RecyclerView.OnScrollListener implements Choreographer.FrameCallback {
+    private static final AnalyticsKey EVENT_NAME = AnalyticsKey.of("NoteListPerformance");
+    private static final AnalyticsKey METRIC_FRAME_MS = AnalyticsKey.of("frameMs");
+    private static final AnalyticsKey METRIC_DROPPED_FRAMES = AnalyticsKey.of("droppedFrames");
+    private static final AnalyticsKey METRIC_BIND_MS = AnalyticsKey.of("bindMs");
+    private static final AnalyticsKey METRIC_CREATE_MS = AnalyticsKey.of("createMs");
+    private static final AnalyticsKey METRIC_PAGE_MISSES = AnalyticsKey.of("pageMisses");
+
+    /**
+     * The frame budget at 60Hz.  Frames that take longer than this are counted as dropped.
+     */
+    private static final long FRAME_INTERVAL_NANOS = 16_666_667L;
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final AnalyticsService analyticsService;
+    private boolean scrolling = false;
+    private long lastFrameTimeNanos = 0;
+
+    public ListPerformanceMonitor(AnalyticsService analyticsService) {
+        this.analyticsService = analyticsService;
+    }
+
+    /**
+     * Start watching the scroll state of the list
+     */
+    public void attach(RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(this);
+    }
+
+    /**
+     * Stop watching the list.  Call this when the list is going away.
+     */
+    public void detach(RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(this);
+        stopFrameTracking();
+    }
+
+    /**
+     * Record the time taken by onCreateViewHolder()
+     *
+     * @param startNanos the System.nanoTime() value when the call started
+     */
+    void recordCreate(long startNanos) {
+        analyticsService.recordHistogram(EVENT_NAME, METRIC_CREATE_MS, (System.nanoTime() - startNanos) / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Record the time taken by onBindViewHolder()
+     *
+     * @param startNanos the System.nanoTime() value when the call started
+     */
+    void recordBind(long startNanos) {
+        analyticsService.recordHistogram(EVENT_NAME, METRIC_BIND_MS, (System.nanoTime() - startNanos) / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Record that a row was bound before the page that contains it was loaded
+     */
+    void recordPageMiss() {
+        analyticsService.incrementCounter(EVENT_NAME, METRIC_PAGE_MISSES, 1);
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            stopFrameTracking();
+        } else if (!scrolling) {
+            scrolling = true;
+            lastFrameTimeNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!scrolling) return;
+
+        if (lastFrameTimeNanos != 0) {
+            long duration = frameTimeNanos - lastFrameTimeNanos;
+            analyticsService.recordHistogram(EVENT_NAME, METRIC_FRAME_MS, duration / NANOS_PER_MILLI);
+            long dropped = duration / FRAME_INTERVAL_NANOS - 1;
+            if (dropped > 0) {
+                analyticsService.incrementCounter(EVENT_NAME, METRIC_DROPPED_FRAMES, dropped);
+            }
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void stopFrameTracking() {
+        if (scrolling) {
+            scrolling = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+}
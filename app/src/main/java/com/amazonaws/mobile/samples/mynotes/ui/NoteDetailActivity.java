@@ -25,9 +25,13 @@ import android.view.MenuItem;
 import com.amazonaws.mobile.samples.mynotes.Injection;
 import com.amazonaws.mobile.samples.mynotes.NotesApp;
 import com.amazonaws.mobile.samples.mynotes.R;
+import com.amazonaws.mobile.samples.mynotes.services.AnalyticsEvent;
+import com.amazonaws.mobile.samples.mynotes.services.AnalyticsKey;
 import com.amazonaws.mobile.samples.mynotes.services.AnalyticsService;
 
 public class NoteDetailActivity extends AppCompatActivity {
+    private static final AnalyticsKey EVENT_NAME = AnalyticsKey.of("NoteDetailActivity");
+
     /**
      * Injection of the Analytics Service
      */
@@ -59,7 +63,7 @@ public class NoteDetailActivity extends AppCompatActivity {
     @Override
     public void onResume() {
         super.onResume();
-        analyticsService.recordEvent("NoteDetailActivity", null, null);
+        analyticsService.recordEvent(AnalyticsEvent.obtain(EVENT_NAME));
     }
 
     @Override
@@ -16,26 +16,59 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 package com.amazonaws.mobile.samples.mynotes.ui;
 
+import android.app.Activity;
 import android.arch.lifecycle.ViewModelProviders;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Rect;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.Fragment;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.EditText;
+import android.widget.Toast;
 
+import com.amazonaws.mobile.samples.mynotes.Injection;
 import com.amazonaws.mobile.samples.mynotes.NotesApp;
 import com.amazonaws.mobile.samples.mynotes.R;
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
 import com.amazonaws.mobile.samples.mynotes.models.Note;
 import com.amazonaws.mobile.samples.mynotes.viewmodels.NoteDetailViewModel;
 
+import java.util.List;
+
 public class NoteDetailFragment extends Fragment {
+    private static final int REQUEST_ATTACH = 1;
+
     NoteDetailViewModel viewModel;
     String noteId;
 
+    /**
+     * True while the fields are being filled in from the view model, so the text watchers
+     * do not treat loaded text as user edits
+     */
+    private boolean updatingFields = false;
+
+    /**
+     * The number of characters of content currently in the content field from the loader
+     */
+    private int shownContentLength = 0;
+
+    /**
+     * Watches for the attachment strip coming onto the screen, until it has
+     */
+    private ViewTreeObserver.OnPreDrawListener attachmentsOnScreenListener = null;
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -45,6 +78,7 @@ public class NoteDetailFragment extends Fragment {
             String noteId = arguments.getString(NotesApp.ITEM_ID);
             this.noteId = (noteId.equals("new")) ? null : noteId;
         }
+        setHasOptionsMenu(true);
     }
 
     @Override
@@ -57,15 +91,47 @@ public class NoteDetailFragment extends Fragment {
         final EditText contentField = view.findViewById(R.id.edit_content);
         contentField.setEnabled(false);
 
+        // The attachments show their names straight away, but the thumbnails are only
+        // loaded once the strip has been scrolled onto the screen
+        final RecyclerView attachmentList = view.findViewById(R.id.attachment_list);
+        final AttachmentListAdapter attachmentAdapter = new AttachmentListAdapter(Injection.getThumbnailCache());
+        attachmentList.setLayoutManager(new LinearLayoutManager(getContext(), LinearLayoutManager.HORIZONTAL, false));
+        attachmentList.setAdapter(attachmentAdapter);
+        final Rect visible = new Rect();
+        attachmentsOnScreenListener = () -> {
+            if (attachmentList.getVisibility() == View.VISIBLE && attachmentList.getLocalVisibleRect(visible)) {
+                attachmentAdapter.setOnScreen();
+                stopWatchingAttachments();
+            }
+            return true;
+        };
+        view.getViewTreeObserver().addOnPreDrawListener(attachmentsOnScreenListener);
+
         viewModel = ViewModelProviders.of(this).get(NoteDetailViewModel.class);
+        shownContentLength = 0;
         // Observe the view model values.  Once we receive the value, enable the field.
         viewModel.getTitle().observe(this, (String title) -> {
+            updatingFields = true;
             titleField.setText(title);
+            updatingFields = false;
             titleField.setEnabled(true);
         });
-        viewModel.getContent().observe(this, (String content) -> {
-            contentField.setText(content);
-            contentField.setEnabled(true);
+        // The content arrives a piece at a time - append each new piece as it arrives, so
+        // the first screen shows up before the whole note has loaded.  Editing is enabled
+        // once the whole note is there.
+        viewModel.getLoadedLength().observe(this, (Integer loaded) -> {
+            if (loaded > shownContentLength) {
+                updatingFields = true;
+                contentField.append(viewModel.readContent(shownContentLength, loaded - shownContentLength));
+                updatingFields = false;
+                shownContentLength = loaded;
+            }
+            if (viewModel.isContentComplete()) contentField.setEnabled(true);
+        });
+
+        viewModel.getAttachments().observe(this, (List<Attachment> attachments) -> {
+            attachmentAdapter.setAttachments(attachments);
+            attachmentList.setVisibility(attachments.isEmpty() ? View.GONE : View.VISIBLE);
         });
 
         // If this is a new note, create the note, then enable the fields.  Otherwise just load the fields
@@ -79,19 +145,64 @@ public class NoteDetailFragment extends Fragment {
             viewModel.setNoteId(noteId);
         }
 
-        TextWatcher saveHandler = new TextWatcher() {
+        titleField.addTextChangedListener(new TextWatcher() {
             @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) { }
             @Override public void onTextChanged(CharSequence s, int start, int before, int count) { }
             @Override public void afterTextChanged(Editable s) {
-                String title = titleField.getText().toString();
-                String content = contentField.getText().toString();
-                viewModel.update(title, content);
+                if (!updatingFields) viewModel.updateTitle(s.toString());
             }
-        };
+        });
 
-        titleField.addTextChangedListener(saveHandler);
-        contentField.addTextChangedListener(saveHandler);
+        // Only the edited range is passed on, so a keystroke does not copy the whole note
+        contentField.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) { }
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) {
+                if (!updatingFields) viewModel.editContent(start, before, s.subSequence(start, start + count).toString());
+            }
+            @Override public void afterTextChanged(Editable s) { }
+        });
 
         return view;
     }
+
+    @Override
+    public void onDestroyView() {
+        stopWatchingAttachments();
+        super.onDestroyView();
+    }
+
+    private void stopWatchingAttachments() {
+        View view = getView();
+        if (attachmentsOnScreenListener != null && view != null) {
+            view.getViewTreeObserver().removeOnPreDrawListener(attachmentsOnScreenListener);
+        }
+        attachmentsOnScreenListener = null;
+    }
+
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+        inflater.inflate(R.menu.note_detail, menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() != R.id.action_attach) return super.onOptionsItemSelected(item);
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT)
+                .addCategory(Intent.CATEGORY_OPENABLE)
+                .setType("*/*");
+        startActivityForResult(intent, REQUEST_ATTACH);
+        return true;
+    }
+
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode != REQUEST_ATTACH || resultCode != Activity.RESULT_OK || data == null || data.getData() == null) {
+            super.onActivityResult(requestCode, resultCode, data);
+            return;
+        }
+        final Context context = getContext().getApplicationContext();
+        viewModel.addAttachment(context.getContentResolver(), data.getData(), (Attachment result) -> {
+            if (result == null) Toast.makeText(context, R.string.attach_failed, Toast.LENGTH_SHORT).show();
+        });
+    }
 }
@@ -17,9 +17,11 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.amazonaws.mobile.samples.mynotes.ui;
 
 import android.arch.lifecycle.ViewModelProviders;
+import android.arch.paging.PagedList;
 import android.content.Intent;
 import android.os.Bundle;
 import android.support.design.widget.FloatingActionButton;
+import android.support.design.widget.Snackbar;
 import android.support.v4.app.Fragment;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.RecyclerView;
@@ -30,13 +32,17 @@ import android.view.View;
 import com.amazonaws.mobile.samples.mynotes.Injection;
 import com.amazonaws.mobile.samples.mynotes.NotesApp;
 import com.amazonaws.mobile.samples.mynotes.R;
+import com.amazonaws.mobile.samples.mynotes.StartupTrace;
 import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.services.AnalyticsEvent;
+import com.amazonaws.mobile.samples.mynotes.services.AnalyticsKey;
 import com.amazonaws.mobile.samples.mynotes.services.AnalyticsService;
 import com.amazonaws.mobile.samples.mynotes.viewmodels.NoteListViewModel;
 
-import java.util.HashMap;
-
 public class NoteListActivity extends AppCompatActivity {
+    private static final AnalyticsKey EVENT_NAME = AnalyticsKey.of("NoteListActivity");
+    private static final AnalyticsKey ATTR_TWO_PANE = AnalyticsKey.of("twoPane");
+
     /**
      * If the device is running in two-pane mode, then this is set to true.  In two-pane mode,
      * the UI is a side-by-side, with the list on the left and the details on the right.  In one
@@ -54,6 +60,11 @@ public class NoteListActivity extends AppCompatActivity {
      */
     private AnalyticsService analyticsService = Injection.getAnalyticsService();
 
+    /**
+     * Scroll performance instrumentation for the note list
+     */
+    private ListPerformanceMonitor performanceMonitor;
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -71,27 +82,46 @@ public class NoteListActivity extends AppCompatActivity {
         fab.setOnClickListener((View v) -> loadNoteDetailFragment("new"));
 
         // Create the adapter that will be used to load items into the recycler view
-        final NoteListAdapter adapter = new NoteListAdapter((Note item) -> loadNoteDetailFragment(item.getNoteId()));
+        performanceMonitor = new ListPerformanceMonitor(analyticsService);
+        final NoteListAdapter adapter = new NoteListAdapter((Note item) -> loadNoteDetailFragment(item.getNoteId()), performanceMonitor,
+                Injection.getThumbnailCache());
 
-        // Create the swipe-to-delete handler
-        SwipeToDelete swipeHandler = new SwipeToDelete(this, (Note item) -> viewModel.removeNote(item.getNoteId()));
+        // Create the swipe-to-delete handler.  The note is hidden straight away, and only
+        // deleted once the undo window has passed.
+        RecyclerView note_list = findViewById(R.id.note_list);
+        SwipeToDelete swipeHandler = new SwipeToDelete(this, (Note item) -> {
+            viewModel.removeNote(item.getId());
+            Snackbar.make(note_list, R.string.note_deleted, Snackbar.LENGTH_LONG)
+                    .setAction(R.string.undo, (View v) -> viewModel.undoRemoveNote(item.getId()))
+                    .show();
+        });
         ItemTouchHelper swipeToDelete = new ItemTouchHelper(swipeHandler);
 
         // Configure the note list
-        RecyclerView note_list = findViewById(R.id.note_list);
         swipeToDelete.attachToRecyclerView(note_list);
         note_list.setAdapter(adapter);
+        performanceMonitor.attach(note_list);
+        Injection.getMemoryBudget().register(adapter);
 
         // Ensure the note list is updated whenever the repository is updated
-        viewModel.getNotesList().observe(this, adapter::submitList);
+        viewModel.getNotesList().observe(this, (PagedList<Note> notes) -> {
+            adapter.submitList(notes);
+            if (notes != null && !notes.isEmpty()) StartupTrace.reportFirstListFrame(this, note_list);
+        });
+        viewModel.getHiddenNotes().observe(this, adapter::setHiddenNotes);
     }
 
     @Override
     public void onResume() {
         super.onResume();
-        HashMap<String,String> attributes = new HashMap<>();
-        attributes.put("twoPane", twoPane ? "true" : "false");
-        analyticsService.recordEvent("NoteListActivity", attributes, null);
+        analyticsService.recordEvent(AnalyticsEvent.obtain(EVENT_NAME)
+                .putAttribute(ATTR_TWO_PANE, twoPane ? "true" : "false"));
+    }
+
+    @Override
+    public void onDestroy() {
+        performanceMonitor.detach(findViewById(R.id.note_list));
+        super.onDestroy();
     }
 
     /**
@@ -16,55 +16,218 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 package com.amazonaws.mobile.samples.mynotes.ui;
 
+import android.arch.paging.PagedList;
 import android.arch.paging.PagedListAdapter;
+import android.content.ComponentCallbacks2;
 import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
 import android.support.v7.util.DiffUtil;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import com.amazonaws.mobile.samples.mynotes.MemoryBudget;
 import com.amazonaws.mobile.samples.mynotes.R;
+import com.amazonaws.mobile.samples.mynotes.Trimmable;
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
 import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
 import com.amazonaws.mobile.samples.mynotes.models.OnClickCallback;
 
-public class NoteListAdapter extends PagedListAdapter<Note, NoteListViewHolder> {
-    private static DiffUtil.ItemCallback<Note> DIFF_CALLBACK = new DiffUtil.ItemCallback<Note>() {
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class NoteListAdapter extends PagedListAdapter<Note, NoteListViewHolder> implements Trimmable {
+    /**
+     * Change payload flags, passed to onBindViewHolder() when only part of a note changed
+     */
+    static final int CHANGED_TITLE = 1;
+    static final int CHANGED_CONTENT = 2;
+    static final int CHANGED_IMAGE = 4;
+
+    @VisibleForTesting
+    static final DiffUtil.ItemCallback<Note> DIFF_CALLBACK = new DiffUtil.ItemCallback<Note>() {
         @Override
         public boolean areItemsTheSame(Note oldItem, Note newItem) {
-            return oldItem.getNoteId().equals(newItem.getNoteId());
+            return oldItem.getId().equals(newItem.getId());
         }
 
         @Override
         public boolean areContentsTheSame(Note oldItem, Note newItem) {
-            return oldItem.getNoteId().equals(newItem.getNoteId()) &&
-                    oldItem.getTitle().equals(newItem.getTitle()) &&
-                    oldItem.getContent().equals(newItem.getContent());
+            return oldItem == newItem ||
+                    (oldItem.getTitleFingerprint() == newItem.getTitleFingerprint() &&
+                     oldItem.getContentFingerprint() == newItem.getContentFingerprint() &&
+                     sameImage(oldItem, newItem));
+        }
+
+        @Override
+        public Object getChangePayload(Note oldItem, Note newItem) {
+            int changed = 0;
+            if (oldItem.getTitleFingerprint() != newItem.getTitleFingerprint()) changed |= CHANGED_TITLE;
+            if (oldItem.getContentFingerprint() != newItem.getContentFingerprint()) changed |= CHANGED_CONTENT;
+            if (!sameImage(oldItem, newItem)) changed |= CHANGED_IMAGE;
+            return changed;
+        }
+
+        /**
+         * Only the first picture is shown in the list, so other attachments don't matter
+         */
+        private boolean sameImage(Note oldItem, Note newItem) {
+            Attachment oldImage = oldItem.getFirstImage();
+            Attachment newImage = newItem.getFirstImage();
+            return (oldImage == null) ? newImage == null : oldImage.equals(newImage);
         }
     };
 
     private OnClickCallback callback;
+    private ListPerformanceMonitor performanceMonitor;
+    private ThumbnailCache thumbnails;
+    private final RowTextCache rowTextCache = new RowTextCache();
+    private PagedList<Note> observedList = null;
+    private Set<NoteId> hiddenNotes = Collections.emptySet();
+
+    /**
+     * One click listener shared by every row, so binding a row does not allocate
+     */
+    private final View.OnClickListener rowClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            NoteListViewHolder holder = (NoteListViewHolder) v.getTag();
+            if (holder.getNote() != null) callback.onClick(holder.getNote());
+        }
+    };
+
+    /**
+     * Precomputes the row text for each page as it is loaded
+     */
+    private final PagedList.Callback pageCallback = new PagedList.Callback() {
+        @Override
+        public void onInserted(int position, int count) {
+            precomputeRange(position, count);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            precomputeRange(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) { }
+    };
 
-    public NoteListAdapter(OnClickCallback callback) {
+    public NoteListAdapter(OnClickCallback callback, ListPerformanceMonitor performanceMonitor, ThumbnailCache thumbnails) {
         super(DIFF_CALLBACK);
         this.callback = callback;
+        this.performanceMonitor = performanceMonitor;
+        this.thumbnails = thumbnails;
+    }
+
+    @Override
+    public void onCurrentListChanged(PagedList<Note> currentList) {
+        if (observedList != null) observedList.removeWeakCallback(pageCallback);
+        observedList = currentList;
+        if (currentList != null) {
+            rowTextCache.precompute(currentList.snapshot());
+            currentList.addWeakCallback(null, pageCallback);
+        }
+    }
+
+    /**
+     * Set the notes that should not be shown.  Rows for notes that were hidden or shown
+     * by this call are rebound.
+     */
+    public void setHiddenNotes(@NonNull Set<NoteId> hidden) {
+        Set<NoteId> previous = hiddenNotes;
+        hiddenNotes = hidden;
+        if (observedList == null || previous.equals(hidden)) return;
+
+        List<Note> loaded = observedList.snapshot();
+        for (int position = 0 ; position < loaded.size() ; position++) {
+            Note note = loaded.get(position);
+            if (note != null && previous.contains(note.getId()) != hidden.contains(note.getId())) {
+                notifyItemChanged(position);
+            }
+        }
+    }
+
+    @Override
+    public long getSizeBytes() {
+        return rowTextCache.getSizeBytes();
+    }
+
+    /**
+     * Trim the row text cache.  Once the app is in the background, also let go of the
+     * current list, so its loaded pages can be collected; the repository provides a
+     * fresh list when the activity is started again.
+     */
+    @Override
+    public long trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            submitList(null);
+            return rowTextCache.trim(0f);
+        }
+        return rowTextCache.trim(MemoryBudget.retainFraction(level));
+    }
+
+    private void precomputeRange(int position, int count) {
+        if (observedList == null) return;
+        List<Note> loaded = observedList.snapshot();
+        int end = Math.min(position + count, loaded.size());
+        if (position < end) rowTextCache.precompute(loaded.subList(position, end));
     }
 
     @NonNull
     @Override
     public NoteListViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        long start = System.nanoTime();
         LayoutInflater layoutInflater = LayoutInflater.from(parent.getContext());
         View view = layoutInflater.inflate(R.layout.note_list_content, parent, false);
-        return new NoteListViewHolder(view);
+        NoteListViewHolder holder = new NoteListViewHolder(view, thumbnails);
+        rowTextCache.setPaints(holder.getTitlePaint(), holder.getIdPaint());
+        view.setTag(holder);
+        view.setOnClickListener(rowClickListener);
+        performanceMonitor.recordCreate(start);
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull final NoteListViewHolder holder, int position) {
-        holder.setNote(getItem(position));
-        holder.itemView.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                callback.onClick(holder.getNote());
-            }
-        });
+        long start = System.nanoTime();
+        Note note = getItem(position);
+        // A null item is a placeholder - the page holding it has not been loaded yet
+        if (note == null) performanceMonitor.recordPageMiss();
+        holder.setNote(note, note == null ? null : rowTextCache.get(note));
+        holder.setHidden(note != null && hiddenNotes.contains(note.getId()));
+        performanceMonitor.recordBind(start);
+    }
+
+    /**
+     * Stop loading the thumbnail of a row that has scrolled away
+     */
+    @Override
+    public void onViewRecycled(@NonNull NoteListViewHolder holder) {
+        holder.setThumbnail(null);
+    }
+
+    /**
+     * Partial rebind: if the diff produced change payloads, only touch the fields that
+     * changed instead of rebinding the whole row.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull NoteListViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        long start = System.nanoTime();
+        int changed = 0;
+        for (Object payload : payloads) {
+            changed |= (Integer) payload;
+        }
+        Note note = getItem(position);
+        holder.updateNote(note, rowTextCache.get(note), changed);
+        performanceMonitor.recordBind(start);
     }
 }
@@ -17,32 +17,106 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.amazonaws.mobile.samples.mynotes.ui;
 
 import android.support.v7.widget.RecyclerView;
+import android.text.TextPaint;
 import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.amazonaws.mobile.samples.mynotes.R;
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
 import com.amazonaws.mobile.samples.mynotes.models.Note;
 
 public class NoteListViewHolder extends RecyclerView.ViewHolder {
     private TextView titleField;
     private TextView idField;
+    private ImageView thumbnailField;
+    private ThumbnailCache thumbnails;
     private Note note;
 
-    public NoteListViewHolder(View view) {
+    public NoteListViewHolder(View view, ThumbnailCache thumbnails) {
         super(view);
 
         titleField = view.findViewById(R.id.list_title);
         idField = view.findViewById(R.id.list_id);
+        thumbnailField = view.findViewById(R.id.list_thumbnail);
+        this.thumbnails = thumbnails;
     }
 
     public Note getNote() {
         return note;
     }
 
-    public void setNote(Note note) {
+    TextPaint getTitlePaint() {
+        return titleField.getPaint();
+    }
+
+    TextPaint getIdPaint() {
+        return idField.getPaint();
+    }
+
+    /**
+     * Bind the row to a note
+     *
+     * @param note the note, or null for a placeholder
+     * @param text the precomputed row text for the note
+     */
+    void setNote(Note note, RowTextCache.RowText text) {
         this.note = note;
-        String title = note.getTitle();
-        titleField.setText(title == null ? "null" : title);
-        idField.setText(note.getNoteId());
+        if (note == null) {
+            titleField.setText("");
+            idField.setText("");
+            setThumbnail(null);
+            return;
+        }
+        titleField.setText(text.title);
+        idField.setText(text.noteId);
+        setThumbnail(note.getFirstImage());
+    }
+
+    /**
+     * Update the row for a new version of the same note, touching only the fields that changed
+     *
+     * @param note the new version of the note
+     * @param text the precomputed row text for the new version
+     * @param changed a combination of the NoteListAdapter.CHANGED_* flags
+     */
+    void updateNote(Note note, RowTextCache.RowText text, int changed) {
+        this.note = note;
+        if ((changed & NoteListAdapter.CHANGED_TITLE) != 0) {
+            titleField.setText(text.title);
+        }
+        if ((changed & NoteListAdapter.CHANGED_IMAGE) != 0) {
+            setThumbnail(note.getFirstImage());
+        }
+        // The content is not shown in the list, so a content change only needs the new note reference
+    }
+
+    /**
+     * Show the thumbnail of a picture, or hide the thumbnail if there is none.  The
+     * thumbnail is loaded in the background if it is not in memory.
+     */
+    void setThumbnail(Attachment image) {
+        if (image == null) {
+            thumbnails.cancel(thumbnailField);
+            thumbnailField.setVisibility(View.GONE);
+        } else {
+            thumbnailField.setVisibility(View.VISIBLE);
+            thumbnails.load(image, thumbnailField);
+        }
+    }
+
+    /**
+     * Hide or show the row.  A hidden row is collapsed to zero height, so that removed
+     * notes disappear from the list before the list is refreshed.
+     */
+    void setHidden(boolean hidden) {
+        ViewGroup.LayoutParams params = itemView.getLayoutParams();
+        int height = hidden ? 0 : ViewGroup.LayoutParams.WRAP_CONTENT;
+        if (params != null && params.height != height) {
+            params.height = height;
+            itemView.setLayoutParams(params);
+        }
+        itemView.setVisibility(hidden ? View.GONE : View.VISIBLE);
     }
 }
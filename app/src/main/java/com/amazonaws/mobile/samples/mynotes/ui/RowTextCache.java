@@ -0,0 +1,183 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.ui;
+
+import android.os.Process;
+import android.text.TextPaint;
+import android.util.LruCache;
+
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prepares the text shown in each note list row on a background thread as pages arrive.
+ * Titles are cut down to what can fit on the (single, ellipsized) title line, so a very
+ * long title never has to be laid out in full on the UI thread.
+ *
+ * Once the first row has been created, the text is also measured with copies of the
+ * rows' paints.  Shaping text is the costly part of laying it out, and the platform keeps
+ * the shaped words in a process-wide cache, so when a row is bound its TextViews find the
+ * measurements already there.  The line itself is still laid out on the UI thread:
+ * PrecomputedText, which would move that off it too, needs API 28.
+ *
+ * Entries are keyed by the Note instance, so a new version of a note is recomputed.  The
+ * cache is sized by the estimated bytes of the row text, and can be trimmed under memory
+ * pressure.
+ */
+class RowTextCache {
+    /**
+     * More characters than fit on one line of the title on any supported screen
+     */
+    private static final int MAX_TITLE_LENGTH = 120;
+    private static final int MAX_SIZE_BYTES = 256 * 1024;
+
+    /**
+     * Approximate cost of an entry beyond its characters: the RowText, two String headers
+     * and the cache's own node
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 136;
+
+    /**
+     * One background thread shared by every cache.  A cache lives as long as its adapter,
+     * which is recreated with the activity, so a thread per cache would leak a thread on
+     * every rotation.  The thread exits when it has been idle for a while.
+     */
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), (Runnable runnable) -> {
+                Thread thread = new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, "RowTextCache");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The precomputed text for a single row
+     */
+    static final class RowText {
+        final String title;
+        final String noteId;
+
+        RowText(String title, String noteId) {
+            this.title = title;
+            this.noteId = noteId;
+        }
+    }
+
+    /**
+     * Copies of the title and ID paints of a row, only used on the background thread.
+     * They are null until the first row has been created.
+     */
+    private volatile TextPaint titlePaint = null;
+    private volatile TextPaint idPaint = null;
+
+    private final LruCache<Note, RowText> cache = new LruCache<Note, RowText>(MAX_SIZE_BYTES) {
+        @Override
+        protected int sizeOf(Note key, RowText value) {
+            return ENTRY_OVERHEAD_BYTES + 2 * (value.title.length() + value.noteId.length());
+        }
+    };
+
+    /**
+     * Queue a set of notes for precomputation
+     *
+     * @param notes the notes - nulls (placeholders) are skipped
+     */
+    void precompute(final List<Note> notes) {
+        executor.execute(() -> {
+            for (Note note : notes) {
+                if (note != null && cache.get(note) == null) cache.put(note, measure(build(note)));
+            }
+        });
+    }
+
+    /**
+     * Measure the text of rows precomputed from now on with the paints of a row.  Only
+     * the first call has any effect, since every row is styled the same.
+     */
+    void setPaints(TextPaint title, TextPaint id) {
+        if (titlePaint != null) return;
+        idPaint = new TextPaint(id);
+        titlePaint = new TextPaint(title);
+    }
+
+    /**
+     * Get the text for a row, computing it on the spot if the background stage has not
+     * got to it yet.
+     */
+    RowText get(Note note) {
+        RowText text = cache.get(note);
+        if (text == null) {
+            text = build(note);
+            cache.put(note, text);
+        }
+        return text;
+    }
+
+    /**
+     * The estimated size of the cached text, in bytes
+     */
+    long getSizeBytes() {
+        return cache.size();
+    }
+
+    /**
+     * Shrink the cache, evicting the least recently used rows
+     *
+     * @param retain the fraction of the maximum size to keep
+     * @return the bytes released
+     */
+    long trim(float retain) {
+        int before = cache.size();
+        cache.trimToSize(Math.min(before, (int) (cache.maxSize() * retain)));
+        return before - cache.size();
+    }
+
+    /**
+     * Measure the row text, so that the shaped words are in the platform's cache when the
+     * row is bound.  Called on the background thread.
+     */
+    private RowText measure(RowText text) {
+        TextPaint title = titlePaint;
+        TextPaint id = idPaint;
+        if (title != null && id != null) {
+            title.measureText(text.title);
+            id.measureText(text.noteId);
+        }
+        return text;
+    }
+
+    private static RowText build(Note note) {
+        String title = note.getTitle();
+        if (title == null) {
+            title = "null";
+        } else {
+            if (title.length() > MAX_TITLE_LENGTH) title = title.substring(0, MAX_TITLE_LENGTH);
+            title = title.replace('\n', ' ');
+        }
+        return new RowText(title, note.getNoteId());
+    }
+}
@@ -0,0 +1,308 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.amazonaws.mobile.samples.mynotes.MemoryBudget;
+import com.amazonaws.mobile.samples.mynotes.Trimmable;
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+import com.amazonaws.mobile.samples.mynotes.services.BlobStore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Thumbnails of image attachments, cached at two levels: decoded bitmaps in memory, and
+ * small compressed copies on disk.  A thumbnail that is in neither is decoded from the
+ * blob on a background thread - first just the bounds, then with a sample size that
+ * keeps the decoded bitmap close to the thumbnail size - so a multi-megabyte picture is
+ * never decoded (or read into memory) at full size.
+ *
+ * Both levels are bounded: the memory cache by the bytes of its bitmaps, and the disk
+ * cache by the bytes of its files, dropping the least recently used thumbnails first.
+ * The memory cache can be trimmed under memory pressure.
+ *
+ * load() and cancel() must be called on the main thread.  Results are delivered there,
+ * and only to image views that still want the same thumbnail, so recycled rows never
+ * show another row's picture.
+ */
+public class ThumbnailCache implements Trimmable {
+    private static final String TAG = "ThumbnailCache";
+    private static final int MIN_MEMORY_BYTES = 1024 * 1024;
+    private static final int MAX_MEMORY_BYTES = 8 * 1024 * 1024;
+    private static final long MAX_DISK_BYTES = 16L * 1024 * 1024;
+    private static final int DECODE_THREADS = 2;
+    private static final int QUALITY = 80;
+    private static final String SUFFIX = ".webp";
+
+    /**
+     * A thumbnail that is being decoded, and the views waiting for it.  The views are
+     * only touched on the main thread.
+     */
+    private static final class Request {
+        final List<ImageView> views = new ArrayList<>(1);
+        volatile boolean cancelled = false;
+    }
+
+    private final BlobStore blobStore;
+    private final File directory;
+    private final int sizePx;
+    private final LruCache<String, Bitmap> memory;
+    private final ExecutorService decoder = Executors.newFixedThreadPool(DECODE_THREADS, (Runnable task) -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        task.run();
+    }, "ThumbnailCache-decode"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final HashMap<String, Request> pending = new HashMap<>();
+
+    /**
+     * The bytes of the files in the disk cache, or -1 until the directory has been scanned
+     */
+    private long diskBytes = -1;
+    private final Object diskLock = new Object();
+
+    /**
+     * @param blobStore the store that holds the attached pictures
+     * @param directory the directory for the disk cache, which this class owns
+     * @param sizePx the size of a thumbnail; the shorter side is scaled down to this
+     */
+    public ThumbnailCache(BlobStore blobStore, File directory, int sizePx) {
+        this.blobStore = blobStore;
+        this.directory = directory;
+        this.sizePx = sizePx;
+        int maxBytes = (int) Math.max(MIN_MEMORY_BYTES, Math.min(MAX_MEMORY_BYTES, Runtime.getRuntime().maxMemory() / 16));
+        this.memory = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Show the thumbnail of an attachment in an image view.  If it is in memory it is set
+     * right away; otherwise the view is cleared and the thumbnail is set once it has been
+     * loaded, unless the view has been given another attachment (or cancelled) by then.
+     */
+    public void load(Attachment attachment, ImageView view) {
+        final String blobId = attachment.getBlobId();
+        if (blobId.equals(view.getTag())) return;
+        cancel(view);
+        view.setTag(blobId);
+
+        Bitmap cached = memory.get(blobId);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+        view.setImageDrawable(null);
+
+        Request request = pending.get(blobId);
+        if (request != null) {
+            request.views.add(view);
+            return;
+        }
+        final Request created = new Request();
+        created.views.add(view);
+        pending.put(blobId, created);
+        decoder.execute(() -> {
+            if (created.cancelled) return;
+            final Bitmap bitmap = loadThumbnail(blobId);
+            mainHandler.post(() -> deliver(blobId, created, bitmap));
+        });
+    }
+
+    /**
+     * Stop showing a thumbnail in an image view, for example when its row is recycled.  A
+     * decode that no view is waiting for any more is skipped if it has not started.
+     */
+    public void cancel(ImageView view) {
+        Object tag = view.getTag();
+        view.setTag(null);
+        view.setImageDrawable(null);
+        if (!(tag instanceof String)) return;
+
+        Request request = pending.get(tag);
+        if (request == null) return;
+        request.views.remove(view);
+        if (request.views.isEmpty()) {
+            request.cancelled = true;
+            pending.remove(tag);
+        }
+    }
+
+    private void deliver(String blobId, Request request, Bitmap bitmap) {
+        if (pending.get(blobId) == request) pending.remove(blobId);
+        if (bitmap == null) return;
+        memory.put(blobId, bitmap);
+        for (ImageView view : request.views) {
+            if (blobId.equals(view.getTag())) view.setImageBitmap(bitmap);
+        }
+    }
+
+    /**
+     * Load a thumbnail from the disk cache, or make it from the blob.  Runs on a decode thread.
+     */
+    private Bitmap loadThumbnail(String blobId) {
+        // Blob IDs come in with the notes; don't let one name a file outside the directory
+        if (blobId.indexOf('/') >= 0 || blobId.startsWith(".")) return null;
+        File file = new File(directory, blobId + SUFFIX);
+        if (file.isFile()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), null);
+            if (bitmap != null) {
+                file.setLastModified(System.currentTimeMillis());
+                return bitmap;
+            }
+        }
+
+        try {
+            Bitmap bitmap = decodeBlob(blobId);
+            if (bitmap != null) store(file, bitmap);
+            return bitmap;
+        } catch (IOException | IllegalArgumentException error) {
+            Log.w(TAG, "Could not make a thumbnail of " + blobId, error);
+            return null;
+        }
+    }
+
+    /**
+     * Decode a picture at about the thumbnail size.  The blob is streamed twice: once for
+     * its bounds, and once to decode it with a power-of-two sample size.
+     */
+    private Bitmap decodeBlob(String blobId) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = blobStore.open(blobId)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        int sample = 1;
+        while (Math.min(options.outWidth, options.outHeight) / (sample * 2) >= sizePx) {
+            sample *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sample;
+        Bitmap decoded;
+        try (InputStream in = blobStore.open(blobId)) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (decoded == null) return null;
+
+        // The sample size only gets within a factor of two; scale the rest of the way
+        int shorter = Math.min(decoded.getWidth(), decoded.getHeight());
+        if (shorter <= sizePx) return decoded;
+        float scale = (float) sizePx / shorter;
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, Math.max(1, Math.round(decoded.getWidth() * scale)),
+                Math.max(1, Math.round(decoded.getHeight() * scale)), true);
+        if (scaled != decoded) decoded.recycle();
+        return scaled;
+    }
+
+    /**
+     * Write a thumbnail to the disk cache, then drop the least recently used thumbnails
+     * if the cache has grown past its limit
+     */
+    private void store(File file, Bitmap bitmap) {
+        synchronized (diskLock) {
+            if (!directory.isDirectory() && !directory.mkdirs()) return;
+            if (diskBytes < 0) diskBytes = measure(directory.listFiles());
+
+            File temp = new File(file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                bitmap.compress(Bitmap.CompressFormat.WEBP, QUALITY, out);
+            } catch (IOException error) {
+                Log.w(TAG, "Could not cache a thumbnail", error);
+                temp.delete();
+                return;
+            }
+            diskBytes -= file.length();
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                diskBytes = -1;
+                return;
+            }
+            diskBytes += file.length();
+            if (diskBytes > MAX_DISK_BYTES) evict();
+        }
+    }
+
+    /**
+     * Delete the least recently used thumbnails until the disk cache is down to three
+     * quarters of its limit, so eviction does not run again on the next write
+     */
+    private void evict() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        long[] lastUsed = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0 ; i < files.length ; i++) {
+            lastUsed[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (Integer a, Integer b) -> Long.compare(lastUsed[a], lastUsed[b]));
+        for (Integer i : order) {
+            if (diskBytes <= MAX_DISK_BYTES * 3 / 4) break;
+            long length = files[i].length();
+            if (files[i].delete()) diskBytes -= length;
+        }
+    }
+
+    private static long measure(File[] files) {
+        long bytes = 0;
+        if (files != null) {
+            for (File file : files) {
+                bytes += file.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * The bytes of the thumbnails held in memory
+     */
+    @Override
+    public long getSizeBytes() {
+        return memory.size();
+    }
+
+    /**
+     * Drop thumbnails from memory.  The disk copies stay, so they come back cheaply.
+     */
+    @Override
+    public long trimMemory(int level) {
+        int before = memory.size();
+        memory.trimToSize(Math.min(before, (int) (memory.maxSize() * MemoryBudget.retainFraction(level))));
+        return before - memory.size();
+    }
+}
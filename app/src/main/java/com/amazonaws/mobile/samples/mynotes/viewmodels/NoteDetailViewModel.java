@@ -19,55 +19,339 @@ package com.amazonaws.mobile.samples.mynotes.viewmodels;
 import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.MutableLiveData;
 import android.arch.lifecycle.ViewModel;
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.OpenableColumns;
+import android.util.Log;
 
 import com.amazonaws.mobile.samples.mynotes.Injection;
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
 import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
 import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.repository.ContentPatch;
+import com.amazonaws.mobile.samples.mynotes.repository.DraftJournal;
 import com.amazonaws.mobile.samples.mynotes.repository.NotesRepository;
+import com.amazonaws.mobile.samples.mynotes.services.RequestGroup;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Edits are recorded in the draft journal as they are made, and saved to the repository
+ * once typing pauses for SAVE_DELAY_MS (or at least every MAX_SAVE_DELAY_MS while it goes
+ * on).  A save sends the title, if it changed, and one range update covering every content
+ * edit since the last save.  Only one save is in flight at a time, so the ranges reach the
+ * data service in order.  A range update that fails is only sent again once the stored
+ * content shows that it did not land, so that it is never applied twice.
+ *
+ * Only the descriptions of the attachments come with the note.  Files are attached on a
+ * background thread, streaming them from the content resolver into the blob store.
+ */
 public class NoteDetailViewModel extends ViewModel {
+    private static final String TAG = "NoteDetailViewModel";
+
+    /**
+     * How much content to load per request.  The first request covers more than a screen,
+     * so the editor can show something while the rest of the note loads.
+     */
+    private static final int CONTENT_PAGE_SIZE = 16 * 1024;
+
+    /**
+     * A failed content load is tried this many times in all, waiting twice as long before
+     * each retry.  If it still fails, the content stays read-only.
+     */
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+    private static final long LOAD_RETRY_DELAY_MS = 1000;
+
+    private static final long SAVE_DELAY_MS = 2000;
+    private static final long MAX_SAVE_DELAY_MS = 10000;
+
     private String noteId;
     private MutableLiveData<String> mTitle;
-    private MutableLiveData<String> mContent;
+    private MutableLiveData<Integer> mLoadedLength;
+    private MutableLiveData<List<Attachment>> mAttachments;
+    private volatile boolean contentComplete = false;
+    private final NoteContent content = new NoteContent();
     private NotesRepository notesRepository;
 
+    /**
+     * The loads for this screen, which are cancelled when it goes away
+     */
+    private final RequestGroup loads = new RequestGroup();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable saveTask = this::save;
+    private final ExecutorService attacher = Executors.newSingleThreadExecutor();
+    private DraftJournal journal;
+
+    // The changes not yet sent to the repository
+    private ContentPatch unsavedContent = new ContentPatch();
+    private String unsavedTitle = null;
+    private long unsavedSequence = 0;
+    private long firstUnsavedAt = 0;
+    private boolean saving = false;
+
     public NoteDetailViewModel() {
         this.notesRepository = Injection.getNotesRepository();
+        this.journal = notesRepository.getDraftJournal();
         this.mTitle = new MutableLiveData<>();
-        this.mContent = new MutableLiveData<>();
+        this.mLoadedLength = new MutableLiveData<>();
+        this.mAttachments = new MutableLiveData<>();
     }
 
     public void setNoteId(final String noteId) {
+        // The view model outlives the fragment, so a rotation sets the same note again
+        if (noteId.equals(this.noteId)) return;
         this.noteId = noteId;
-        notesRepository.get(noteId, (Note result) -> {
-            if (result != null)
+        notesRepository.get(noteId, loads, (Note result) -> {
+            if (result != null) {
                 mTitle.postValue(result.getTitle());
-                mContent.postValue(result.getContent());
+                mAttachments.postValue(result.getAttachments());
                 this.noteId = result.getNoteId();
+            }
         });
+        loadContent(0, 0);
     }
 
     public LiveData<String> getTitle() {
         return mTitle;
     }
 
-    public LiveData<String> getContent() {
-        return mContent;
+    /**
+     * The number of characters of content loaded so far.  Once isContentComplete() returns
+     * true, this is the whole note.
+     */
+    public LiveData<Integer> getLoadedLength() {
+        return mLoadedLength;
+    }
+
+    /**
+     * The attachments of the note.  Only their descriptions are loaded; thumbnails are
+     * loaded by whatever shows them.
+     */
+    public LiveData<List<Attachment>> getAttachments() {
+        return mAttachments;
+    }
+
+    public boolean isContentComplete() {
+        return contentComplete;
+    }
+
+    /**
+     * Read part of the loaded content
+     */
+    public String readContent(int start, int count) {
+        return content.read(start, count);
     }
 
     public synchronized void create(String title, String content, ResultCallback<Note> callback) {
         notesRepository.create(title, content, (Note result) -> {
             if (result != null) {
                 noteId = result.getNoteId();
+                mAttachments.setValue(Collections.<Attachment>emptyList());
+                this.content.append(content);
+                contentComplete = true;
                 callback.onResult(result);
             }
         });
     }
 
-    public synchronized void update(String title, String content) {
-        Note newNote = new Note(noteId, title, content);
-        notesRepository.update(newNote, (Note result) -> {
-            /* Do Nothing */
+    public synchronized void updateTitle(String title) {
+        unsavedTitle = title;
+        if (journal != null) unsavedSequence = journal.recordTitle(noteId, title);
+        scheduleSave();
+    }
+
+    /**
+     * Apply an edit to the content: the characters in [start, start + before) were replaced
+     * by the replacement text.  Only the edited range is sent to the data store.
+     */
+    public synchronized void editContent(int start, int before, String replacement) {
+        content.replace(start, start + before, replacement);
+        unsavedContent.apply(start, start + before, replacement.length());
+        if (journal != null) unsavedSequence = journal.recordEdit(noteId, start, start + before, replacement);
+        scheduleSave();
+    }
+
+    private void scheduleSave() {
+        long now = SystemClock.uptimeMillis();
+        if (firstUnsavedAt == 0) firstUnsavedAt = now;
+        handler.removeCallbacks(saveTask);
+        handler.postDelayed(saveTask, Math.max(0, Math.min(SAVE_DELAY_MS, firstUnsavedAt + MAX_SAVE_DELAY_MS - now)));
+    }
+
+    /**
+     * Send the unsaved changes to the repository.  Whatever fails to save is merged back
+     * into the unsaved changes and tried again later.
+     */
+    private synchronized void save() {
+        handler.removeCallbacks(saveTask);
+        if (saving || (unsavedTitle == null && unsavedContent.isEmpty())) return;
+
+        final String savedNoteId = noteId;
+        final String title = unsavedTitle;
+        final ContentPatch patch = unsavedContent;
+        final long sequence = unsavedSequence;
+        unsavedTitle = null;
+        unsavedContent = new ContentPatch();
+        firstUnsavedAt = 0;
+        saving = true;
+
+        final boolean[] failed = new boolean[1];
+        final int[] remaining = { 1 };
+        final Runnable finish = () -> {
+            synchronized (this) {
+                if (--remaining[0] > 0) return;
+                saving = false;
+                if (!failed[0] && journal != null) journal.recordSaved(savedNoteId, sequence);
+                if (unsavedTitle != null || !unsavedContent.isEmpty()) scheduleSave();
+            }
+        };
+
+        final long fingerprint = content.getFingerprint();
+        if (journal != null) journal.recordSaving(savedNoteId, sequence, fingerprint);
+        if (title != null) {
+            remaining[0]++;
+            notesRepository.updateTitle(savedNoteId, title, (Boolean result) -> {
+                synchronized (this) {
+                    if (!result) {
+                        failed[0] = true;
+                        if (unsavedTitle == null) unsavedTitle = title;
+                        unsavedSequence = Math.max(unsavedSequence, sequence);
+                    }
+                }
+                finish.run();
+            });
+        }
+        if (!patch.isEmpty()) {
+            remaining[0]++;
+            String replacement = content.read(patch.getStart(), patch.getEnd() - patch.getStart());
+            notesRepository.updateContent(savedNoteId, patch.getStart(), patch.getBaseEnd(), replacement, (Boolean result) -> {
+                if (result) {
+                    finish.run();
+                    return;
+                }
+                // A call that timed out or lost its response fails like one that was never
+                // made, so check what is stored before sending the range again
+                confirmContent(savedNoteId, fingerprint, (Boolean stored) -> {
+                    synchronized (this) {
+                        if (!stored) {
+                            // The edits made since are relative to the content with this
+                            // patch, so they go after it
+                            failed[0] = true;
+                            patch.apply(unsavedContent);
+                            unsavedContent = patch;
+                            unsavedSequence = Math.max(unsavedSequence, sequence);
+                        }
+                    }
+                    finish.run();
+                });
+            });
+        }
+        finish.run();
+    }
+
+    /**
+     * Find out whether a content update whose call failed reached the data store anyway,
+     * by comparing the stored content's fingerprint with the one the update would give.
+     * Until the note can be read, it is tried again every SAVE_DELAY_MS; the save stays in
+     * flight meanwhile, so no later range is sent on top of an unknown one.
+     *
+     * @param callback true if the stored content is the content as saved
+     */
+    private void confirmContent(final String savedNoteId, final long fingerprint, final ResultCallback<Boolean> callback) {
+        notesRepository.get(savedNoteId, (Note stored) -> {
+            if (stored == null) {
+                handler.postDelayed(() -> confirmContent(savedNoteId, fingerprint, callback), SAVE_DELAY_MS);
+                return;
+            }
+            callback.onResult(stored.getContentFingerprint() == fingerprint);
         });
     }
+
+    /**
+     * Attach a file picked by the user.  The file is streamed into the blob store on a
+     * background thread, then added to the note.
+     *
+     * @param callback the new attachment, or null if the file could not be attached;
+     *                 called on the main thread
+     */
+    public void addAttachment(final ContentResolver resolver, final Uri uri, final ResultCallback<Attachment> callback) {
+        final String attachTo = noteId;
+        if (attachTo == null) {
+            callback.onResult(null);
+            return;
+        }
+        attacher.execute(() -> {
+            try (InputStream in = resolver.openInputStream(uri)) {
+                if (in == null) throw new FileNotFoundException(uri.toString());
+                notesRepository.addAttachment(attachTo, in, displayName(resolver, uri), resolver.getType(uri), (Attachment result) -> {
+                    if (result != null) {
+                        List<Attachment> current = mAttachments.getValue();
+                        List<Attachment> attachments = (current == null) ? new ArrayList<>() : new ArrayList<>(current);
+                        attachments.add(result);
+                        mAttachments.setValue(Collections.unmodifiableList(attachments));
+                    }
+                    callback.onResult(result);
+                });
+            } catch (IOException | SecurityException error) {
+                Log.w(TAG, "Could not attach " + uri, error);
+                handler.post(() -> callback.onResult(null));
+            }
+        });
+    }
+
+    /**
+     * The name the provider gives a file, falling back to the last part of its URI
+     */
+    private static String displayName(ContentResolver resolver, Uri uri) {
+        try (Cursor cursor = resolver.query(uri, new String[] { OpenableColumns.DISPLAY_NAME }, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                int column = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+                if (column >= 0 && !cursor.isNull(column)) return cursor.getString(column);
+            }
+        } catch (RuntimeException error) {
+            Log.w(TAG, "Could not query the name of " + uri, error);
+        }
+        return uri.getLastPathSegment();
+    }
+
+    private void loadContent(final int start, final int attempt) {
+        notesRepository.getContent(noteId, start, CONTENT_PAGE_SIZE, loads, (String result) -> {
+            if (result == null) {
+                // A failed load is not the end of the note.  Editing stays disabled, since
+                // saving a partly loaded note would cut off the rest of it.
+                if (attempt + 1 < MAX_LOAD_ATTEMPTS && !loads.isCancelled()) {
+                    handler.postDelayed(() -> loadContent(start, attempt + 1), LOAD_RETRY_DELAY_MS << attempt);
+                } else {
+                    Log.w(TAG, "Could not load the content of " + noteId + " from " + start);
+                }
+                return;
+            }
+            content.append(result);
+            if (result.length() < CONTENT_PAGE_SIZE) contentComplete = true;
+            mLoadedLength.postValue(content.length());
+            if (!contentComplete) loadContent(start + result.length(), 0);
+        });
+    }
+
+    @Override
+    protected void onCleared() {
+        loads.cancel();
+        // Attachments already picked are still stored; the thread ends once they are
+        attacher.shutdown();
+        save();
+        super.onCleared();
+    }
 }
@@ -17,31 +17,141 @@ SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.amazonaws.mobile.samples.mynotes.viewmodels;
 
 import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MediatorLiveData;
 import android.arch.lifecycle.ViewModel;
 import android.arch.paging.PagedList;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.amazonaws.mobile.samples.mynotes.Injection;
 import com.amazonaws.mobile.samples.mynotes.models.Note;
-import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
 import com.amazonaws.mobile.samples.mynotes.repository.NotesRepository;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class NoteListViewModel extends ViewModel {
+    /**
+     * How long a removed note can be restored for.  Every removal restarts the window, so
+     * a burst of removals is committed as one batch.
+     */
+    private static final long UNDO_WINDOW_MS = 4000;
+
     private NotesRepository notesRepository;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Notes that have been removed, but can still be restored
+     */
+    private final Set<NoteId> pendingRemovals = new HashSet<>();
+
+    /**
+     * Notes whose removal has been sent to the data service, but which may still be in the
+     * current list until it is refreshed
+     */
+    private final Set<NoteId> committedRemovals = new HashSet<>();
+
+    /**
+     * The committed batches that the data service has confirmed.  The next list no longer
+     * has them in it; batches still in flight may be in it.
+     */
+    private final List<Set<NoteId>> confirmedRemovals = new ArrayList<>();
+
+    /**
+     * The notes that the list should hide (all of the above)
+     */
+    private final MediatorLiveData<Set<NoteId>> hiddenNotes = new MediatorLiveData<>();
+
+    private final Runnable commitRemovals = this::commitRemovals;
 
     public NoteListViewModel() {
         this.notesRepository = Injection.getNotesRepository();
+        hiddenNotes.setValue(Collections.<NoteId>emptySet());
+        hiddenNotes.addSource(notesRepository.getPagedList(), (PagedList<Note> notes) -> {
+            // The first list after a batch is confirmed no longer has its notes in it
+            if (!confirmedRemovals.isEmpty()) {
+                for (Set<NoteId> batch : confirmedRemovals) {
+                    committedRemovals.removeAll(batch);
+                }
+                confirmedRemovals.clear();
+                publishHiddenNotes();
+            }
+        });
     }
 
     public LiveData<PagedList<Note>> getNotesList() {
         return notesRepository.getPagedList();
     }
 
-    public void removeNote(String noteId) {
-        notesRepository.delete(noteId, new ResultCallback<Boolean>() {
-            @Override
-            public void onResult(Boolean result) {
-                /* Do nothing */
+    /**
+     * The IDs of notes that have been removed, and should not be shown in the list
+     */
+    public LiveData<Set<NoteId>> getHiddenNotes() {
+        return hiddenNotes;
+    }
+
+    /**
+     * Remove a note.  The note is hidden straight away, but is only deleted from the data
+     * service once no note has been removed for the length of the undo window.
+     */
+    public void removeNote(NoteId noteId) {
+        pendingRemovals.add(noteId);
+        publishHiddenNotes();
+        mainHandler.removeCallbacks(commitRemovals);
+        mainHandler.postDelayed(commitRemovals, UNDO_WINDOW_MS);
+    }
+
+    /**
+     * Restore a removed note, if it has not been committed yet
+     *
+     * @return true if the note was restored
+     */
+    public boolean undoRemoveNote(NoteId noteId) {
+        if (!pendingRemovals.remove(noteId)) return false;
+        publishHiddenNotes();
+        if (pendingRemovals.isEmpty()) mainHandler.removeCallbacks(commitRemovals);
+        return true;
+    }
+
+    /**
+     * Send the pending removals to the data service as a single batch
+     */
+    private void commitRemovals() {
+        mainHandler.removeCallbacks(commitRemovals);
+        if (pendingRemovals.isEmpty()) return;
+
+        final Set<NoteId> batch = new HashSet<>(pendingRemovals);
+        final List<String> noteIds = new ArrayList<>(batch.size());
+        for (NoteId noteId : batch) {
+            noteIds.add(noteId.toString());
+        }
+        committedRemovals.addAll(batch);
+        pendingRemovals.clear();
+        notesRepository.delete(noteIds, (Integer result) -> mainHandler.post(() -> {
+            if (result > 0) {
+                confirmedRemovals.add(batch);
+            } else {
+                // Nothing was deleted, so no refresh is coming - stop hiding this batch
+                committedRemovals.removeAll(batch);
+                publishHiddenNotes();
             }
-        });
+        }));
+    }
+
+    private void publishHiddenNotes() {
+        Set<NoteId> hidden = new HashSet<>(pendingRemovals);
+        hidden.addAll(committedRemovals);
+        hiddenNotes.setValue(Collections.unmodifiableSet(hidden));
+    }
+
+    @Override
+    protected void onCleared() {
+        // Nobody can undo any more, so delete straight away
+        commitRemovals();
+        super.onCleared();
     }
 }
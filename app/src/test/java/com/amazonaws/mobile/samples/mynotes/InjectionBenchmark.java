@@ -0,0 +1,156 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes;
+
+import android.content.ContextWrapper;
+
+import com.amazonaws.mobile.samples.mynotes.repository.DraftJournal;
+import com.amazonaws.mobile.samples.mynotes.repository.NoteListSnapshot;
+import com.amazonaws.mobile.samples.mynotes.repository.NotesRepository;
+import com.amazonaws.mobile.samples.mynotes.services.AnalyticsService;
+import com.amazonaws.mobile.samples.mynotes.services.AsyncDataService;
+import com.amazonaws.mobile.samples.mynotes.services.DataService;
+import com.amazonaws.mobile.samples.mynotes.services.FileBlobStore;
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockAnalyticsService;
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockDataService;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Compares Injection with the eager, fully synchronized wiring it replaced: the time
+ * initialize() takes on the calling thread, the time until the repository is available,
+ * and the cost of a getter call once everything is built.  The figures are printed, not
+ * asserted, since they depend on the machine; only the getters' results are checked.
+ *
+ * Both wirings build the same graph, and it is built once beforehand so that neither
+ * pays for loading the classes.  Injection only has one life per process, so everything
+ * is measured in a single test.
+ */
+public class InjectionBenchmark {
+    private static final int READER_THREADS = 4;
+    private static final int READS_PER_THREAD = 2000000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The old wiring: everything is built inside initialize(), and every getter takes
+     * the class monitor
+     */
+    private static final class EagerInjection {
+        private static DataService dataService = null;
+        private static AnalyticsService analyticsService = null;
+        private static NotesRepository notesRepository = null;
+
+        static synchronized NotesRepository getNotesRepository() {
+            return notesRepository;
+        }
+
+        static synchronized void initialize(File filesDir) {
+            if (analyticsService == null) analyticsService = new MockAnalyticsService();
+            if (dataService == null) dataService = new AsyncDataService(new MockDataService(), analyticsService);
+            if (notesRepository == null) notesRepository = buildRepository(dataService, filesDir);
+        }
+    }
+
+    private static NotesRepository buildRepository(DataService dataService, File filesDir) {
+        return new NotesRepository(dataService,
+                new NoteListSnapshot(new File(filesDir, "note_list.snapshot")),
+                new DraftJournal(new File(filesDir, "drafts.journal")),
+                new FileBlobStore(new File(filesDir, "blobs")));
+    }
+
+    private interface Getter {
+        NotesRepository get();
+    }
+
+    @Test
+    public void startupAndAccessAgainstEagerWiring() throws Exception {
+        // Load and initialize every class in the graph, and bootstrap the lambdas, so
+        // that what follows measures the wiring and not the class loader
+        Getter warmUp = () -> null;
+        warmUp.get();
+        buildRepository(new AsyncDataService(new MockDataService(), new MockAnalyticsService()), folder.newFolder("warm-up"));
+
+        final File lazyFiles = folder.newFolder("lazy");
+        long start = System.nanoTime();
+        Injection.initialize(new ContextWrapper(null) {
+            @Override
+            public File getFilesDir() {
+                return lazyFiles;
+            }
+        });
+        long lazyInitialize = System.nanoTime() - start;
+        NotesRepository repository = Injection.getNotesRepository();
+        long lazyFirstAccess = System.nanoTime() - start;
+        assertSame(repository, Injection.getNotesRepository());
+
+        start = System.nanoTime();
+        EagerInjection.initialize(folder.newFolder("eager"));
+        long eagerInitialize = System.nanoTime() - start;
+
+        double lazyRead = nanosPerRead(Injection::getNotesRepository, repository);
+        double eagerRead = nanosPerRead(EagerInjection::getNotesRepository, EagerInjection.getNotesRepository());
+
+        System.out.println(String.format(Locale.US,
+                "initialize(): %.3f ms lazy, %.3f ms eager; repository ready %.3f ms after the lazy initialize()",
+                lazyInitialize / 1e6, eagerInitialize / 1e6, lazyFirstAccess / 1e6));
+        System.out.println(String.format(Locale.US,
+                "getNotesRepository() from %d threads: %.2f ns lazy, %.2f ns synchronized",
+                READER_THREADS, lazyRead, eagerRead));
+    }
+
+    /**
+     * The average time of one getter call while READER_THREADS threads call it at once.
+     * Every call must return the expected instance.
+     */
+    private static double nanosPerRead(final Getter getter, final NotesRepository expected) throws InterruptedException {
+        final AtomicInteger mismatches = new AtomicInteger();
+        for (int round = 0 ; round < 2 ; round++) {     // The first round warms up the JIT
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0 ; t < READER_THREADS ; t++) {
+                threads.add(new Thread(() -> {
+                    int wrong = 0;
+                    for (int i = 0 ; i < READS_PER_THREAD ; i++) {
+                        if (getter.get() != expected) wrong++;
+                    }
+                    mismatches.addAndGet(wrong);
+                }));
+            }
+            long start = System.nanoTime();
+            for (Thread thread : threads) thread.start();
+            for (Thread thread : threads) thread.join();
+            long elapsed = System.nanoTime() - start;
+            if (round == 1) {
+                assertEquals(0, mismatches.get());
+                return (double) elapsed / ((long) READER_THREADS * READS_PER_THREAD);
+            }
+        }
+        throw new AssertionError();
+    }
+}
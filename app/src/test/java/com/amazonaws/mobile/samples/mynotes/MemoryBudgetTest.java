@@ -0,0 +1,51 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryBudgetTest {
+    @Test
+    public void cachesAreOnlyEmptiedWhenNextToBeKilled() {
+        assertEquals(0f, MemoryBudget.retainFraction(ComponentCallbacks2.TRIM_MEMORY_COMPLETE), 0f);
+        assertTrue(MemoryBudget.retainFraction(ComponentCallbacks2.TRIM_MEMORY_MODERATE) > 0f);
+        assertTrue(MemoryBudget.retainFraction(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) > 0f);
+    }
+
+    @Test
+    public void moreIsTrimmedAsPressureRises() {
+        int[] running = {
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE,
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW,
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL };
+        int[] background = {
+                ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN,
+                ComponentCallbacks2.TRIM_MEMORY_BACKGROUND,
+                ComponentCallbacks2.TRIM_MEMORY_MODERATE,
+                ComponentCallbacks2.TRIM_MEMORY_COMPLETE };
+        for (int[] levels : new int[][] { running, background }) {
+            for (int i = 1 ; i < levels.length ; i++) {
+                assertTrue(MemoryBudget.retainFraction(levels[i]) < MemoryBudget.retainFraction(levels[i - 1]));
+            }
+        }
+    }
+}
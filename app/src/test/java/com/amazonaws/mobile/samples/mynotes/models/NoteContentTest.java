@@ -0,0 +1,146 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.models;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+public class NoteContentTest {
+    /**
+     * Text long enough to span several chunks and more than one compressed block
+     */
+    private static String longText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0 ; text.length() < 3 * PackedContent.BLOCK_SIZE ; i++) {
+            text.append("Line ").append(i).append(" of a long note \uD83D\uDCDD\n");
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void editsAcrossChunks() {
+        String text = longText();
+        NoteContent content = new NoteContent(text);
+        StringBuilder expected = new StringBuilder(text);
+
+        content.replace(10, 20, "replaced");
+        expected.replace(10, 20, "replaced");
+        content.replace(NoteContent.CHUNK_SIZE - 5, 3 * NoteContent.CHUNK_SIZE, "");
+        expected.replace(NoteContent.CHUNK_SIZE - 5, 3 * NoteContent.CHUNK_SIZE, "");
+        content.append("the end");
+        expected.append("the end");
+
+        assertEquals(expected.length(), content.length());
+        assertEquals(expected.toString(), content.toString());
+        assertEquals(expected.substring(5000, 9000), content.read(5000, 4000));
+    }
+
+    /**
+     * The fingerprint is kept up to date a chunk at a time, so after any series of edits
+     * it must still be the fingerprint of the text, however the text is chunked
+     */
+    @Test
+    public void fingerprintFollowsEdits() {
+        Random random = new Random(7);
+        String text = longText();
+        NoteContent content = NoteContent.fromPacked(new NoteContent(text).pack());
+        StringBuilder expected = new StringBuilder(text);
+        for (int i = 0 ; i < 100 ; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = Math.min(expected.length(), start + random.nextInt(NoteContent.CHUNK_SIZE / 2));
+            String replacement = (random.nextInt(4) == 0) ? "" : "edit " + i;
+            content.replace(start, end, replacement);
+            expected.replace(start, end, replacement);
+            if (i % 10 == 0) assertEquals(new NoteContent(expected).getFingerprint(), content.getFingerprint());
+        }
+        assertEquals(new NoteContent(expected).getFingerprint(), content.getFingerprint());
+        assertEquals(new NoteContent(expected.toString()).pack().getFingerprint(), content.pack().getFingerprint());
+
+        assertNotEquals(new NoteContent("").getFingerprint(), new NoteContent("\u0000").getFingerprint());
+        assertNotEquals(new NoteContent("ab").getFingerprint(), new NoteContent("ba").getFingerprint());
+    }
+
+    @Test
+    public void packRoundTrip() {
+        String text = longText();
+        NoteContent content = new NoteContent(text);
+        PackedContent packed = content.pack();
+
+        NoteContent unpacked = NoteContent.fromPacked(packed);
+        assertEquals(text.length(), unpacked.length());
+        assertEquals(text, unpacked.toString());
+        assertEquals(content.getFingerprint(), unpacked.getFingerprint());
+        assertEquals(new NoteContent(text).getFingerprint(), packed.getFingerprint());
+        // Unedited content packs back to what it came from
+        assertSame(packed, unpacked.pack());
+    }
+
+    @Test
+    public void packAfterEdit() {
+        String text = longText();
+        NoteContent content = NoteContent.fromPacked(new NoteContent(text).pack());
+        content.replace(text.length() - 4, text.length(), "edit");
+
+        String expected = text.substring(0, text.length() - 4) + "edit";
+        NoteContent repacked = NoteContent.fromPacked(content.pack());
+        assertEquals(expected, repacked.toString());
+        assertEquals(new NoteContent(expected).getFingerprint(), repacked.getFingerprint());
+    }
+
+    @Test
+    public void copyOfPlainContent() {
+        String text = longText();
+        NoteContent original = new NoteContent(text);
+        NoteContent copy = new NoteContent(original);
+        assertEquals(text, copy.toString());
+        assertEquals(original.getFingerprint(), copy.getFingerprint());
+
+        // The copy does not share editable chunks with the original
+        copy.replace(0, 4, "Edit");
+        assertEquals(text, original.toString());
+        assertNotEquals(original.getFingerprint(), copy.getFingerprint());
+    }
+
+    @Test
+    public void copyOfPackedContent() {
+        String text = longText();
+        PackedContent packed = new NoteContent(text).pack();
+        NoteContent copy = new NoteContent(NoteContent.fromPacked(packed));
+        assertEquals(text.length(), copy.length());
+        assertEquals(packed.getFingerprint(), copy.getFingerprint());
+        // Nothing was decompressed, so the copy packs back to the same blocks
+        assertSame(packed, copy.pack());
+        assertEquals(text, copy.toString());
+    }
+
+    @Test
+    public void copyOfPartlyEditedContent() {
+        String text = longText();
+        NoteContent original = NoteContent.fromPacked(new NoteContent(text).pack());
+        original.replace(0, 4, "Edit");
+        NoteContent copy = new NoteContent(original);
+
+        String expected = "Edit" + text.substring(4);
+        assertEquals(expected, copy.toString());
+        assertEquals(new NoteContent(expected).getFingerprint(), copy.getFingerprint());
+    }
+}
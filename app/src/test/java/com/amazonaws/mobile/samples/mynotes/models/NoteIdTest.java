@@ -0,0 +1,86 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.models;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NoteIdTest {
+    @Test
+    public void textRoundTrip() {
+        for (int i = 0 ; i < 1000 ; i++) {
+            NoteId id = NoteId.generate();
+            String text = id.toString();
+            assertEquals(36, text.length());
+            assertEquals(id, NoteId.parse(text));
+            assertEquals(id.hashCode(), NoteId.parse(text).hashCode());
+        }
+    }
+
+    @Test
+    public void sameFormatAsUuid() {
+        UUID uuid = UUID.randomUUID();
+        NoteId id = NoteId.parse(uuid.toString());
+        assertEquals(uuid.getMostSignificantBits(), id.getHigh());
+        assertEquals(uuid.getLeastSignificantBits(), id.getLow());
+        assertEquals(uuid.toString(), id.toString());
+        // Upper case digits are accepted too
+        assertEquals(id, NoteId.parse(uuid.toString().toUpperCase()));
+    }
+
+    @Test
+    public void invalidText() {
+        assertNull(NoteId.tryParse(null));
+        assertNull(NoteId.tryParse(""));
+        assertNull(NoteId.tryParse("0166f5e1-3c2a-7b4e-9f1d-2a6c8e0b4d7"));
+        assertNull(NoteId.tryParse("0166f5e1-3c2a-7b4e-9f1d-2a6c8e0b4d7g"));
+        assertNull(NoteId.tryParse("0166f5e1+3c2a-7b4e-9f1d-2a6c8e0b4d7f"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseRejectsInvalidText() {
+        NoteId.parse("not an id");
+    }
+
+    @Test
+    public void generatedIdsAreOrdered() {
+        List<NoteId> ids = new ArrayList<>();
+        for (int i = 0 ; i < 10000 ; i++) ids.add(NoteId.generate());
+        List<NoteId> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        assertEquals(ids, sorted);
+    }
+
+    @Test
+    public void orderMatchesText() {
+        // The high bit set must sort after it clear, as it does in the text form
+        NoteId small = new NoteId(0x7fffffffffffffffL, 0);
+        NoteId large = new NoteId(0x8000000000000000L, 0);
+        assertTrue(small.compareTo(large) < 0);
+        assertTrue(small.toString().compareTo(large.toString()) < 0);
+        NoteId lowBit = new NoteId(1, 0xffffffffffffffffL);
+        assertTrue(new NoteId(1, 1).compareTo(lowBit) < 0);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.models;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PackedContentTest {
+    @Test
+    public void compressibleTextIsDeflated() {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 2 * PackedContent.BLOCK_SIZE + 100) text.append("All work and no play. ");
+
+        PackedContent packed = new NoteContent(text).pack();
+        assertEquals(text.length(), packed.length());
+        assertEquals(3, packed.getBlocks().length);
+        assertTrue(packed.getBlocks()[0].deflated);
+        assertTrue(packed.getPackedSize() < text.length() / 10);
+        assertEquals(text.toString(), NoteContent.fromPacked(packed).toString());
+    }
+
+    @Test
+    public void incompressibleTextIsKeptPlain() {
+        // Too short for deflate to save anything over its own framing
+        String text = "Milk, eggs";
+
+        PackedContent.Block block = PackedContent.Block.pack(text);
+        assertFalse(block.deflated);
+        assertEquals(text.length(), block.length);
+        assertEquals(text, block.unpack());
+    }
+
+    @Test
+    public void blocksDoNotSplitSurrogatePairs() {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < PackedContent.BLOCK_SIZE - 1) text.append('a');
+        // The pair straddles the block boundary
+        text.append("\uD83D\uDCDD").append("after");
+
+        List<PackedContent.Block> blocks = new ArrayList<>();
+        PackedContent.packInto(text, blocks);
+        assertEquals(2, blocks.size());
+        assertEquals(PackedContent.BLOCK_SIZE + 1, blocks.get(0).length);
+        assertEquals(text.substring(0, PackedContent.BLOCK_SIZE + 1), blocks.get(0).unpack());
+        assertEquals("after", blocks.get(1).unpack());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.models;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TagFilterTest {
+    private static Set<String> tags(String... tags) {
+        return new HashSet<>(Arrays.asList(tags));
+    }
+
+    @Test
+    public void matches() {
+        TagFilter filter = TagFilter.all(TagFilter.tag("work"), TagFilter.anyOf("urgent", "today"), TagFilter.not(TagFilter.tag("done")));
+        assertTrue(filter.matches(tags("work", "urgent")));
+        assertTrue(filter.matches(tags("work", "today", "home")));
+        assertFalse(filter.matches(tags("work")));
+        assertFalse(filter.matches(tags("work", "urgent", "done")));
+        assertFalse(filter.matches(tags("urgent", "today")));
+    }
+
+    @Test
+    public void emptyCombinations() {
+        Set<String> none = Collections.emptySet();
+        assertTrue(TagFilter.all().matches(none));
+        assertFalse(TagFilter.any().matches(tags("work")));
+        assertTrue(TagFilter.not(TagFilter.any()).matches(none));
+    }
+
+    @Test
+    public void equality() {
+        assertEquals(TagFilter.allOf("a", "b"), TagFilter.all(TagFilter.tag("a"), TagFilter.tag("b")));
+        assertEquals(TagFilter.allOf("a", "b").hashCode(), TagFilter.all(TagFilter.tag("a"), TagFilter.tag("b")).hashCode());
+        assertNotEquals(TagFilter.allOf("a", "b"), TagFilter.anyOf("a", "b"));
+        assertNotEquals(TagFilter.allOf("a", "b"), TagFilter.allOf("b", "a"));
+    }
+
+    @Test
+    public void text() {
+        assertEquals("(work AND (urgent OR today) AND NOT done)",
+                TagFilter.all(TagFilter.tag("work"), TagFilter.anyOf("urgent", "today"), TagFilter.not(TagFilter.tag("done"))).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyTagIsRejected() {
+        TagFilter.tag("");
+    }
+}
@@ -0,0 +1,117 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContentPatchTest {
+    /**
+     * Check that the patch turns the original content into the edited content
+     */
+    private static void assertCovers(String original, String edited, ContentPatch patch) {
+        String replacement = edited.substring(patch.getStart(), patch.getEnd());
+        assertEquals(edited, original.substring(0, patch.getStart()) + replacement + original.substring(patch.getBaseEnd()));
+    }
+
+    @Test
+    public void singleEdit() {
+        ContentPatch patch = new ContentPatch();
+        assertTrue(patch.isEmpty());
+        patch.apply(3, 5, 4);
+        assertEquals(3, patch.getStart());
+        assertEquals(5, patch.getBaseEnd());
+        assertEquals(7, patch.getEnd());
+    }
+
+    @Test
+    public void typingAndDeleting() {
+        String original = "Hello world";
+        StringBuilder edited = new StringBuilder(original);
+        ContentPatch patch = new ContentPatch();
+        // Type ", dear" after "Hello", then delete "world"
+        for (char c : ", dear".toCharArray()) {
+            int at = 5 + (edited.length() - original.length());
+            edited.insert(at, c);
+            patch.apply(at, at, 1);
+        }
+        edited.delete(12, 17);
+        patch.apply(12, 17, 0);
+
+        assertEquals("Hello, dear ", edited.toString());
+        assertCovers(original, edited.toString(), patch);
+        assertEquals(11, patch.getBaseEnd());
+    }
+
+    /**
+     * Random edits before, inside, across and after the patched range
+     */
+    @Test
+    public void randomEdits() {
+        Random random = new Random(5);
+        for (int round = 0 ; round < 500 ; round++) {
+            String original = "The quick brown fox jumps over the lazy dog, again and again.";
+            StringBuilder edited = new StringBuilder(original);
+            ContentPatch patch = new ContentPatch();
+            for (int i = 0, edits = 1 + random.nextInt(8) ; i < edits ; i++) {
+                int start = random.nextInt(edited.length() + 1);
+                int end = start + random.nextInt(Math.min(6, edited.length() - start) + 1);
+                String text = "xyz".substring(0, random.nextInt(4));
+                edited.replace(start, end, text);
+                patch.apply(start, end, text.length());
+                assertCovers(original, edited.toString(), patch);
+            }
+        }
+    }
+
+    /**
+     * A patch that failed to save, followed by the edits made while it was in flight
+     */
+    @Test
+    public void composesWithALaterPatch() {
+        Random random = new Random(9);
+        for (int round = 0 ; round < 500 ; round++) {
+            String original = "Lorem ipsum dolor sit amet, consectetur adipiscing elit.";
+            StringBuilder edited = new StringBuilder(original);
+            ContentPatch first = new ContentPatch();
+            ContentPatch later = new ContentPatch();
+            for (int i = 0 ; i < 8 ; i++) {
+                int start = random.nextInt(edited.length() + 1);
+                int end = start + random.nextInt(Math.min(4, edited.length() - start) + 1);
+                String text = "ab".substring(0, random.nextInt(3));
+                edited.replace(start, end, text);
+                (i < 4 ? first : later).apply(start, end, text.length());
+            }
+            first.apply(later);
+            assertCovers(original, edited.toString(), first);
+        }
+    }
+
+    @Test
+    public void applyingAnEmptyPatchChangesNothing() {
+        ContentPatch patch = new ContentPatch();
+        patch.apply(2, 4, 1);
+        patch.apply(new ContentPatch());
+        assertEquals(2, patch.getStart());
+        assertEquals(4, patch.getBaseEnd());
+        assertEquals(3, patch.getEnd());
+    }
+}
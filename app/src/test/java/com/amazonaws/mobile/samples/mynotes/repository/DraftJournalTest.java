@@ -0,0 +1,145 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DraftJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final String first = NoteId.generate().toString();
+    private final String second = NoteId.generate().toString();
+
+    private File journalFile() {
+        return new File(folder.getRoot(), "drafts.journal");
+    }
+
+    private static void append(File file, byte[] bytes) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(out.length());
+            out.write(bytes);
+        }
+    }
+
+    private static void assertEdit(DraftJournal.Edit edit, int start, int end, String replacement) {
+        assertEquals(start, edit.getStart());
+        assertEquals(end, edit.getEnd());
+        assertEquals(replacement, edit.getReplacement());
+    }
+
+    @Test
+    public void unsavedEditsAreRecovered() throws Exception {
+        DraftJournal journal = new DraftJournal(journalFile());
+        assertTrue(journal.recover().isEmpty());
+        journal.recordTitle(first, "Groceries");
+        journal.recordEdit(first, 0, 0, "Milk");
+        long saved = journal.recordEdit(second, 3, 5, "x");
+        journal.recordSaved(second, saved);
+        assertTrue(journal.sync());
+
+        Map<String, DraftJournal.Draft> drafts = new DraftJournal(journalFile()).recover();
+        assertEquals(1, drafts.size());
+        DraftJournal.Draft draft = drafts.get(first);
+        assertEquals("Groceries", draft.getTitle(0));
+        List<DraftJournal.Edit> edits = draft.getEdits(0);
+        assertEquals(1, edits.size());
+        assertEdit(edits.get(0), 0, 0, "Milk");
+    }
+
+    @Test
+    public void tornTailIsDroppedAndTruncated() throws Exception {
+        DraftJournal journal = new DraftJournal(journalFile());
+        journal.recordEdit(first, 0, 0, "one");
+        journal.recordEdit(first, 3, 3, " two");
+        assertTrue(journal.sync());
+        long complete = journalFile().length();
+
+        // A record header that promises more bytes than made it to disk
+        append(journalFile(), new byte[] { 0, 0, 0, 40, 1, 2, 3, 4, 2, 0, 0 });
+
+        DraftJournal reopened = new DraftJournal(journalFile());
+        List<DraftJournal.Edit> edits = reopened.recover().get(first).getEdits(0);
+        assertEquals(2, edits.size());
+        assertEdit(edits.get(1), 3, 3, " two");
+        assertEquals(complete, journalFile().length());
+
+        // New records follow the last complete one, so they are recovered too
+        reopened.recordEdit(first, 7, 7, " three");
+        assertTrue(reopened.sync());
+        edits = new DraftJournal(journalFile()).recover().get(first).getEdits(0);
+        assertEquals(3, edits.size());
+        assertEdit(edits.get(2), 7, 7, " three");
+    }
+
+    @Test
+    public void recoveryStopsAtACorruptRecord() throws Exception {
+        DraftJournal journal = new DraftJournal(journalFile());
+        journal.recordEdit(first, 0, 0, "kept");
+        assertTrue(journal.sync());
+        long valid = journalFile().length();
+        journal.recordEdit(first, 4, 4, "lost");
+        assertTrue(journal.sync());
+
+        // Flip a bit in the payload of the second record, so its checksum fails
+        try (RandomAccessFile file = new RandomAccessFile(journalFile(), "rw")) {
+            file.seek(valid + 12);
+            int b = file.read();
+            file.seek(valid + 12);
+            file.write(b ^ 1);
+        }
+
+        List<DraftJournal.Edit> edits = new DraftJournal(journalFile()).recover().get(first).getEdits(0);
+        assertEquals(1, edits.size());
+        assertEdit(edits.get(0), 0, 0, "kept");
+        assertEquals(valid, journalFile().length());
+    }
+
+    @Test
+    public void saveThatLandedIsNotAppliedTwice() throws Exception {
+        DraftJournal journal = new DraftJournal(journalFile());
+        journal.recordTitle(first, "Title");
+        long upTo = journal.recordEdit(first, 0, 0, "saved");
+        journal.recordSaving(first, upTo, 1234L);
+        journal.recordEdit(first, 5, 5, " later");
+        assertTrue(journal.sync());
+
+        DraftJournal.Draft draft = new DraftJournal(journalFile()).recover().get(first);
+        // The stored content matches the save, so only the later edit is missing
+        List<DraftJournal.Edit> edits = draft.getEdits(1234L);
+        assertEquals(1, edits.size());
+        assertEdit(edits.get(0), 5, 5, " later");
+        assertNull(draft.getTitle(1234L));
+        // It does not, so the save never landed
+        assertEquals(2, draft.getEdits(99L).size());
+        assertEquals("Title", draft.getTitle(99L));
+    }
+}
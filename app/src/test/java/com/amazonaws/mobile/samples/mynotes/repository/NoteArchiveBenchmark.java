@@ -0,0 +1,130 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockDataService;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times an import of a generated archive into the mock data service, and the export of
+ * everything back out of it.  Half of the notes have no "id", so they take the derived-ID
+ * path.  The archive size is the mynotes.archiveNotes system property (default 20,000);
+ * run with -Dmynotes.archiveNotes=1000000 for the figures quoted for large archives.
+ * Nothing is asserted about the timings, which depend on the machine.
+ *
+ * Runs under Robolectric, since android.util.JsonReader and JsonWriter are only stubs in
+ * plain unit tests
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class NoteArchiveBenchmark {
+    private static final int NOTES = Integer.getInteger("mynotes.archiveNotes", 20000);
+    private static final int WARM_UP_NOTES = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void importAndExportThroughput() throws Exception {
+        // Warm both paths up on a small archive first
+        run(WARM_UP_NOTES, false);
+        run(NOTES, true);
+    }
+
+    private void run(int notes, boolean report) throws Exception {
+        File archive = folder.newFile();
+        File exported = folder.newFile();
+        generate(archive, notes);
+        MockDataService service = new MockDataService();
+        int existing = countNotes(service);
+
+        long start = System.nanoTime();
+        long imported;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(archive))) {
+            imported = new NoteArchive(service).importNotes(in, 0, null);
+        }
+        long importNanos = System.nanoTime() - start;
+        assertEquals(notes, imported);
+
+        start = System.nanoTime();
+        long written;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(exported))) {
+            written = new NoteArchive(service).exportNotes(out, null);
+        }
+        long exportNanos = System.nanoTime() - start;
+        assertEquals(notes + existing, written);
+
+        if (report) {
+            System.out.println(String.format(Locale.US,
+                    "Archive of %d notes (%.1f MB): import %.0f notes/s, export %.0f notes/s",
+                    notes, archive.length() / 1e6, notes / (importNanos / 1e9), written / (exportNanos / 1e9)));
+        }
+    }
+
+    /**
+     * Writes an archive of short notes, every other one without an ID and every tenth one
+     * with tags
+     */
+    private static void generate(File file, int notes) throws Exception {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.write('[');
+            for (int i = 0 ; i < notes ; i++) {
+                if (i > 0) out.write(',');
+                out.write('{');
+                if (i % 2 == 0) out.write("\"id\":\"" + NoteId.generate() + "\",");
+                out.write("\"title\":\"Note " + i + "\",\"content\":\"Line one of note " + i + "\\nLine two\\n\"");
+                if (i % 10 == 0) out.write(",\"tags\":[\"work\",\"tag" + (i % 7) + "\"]");
+                out.write('}');
+            }
+            out.write(']');
+        }
+    }
+
+    private static int countNotes(MockDataService service) {
+        final int[] count = { 0 };
+        final String[] token = { null };
+        do {
+            service.loadNotes(100, token[0], page -> {
+                count[0] += page.getItems().size();
+                token[0] = page.getNextToken();
+            });
+        } while (token[0] != null);
+        return count[0];
+    }
+}
@@ -0,0 +1,139 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockDataService;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Runs under Robolectric, since android.util.JsonReader and JsonWriter are only stubs in
+ * plain unit tests
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class NoteArchiveTest {
+    /**
+     * Every note in a mock data service, by ID.  The mock answers synchronously.
+     */
+    private static Map<NoteId, Note> allNotes(MockDataService service) {
+        final Map<NoteId, Note> notes = new HashMap<>();
+        final String[] token = { null };
+        do {
+            service.loadNotes(100, token[0], (PagedListConnectionResponse<Note> page) -> {
+                for (Note note : page.getItems()) notes.put(note.getId(), note);
+                token[0] = page.getNextToken();
+            });
+        } while (token[0] != null);
+        return notes;
+    }
+
+    private static byte[] archive(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void exportedNotesImportUnchanged() throws Exception {
+        MockDataService source = new MockDataService();
+        Note tagged = new Note(NoteId.generate(), "Groceries \u00fc", new NoteContent("Milk\n\"eggs\"\n"));
+        tagged.setTags(Arrays.asList("home", "shopping"));
+        tagged.setAttachments(Collections.singletonList(new Attachment("0a1b2c", "list.png", "image/png", 2048)));
+        StringBuilder large = new StringBuilder();
+        for (int i = 0 ; i < 20000 ; i++) large.append("line ").append(i).append('\n');
+        Note big = new Note(NoteId.generate(), "Large", new NoteContent(large));
+        source.createNotes(Arrays.asList(tagged, big), (Integer created) -> { });
+        Map<NoteId, Note> expected = allNotes(source);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final List<Long> exportProgress = new ArrayList<>();
+        long exported = new NoteArchive(source).exportNotes(out, exportProgress::add);
+        assertEquals(expected.size(), exported);
+        assertEquals(exported, (long) exportProgress.get(exportProgress.size() - 1));
+
+        MockDataService target = new MockDataService();
+        int before = allNotes(target).size();
+        long imported = new NoteArchive(target).importNotes(new ByteArrayInputStream(out.toByteArray()), 0, null);
+        assertEquals(exported, imported);
+
+        Map<NoteId, Note> actual = allNotes(target);
+        assertEquals(before + expected.size(), actual.size());
+        for (Note note : expected.values()) {
+            Note copy = actual.get(note.getId());
+            assertNotNull(note.getNoteId(), copy);
+            assertEquals(note.getTitle(), copy.getTitle());
+            assertEquals(note.getContent(), copy.getContent());
+            assertEquals(note.getContentFingerprint(), copy.getContentFingerprint());
+            assertEquals(note.getTags(), copy.getTags());
+            assertEquals(note.getAttachments(), copy.getAttachments());
+        }
+    }
+
+    @Test
+    public void resumingAnImportDoesNotDuplicateNotesWithoutIds() throws Exception {
+        byte[] archive = archive("["
+                + "{\"title\":\"First\",\"content\":\"one\"},"
+                + "{\"title\":\"Second\",\"content\":\"two\",\"tags\":[\"work\"]},"
+                + "{\"title\":\"First\",\"content\":\"one\"}"
+                + "]");
+        MockDataService service = new MockDataService();
+        int before = allNotes(service).size();
+
+        assertEquals(3, new NoteArchive(service).importNotes(new ByteArrayInputStream(archive), 0, null));
+        Map<NoteId, Note> afterFirst = allNotes(service);
+        // The same note at another position of the archive is another note
+        assertEquals(before + 3, afterFirst.size());
+
+        // Resume as if only the first note had been reported stored
+        assertEquals(3, new NoteArchive(service).importNotes(new ByteArrayInputStream(archive), 1, null));
+        assertEquals(afterFirst.keySet(), allNotes(service).keySet());
+    }
+
+    @Test
+    public void progressCountsSkippedNotes() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0 ; i < 1200 ; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":\"").append(NoteId.generate()).append("\",\"title\":\"Note ").append(i).append("\"}");
+        }
+        json.append(']');
+        final List<Long> progress = new ArrayList<>();
+        long count = new NoteArchive(new MockDataService()).importNotes(new ByteArrayInputStream(archive(json.toString())), 300, progress::add);
+        assertEquals(1200, count);
+        assertEquals(Arrays.asList(800L, 1200L), progress);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NoteListSnapshotTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void aWrittenPageCanBeReadBack() throws Exception {
+        File file = new File(folder.getRoot(), "note_list.snapshot");
+        NoteListSnapshot snapshot = new NoteListSnapshot(file);
+        assertNull(snapshot.read());
+
+        StringBuilder longContent = new StringBuilder();
+        for (int i = 0 ; i < 1000 ; i++) longContent.append("line ").append(i).append('\n');
+        Note withImage = new Note(NoteId.generate(), "Picture", new NoteContent("See attached"));
+        withImage.setAttachments(Arrays.asList(
+                new Attachment("0a1b2c", "notes.txt", "text/plain", 10),
+                new Attachment("3d4e5f", null, "image/png", 2048)));
+        Note untitled = new Note(NoteId.generate(), null, new NoteContent(longContent));
+        List<Note> page = Arrays.asList(withImage, untitled);
+
+        snapshot.write(page, "next-page");
+        PagedListConnectionResponse<Note> read = awaitSnapshot(snapshot);
+
+        assertEquals("next-page", read.getNextToken());
+        assertEquals(2, read.getItems().size());
+        Note first = read.getItems().get(0);
+        assertEquals(withImage.getId(), first.getId());
+        assertEquals("Picture", first.getTitle());
+        assertEquals("See attached", first.getContent());
+        assertEquals(Collections.singletonList(withImage.getFirstImage()), first.getAttachments());
+        Note second = read.getItems().get(1);
+        assertEquals("", second.getTitle());
+        assertEquals(longContent.substring(0, 200), second.getContent());
+        // The summary stands for the whole note when the list is diffed
+        assertEquals(untitled.getContentFingerprint(), second.getContentFingerprint());
+
+        assertTrue(NoteListSnapshot.matches(read, new PagedListConnectionResponse<>(page, "next-page")));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void aChangedPageDoesNotMatch() {
+        Note note = new Note(NoteId.generate(), "Title", new NoteContent("Content"));
+        PagedListConnectionResponse<Note> cached = new PagedListConnectionResponse<>(Collections.singletonList(note), null);
+
+        Note edited = new Note(note.getId(), "Title", new NoteContent("Edited"));
+        assertFalse(NoteListSnapshot.matches(cached, new PagedListConnectionResponse<>(Collections.singletonList(edited), null)));
+        assertFalse(NoteListSnapshot.matches(cached, new PagedListConnectionResponse<>(new ArrayList<Note>(), null)));
+    }
+
+    @Test
+    public void aNewNextTokenAloneStillMatches() {
+        Note note = new Note(NoteId.generate(), "Title", new NoteContent("Content"));
+        PagedListConnectionResponse<Note> cached = new PagedListConnectionResponse<>(Collections.singletonList(note), "old-token");
+        Note loaded = new Note(note.getId(), "Title", new NoteContent("Content"));
+        assertTrue(NoteListSnapshot.matches(cached, new PagedListConnectionResponse<>(Collections.singletonList(loaded), "new-token")));
+    }
+
+    @Test
+    public void aFileWithAnotherFormatIsIgnored() throws Exception {
+        File file = folder.newFile("note_list.snapshot");
+        java.nio.file.Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        assertNull(new NoteListSnapshot(file).read());
+    }
+
+    /**
+     * The snapshot is written on a background thread
+     */
+    private static PagedListConnectionResponse<Note> awaitSnapshot(NoteListSnapshot snapshot) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        PagedListConnectionResponse<Note> result = snapshot.read();
+        while (result == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            result = snapshot.read();
+        }
+        assertNotNull("the snapshot was not written", result);
+        return result;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.services.RequestGroup;
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockDataService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Batching of single-note loads.  Runs under Robolectric, so that the end of the batch
+ * window can be run from the main looper with ShadowLooper.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class NoteLoaderTest {
+    /**
+     * Records the notes asked for by each call
+     */
+    private static class CountingDataService extends MockDataService {
+        final List<Collection<String>> getNotesCalls = new ArrayList<>();
+        final List<String> getNoteCalls = new ArrayList<>();
+
+        @Override
+        public void getNote(String noteId, ResultCallback<Note> callback) {
+            getNoteCalls.add(noteId);
+            super.getNote(noteId, callback);
+        }
+
+        @Override
+        public void getNotes(Collection<String> noteIds, ResultCallback<Map<String, Note>> callback) {
+            getNotesCalls.add(new ArrayList<>(noteIds));
+            super.getNotes(noteIds, callback);
+        }
+    }
+
+    private CountingDataService service;
+    private NoteLoader loader;
+    private List<Note> notes;
+
+    @Before
+    public void setUp() {
+        service = new CountingDataService();
+        loader = new NoteLoader(service, new Handler(Looper.getMainLooper()));
+        notes = new ArrayList<>();
+        service.loadNotes(30, null, (PagedListConnectionResponse<Note> page) -> notes.addAll(page.getItems()));
+    }
+
+    /**
+     * The IDs of some notes, as the mock hands out a copy of a note on every call
+     */
+    private static List<String> ids(List<Note> notes) {
+        List<String> ids = new ArrayList<>(notes.size());
+        for (Note note : notes) ids.add(note.getNoteId());
+        return ids;
+    }
+
+    private static void endWindow() {
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    @Test
+    public void loadsInOneWindowMakeOneCall() {
+        final List<Note> results = new ArrayList<>();
+        for (int i = 0 ; i < 10 ; i++) loader.load(notes.get(i).getNoteId(), results::add);
+        assertEquals(0, service.getNotesCalls.size());
+
+        endWindow();
+        assertEquals(1, service.getNotesCalls.size());
+        assertEquals(10, service.getNotesCalls.get(0).size());
+        assertEquals(0, service.getNoteCalls.size());
+        assertEquals(ids(notes.subList(0, 10)), ids(results));
+    }
+
+    @Test
+    public void duplicateLoadsAreCoalesced() {
+        final List<Note> results = new ArrayList<>();
+        for (int i = 0 ; i < 3 ; i++) loader.load(notes.get(0).getNoteId(), results::add);
+        loader.load(notes.get(1).getNoteId(), results::add);
+
+        endWindow();
+        assertEquals(1, service.getNotesCalls.size());
+        assertEquals(2, service.getNotesCalls.get(0).size());
+        assertEquals(4, results.size());
+        assertSame(results.get(0), results.get(1));
+        assertSame(results.get(0), results.get(2));
+
+        // A single note, however many times it is asked for, is loaded with getNote()
+        loader.load(notes.get(2).getNoteId(), results::add);
+        loader.load(notes.get(2).getNoteId(), results::add);
+        endWindow();
+        assertEquals(1, service.getNotesCalls.size());
+        assertEquals(1, service.getNoteCalls.size());
+        assertEquals(6, results.size());
+    }
+
+    @Test
+    public void batchesAreSplitAtMaxBatch() {
+        final List<Note> results = new ArrayList<>();
+        int count = NoteLoader.MAX_BATCH + 5;
+        for (int i = 0 ; i < count ; i++) {
+            loader.load(i < notes.size() ? notes.get(i).getNoteId() : "missing-" + i, results::add);
+        }
+        // A full batch goes without waiting for the window
+        assertEquals(1, service.getNotesCalls.size());
+        assertEquals(NoteLoader.MAX_BATCH, service.getNotesCalls.get(0).size());
+
+        endWindow();
+        assertEquals(2, service.getNotesCalls.size());
+        assertEquals(5, service.getNotesCalls.get(1).size());
+        assertEquals(count, results.size());
+        assertEquals(notes.get(0).getNoteId(), results.get(0).getNoteId());
+        assertNull(results.get(count - 1));
+    }
+
+    @Test
+    public void batchesOfCancelledLoadsAreSkipped() {
+        final List<Note> results = new ArrayList<>();
+        RequestGroup screen = new RequestGroup();
+        for (int i = 0 ; i < 3 ; i++) loader.load(notes.get(i).getNoteId(), screen, results::add);
+        RequestGroup request = loader.load(notes.get(3).getNoteId(), results::add);
+        screen.cancel();
+        request.cancel();
+
+        endWindow();
+        assertEquals(0, service.getNotesCalls.size());
+        assertEquals(0, service.getNoteCalls.size());
+        assertEquals(0, results.size());
+
+        // Only the cancelled loads are left out of a batch
+        loader.load(notes.get(4).getNoteId(), new RequestGroup(), results::add);
+        loader.load(notes.get(5).getNoteId(), screen, results::add);
+        endWindow();
+        assertEquals(0, service.getNotesCalls.size());
+        assertEquals(1, service.getNoteCalls.size());
+        assertEquals(notes.get(4).getNoteId(), service.getNoteCalls.get(0));
+        assertEquals(1, results.size());
+    }
+}
@@ -0,0 +1,198 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+import com.amazonaws.mobile.samples.mynotes.services.RequestPriority;
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockDataService;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Demand, read-ahead, cancellation and failure of a stream over the mock's 30 notes.
+ * Subscriber methods are called on the test thread.
+ */
+public class NoteStreamTest {
+    private static final int PAGE_SIZE = 5;
+    private static final int READ_AHEAD_PAGES = 2;
+
+    /**
+     * Keeps every page load back until answer() is called
+     */
+    private static class HoldingDataService extends MockDataService {
+        final ArrayDeque<ResultCallback<PagedListConnectionResponse<Note>>> held = new ArrayDeque<>();
+        final ArrayDeque<String> keys = new ArrayDeque<>();
+        int loads = 0;
+
+        @Override
+        public void loadNotes(int limit, String after, TagFilter filter, ResultCallback<PagedListConnectionResponse<Note>> callback) {
+            loads++;
+            held.add(callback);
+            keys.add(after == null ? "" : after);
+        }
+
+        /**
+         * Answer the oldest held load
+         */
+        void answer() {
+            ResultCallback<PagedListConnectionResponse<Note>> callback = held.poll();
+            String key = keys.poll();
+            super.loadNotes(PAGE_SIZE, key.isEmpty() ? null : key, null, callback);
+        }
+
+        void fail() {
+            keys.poll();
+            held.poll().onResult(null);
+        }
+
+        /**
+         * Answer loads until none are held
+         */
+        void answerAll() {
+            while (!held.isEmpty()) answer();
+        }
+    }
+
+    /**
+     * Records what it is given
+     */
+    private static class RecordingSubscriber implements NoteStream.Subscriber {
+        final List<Note> notes = new ArrayList<>();
+        NoteStream.Subscription subscription;
+        Exception error;
+        boolean complete;
+
+        @Override
+        public void onSubscribe(NoteStream.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Note note) {
+            notes.add(note);
+        }
+
+        @Override
+        public void onError(Exception error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+        }
+    }
+
+    private static RecordingSubscriber subscribe(MockDataService service) {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new NoteStream(service, Runnable::run, RequestPriority.BACKGROUND, PAGE_SIZE, READ_AHEAD_PAGES).subscribe(subscriber);
+        assertNotNull(subscriber.subscription);
+        return subscriber;
+    }
+
+    @Test
+    public void deliversAtMostTheRequestedNotes() {
+        RecordingSubscriber subscriber = subscribe(new MockDataService());
+        assertEquals(0, subscriber.notes.size());
+
+        subscriber.subscription.request(3);
+        assertEquals(3, subscriber.notes.size());
+        subscriber.subscription.request(4);
+        assertEquals(7, subscriber.notes.size());
+        assertFalse(subscriber.complete);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(30, subscriber.notes.size());
+        assertTrue(subscriber.complete);
+        assertNull(subscriber.error);
+        assertEquals("Note 0", subscriber.notes.get(0).getTitle());
+        assertEquals("Note 29", subscriber.notes.get(29).getTitle());
+    }
+
+    @Test
+    public void readsAheadByAtMostTheReadAheadPages() {
+        HoldingDataService service = new HoldingDataService();
+        RecordingSubscriber subscriber = subscribe(service);
+        assertEquals(0, service.loads);
+
+        subscriber.subscription.request(1);
+        // One page is in flight at a time
+        assertEquals(1, service.loads);
+        service.answerAll();
+        assertEquals(1, subscriber.notes.size());
+        // 9 notes are buffered; another page would take it past 2 pages
+        assertEquals(2, service.loads);
+        assertTrue(service.loads * PAGE_SIZE - subscriber.notes.size() <= PAGE_SIZE * READ_AHEAD_PAGES);
+
+        subscriber.subscription.request(5);
+        assertEquals(6, subscriber.notes.size());
+        service.answerAll();
+        assertEquals(3, service.loads);
+        assertTrue(service.loads * PAGE_SIZE - subscriber.notes.size() <= PAGE_SIZE * READ_AHEAD_PAGES);
+    }
+
+    @Test
+    public void cancelStopsFetching() {
+        HoldingDataService service = new HoldingDataService();
+        RecordingSubscriber subscriber = subscribe(service);
+        subscriber.subscription.request(1);
+        service.answer();
+        assertEquals(1, subscriber.notes.size());
+        assertEquals(2, service.loads);
+
+        subscriber.subscription.cancel();
+        // The page in flight is thrown away
+        service.answerAll();
+        subscriber.subscription.request(10);
+        assertEquals(2, service.loads);
+        assertEquals(1, subscriber.notes.size());
+        assertFalse(subscriber.complete);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void aFailedPageEndsTheStreamWithAnError() {
+        HoldingDataService service = new HoldingDataService();
+        RecordingSubscriber subscriber = subscribe(service);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        service.answer();
+        assertEquals(PAGE_SIZE, subscriber.notes.size());
+
+        service.fail();
+        assertTrue(subscriber.error instanceof IOException);
+        assertFalse(subscriber.complete);
+        assertEquals(PAGE_SIZE, subscriber.notes.size());
+        // No further fetches or calls after the error
+        assertEquals(2, service.loads);
+        subscriber.subscription.request(1);
+        assertEquals(2, service.loads);
+    }
+}
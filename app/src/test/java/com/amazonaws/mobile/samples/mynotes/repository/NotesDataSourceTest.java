@@ -0,0 +1,174 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.repository;
+
+import android.arch.paging.PageKeyedDataSource;
+
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockDataService;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Revalidation of the first page painted from the snapshot on cold start
+ */
+public class NotesDataSourceTest {
+    private static final int PAGE_SIZE = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Records the key of every page load.  While held, it keeps the answers back until
+     * release() is called.
+     */
+    private static class CountingDataService extends MockDataService {
+        final List<String> keys = new ArrayList<>();
+        final List<Runnable> held = new ArrayList<>();
+        boolean hold = false;
+
+        @Override
+        public void loadNotes(int limit, String after, TagFilter filter, ResultCallback<PagedListConnectionResponse<Note>> callback) {
+            keys.add(after);
+            if (hold) {
+                held.add(() -> super.loadNotes(limit, after, filter, callback));
+            } else {
+                super.loadNotes(limit, after, filter, callback);
+            }
+        }
+
+        void release() {
+            hold = false;
+            for (Runnable answer : held) answer.run();
+            held.clear();
+        }
+    }
+
+    /**
+     * What the data source answered with
+     */
+    private static class Page extends PageKeyedDataSource.LoadInitialCallback<String, Note> {
+        List<Note> items;
+        String nextToken;
+
+        @Override
+        public void onResult(List<Note> data, String previousPageKey, String nextPageKey) {
+            items = data;
+            nextToken = nextPageKey;
+        }
+
+        @Override
+        public void onResult(List<Note> data, int position, int totalCount, String previousPageKey, String nextPageKey) {
+            onResult(data, previousPageKey, nextPageKey);
+        }
+    }
+
+    private final CountingDataService service = new CountingDataService();
+
+    private PagedListConnectionResponse<Note> loadFirstPage() {
+        final List<PagedListConnectionResponse<Note>> result = new ArrayList<>();
+        service.loadNotes(PAGE_SIZE, null, null, result::add);
+        service.keys.clear();
+        return result.get(0);
+    }
+
+    private NoteListSnapshot writeSnapshot(List<Note> items, String nextToken) throws InterruptedException {
+        NoteListSnapshot snapshot = new NoteListSnapshot(new File(folder.getRoot(), "note_list.snapshot"));
+        snapshot.write(items, nextToken);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (snapshot.read() == null && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertNotNull("the snapshot was not written", snapshot.read());
+        return snapshot;
+    }
+
+    private static Page loadInitial(NotesDataSource dataSource) {
+        Page page = new Page();
+        dataSource.loadInitial(new PageKeyedDataSource.LoadInitialParams<String>(PAGE_SIZE, false), page);
+        return page;
+    }
+
+    private static List<Object> ids(List<Note> notes) {
+        List<Object> ids = new ArrayList<>();
+        for (Note note : notes) ids.add(note.getId());
+        return ids;
+    }
+
+    @Test
+    public void aChangedSnapshotHandsTheFreshPageToTheNextDataSource() throws Exception {
+        PagedListConnectionResponse<Note> fresh = loadFirstPage();
+        List<Note> stale = fresh.getItems().subList(1, fresh.getItems().size());
+        NotesDataSourceFactory factory = new NotesDataSourceFactory(service, writeSnapshot(stale, fresh.getNextToken()));
+
+        NotesDataSource first = (NotesDataSource) factory.create();
+        Page painted = loadInitial(first);
+        assertEquals(ids(stale), ids(painted.items));
+        assertEquals("only the revalidation loads a page", Arrays.asList((String) null), service.keys);
+        assertTrue(first.isInvalid());
+
+        NotesDataSource second = (NotesDataSource) factory.create();
+        Page patched = loadInitial(second);
+        assertEquals(ids(fresh.getItems()), ids(patched.items));
+        assertEquals(fresh.getNextToken(), patched.nextToken);
+        assertEquals("the fresh page is not loaded again", 1, service.keys.size());
+
+        // The page is only handed over once
+        loadInitial((NotesDataSource) factory.create());
+        assertEquals(2, service.keys.size());
+    }
+
+    @Test
+    public void aNewNextTokenAloneKeepsTheSnapshotAndPagesOnFromIt() throws Exception {
+        PagedListConnectionResponse<Note> fresh = loadFirstPage();
+        NotesDataSourceFactory factory = new NotesDataSourceFactory(service, writeSnapshot(fresh.getItems(), "stale-token"));
+
+        service.hold = true;
+        NotesDataSource dataSource = (NotesDataSource) factory.create();
+        Page painted = loadInitial(dataSource);
+        assertEquals("stale-token", painted.nextToken);
+
+        // Scrolling ahead of the revalidation waits for the fresh token
+        final List<List<Note>> pages = new ArrayList<>();
+        dataSource.loadAfter(new PageKeyedDataSource.LoadParams<>("stale-token", PAGE_SIZE), new PageKeyedDataSource.LoadCallback<String, Note>() {
+            @Override
+            public void onResult(List<Note> data, String adjacentPageKey) {
+                pages.add(data);
+            }
+        });
+        assertEquals(Arrays.asList((String) null), service.keys);
+
+        service.release();
+        assertFalse(dataSource.isInvalid());
+        assertEquals(Arrays.asList(null, fresh.getNextToken()), service.keys);
+        assertEquals(1, pages.size());
+        assertFalse(pages.get(0).isEmpty());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services;
+
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockAnalyticsService;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the bytes allocated per recorded event, for the map-based recordEvent() and
+ * for pooled AnalyticsEvent objects.  The pooled path must not allocate at all once the
+ * pool is warm.
+ */
+public class AnalyticsAllocationBenchmark {
+    private static final int WARM_UP_EVENTS = 50000;
+    private static final int MEASURED_EVENTS = 200000;
+
+    private static final AnalyticsKey EVENT_NAME = AnalyticsKey.of("NoteEdited");
+    private static final AnalyticsKey ATTRIBUTE_SCREEN = AnalyticsKey.of("screen");
+    private static final AnalyticsKey METRIC_LENGTH = AnalyticsKey.of("length");
+    private static final AnalyticsKey METRIC_DURATION = AnalyticsKey.of("durationMs");
+
+    private final AnalyticsService analyticsService = new MockAnalyticsService();
+
+    @Test
+    public void pooledEventsDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+
+        double mapBytes = bytesPerEvent(threads, this::recordWithMaps);
+        double pooledBytes = bytesPerEvent(threads, this::recordPooled);
+        System.out.println(String.format(Locale.US,
+                "recordEvent with maps: %.1f bytes/event, with a pooled event: %.1f bytes/event",
+                mapBytes, pooledBytes));
+
+        assertEquals(0.0, pooledBytes, 0.01);
+    }
+
+    private void recordWithMaps(int i) {
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("screen", "detail");
+        Map<String, Double> metrics = new HashMap<>();
+        metrics.put("length", (double) i);
+        metrics.put("durationMs", 1.5);
+        analyticsService.recordEvent("NoteEdited", attributes, metrics);
+    }
+
+    private void recordPooled(int i) {
+        analyticsService.recordEvent(AnalyticsEvent.obtain(EVENT_NAME)
+                .putAttribute(ATTRIBUTE_SCREEN, "detail")
+                .putMetric(METRIC_LENGTH, (long) i)
+                .putMetric(METRIC_DURATION, 1.5));
+    }
+
+    private interface Recorder {
+        void record(int i);
+    }
+
+    private static double bytesPerEvent(com.sun.management.ThreadMXBean threads, Recorder recorder) {
+        for (int i = 0 ; i < WARM_UP_EVENTS ; i++) recorder.record(i);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0 ; i < MEASURED_EVENTS ; i++) recorder.record(i);
+        long after = threads.getThreadAllocatedBytes(threadId);
+        return (double) (after - before) / MEASURED_EVENTS;
+    }
+
+    /**
+     * Allocation counting is a HotSpot extension; skip the benchmark on other VMs
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(result.isThreadAllocatedMemorySupported());
+        result.setThreadAllocatedMemoryEnabled(true);
+        return result;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AnalyticsEventTest {
+    @Test
+    public void keysAreInterned() {
+        AnalyticsKey key = AnalyticsKey.of("AnalyticsEventTest.interned");
+        assertSame(key, AnalyticsKey.of(new String("AnalyticsEventTest.interned")));
+        assertEquals("AnalyticsEventTest.interned", key.getName());
+        assertTrue(key.getId() != AnalyticsKey.of("AnalyticsEventTest.other").getId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyKeyIsRejected() {
+        AnalyticsKey.of("");
+    }
+
+    @Test
+    public void metricsKeepTheirType() {
+        AnalyticsKey count = AnalyticsKey.of("count");
+        AnalyticsKey ratio = AnalyticsKey.of("ratio");
+        AnalyticsEvent event = AnalyticsEvent.obtain(AnalyticsKey.of("event"))
+                .putAttribute(AnalyticsKey.of("screen"), "list")
+                .putMetric(count, 42L)
+                .putMetric(ratio, 0.25);
+
+        assertEquals(1, event.getAttributeCount());
+        assertEquals("list", event.getAttributeValue(0));
+        assertEquals(2, event.getMetricCount());
+        assertSame(count, event.getMetricKey(0));
+        assertTrue(event.isLongMetric(0));
+        assertEquals(42L, event.getLongMetric(0));
+        assertEquals(42.0, event.getDoubleMetric(0), 0.0);
+        assertFalse(event.isLongMetric(1));
+        assertEquals(0.25, event.getDoubleMetric(1), 0.0);
+        event.recycle();
+    }
+
+    @Test
+    public void recycledEventsAreReusedEmpty() {
+        AnalyticsEvent first = AnalyticsEvent.obtain(AnalyticsKey.of("first"))
+                .putAttribute(AnalyticsKey.of("screen"), "list")
+                .putMetric(AnalyticsKey.of("count"), 1L);
+        first.recycle();
+
+        AnalyticsEvent second = AnalyticsEvent.obtain(AnalyticsKey.of("second"));
+        assertSame(first, second);
+        assertEquals("second", second.getName().getName());
+        assertEquals(0, second.getAttributeCount());
+        assertEquals(0, second.getMetricCount());
+        assertNull(second.getAttributeKey(0));
+        second.recycle();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void tooManyMetricsAreRejected() {
+        AnalyticsEvent event = AnalyticsEvent.obtain(AnalyticsKey.of("event"));
+        for (int i = 0 ; i <= AnalyticsEvent.MAX_METRICS ; i++) {
+            event.putMetric(AnalyticsKey.of("metric" + i), (long) i);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services;
+
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockAnalyticsService;
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockDataService;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncDataServiceTest {
+    /**
+     * Holds every page load until released
+     */
+    private static class BlockingDataService extends MockDataService {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void loadNotes(int limit, String after, TagFilter filter, ResultCallback<PagedListConnectionResponse<Note>> callback) {
+            try {
+                release.await();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+            super.loadNotes(limit, after, filter, callback);
+        }
+    }
+
+    /**
+     * Counts every getNote() that reaches the backend, and holds it until released
+     */
+    private static class SlowDataService extends MockDataService {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger executed = new AtomicInteger(0);
+
+        @Override
+        public void getNote(String noteId, ResultCallback<Note> callback) {
+            executed.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+            super.getNote(noteId, callback);
+        }
+    }
+
+    /**
+     * Keeps the total of each counter
+     */
+    private static class CountingAnalyticsService extends MockAnalyticsService {
+        final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+        @Override
+        public void incrementCounter(AnalyticsKey eventName, AnalyticsKey metric, long delta) {
+            super.incrementCounter(eventName, metric, delta);
+            counters.computeIfAbsent(metric.getName(), (String name) -> new AtomicLong(0)).addAndGet(delta);
+        }
+
+        long get(String metric) {
+            AtomicLong count = counters.get(metric);
+            return (count == null) ? 0 : count.get();
+        }
+    }
+
+    private static void awaitIdle(AsyncDataService service) throws InterruptedException {
+        for (int i = 0 ; i < 500 && service.getOutstandingCalls() > 0 ; i++) Thread.sleep(10);
+        assertEquals(0, service.getOutstandingCalls());
+    }
+
+    @Test
+    public void callThatThrowsFails() throws InterruptedException {
+        AsyncDataService service = new AsyncDataService(new MockDataService(), new MockAnalyticsService(), Runnable::run);
+        final List<Boolean> results = Collections.synchronizedList(new ArrayList<Boolean>());
+        // The mock rejects an empty ID with an IllegalArgumentException
+        service.deleteNote("", results::add);
+
+        awaitIdle(service);
+        assertEquals(Collections.singletonList(false), results);
+    }
+
+    @Test
+    public void writesAreNotRejectedWhenTheQueueIsFull() throws InterruptedException {
+        BlockingDataService delegate = new BlockingDataService();
+        AsyncDataService service = new AsyncDataService(delegate, new MockAnalyticsService(), Runnable::run);
+        final AtomicInteger rejected = new AtomicInteger(0);
+        for (int i = 0 ; i < 300 ; i++) {
+            service.loadNotes(10, null, (PagedListConnectionResponse<Note> result) -> {
+                if (result == null) rejected.incrementAndGet();
+            });
+        }
+        // Rejected reads are failed straight away, on the calling thread
+        assertTrue(rejected.get() > 0);
+
+        final List<Note> created = Collections.synchronizedList(new ArrayList<Note>());
+        service.createNote("Written while full", "", created::add);
+        int rejectedBeforeRelease = rejected.get();
+        delegate.release.countDown();
+
+        awaitIdle(service);
+        assertEquals(rejectedBeforeRelease, rejected.get());
+        assertEquals(1, created.size());
+        assertEquals("Written while full", created.get(0).getTitle());
+    }
+
+    @Test
+    public void everyCallIsAnswered() throws InterruptedException {
+        AsyncDataService service = new AsyncDataService(new MockDataService(), new MockAnalyticsService(), Runnable::run);
+        final AtomicInteger answered = new AtomicInteger(0);
+        for (int i = 0 ; i < 50 ; i++) {
+            service.loadNotes(10, null, (PagedListConnectionResponse<Note> result) -> answered.incrementAndGet());
+            service.getNote("not an id", (Note result) -> {
+                assertNull(result);
+                answered.incrementAndGet();
+            });
+        }
+        awaitIdle(service);
+        assertEquals(100, answered.get());
+    }
+
+    @Test
+    public void cancelledGroupsDoNotReachTheBackend() throws InterruptedException {
+        final int screens = 200;
+        SlowDataService delegate = new SlowDataService();
+        CountingAnalyticsService analytics = new CountingAnalyticsService();
+        AsyncDataService service = new AsyncDataService(delegate, analytics, Runnable::run);
+        final AtomicInteger delivered = new AtomicInteger(0);
+
+        // Open and close screens faster than the backend answers
+        for (int i = 0 ; i < screens ; i++) {
+            RequestGroup screen = new RequestGroup();
+            service.withPriority(RequestPriority.VISIBLE, screen).getNote("note-" + i, (Note result) -> delivered.incrementAndGet());
+            screen.cancel();
+        }
+        delegate.release.countDown();
+
+        awaitIdle(service);
+        // At most one call per I/O thread can have started before its group was cancelled
+        int started = delegate.executed.get();
+        assertTrue(started <= 4);
+        assertEquals(0, delivered.get());
+        assertEquals(screens - started, analytics.get("cancelledBeforeRun"));
+        assertEquals(started, analytics.get("droppedResults"));
+    }
+
+    @Test
+    public void resultOfACallCancelledWhileRunningIsDropped() throws InterruptedException {
+        SlowDataService delegate = new SlowDataService();
+        CountingAnalyticsService analytics = new CountingAnalyticsService();
+        AsyncDataService service = new AsyncDataService(delegate, analytics, Runnable::run);
+        final AtomicInteger delivered = new AtomicInteger(0);
+
+        RequestGroup screen = new RequestGroup();
+        service.withPriority(RequestPriority.VISIBLE, screen).getNote("note", (Note result) -> delivered.incrementAndGet());
+        for (int i = 0 ; i < 500 && delegate.executed.get() == 0 ; i++) Thread.sleep(10);
+        screen.cancel();
+        delegate.release.countDown();
+
+        awaitIdle(service);
+        assertEquals(1, delegate.executed.get());
+        assertEquals(0, delivered.get());
+        assertEquals(0, analytics.get("cancelledBeforeRun"));
+        assertEquals(1, analytics.get("droppedResults"));
+    }
+}
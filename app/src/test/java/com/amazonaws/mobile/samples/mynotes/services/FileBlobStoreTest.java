@@ -0,0 +1,134 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FileBlobStoreTest {
+    private static final long SIZE = 5L * 1024 * 1024 + 123;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A stream of made-up bytes, so that a large blob never exists in memory in the test
+     * either.  It fails after a given number of bytes if asked to.
+     */
+    private static class GeneratedStream extends InputStream {
+        private final long size;
+        private final long failAt;
+        private long position = 0;
+
+        GeneratedStream(long size, long failAt) {
+            this.size = size;
+            this.failAt = failAt;
+        }
+
+        static int byteAt(long position) {
+            return (int) ((position * 31 + (position >> 11)) & 0xff);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == failAt) throw new IOException("Connection reset");
+            if (position == size) return -1;
+            return byteAt(position++);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position == failAt) throw new IOException("Connection reset");
+            if (position == size) return -1;
+            int count = (int) Math.min(length, Math.min(size, failAt) - position);
+            for (int i = 0 ; i < count ; i++) buffer[offset + i] = (byte) byteAt(position++);
+            return count;
+        }
+    }
+
+    @Test
+    public void aLargeBlobStreamsInAndOut() throws IOException {
+        FileBlobStore store = new FileBlobStore(new File(folder.getRoot(), "blobs"));
+        Attachment attachment = store.write(new GeneratedStream(SIZE, Long.MAX_VALUE), "scan.png", "image/png");
+
+        assertEquals(SIZE, attachment.getSize());
+        assertEquals("scan.png", attachment.getFileName());
+        assertEquals("image/png", attachment.getMimeType());
+        assertEquals(SIZE, store.size(attachment.getBlobId()));
+
+        long position = 0;
+        byte[] buffer = new byte[10000];
+        try (InputStream in = store.open(attachment.getBlobId())) {
+            for (int read ; (read = in.read(buffer)) != -1 ; ) {
+                for (int i = 0 ; i < read ; i++, position++) {
+                    if ((buffer[i] & 0xff) != GeneratedStream.byteAt(position)) fail("Wrong byte at " + position);
+                }
+            }
+        }
+        assertEquals(SIZE, position);
+
+        assertTrue(store.delete(attachment.getBlobId()));
+        assertEquals(-1, store.size(attachment.getBlobId()));
+        assertFalse(store.delete(attachment.getBlobId()));
+    }
+
+    @Test
+    public void aFailedWriteLeavesNothingBehind() throws IOException {
+        File directory = new File(folder.getRoot(), "blobs");
+        FileBlobStore store = new FileBlobStore(directory);
+        try {
+            store.write(new GeneratedStream(SIZE, SIZE / 2), "scan.png", "image/png");
+            fail("The write should fail with the stream");
+        } catch (IOException expected) {
+            // The stream failed half way
+        }
+        String[] files = directory.list();
+        assertEquals(0, files == null ? 0 : files.length);
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void aMissingBlobCannotBeOpened() throws IOException {
+        new FileBlobStore(folder.getRoot()).open("0123abcd-0000");
+    }
+
+    @Test
+    public void blobIdsCannotNameOtherFiles() throws IOException {
+        FileBlobStore store = new FileBlobStore(new File(folder.getRoot(), "blobs"));
+        folder.newFile("secret");
+        for (String blobId : new String[] { "../secret", "/etc/passwd", "", "ABC" }) {
+            try {
+                store.open(blobId);
+                fail("Opened " + blobId);
+            } catch (IllegalArgumentException expected) {
+                // Refused before touching the file system
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsAggregatorTest {
+    private static final AnalyticsKey EVENT = AnalyticsKey.of("Scroll");
+    private static final AnalyticsKey SCREEN = AnalyticsKey.of("screen");
+    private static final AnalyticsKey FRAMES = AnalyticsKey.of("droppedFrames");
+    private static final AnalyticsKey FRAME_MS = AnalyticsKey.of("frameMs");
+    private static final AnalyticsKey FOOTPRINT = AnalyticsKey.of("footprintKb");
+
+    /**
+     * The summary events, as the map-based recordEvent() receives them
+     */
+    private static final class Recorded {
+        final String eventName;
+        final Map<String, String> attributes;
+        final Map<String, Double> metrics;
+
+        Recorded(String eventName, Map<String, String> attributes, Map<String, Double> metrics) {
+            this.eventName = eventName;
+            this.attributes = attributes;
+            this.metrics = metrics;
+        }
+    }
+
+    private final List<Recorded> recorded = new ArrayList<>();
+    private MetricsAggregator aggregator;
+
+    @Before
+    public void setUp() {
+        aggregator = new MetricsAggregator(new AnalyticsService() {
+            @Override
+            public void startSession() {
+            }
+
+            @Override
+            public void stopSession() {
+            }
+
+            @Override
+            public void recordEvent(String eventName, Map<String, String> attributes, Map<String, Double> metrics) {
+                recorded.add(new Recorded(eventName, attributes, metrics));
+            }
+        }, 0);
+    }
+
+    @Test
+    public void countersAreSummedIntoOneEvent() {
+        for (int i = 0 ; i < 1000 ; i++) aggregator.incrementCounter(EVENT, FRAMES, 2);
+        assertTrue(recorded.isEmpty());
+
+        aggregator.flush();
+        assertEquals(1, recorded.size());
+        Recorded summary = recorded.get(0);
+        assertEquals("Scroll", summary.eventName);
+        assertEquals("droppedFrames", summary.attributes.get("metric"));
+        assertEquals("COUNTER", summary.attributes.get("kind"));
+        assertEquals(2000.0, summary.metrics.get("count"), 0.0);
+    }
+
+    @Test
+    public void flushResetsTheAggregates() {
+        aggregator.incrementCounter(EVENT, FRAMES, 1);
+        aggregator.flush();
+        aggregator.flush();
+        assertEquals(1, recorded.size());
+    }
+
+    @Test
+    public void gaugesKeepTheLastValue() {
+        aggregator.recordGauge(EVENT, FOOTPRINT, 10.0);
+        aggregator.recordGauge(EVENT, FOOTPRINT, 30.0);
+        aggregator.flush();
+        assertEquals(30.0, recorded.get(0).metrics.get("value"), 0.0);
+    }
+
+    @Test
+    public void eachAttributeValueIsAggregatedSeparately() {
+        aggregator.incrementCounter(EVENT, SCREEN, "list", FRAMES, 3);
+        aggregator.incrementCounter(EVENT, SCREEN, "detail", FRAMES, 1);
+        aggregator.incrementCounter(EVENT, SCREEN, "list", FRAMES, 4);
+        aggregator.flush();
+
+        assertEquals(2, recorded.size());
+        for (Recorded summary : recorded) {
+            String screen = summary.attributes.get("screen");
+            assertEquals(screen.equals("list") ? 7.0 : 1.0, summary.metrics.get("count"), 0.0);
+        }
+    }
+
+    @Test
+    public void metricsWithoutAttributesHaveNoAttributeValue() {
+        aggregator.incrementCounter(EVENT, FRAMES, 1);
+        aggregator.flush();
+        assertNull(recorded.get(0).attributes.get("screen"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void aMetricKeepsItsAttribute() {
+        aggregator.incrementCounter(EVENT, SCREEN, "list", FRAMES, 1);
+        aggregator.incrementCounter(EVENT, FRAMES, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void aMetricKeepsItsKind() {
+        aggregator.incrementCounter(EVENT, FRAMES, 1);
+        aggregator.recordHistogram(EVENT, FRAMES, 1.0);
+    }
+
+    @Test
+    public void histogramPercentilesAreWithinABucket() {
+        for (int i = 1 ; i <= 1000 ; i++) aggregator.recordHistogram(EVENT, FRAME_MS, i);
+        aggregator.flush();
+
+        Map<String, Double> metrics = recorded.get(0).metrics;
+        assertEquals(1000.0, metrics.get("count"), 0.0);
+        assertEquals(1.0, metrics.get("min"), 0.0);
+        assertEquals(1000.0, metrics.get("max"), 0.0);
+        assertEquals(500.5, metrics.get("mean"), 1e-9);
+        assertEquals(500.0, metrics.get("p50"), 500.0 * 0.2);
+        assertEquals(900.0, metrics.get("p90"), 900.0 * 0.2);
+        assertEquals(990.0, metrics.get("p99"), 990.0 * 0.2);
+    }
+
+    @Test
+    public void concurrentUpdatesAreNotLost() throws InterruptedException {
+        final int threads = 4;
+        final int increments = 100000;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0 ; t < threads ; t++) {
+            final String screen = (t % 2 == 0) ? "list" : "detail";
+            Thread worker = new Thread(() -> {
+                for (int i = 0 ; i < increments ; i++) {
+                    aggregator.incrementCounter(EVENT, SCREEN, screen, FRAMES, 1);
+                    aggregator.recordHistogram(EVENT, FRAME_MS, 16.0);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) worker.join();
+        aggregator.flush();
+
+        double counted = 0;
+        double sampled = 0;
+        for (Recorded summary : recorded) {
+            if (summary.attributes.get("metric").equals("droppedFrames")) {
+                assertEquals(2.0 * increments, summary.metrics.get("count"), 0.0);
+                counted += summary.metrics.get("count");
+            } else {
+                sampled += summary.metrics.get("count");
+            }
+        }
+        assertEquals((double) threads * increments, counted, 0.0);
+        assertEquals((double) threads * increments, sampled, 0.0);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services.mock;
+
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MockDataServicePagingTest {
+    private final MockDataService service = new MockDataService();
+
+    private PagedListConnectionResponse<Note> load(int limit, String after, TagFilter filter) {
+        List<PagedListConnectionResponse<Note>> result = new ArrayList<>();
+        service.loadNotes(limit, after, filter, result::add);
+        return result.get(0);
+    }
+
+    private static List<String> titles(List<Note> notes) {
+        List<String> titles = new ArrayList<>();
+        for (Note note : notes) titles.add(note.getTitle());
+        return titles;
+    }
+
+    private static List<String> expectedTitles(int from, int to) {
+        List<String> titles = new ArrayList<>();
+        for (int i = from ; i < to ; i++) titles.add("Note " + i);
+        return titles;
+    }
+
+    @Test
+    public void pagesCoverTheListOnce() {
+        List<Note> notes = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            PagedListConnectionResponse<Note> page = load(7, token, null);
+            notes.addAll(page.getItems());
+            token = page.getNextToken();
+            pages++;
+        } while (token != null);
+
+        assertEquals(5, pages);
+        assertEquals(expectedTitles(0, 30), titles(notes));
+    }
+
+    @Test
+    public void noTokenAfterTheLastPage() {
+        PagedListConnectionResponse<Note> page = load(30, null, null);
+        assertEquals(30, page.getItems().size());
+        assertNull(page.getNextToken());
+    }
+
+    @Test
+    public void deletingTheLastNoteOfAPageDoesNotEndTheList() {
+        PagedListConnectionResponse<Note> first = load(10, null, null);
+        Note last = first.getItems().get(9);
+        Note next = load(20, first.getNextToken(), null).getItems().get(0);
+        List<Boolean> deleted = new ArrayList<>();
+        service.deleteNote(last.getNoteId(), deleted::add);
+        service.deleteNote(next.getNoteId(), deleted::add);
+        assertEquals(2, deleted.size());
+        assertTrue(deleted.get(0) && deleted.get(1));
+
+        // The snapshot still sees both deleted notes, and nothing is skipped or repeated
+        PagedListConnectionResponse<Note> second = load(10, first.getNextToken(), null);
+        assertEquals(expectedTitles(10, 20), titles(second.getItems()));
+    }
+
+    @Test
+    public void snapshotDoesNotSeeLaterNotes() {
+        PagedListConnectionResponse<Note> first = load(25, null, null);
+        List<Note> created = new ArrayList<>();
+        service.createNote("Later", "", created::add);
+        assertNotNull(created.get(0));
+
+        PagedListConnectionResponse<Note> rest = load(25, first.getNextToken(), null);
+        assertEquals(expectedTitles(25, 30), titles(rest.getItems()));
+        assertNull(rest.getNextToken());
+
+        // A new page-through sees it
+        List<String> fresh = titles(load(100, null, null).getItems());
+        assertEquals(31, fresh.size());
+        assertEquals("Later", fresh.get(30));
+    }
+
+    @Test
+    public void filteredPages() {
+        for (Note note : load(30, null, null).getItems()) {
+            int number = Integer.parseInt(note.getTitle().substring(5));
+            note.setTags(Collections.singletonList(number % 3 == 0 ? "third" : "other"));
+            service.updateNote(note, (Note result) -> assertNotNull(result));
+        }
+
+        List<String> titles = new ArrayList<>();
+        String token = null;
+        do {
+            PagedListConnectionResponse<Note> page = load(4, token, TagFilter.tag("third"));
+            titles.addAll(titles(page.getItems()));
+            token = page.getNextToken();
+        } while (token != null);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0 ; i < 30 ; i += 3) expected.add("Note " + i);
+        assertEquals(expected, titles);
+    }
+
+    @Test
+    public void malformedTokenEndsTheList() {
+        PagedListConnectionResponse<Note> page = load(10, "not a token", null);
+        assertTrue(page.getItems().isEmpty());
+        assertNull(page.getNextToken());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void limitIsChecked() {
+        load(101, null, null);
+    }
+}
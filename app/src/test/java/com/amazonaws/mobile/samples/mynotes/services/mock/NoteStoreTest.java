@@ -0,0 +1,203 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services.mock;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+import com.amazonaws.mobile.samples.mynotes.models.PackedContent;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NoteStoreTest {
+    private final NoteStore store = new NoteStore();
+
+    private static Note note(int i) {
+        return new Note(NoteId.generate(), "Title " + i, new NoteContent("Content " + i));
+    }
+
+    /**
+     * The rows visible in a snapshot, in order
+     */
+    private List<Integer> visibleRows(long snapshot) {
+        List<Integer> rows = new ArrayList<>();
+        for (int row = store.nextRow(0, snapshot) ; row >= 0 ; row = store.nextRow(row + 1, snapshot)) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    public void rowRoundTrip() {
+        StringBuilder body = new StringBuilder();
+        while (body.length() < 4 * PackedContent.COMPRESSION_THRESHOLD) body.append("A longer note. ");
+        Note note = new Note(NoteId.generate(), "Shopping", new NoteContent(body));
+        note.setTags(Arrays.asList("home", "errands"));
+        note.setAttachments(Collections.singletonList(new Attachment("blob", "list.png", "image/png", 123)));
+
+        int row = store.add(note);
+        assertEquals(1, store.size());
+        assertEquals(row, store.find(note.getId()));
+
+        Note read = store.get(row);
+        assertEquals(note.getId(), read.getId());
+        assertEquals("Shopping", read.getTitle());
+        assertEquals(body.toString(), read.getContent());
+        assertEquals(note.getContentFingerprint(), read.getContentFingerprint());
+        assertEquals(new HashSet<>(Arrays.asList("home", "errands")), read.getTags());
+        assertEquals("list.png", read.getAttachments().get(0).getFileName());
+    }
+
+    @Test
+    public void updatesInPlace() {
+        Note note = note(1);
+        int row = store.add(note);
+        store.set(row, new Note(note.getId(), "New title", new NoteContent("New content")));
+        store.setContent(row, new NoteContent("Newer content"));
+
+        Note read = store.get(store.find(note.getId()));
+        assertEquals("New title", read.getTitle());
+        assertEquals("Newer content", read.getContent());
+    }
+
+    @Test
+    public void snapshotKeepsDeletedRows() {
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0 ; i < 10 ; i++) {
+            notes.add(note(i));
+            store.add(notes.get(i));
+        }
+        long before = store.getSequence();
+        int deleted = store.find(notes.get(3).getId());
+        store.delete(deleted);
+
+        assertEquals(9, store.size());
+        assertEquals(-1, store.find(notes.get(3).getId()));
+        assertTrue(visibleRows(before).contains(deleted));
+        assertEquals(9, visibleRows(store.getSequence()).size());
+
+        // A note added after the snapshot is not in it
+        store.add(note(10));
+        assertEquals(10, visibleRows(before).size());
+    }
+
+    @Test
+    public void positionByCreationSequence() {
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0 ; i < 10 ; i++) {
+            notes.add(note(i));
+            store.add(notes.get(i));
+        }
+        long after = store.getCreatedSequence(store.find(notes.get(4).getId()));
+        store.delete(store.find(notes.get(5).getId()));
+
+        // The note after the deleted one is found from the position of the one before it
+        int row = store.nextRow(store.firstRowCreatedAfter(after), store.getSequence());
+        assertEquals(notes.get(6).getId(), store.getNoteId(row));
+        assertEquals(store.size() + 1, store.firstRowCreatedAfter(store.getSequence()));
+    }
+
+    @Test
+    public void compactionDropsRowsBeforeTheHorizon() {
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0 ; i < 100 ; i++) {
+            notes.add(note(i));
+            store.add(notes.get(i));
+        }
+        for (int i = 0 ; i < 100 ; i += 2) {
+            // No snapshot older than now is in use
+            store.setHorizon(store.getSequence());
+            store.delete(store.find(notes.get(i).getId()));
+        }
+
+        assertEquals(50, store.size());
+        List<NoteId> expected = new ArrayList<>();
+        List<NoteId> actual = new ArrayList<>();
+        for (int i = 1 ; i < 100 ; i += 2) {
+            expected.add(notes.get(i).getId());
+            int row = store.find(notes.get(i).getId());
+            assertEquals("Title " + i, store.get(row).getTitle());
+        }
+        for (int row : visibleRows(store.getSequence())) {
+            actual.add(store.getNoteId(row));
+        }
+        assertEquals(expected, actual);
+        // Compaction squeezed the tombstones out, so later rows moved down
+        assertTrue(store.find(notes.get(99).getId()) < 60);
+    }
+
+    /**
+     * Filters answered from the tag bitmaps find the same notes as evaluating each note
+     */
+    @Test
+    public void filterScanMatchesEvaluatingEachNote() {
+        String[] names = { "work", "home", "urgent", "done" };
+        Random random = new Random(3);
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0 ; i < 3000 ; i++) {
+            Note note = note(i);
+            List<String> tags = new ArrayList<>();
+            for (String name : names) {
+                if (random.nextInt(3) == 0) tags.add(name);
+            }
+            note.setTags(tags);
+            notes.add(note);
+            store.add(note);
+        }
+        // Retag some rows, so the bitmaps see removals as well as additions
+        for (int i = 0 ; i < 3000 ; i += 7) {
+            Note note = notes.get(i);
+            note.setTags(Collections.singletonList("urgent"));
+            store.set(store.find(note.getId()), note);
+        }
+
+        TagFilter[] filters = {
+                TagFilter.tag("work"),
+                TagFilter.allOf("work", "urgent"),
+                TagFilter.anyOf("home", "done"),
+                TagFilter.not(TagFilter.tag("done")),
+                TagFilter.all(TagFilter.tag("work"), TagFilter.anyOf("urgent", "home"), TagFilter.not(TagFilter.tag("done"))),
+                TagFilter.all(),
+                TagFilter.any(),
+        };
+        long snapshot = store.getSequence();
+        for (TagFilter filter : filters) {
+            List<NoteId> expected = new ArrayList<>();
+            for (Note note : notes) {
+                if (filter.matches(note.getTags())) expected.add(note.getId());
+            }
+            List<NoteId> actual = new ArrayList<>();
+            NoteStore.FilterScan scan = store.scan(filter);
+            for (int row = scan.next(0, snapshot) ; row >= 0 ; row = scan.next(row + 1, snapshot)) {
+                actual.add(store.getNoteId(row));
+            }
+            assertEquals(filter.toString(), expected, actual);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services.mock;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RowBitmapTest {
+    private static final int CHUNKS = 3;
+
+    /**
+     * The words of a chunk of a sorted set, as orInto() sets them in an empty buffer
+     */
+    private static long[] words(TreeSet<Integer> rows, int chunk) {
+        long[] words = new long[RowBitmap.WORDS_PER_CHUNK];
+        int base = chunk << RowBitmap.CHUNK_BITS;
+        for (int row : rows.subSet(base, base + RowBitmap.CHUNK_SIZE)) {
+            int offset = row - base;
+            words[offset >>> 6] |= 1L << offset;
+        }
+        return words;
+    }
+
+    private static void assertSameRows(TreeSet<Integer> expected, RowBitmap bitmap) {
+        assertEquals(expected.size(), bitmap.cardinality());
+        for (int chunk = 0 ; chunk < CHUNKS ; chunk++) {
+            long[] actual = new long[RowBitmap.WORDS_PER_CHUNK];
+            bitmap.orInto(chunk, actual);
+            assertArrayEquals("chunk " + chunk, words(expected, chunk), actual);
+        }
+    }
+
+    /**
+     * Adds and removes random rows, at a density that moves chunks between the array and
+     * bitmap forms in both directions, checking against a sorted set as it goes
+     */
+    @Test
+    public void matchesSortedSet() {
+        Random random = new Random(7);
+        RowBitmap bitmap = new RowBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int round = 0 ; round < 6 ; round++) {
+            boolean adding = round % 2 == 0;
+            for (int i = 0 ; i < 12000 ; i++) {
+                // Most rows in the first chunk, so it crosses the array limit
+                int row = (random.nextInt(4) == 0) ? random.nextInt(CHUNKS * RowBitmap.CHUNK_SIZE) : random.nextInt(RowBitmap.CHUNK_SIZE);
+                if (adding) {
+                    bitmap.add(row);
+                    expected.add(row);
+                } else {
+                    // Mostly remove rows that are there, so chunks shrink back to arrays
+                    Integer present = expected.ceiling(row);
+                    if (present != null && random.nextInt(8) != 0) row = present;
+                    bitmap.remove(row);
+                    expected.remove(row);
+                }
+            }
+            assertSameRows(expected, bitmap);
+            for (int i = 0 ; i < 1000 ; i++) {
+                int row = random.nextInt(CHUNKS * RowBitmap.CHUNK_SIZE);
+                assertEquals(expected.contains(row), bitmap.contains(row));
+            }
+        }
+    }
+
+    @Test
+    public void combinesWithBuffer() {
+        Random random = new Random(11);
+        RowBitmap sparse = new RowBitmap();
+        RowBitmap dense = new RowBitmap();
+        TreeSet<Integer> sparseRows = new TreeSet<>();
+        TreeSet<Integer> denseRows = new TreeSet<>();
+        for (int i = 0 ; i < 500 ; i++) {
+            int row = random.nextInt(RowBitmap.CHUNK_SIZE);
+            sparse.add(row);
+            sparseRows.add(row);
+        }
+        for (int row = 0 ; row < RowBitmap.CHUNK_SIZE ; row += 3) {
+            dense.add(row);
+            denseRows.add(row);
+        }
+
+        long[] expected = words(denseRows, 0);
+        long[] sparseWords = words(sparseRows, 0);
+        long[] and = expected.clone();
+        long[] andNot = expected.clone();
+        for (int i = 0 ; i < and.length ; i++) {
+            and[i] &= sparseWords[i];
+            andNot[i] &= ~sparseWords[i];
+        }
+
+        long[] buffer = new long[RowBitmap.WORDS_PER_CHUNK];
+        dense.orInto(0, buffer);
+        sparse.andInto(0, buffer);
+        assertArrayEquals(and, buffer);
+
+        buffer = new long[RowBitmap.WORDS_PER_CHUNK];
+        dense.orInto(0, buffer);
+        sparse.andNotInto(0, buffer);
+        assertArrayEquals(andNot, buffer);
+
+        // A chunk with no rows clears the buffer on AND, and leaves it alone on AND NOT
+        buffer = expected.clone();
+        sparse.andNotInto(2, buffer);
+        assertArrayEquals(expected, buffer);
+        sparse.andInto(2, buffer);
+        assertArrayEquals(new long[RowBitmap.WORDS_PER_CHUNK], buffer);
+    }
+
+    @Test
+    public void clearEmptiesTheSet() {
+        RowBitmap bitmap = new RowBitmap();
+        for (int row = 0 ; row < 10000 ; row++) bitmap.add(row);
+        bitmap.clear();
+        assertSameRows(new TreeSet<Integer>(), bitmap);
+        bitmap.add(5);
+        assertEquals(1, bitmap.cardinality());
+    }
+}
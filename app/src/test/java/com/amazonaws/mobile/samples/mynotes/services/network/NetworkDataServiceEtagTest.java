@@ -0,0 +1,141 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services.network;
+
+import android.content.ComponentCallbacks2;
+
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockDataService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the client against the stand-in server on the loopback interface
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class NetworkDataServiceEtagTest {
+    private interface Call<T> {
+        void invoke(ResultCallback<T> callback);
+    }
+
+    private StandInServer server;
+    private NetworkDataService service;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StandInServer(new MockDataService());
+        service = new NetworkDataService(server.start());
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+        server.stop();
+    }
+
+    /**
+     * Make a call and wait for its result, which arrives on a connection thread
+     */
+    private static <T> T await(Call<T> call) throws InterruptedException {
+        final LinkedBlockingQueue<Object> results = new LinkedBlockingQueue<>();
+        final Object none = new Object();
+        call.invoke((T result) -> results.add(result == null ? none : result));
+        Object result = results.poll(10, TimeUnit.SECONDS);
+        assertNotNull("No result", result);
+        @SuppressWarnings("unchecked") T typed = (result == none) ? null : (T) result;
+        return typed;
+    }
+
+    private String firstNoteId() throws InterruptedException {
+        PagedListConnectionResponse<Note> page = await((ResultCallback<PagedListConnectionResponse<Note>> done) -> service.loadNotes(1, null, done));
+        return page.getItems().get(0).getNoteId();
+    }
+
+    @Test
+    public void unchangedReadIsAnsweredFromTheCache() throws InterruptedException {
+        final String noteId = firstNoteId();
+        Note first = await((ResultCallback<Note> done) -> service.getNote(noteId, done));
+        long received = service.getBytesReceived();
+        Note second = await((ResultCallback<Note> done) -> service.getNote(noteId, done));
+
+        assertEquals(1, service.getNotModifiedCount());
+        assertEquals(first.getTitle(), second.getTitle());
+        assertEquals(first.getContent(), second.getContent());
+        // Each caller gets its own copy
+        assertNotSame(first, second);
+        // The reply without the note is smaller than the one with it
+        assertTrue(service.getBytesReceived() - received < received);
+    }
+
+    @Test
+    public void changedReadIsTransferredAgain() throws InterruptedException {
+        final String noteId = firstNoteId();
+        await((ResultCallback<Note> done) -> service.getNote(noteId, done));
+        assertTrue(await((ResultCallback<Boolean> done) -> service.updateTitle(noteId, "Renamed", done)));
+
+        Note changed = await((ResultCallback<Note> done) -> service.getNote(noteId, done));
+        assertEquals("Renamed", changed.getTitle());
+        assertEquals(0, service.getNotModifiedCount());
+
+        // The new result replaced the old one in the cache
+        Note again = await((ResultCallback<Note> done) -> service.getNote(noteId, done));
+        assertEquals("Renamed", again.getTitle());
+        assertEquals(1, service.getNotModifiedCount());
+    }
+
+    @Test
+    public void readsAreCachedByVariables() throws InterruptedException {
+        final String noteId = firstNoteId();
+        String start = await((ResultCallback<String> done) -> service.loadContent(noteId, 0, 4, done));
+        String rest = await((ResultCallback<String> done) -> service.loadContent(noteId, 4, 100, done));
+        assertEquals(0, service.getNotModifiedCount());
+
+        assertEquals(start, await((ResultCallback<String> done) -> service.loadContent(noteId, 0, 4, done)));
+        assertEquals(rest, await((ResultCallback<String> done) -> service.loadContent(noteId, 4, 100, done)));
+        assertEquals(2, service.getNotModifiedCount());
+    }
+
+    @Test
+    public void trimmedCacheCostsAFullTransfer() throws InterruptedException {
+        final String noteId = firstNoteId();
+        await((ResultCallback<Note> done) -> service.getNote(noteId, done));
+        assertTrue(service.getSizeBytes() > 0);
+
+        assertTrue(service.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE) > 0);
+        assertEquals(0, service.getSizeBytes());
+        Note note = await((ResultCallback<Note> done) -> service.getNote(noteId, done));
+        assertNotNull(note);
+        assertEquals(0, service.getNotModifiedCount());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.services.network;
+
+import android.util.JsonReader;
+import android.util.JsonWriter;
+
+import com.amazonaws.mobile.samples.mynotes.models.Attachment;
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+import com.amazonaws.mobile.samples.mynotes.models.PagedListConnectionResponse;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Runs under Robolectric, since android.util.JsonReader and JsonWriter are only stubs in
+ * plain unit tests
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class NoteJsonTest {
+    private interface Write {
+        void to(JsonWriter out) throws IOException;
+    }
+
+    private static String json(Write write) throws IOException {
+        StringWriter text = new StringWriter();
+        JsonWriter out = new JsonWriter(text);
+        write.to(out);
+        out.flush();
+        return text.toString();
+    }
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(new StringReader(json));
+    }
+
+    @Test
+    public void noteRoundTrip() throws IOException {
+        Note note = new Note(NoteId.generate(), "Trip \"plans\"", new NoteContent("Pack:\n- passport\n- \u00fcber-charger"));
+        note.setTags(Arrays.asList("travel", "todo"));
+        note.setAttachments(Arrays.asList(
+                new Attachment("a1", "map.png", "image/png", 2048),
+                new Attachment("b2", null, null, 0)));
+
+        Note read = NoteJson.readNote(reader(json((JsonWriter out) -> NoteJson.writeNote(out, note))));
+        assertEquals(note.getId(), read.getId());
+        assertEquals(note.getTitle(), read.getTitle());
+        assertEquals(note.getContent(), read.getContent());
+        assertEquals(note.getContentFingerprint(), read.getContentFingerprint());
+        assertEquals(new HashSet<>(Arrays.asList("travel", "todo")), read.getTags());
+        assertEquals(note.getAttachments(), read.getAttachments());
+    }
+
+    @Test
+    public void fingerprintIsTakenAsSent() throws IOException {
+        String id = NoteId.generate().toString();
+        Note read = NoteJson.readNote(reader("{\"noteId\":\"" + id + "\",\"content\":\"text\",\"contentFingerprint\":42}"));
+        assertEquals(42, read.getContentFingerprint());
+
+        // Without one, it is computed from the content
+        read = NoteJson.readNote(reader("{\"noteId\":\"" + id + "\",\"content\":\"text\"}"));
+        assertEquals(new NoteContent("text").getFingerprint(), read.getContentFingerprint());
+    }
+
+    @Test
+    public void unknownFieldsAndNullsAreSkipped() throws IOException {
+        String id = NoteId.generate().toString();
+        Note read = NoteJson.readNote(reader("{\"noteId\":\"" + id + "\",\"title\":null,\"extra\":{\"a\":[1,2]},\"content\":\"c\"}"));
+        assertEquals("", read.getTitle());
+        assertEquals("c", read.getContent());
+        assertNull(NoteJson.readNote(reader("null")));
+    }
+
+    @Test(expected = IOException.class)
+    public void noteWithoutAnIdIsRejected() throws IOException {
+        NoteJson.readNote(reader("{\"title\":\"No ID\"}"));
+    }
+
+    @Test
+    public void pageRoundTrip() throws IOException {
+        Note first = new Note(NoteId.generate(), "First", new NoteContent("1"));
+        Note second = new Note(NoteId.generate(), "Second", new NoteContent("2"));
+        PagedListConnectionResponse<Note> page = new PagedListConnectionResponse<>(Arrays.asList(first, second), "7:42");
+
+        PagedListConnectionResponse<Note> read = NoteJson.readPage(reader(json((JsonWriter out) -> NoteJson.writePage(out, page))));
+        assertEquals("7:42", read.getNextToken());
+        assertEquals(2, read.getItems().size());
+        assertEquals(second.getId(), read.getItems().get(1).getId());
+
+        PagedListConnectionResponse<Note> last = new PagedListConnectionResponse<>(Collections.<Note>emptyList(), null);
+        read = NoteJson.readPage(reader(json((JsonWriter out) -> NoteJson.writePage(out, last))));
+        assertEquals(0, read.getItems().size());
+        assertNull(read.getNextToken());
+    }
+
+    @Test
+    public void filterRoundTrip() throws IOException {
+        TagFilter filter = TagFilter.all(TagFilter.tag("work"), TagFilter.anyOf("urgent", "today"), TagFilter.not(TagFilter.tag("done")));
+        TagFilter read = NoteJson.readFilter(reader(json((JsonWriter out) -> NoteJson.writeFilter(out, filter))));
+        assertEquals(filter, read);
+        assertNull(NoteJson.readFilter(reader(json((JsonWriter out) -> NoteJson.writeFilter(out, null)))));
+    }
+}
@@ -0,0 +1,135 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.ui;
+
+import android.support.v7.util.DiffUtil;
+
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+import com.amazonaws.mobile.samples.mynotes.models.PackedContent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times the per-row comparisons of a list refresh: 10,000 notes with 100 KB bodies, where
+ * every note in the new list is a new instance (as after a reload) and 1% of them have
+ * changed.  DiffUtil makes one areItemsTheSame() and one areContentsTheSame() call per
+ * row of an in-order list like this, and getChangePayload() for each changed row.
+ *
+ * The full-text comparison the adapter used to make is timed on pairs of distinct but
+ * equal strings.  There are enough different bodies that they do not all fit in the CPU
+ * caches, as the text of 10,000 real notes would not.
+ */
+public class NoteDiffBenchmark {
+    private static final int NOTES = 10000;
+    private static final int BODY_LENGTH = 100 * 1024;
+    private static final int BODIES = 256;
+    private static final int CHANGED_EVERY = 100;
+    private static final int WARM_UP_ROUNDS = 20;
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void rowComparisonsDoNotDependOnTheContentLength() {
+        String[] bodies = new String[BODIES];
+        String[] copies = new String[BODIES];
+        PackedContent[] packed = new PackedContent[BODIES];
+        for (int b = 0 ; b < BODIES ; b++) {
+            bodies[b] = body(b);
+            copies[b] = new String(bodies[b].toCharArray());
+            packed[b] = new NoteContent(bodies[b]).pack();
+        }
+        String changedBody = body(BODIES);
+        PackedContent changedPacked = new NoteContent(changedBody).pack();
+
+        List<Note> oldList = new ArrayList<>(NOTES);
+        List<Note> newList = new ArrayList<>(NOTES);
+        for (int i = 0 ; i < NOTES ; i++) {
+            NoteId id = NoteId.generate();
+            String title = "Note " + i;
+            oldList.add(new Note(id, title, NoteContent.fromPacked(packed[i % BODIES])));
+            boolean changed = (i % CHANGED_EVERY == 0);
+            newList.add(new Note(id, new String(title), NoteContent.fromPacked(changed ? changedPacked : packed[i % BODIES])));
+        }
+
+        long fingerprintNanos = Long.MAX_VALUE;
+        for (int round = 0 ; round < WARM_UP_ROUNDS + ROUNDS ; round++) {
+            long start = System.nanoTime();
+            int changed = diff(NoteListAdapter.DIFF_CALLBACK, oldList, newList);
+            if (round >= WARM_UP_ROUNDS) fingerprintNanos = Math.min(fingerprintNanos, System.nanoTime() - start);
+            assertEquals(NOTES / CHANGED_EVERY, changed);
+        }
+
+        long fullTextNanos = Long.MAX_VALUE;
+        for (int round = 0 ; round < WARM_UP_ROUNDS + ROUNDS ; round++) {
+            long start = System.nanoTime();
+            int changed = 0;
+            for (int i = 0 ; i < NOTES ; i++) {
+                String oldText = bodies[i % BODIES];
+                String newText = (i % CHANGED_EVERY == 0) ? changedBody : copies[i % BODIES];
+                if (!(oldList.get(i).getTitle().equals(newList.get(i).getTitle()) && oldText.equals(newText))) changed++;
+            }
+            if (round >= WARM_UP_ROUNDS) fullTextNanos = Math.min(fullTextNanos, System.nanoTime() - start);
+            assertEquals(NOTES / CHANGED_EVERY, changed);
+        }
+
+        System.out.println(String.format(Locale.US,
+                "Diff of %d notes with %d KB bodies: %.2f ms by fingerprint, %.2f ms by full text",
+                NOTES, BODY_LENGTH / 1024, fingerprintNanos / 1e6, fullTextNanos / 1e6));
+        assertTrue("fingerprint comparison should be at least 10x faster", fingerprintNanos * 10 < fullTextNanos);
+    }
+
+    /**
+     * The callbacks DiffUtil makes for two lists of the same notes in the same order
+     *
+     * @return the number of rows that changed
+     */
+    private static int diff(DiffUtil.ItemCallback<Note> callback, List<Note> oldList, List<Note> newList) {
+        int changed = 0;
+        for (int i = 0 ; i < oldList.size() ; i++) {
+            Note oldItem = oldList.get(i);
+            Note newItem = newList.get(i);
+            assertTrue(callback.areItemsTheSame(oldItem, newItem));
+            if (!callback.areContentsTheSame(oldItem, newItem)) {
+                assertEquals(NoteListAdapter.CHANGED_CONTENT, callback.getChangePayload(oldItem, newItem));
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * A body of BODY_LENGTH characters.  Bodies with different seeds differ only in their
+     * last line, so comparing them reads all of the text.
+     */
+    private static String body(int seed) {
+        StringBuilder text = new StringBuilder(BODY_LENGTH);
+        while (text.length() < BODY_LENGTH) {
+            text.append("The quick brown fox jumps over the lazy dog ").append(text.length()).append('\n');
+        }
+        String last = "\n" + seed;
+        text.setLength(BODY_LENGTH - last.length());
+        return text.append(last).toString();
+    }
+}
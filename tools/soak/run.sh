@@ -0,0 +1,15 @@
+#!/bin/sh
+# Build and run the repository soak on the JVM.
+#
+#   tools/soak/run.sh [sessions [interval]]
+#
+# Exits non-zero and prints SOAK FAILED when a threshold is missed.
+set -e
+ROOT="$(cd "$(dirname "$0")/../.." && pwd)"
+OUT="$ROOT/tools/soak/build"
+rm -rf "$OUT"
+mkdir -p "$OUT"
+javac -nowarn -encoding UTF-8 -d "$OUT" \
+    -sourcepath "$ROOT/tools/soak/shims:$ROOT/tools/soak/src:$ROOT/app/src/main/java" \
+    "$ROOT/tools/soak/src/com/amazonaws/mobile/samples/mynotes/soak/Soak.java"
+exec java -Xmx256m $SOAK_OPTS -cp "$OUT" com.amazonaws.mobile.samples.mynotes.soak.Soak "$@"
@@ -0,0 +1,59 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package android.arch.lifecycle;
+
+import android.os.Handler;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stand-in for LiveData.  Values are posted to the main thread of {@link Handler}, and
+ * observers are told about every value, including the current one when they start.
+ */
+public abstract class LiveData<T> {
+    private volatile T value;
+    private final CopyOnWriteArrayList<Observer<T>> observers = new CopyOnWriteArrayList<>();
+
+    public T getValue() {
+        return value;
+    }
+
+    public void observe(LifecycleOwner owner, Observer<T> observer) {
+        observeForever(observer);
+    }
+
+    public void observeForever(Observer<T> observer) {
+        observers.add(observer);
+        T current = value;
+        if (current != null) observer.onChanged(current);
+    }
+
+    public void removeObserver(Observer<T> observer) {
+        observers.remove(observer);
+    }
+
+    protected void postValue(final T value) {
+        Handler.MAIN.execute(() -> setValue(value));
+    }
+
+    protected void setValue(T value) {
+        this.value = value;
+        for (Observer<T> observer : observers) {
+            observer.onChanged(value);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package android.arch.lifecycle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class MediatorLiveData<T> extends MutableLiveData<T> {
+    private final Map<LiveData<?>, Observer<?>> sources = new HashMap<>();
+
+    public synchronized <S> void addSource(LiveData<S> source, Observer<S> onChanged) {
+        sources.put(source, onChanged);
+        source.observeForever(onChanged);
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <S> void removeSource(LiveData<S> source) {
+        Observer<S> observer = (Observer<S>) sources.remove(source);
+        if (observer != null) source.removeObserver(observer);
+    }
+}
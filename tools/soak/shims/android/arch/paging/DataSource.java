@@ -0,0 +1,54 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package android.arch.paging;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public abstract class DataSource<Key, Value> {
+    public abstract static class Factory<Key, Value> {
+        public abstract DataSource<Key, Value> create();
+    }
+
+    public interface InvalidatedCallback {
+        void onInvalidated();
+    }
+
+    private final AtomicBoolean invalid = new AtomicBoolean(false);
+    private final CopyOnWriteArrayList<InvalidatedCallback> callbacks = new CopyOnWriteArrayList<>();
+
+    public void invalidate() {
+        if (!invalid.compareAndSet(false, true)) return;
+        for (InvalidatedCallback callback : callbacks) {
+            callback.onInvalidated();
+        }
+    }
+
+    public boolean isInvalid() {
+        return invalid.get();
+    }
+
+    public void addInvalidatedCallback(InvalidatedCallback callback) {
+        callbacks.add(callback);
+        // Invalidated while the callback was being added
+        if (invalid.get() && callbacks.remove(callback)) callback.onInvalidated();
+    }
+
+    public void removeInvalidatedCallback(InvalidatedCallback callback) {
+        callbacks.remove(callback);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package android.arch.paging;
+
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.arch.lifecycle.Observer;
+
+/**
+ * Stand-in for LivePagedListBuilder.  The first list is made when the LiveData is first
+ * observed, and a new one each time the current data source is invalidated.
+ */
+public class LivePagedListBuilder<Key, Value> {
+    private final DataSource.Factory<Key, Value> factory;
+    private final int pageSize;
+
+    public LivePagedListBuilder(DataSource.Factory<Key, Value> factory, int pageSize) {
+        this.factory = factory;
+        this.pageSize = pageSize;
+    }
+
+    public LiveData<PagedList<Value>> build() {
+        return new MutableLiveData<PagedList<Value>>() {
+            private boolean started = false;
+
+            @Override
+            public void observeForever(Observer<PagedList<Value>> observer) {
+                super.observeForever(observer);
+                synchronized (this) {
+                    if (started) return;
+                    started = true;
+                }
+                next(this);
+            }
+        };
+    }
+
+    private void next(final MutableLiveData<PagedList<Value>> live) {
+        PagedList.FETCH.execute(() -> {
+            DataSource<Key, Value> source = factory.create();
+            source.addInvalidatedCallback(() -> next(live));
+            // Already invalidated, so the callback has made the next list
+            if (source.isInvalid()) return;
+            final PagedList<Value> list = new PagedList<>(source, pageSize);
+            list.loadInitial(() -> live.postValue(list));
+        });
+    }
+}
@@ -0,0 +1,56 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package android.arch.paging;
+
+import java.util.List;
+
+public abstract class PageKeyedDataSource<Key, Value> extends DataSource<Key, Value> {
+    public static class LoadInitialParams<Key> {
+        public final int requestedLoadSize;
+        public final boolean placeholdersEnabled = false;
+
+        public LoadInitialParams(int requestedLoadSize) {
+            this.requestedLoadSize = requestedLoadSize;
+        }
+    }
+
+    public static class LoadParams<Key> {
+        public final Key key;
+        public final int requestedLoadSize;
+
+        public LoadParams(Key key, int requestedLoadSize) {
+            this.key = key;
+            this.requestedLoadSize = requestedLoadSize;
+        }
+    }
+
+    public abstract static class LoadInitialCallback<Key, Value> {
+        public abstract void onResult(List<Value> data, Key previousPageKey, Key nextPageKey);
+
+        public abstract void onResult(List<Value> data, int position, int totalCount, Key previousPageKey, Key nextPageKey);
+    }
+
+    public abstract static class LoadCallback<Key, Value> {
+        public abstract void onResult(List<Value> data, Key adjacentPageKey);
+    }
+
+    public abstract void loadInitial(LoadInitialParams<Key> params, LoadInitialCallback<Key, Value> callback);
+
+    public abstract void loadBefore(LoadParams<Key> params, LoadCallback<Key, Value> callback);
+
+    public abstract void loadAfter(LoadParams<Key> params, LoadCallback<Key, Value> callback);
+}
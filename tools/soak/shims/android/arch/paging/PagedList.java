@@ -0,0 +1,119 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package android.arch.paging;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stand-in for PagedList, with the paging 1.0 behaviour the app relies on: the first load
+ * asks for three pages, and the next page is loaded once an item within a page of the end
+ * is accessed.  Pages are fetched on two background threads, as with the default fetch
+ * executor.
+ */
+public class PagedList<T> extends AbstractList<T> {
+    static final ExecutorService FETCH = Executors.newFixedThreadPool(2, (Runnable runnable) -> {
+        Thread thread = new Thread(runnable, "arch_disk_io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final PageKeyedDataSource<Object, T> source;
+    private final int pageSize;
+    private final List<T> items = new CopyOnWriteArrayList<>();
+    private volatile Object nextKey;
+    private volatile boolean loading;
+    private volatile boolean initialized;
+    private volatile boolean ended;
+
+    @SuppressWarnings("unchecked")
+    PagedList(DataSource<?, T> source, int pageSize) {
+        this.source = (PageKeyedDataSource<Object, T>) source;
+        this.pageSize = pageSize;
+    }
+
+    void loadInitial(final Runnable onLoaded) {
+        loading = true;
+        FETCH.execute(() -> source.loadInitial(new PageKeyedDataSource.LoadInitialParams<>(pageSize * 3),
+                new PageKeyedDataSource.LoadInitialCallback<Object, T>() {
+                    @Override
+                    public void onResult(List<T> data, Object previousPageKey, Object nextPageKey) {
+                        items.addAll(data);
+                        nextKey = nextPageKey;
+                        ended = nextPageKey == null;
+                        loading = false;
+                        initialized = true;
+                        onLoaded.run();
+                    }
+
+                    @Override
+                    public void onResult(List<T> data, int position, int totalCount, Object previousPageKey, Object nextPageKey) {
+                        onResult(data, previousPageKey, nextPageKey);
+                    }
+                }));
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    public boolean isEnded() {
+        return ended;
+    }
+
+    public void loadAround(int index) {
+        if (loading || ended || source.isInvalid() || index < items.size() - pageSize) return;
+        loading = true;
+        final Object key = nextKey;
+        FETCH.execute(() -> source.loadAfter(new PageKeyedDataSource.LoadParams<>(key, pageSize),
+                new PageKeyedDataSource.LoadCallback<Object, T>() {
+                    @Override
+                    public void onResult(List<T> data, Object adjacentPageKey) {
+                        items.addAll(data);
+                        nextKey = adjacentPageKey;
+                        ended = adjacentPageKey == null;
+                        loading = false;
+                    }
+                }));
+    }
+
+    @Override
+    public T get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    public int getLoadedCount() {
+        return items.size();
+    }
+
+    public DataSource<?, T> getDataSource() {
+        return source;
+    }
+
+    public List<T> snapshot() {
+        return new ArrayList<>(items);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package android.os;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for the Android Handler.  Every handler posts to one "main" thread, which is
+ * also where LiveData values are set and AsyncDataService results are delivered.
+ */
+public class Handler {
+    public static final ScheduledExecutorService MAIN = Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+        Thread thread = new Thread(runnable, "main");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Runnable, List<ScheduledFuture<?>>> scheduled = new ConcurrentHashMap<>();
+
+    public Handler() {
+    }
+
+    public Handler(Looper looper) {
+    }
+
+    public boolean post(Runnable runnable) {
+        MAIN.execute(runnable);
+        return true;
+    }
+
+    public boolean postDelayed(Runnable runnable, long delayMillis) {
+        scheduled.computeIfAbsent(runnable, (Runnable key) -> new CopyOnWriteArrayList<>())
+                .add(MAIN.schedule(runnable, delayMillis, TimeUnit.MILLISECONDS));
+        return true;
+    }
+
+    public void removeCallbacks(Runnable runnable) {
+        List<ScheduledFuture<?>> futures = scheduled.remove(runnable);
+        if (futures == null) return;
+        for (ScheduledFuture<?> future : futures) {
+            future.cancel(false);
+        }
+    }
+
+    public void removeCallbacksAndMessages(Object token) {
+        for (Runnable runnable : scheduled.keySet()) {
+            removeCallbacks(runnable);
+        }
+    }
+
+    public final Looper getLooper() {
+        return Looper.getMainLooper();
+    }
+}
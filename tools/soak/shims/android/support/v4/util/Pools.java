@@ -0,0 +1,69 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package android.support.v4.util;
+
+public final class Pools {
+    public interface Pool<T> {
+        T acquire();
+
+        boolean release(T instance);
+    }
+
+    public static class SimplePool<T> implements Pool<T> {
+        private final Object[] pool;
+        private int size;
+
+        public SimplePool(int maxPoolSize) {
+            pool = new Object[maxPoolSize];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T acquire() {
+            if (size == 0) return null;
+            T instance = (T) pool[--size];
+            pool[size] = null;
+            return instance;
+        }
+
+        @Override
+        public boolean release(T instance) {
+            if (size == pool.length) return false;
+            pool[size++] = instance;
+            return true;
+        }
+    }
+
+    public static class SynchronizedPool<T> extends SimplePool<T> {
+        public SynchronizedPool(int maxPoolSize) {
+            super(maxPoolSize);
+        }
+
+        @Override
+        public synchronized T acquire() {
+            return super.acquire();
+        }
+
+        @Override
+        public synchronized boolean release(T instance) {
+            return super.release(instance);
+        }
+    }
+
+    private Pools() {
+    }
+}
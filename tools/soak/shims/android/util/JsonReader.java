@@ -0,0 +1,48 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package android.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Compile-only stand-in.  The soak never touches JSON, so every method throws.
+ */
+public final class JsonReader implements Closeable {
+    public JsonReader(Reader in) {
+    }
+
+    public void beginArray() throws IOException { throw new UnsupportedOperationException(); }
+    public void endArray() throws IOException { throw new UnsupportedOperationException(); }
+    public void beginObject() throws IOException { throw new UnsupportedOperationException(); }
+    public void endObject() throws IOException { throw new UnsupportedOperationException(); }
+    public boolean hasNext() throws IOException { throw new UnsupportedOperationException(); }
+    public JsonToken peek() throws IOException { throw new UnsupportedOperationException(); }
+    public String nextName() throws IOException { throw new UnsupportedOperationException(); }
+    public String nextString() throws IOException { throw new UnsupportedOperationException(); }
+    public boolean nextBoolean() throws IOException { throw new UnsupportedOperationException(); }
+    public void nextNull() throws IOException { throw new UnsupportedOperationException(); }
+    public double nextDouble() throws IOException { throw new UnsupportedOperationException(); }
+    public long nextLong() throws IOException { throw new UnsupportedOperationException(); }
+    public int nextInt() throws IOException { throw new UnsupportedOperationException(); }
+    public void skipValue() throws IOException { throw new UnsupportedOperationException(); }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,51 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package android.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Compile-only stand-in.  The soak never touches JSON, so every method throws.
+ */
+public final class JsonWriter implements Closeable, Flushable {
+    public JsonWriter(Writer out) {
+    }
+
+    public void setIndent(String indent) throws IOException { throw new UnsupportedOperationException(); }
+    public JsonWriter beginArray() throws IOException { throw new UnsupportedOperationException(); }
+    public JsonWriter endArray() throws IOException { throw new UnsupportedOperationException(); }
+    public JsonWriter beginObject() throws IOException { throw new UnsupportedOperationException(); }
+    public JsonWriter endObject() throws IOException { throw new UnsupportedOperationException(); }
+    public JsonWriter name(String name) throws IOException { throw new UnsupportedOperationException(); }
+    public JsonWriter value(String value) throws IOException { throw new UnsupportedOperationException(); }
+    public JsonWriter nullValue() throws IOException { throw new UnsupportedOperationException(); }
+    public JsonWriter value(boolean value) throws IOException { throw new UnsupportedOperationException(); }
+    public JsonWriter value(double value) throws IOException { throw new UnsupportedOperationException(); }
+    public JsonWriter value(long value) throws IOException { throw new UnsupportedOperationException(); }
+    public JsonWriter value(Number value) throws IOException { throw new UnsupportedOperationException(); }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
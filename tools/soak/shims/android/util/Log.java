@@ -0,0 +1,69 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package android.util;
+
+/**
+ * Stand-in for the Android Log.  Debug and info messages are dropped; warnings are only
+ * printed when the soak is run with -Dsoak.verbose=true, since failed calls are expected
+ * while it deletes notes that other screens have open.
+ */
+public final class Log {
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    private static final boolean PRINT_WARNINGS = Boolean.getBoolean("soak.verbose");
+
+    private Log() {
+    }
+
+    public static int v(String tag, String message) {
+        return 0;
+    }
+
+    public static int d(String tag, String message) {
+        return 0;
+    }
+
+    public static int i(String tag, String message) {
+        return 0;
+    }
+
+    public static int w(String tag, String message) {
+        return w(tag, message, null);
+    }
+
+    public static int w(String tag, String message, Throwable error) {
+        if (PRINT_WARNINGS) System.err.println("W/" + tag + ": " + message + (error == null ? "" : " " + error));
+        return 0;
+    }
+
+    public static int e(String tag, String message) {
+        return e(tag, message, null);
+    }
+
+    public static int e(String tag, String message, Throwable error) {
+        System.err.println("E/" + tag + ": " + message + (error == null ? "" : " " + error));
+        return 0;
+    }
+
+    public static boolean isLoggable(String tag, int level) {
+        return false;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+Copyright 2018 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this
+software and associated documentation files (the "Software"), to deal in the Software
+without restriction, including without limitation the rights to use, copy, modify,
+merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.amazonaws.mobile.samples.mynotes.soak;
+
+import android.arch.paging.PagedList;
+import android.os.Handler;
+
+import com.amazonaws.mobile.samples.mynotes.models.Note;
+import com.amazonaws.mobile.samples.mynotes.models.NoteContent;
+import com.amazonaws.mobile.samples.mynotes.models.NoteId;
+import com.amazonaws.mobile.samples.mynotes.models.ResultCallback;
+import com.amazonaws.mobile.samples.mynotes.models.TagFilter;
+import com.amazonaws.mobile.samples.mynotes.repository.NotesRepository;
+import com.amazonaws.mobile.samples.mynotes.services.AsyncDataService;
+import com.amazonaws.mobile.samples.mynotes.services.RequestGroup;
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockAnalyticsService;
+import com.amazonaws.mobile.samples.mynotes.services.mock.MockDataService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Soak test for the repository, run on the JVM against the stand-ins in tools/soak/shims.
+ * Each session is what a user does on one visit: scroll the list, open a few notes (backing
+ * out of some before they load), edit some of them, and now and then create or delete a
+ * note or change the tag filter.  Every interval the harness prints throughput, session
+ * latency, heap after GC, live data sources and outstanding calls, then checks the
+ * thresholds below against the second interval (the first one includes warm-up).
+ */
+public class Soak {
+    /** Notes in the store when the soak starts. */
+    private static final int NOTES = 5000;
+    /** Tags t0..t7 are spread over the notes. */
+    private static final int TAGS = 8;
+    /** How long one call may take before it is counted as stalled. */
+    private static final long STALL_NS = TimeUnit.SECONDS.toNanos(5);
+
+    /** The list holds at most this many data sources once the old ones are collected. */
+    private static final int MAX_LIVE_DATA_SOURCES = 4;
+    /** Heap after GC may grow by less than this between the second and last intervals. */
+    private static final long MAX_HEAP_GROWTH = 16L << 20;
+    /** The last p99 may be at most twice the baseline plus this much. */
+    private static final long P99_SLACK_NS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final Random random = new Random(42);
+    private final AsyncDataService service;
+    private final NotesRepository repository;
+    private int stalls = 0;
+
+    private Soak() {
+        MockDataService mock = new MockDataService();
+        List<Note> notes = new ArrayList<>(NOTES);
+        for (int i = 0; i < NOTES; i++) {
+            Note note = new Note(NoteId.generate(), "Soak " + i, new NoteContent("content " + i));
+            note.setTags(Collections.singletonList("t" + random.nextInt(TAGS)));
+            notes.add(note);
+        }
+        mock.createNotes(notes, (created) -> { });
+        service = new AsyncDataService(mock, new MockAnalyticsService(), Handler.MAIN);
+        repository = new NotesRepository(service);
+        repository.getPagedList().observeForever((list) -> { });
+    }
+
+    /**
+     * Wait for the current list to finish its first load.
+     *
+     * @return the list, or null if it stalled
+     */
+    private PagedList<Note> awaitList() throws InterruptedException {
+        long deadline = System.nanoTime() + STALL_NS;
+        while (System.nanoTime() < deadline) {
+            PagedList<Note> list = repository.getPagedList().getValue();
+            if (list != null && list.isInitialized() && !list.getDataSource().isInvalid()) return list;
+            Thread.sleep(0, 200000);
+        }
+        stalls++;
+        return null;
+    }
+
+    /**
+     * Make a call and wait for its answer.
+     *
+     * @return the result, or null if the call failed or stalled
+     */
+    private <T> T await(Consumer<ResultCallback<T>> call) throws Exception {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        call.accept(future::complete);
+        try {
+            return future.get(STALL_NS, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException error) {
+            stalls++;
+            return null;
+        }
+    }
+
+    private void session() throws Exception {
+        PagedList<Note> list = awaitList();
+        if (list == null) return;
+
+        int pages = random.nextInt(6);
+        for (int page = 0; page < pages && !list.isEnded(); page++) {
+            int loaded = list.size();
+            list.loadAround(loaded - 1);
+            long deadline = System.nanoTime() + STALL_NS;
+            while (list.size() == loaded && !list.getDataSource().isInvalid() && !list.isEnded()
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(0, 100000);
+            }
+            if (list.getDataSource().isInvalid()) {
+                list = awaitList();
+                if (list == null) return;
+            }
+        }
+
+        int opens = 1 + random.nextInt(3);
+        for (int open = 0; open < opens && list.size() > 0; open++) {
+            final Note picked = list.get(random.nextInt(list.size()));
+            final String noteId = picked.getNoteId();
+            RequestGroup screen = new RequestGroup();
+            if (random.nextInt(5) == 0) {
+                // Back pressed while the note is still loading
+                repository.get(noteId, screen, (note) -> { });
+                repository.getContent(noteId, 0, 16384, screen, (content) -> { });
+                screen.cancel();
+                continue;
+            }
+            Note note = this.<Note>await((callback) -> repository.get(noteId, screen, callback));
+            String content = this.<String>await((callback) -> repository.getContent(noteId, 0, 16384, screen, callback));
+            if (note != null && content != null && random.nextBoolean()) {
+                this.<Boolean>await((callback) -> repository.updateContent(noteId, 0, 0, "x", callback));
+                if (random.nextInt(4) == 0) {
+                    this.<Boolean>await((callback) -> repository.updateTitle(noteId, note.getTitle() + "!", callback));
+                }
+            }
+            screen.cancel();
+        }
+
+        switch (random.nextInt(20)) {
+            case 0:
+                this.<Note>await((callback) -> repository.create("new", "body", callback));
+                break;
+            case 1:
+                list = awaitList();
+                if (list != null && list.size() > 0) {
+                    final String noteId = list.get(random.nextInt(list.size())).getNoteId();
+                    this.<Boolean>await((callback) -> repository.delete(noteId, callback));
+                }
+                break;
+            case 2:
+                repository.setTagFilter(random.nextBoolean() ? TagFilter.tag("t" + random.nextInt(TAGS)) : null);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static long heapAfterGc() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Figures for one interval of the soak.
+     */
+    private static class Interval {
+        double sessionsPerSecond;
+        long p50;
+        long p99;
+        long heap;
+        int liveDataSources;
+        int outstandingCalls;
+    }
+
+    private Interval measure(long[] latencies, long elapsed) throws InterruptedException {
+        Interval interval = new Interval();
+        interval.sessionsPerSecond = latencies.length / (elapsed / 1e9);
+
+        // Let the last writes land before counting what is still outstanding
+        long deadline = System.nanoTime() + STALL_NS;
+        while (service.getOutstandingCalls() > 0 && System.nanoTime() < deadline) Thread.sleep(1);
+        interval.outstandingCalls = service.getOutstandingCalls();
+        interval.heap = heapAfterGc();
+        interval.liveDataSources = repository.getLiveDataSourceCount();
+
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        interval.p50 = sorted[sorted.length / 2];
+        interval.p99 = sorted[sorted.length * 99 / 100];
+        return interval;
+    }
+
+    private List<String> check(List<Interval> intervals) {
+        Interval base = intervals.get(Math.min(1, intervals.size() - 1));
+        Interval last = intervals.get(intervals.size() - 1);
+        int maxLive = 0;
+        int maxOutstanding = 0;
+        for (Interval interval : intervals) {
+            maxLive = Math.max(maxLive, interval.liveDataSources);
+            maxOutstanding = Math.max(maxOutstanding, interval.outstandingCalls);
+        }
+
+        List<String> failures = new ArrayList<>();
+        if (stalls > 0) failures.add("stalled calls: " + stalls);
+        if (maxOutstanding > 0) failures.add("calls never answered: " + maxOutstanding);
+        if (maxLive > MAX_LIVE_DATA_SOURCES) failures.add("live data sources after GC: " + maxLive);
+        if (last.heap - base.heap >= MAX_HEAP_GROWTH) {
+            failures.add(String.format("heap grew %.1f MB", (last.heap - base.heap) / 1048576.0));
+        }
+        if (last.p99 > 2 * base.p99 + P99_SLACK_NS) {
+            failures.add(String.format("p99 drifted %.2f -> %.2f ms", base.p99 / 1e6, last.p99 / 1e6));
+        }
+        if (last.sessionsPerSecond < base.sessionsPerSecond / 2) {
+            failures.add(String.format("throughput dropped %.0f -> %.0f sessions/s", base.sessionsPerSecond, last.sessionsPerSecond));
+        }
+        return failures;
+    }
+
+    private boolean run(int sessions, int intervalLength) throws Exception {
+        List<Interval> intervals = new ArrayList<>();
+        long[] latencies = new long[intervalLength];
+        long started = System.nanoTime();
+        for (int session = 0; session < sessions; session++) {
+            long sessionStarted = System.nanoTime();
+            session();
+            latencies[session % intervalLength] = System.nanoTime() - sessionStarted;
+
+            if ((session + 1) % intervalLength == 0) {
+                Interval interval = measure(latencies, System.nanoTime() - started);
+                intervals.add(interval);
+                System.out.printf("%6d sessions  %5.0f sessions/s  p50 %6.2f ms  p99 %6.2f ms  heap %6.1f MB"
+                                + "  live data sources %d  outstanding calls %d  stalls %d%n",
+                        session + 1, interval.sessionsPerSecond, interval.p50 / 1e6, interval.p99 / 1e6,
+                        interval.heap / 1048576.0, interval.liveDataSources, interval.outstandingCalls, stalls);
+                started = System.nanoTime();
+            }
+        }
+        if (intervals.isEmpty()) throw new IllegalArgumentException("Fewer sessions than one interval");
+
+        List<String> failures = check(intervals);
+        System.out.println(failures.isEmpty() ? "SOAK PASSED" : "SOAK FAILED " + failures);
+        return failures.isEmpty();
+    }
+
+    /**
+     * Usage: Soak [sessions [interval]]
+     */
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int interval = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        boolean passed = new Soak().run(sessions, interval);
+        System.exit(passed ? 0 : 1);
+    }
+}